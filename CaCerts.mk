@@ -39,21 +39,51 @@ LOCAL_SRC_FILES := $(2)
 include $$(BUILD_PREBUILT)
 endef
 
+# $(1): index file
+# $(2): installed certificate files, all in the indexed directory
+#
+# The index is written from the installed directory so that it lists exactly
+# what TrustedCertificateStore will find there; see SystemCertificateIndex.
+define cacerts-index-rule
+$(1): PRIVATE_DIRECTORY := $(patsubst %.index,%,$(1))
+$(1): $(2) $$(cacerts_indexer) $(LOCAL_PATH)/CaCerts.mk
+	@echo "Index CA certificates: $$@"
+	$$(hide) $$(JAVA) -cp $$(cacerts_indexer) \
+		org.apache.harmony.xnet.provider.jsse.SystemCertificateIndexWriter \
+		$$(PRIVATE_DIRECTORY) $$@
+endef
+
+# Host tool that writes cacerts.index. It is built against the host JDK, so
+# SystemCertificateIndexWriter must only use APIs available there.
+include $(CLEAR_VARS)
+LOCAL_MODULE := cacerts-indexer
+LOCAL_MODULE_TAGS := optional
+LOCAL_SRC_FILES := luni/src/main/java/org/apache/harmony/xnet/provider/jsse/SystemCertificateIndexWriter.java
+LOCAL_ADDITIONAL_DEPENDENCIES := $(LOCAL_PATH)/CaCerts.mk
+include $(BUILD_HOST_JAVA_LIBRARY)
+cacerts_indexer := $(LOCAL_INSTALLED_MODULE)
+
 cacerts := $(call all-files-under,luni/src/main/files/cacerts)
 
 cacerts_target_directory := $(TARGET_OUT)/etc/security/cacerts
 $(foreach cacert, $(cacerts), $(eval $(call include-prebuilt-with-destination-directory,target-cacert-$(notdir $(cacert)),$(cacert),$(cacerts_target_directory))))
 cacerts_target := $(addprefix $(cacerts_target_directory)/,$(foreach cacert,$(cacerts),$(notdir $(cacert))))
+cacerts_target_index := $(cacerts_target_directory).index
+$(eval $(call cacerts-index-rule,$(cacerts_target_index),$(cacerts_target)))
 .PHONY: cacerts_target
-cacerts: $(cacerts_target)
+cacerts: $(cacerts_target) $(cacerts_target_index)
 
 # This is so that build/target/product/core.mk can use cacerts in PRODUCT_PACKAGES
-ALL_MODULES.cacerts.INSTALLED := $(cacerts_target)
+ALL_MODULES.cacerts.INSTALLED := $(cacerts_target) $(cacerts_target_index)
 
 ifeq ($(WITH_HOST_DALVIK),true)
 cacerts_host_directory := $(HOST_OUT)/etc/security/cacerts
 $(foreach cacert, $(cacerts), $(eval $(call include-prebuilt-with-destination-directory,host-cacert-$(notdir $(cacert)),$(cacert),$(cacerts_host_directory))))
 endif
 cacerts_host := $(addprefix $(cacerts_host_directory)/,$(foreach cacert,$(cacerts),$(notdir $(cacert))))
+ifeq ($(WITH_HOST_DALVIK),true)
+cacerts_host_index := $(cacerts_host_directory).index
+$(eval $(call cacerts-index-rule,$(cacerts_host_index),$(cacerts_host)))
+endif
 .PHONY: cacerts-host
-cacerts-host: $(cacerts_host)
+cacerts-host: $(cacerts_host) $(cacerts_host_index)
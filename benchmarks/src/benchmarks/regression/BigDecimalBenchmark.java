@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks.regression;
+
+import com.google.caliper.SimpleBenchmark;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * Measures BigDecimal operations on 18-digit values whose unscaled values fit
+ * in a long, as a pricing engine would use them.
+ */
+public class BigDecimalBenchmark extends SimpleBenchmark {
+    private static final MathContext PRICE_CONTEXT = new MathContext(18, RoundingMode.HALF_EVEN);
+
+    private final BigDecimal price = new BigDecimal("123456789.123456789");
+    private final BigDecimal quantity = new BigDecimal("12345.6789");
+    private final BigDecimal otherPrice = new BigDecimal("123456789.12345678");
+
+    public void timeDivideWithMathContext(int reps) {
+        for (int i = 0; i < reps; ++i) {
+            price.divide(quantity, PRICE_CONTEXT);
+        }
+    }
+
+    public void timeDivideWithScale(int reps) {
+        for (int i = 0; i < reps; ++i) {
+            price.divide(quantity, 9, RoundingMode.HALF_UP);
+        }
+    }
+
+    public void timeSetScale(int reps) {
+        RoundingMode[] modes = RoundingMode.values();
+        for (int i = 0; i < reps; ++i) {
+            RoundingMode mode = modes[i % modes.length];
+            if (mode != RoundingMode.UNNECESSARY) {
+                price.setScale(2, mode);
+            }
+        }
+    }
+
+    public void timeRound(int reps) {
+        MathContext mc = MathContext.DECIMAL64;
+        for (int i = 0; i < reps; ++i) {
+            price.round(mc);
+        }
+    }
+
+    public void timeCompareToDifferentScales(int reps) {
+        for (int i = 0; i < reps; ++i) {
+            price.compareTo(otherPrice);
+        }
+    }
+
+    public void timeToString(int reps) {
+        for (int i = 0; i < reps; ++i) {
+            // BigDecimal caches its string, so use a fresh instance each time.
+            BigDecimal.valueOf(123456789123456789L, 9).toString();
+            BigDecimal.valueOf(123L, 18).toString();
+        }
+    }
+}
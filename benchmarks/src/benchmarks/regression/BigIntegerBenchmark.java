@@ -48,4 +48,46 @@ public class BigIntegerBenchmark extends SimpleBenchmark {
             x.multiply(y);
         }
     }
+
+    public void timeSmallAddition(int reps) throws Exception {
+        BigInteger x = BigInteger.valueOf(123456789012L);
+        BigInteger sum = BigInteger.ZERO;
+        for (int i = 0; i < reps; ++i) {
+            sum = sum.add(x);
+        }
+    }
+
+    public void timeSmallMultiplication(int reps) throws Exception {
+        BigInteger x = BigInteger.valueOf(1234567L);
+        BigInteger y = BigInteger.valueOf(7654321L);
+        for (int i = 0; i < reps; ++i) {
+            x.multiply(y);
+        }
+    }
+
+    public void timeSmallDivision(int reps) throws Exception {
+        BigInteger x = BigInteger.valueOf(123456789012345L);
+        BigInteger y = BigInteger.valueOf(1000L);
+        for (int i = 0; i < reps; ++i) {
+            x.divide(y);
+        }
+    }
+
+    /**
+     * Multiplies and reduces operands of 32, 64, 128 and 1024 bits, so that
+     * both the small value and OpenSSL paths are taken.
+     */
+    public void timeMixedSizes(int reps) throws Exception {
+        Random r = new Random();
+        BigInteger[] values = {
+            new BigInteger(32, r), new BigInteger(64, r), new BigInteger(128, r),
+            new BigInteger(1024, r),
+        };
+        BigInteger modulus = BigInteger.valueOf(1000000007L);
+        for (int i = 0; i < reps; ++i) {
+            BigInteger x = values[i & 3];
+            BigInteger y = values[(i >> 2) & 3];
+            x.multiply(y).add(x).mod(modulus);
+        }
+    }
 }
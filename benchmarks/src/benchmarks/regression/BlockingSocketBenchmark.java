@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks.regression;
+
+import com.google.caliper.Param;
+import com.google.caliper.SimpleBenchmark;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the latency of a one-byte write and read on a loopback socket while
+ * other threads are blocked reading from idle sockets. Every blocking socket
+ * call registers with the native asynchronous close monitor, so this shows
+ * how the monitor's cost grows with the number of blocked threads.
+ */
+public class BlockingSocketBenchmark extends SimpleBenchmark {
+    /** Blocked threads share this many idle connections, to limit fd use. */
+    private static final int MAX_IDLE_CONNECTIONS = 100;
+
+    @Param({"1", "100", "5000"}) private int blockedThreads;
+
+    private ServerSocket serverSocket;
+    private final List<Socket> sockets = new ArrayList<Socket>();
+    private final List<Thread> threads = new ArrayList<Thread>();
+    private InputStream in;
+    private OutputStream out;
+
+    @Override protected void setUp() throws Exception {
+        serverSocket = new ServerSocket(0);
+
+        List<Socket> idle = new ArrayList<Socket>();
+        for (int i = 0; i < Math.min(blockedThreads, MAX_IDLE_CONNECTIONS); i++) {
+            idle.add(connect());
+        }
+        for (int i = 0; i < blockedThreads; i++) {
+            final Socket socket = idle.get(i % idle.size());
+            Thread thread = new Thread() {
+                @Override public void run() {
+                    try {
+                        socket.getInputStream().read(); // blocks until tearDown
+                    } catch (Exception ignored) {
+                    }
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        }
+
+        Socket socket = connect();
+        in = socket.getInputStream();
+        out = socket.getOutputStream();
+    }
+
+    /**
+     * Connects a socket to the server socket, returning the client end. The
+     * accepted end echoes each byte it receives.
+     */
+    private Socket connect() throws Exception {
+        Socket client = new Socket(serverSocket.getInetAddress(), serverSocket.getLocalPort());
+        final Socket server = serverSocket.accept();
+        sockets.add(client);
+        sockets.add(server);
+        Thread echo = new Thread() {
+            @Override public void run() {
+                try {
+                    InputStream in = server.getInputStream();
+                    OutputStream out = server.getOutputStream();
+                    int b;
+                    while ((b = in.read()) != -1) {
+                        out.write(b);
+                    }
+                } catch (Exception ignored) {
+                }
+            }
+        };
+        echo.start();
+        threads.add(echo);
+        return client;
+    }
+
+    @Override protected void tearDown() throws Exception {
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        serverSocket.close();
+    }
+
+    public void timeWriteAndRead(int reps) throws Exception {
+        for (int i = 0; i < reps; ++i) {
+            out.write(i);
+            in.read();
+        }
+    }
+}
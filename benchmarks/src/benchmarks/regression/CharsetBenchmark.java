@@ -16,6 +16,12 @@
 
 package benchmarks.regression;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
 import java.nio.charset.Charset;
 import com.google.caliper.Param;
 import com.google.caliper.SimpleBenchmark;
@@ -68,6 +74,27 @@ public class CharsetBenchmark extends SimpleBenchmark {
         }
     }
 
+    public void time_InputStreamReader(int reps) throws Exception {
+        byte[] bytes = makeBytes(makeString(length));
+        char[] buffer = new char[8192];
+        for (int i = 0; i < reps; ++i) {
+            Reader reader = new InputStreamReader(new ByteArrayInputStream(bytes), name);
+            while (reader.read(buffer) != -1) {
+            }
+        }
+    }
+
+    public void time_OutputStreamWriter(int reps) throws Exception {
+        char[] chars = makeString(length).toCharArray();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(chars.length * 4);
+        for (int i = 0; i < reps; ++i) {
+            out.reset();
+            Writer writer = new OutputStreamWriter(out, name);
+            writer.write(chars);
+            writer.close();
+        }
+    }
+
     // FIXME: benchmark this pure-java implementation for US-ASCII and ISO-8859-1 too!
 
     /**
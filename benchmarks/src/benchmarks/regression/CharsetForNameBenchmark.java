@@ -37,9 +37,51 @@ public class CharsetForNameBenchmark extends SimpleBenchmark {
     })
     private String charsetName;
 
+    // The reps are divided between this many threads, to measure contention.
+    @Param({"1", "4", "16"})
+    private int threads;
+
     public void timeCharsetForName(int reps) throws Exception {
-        for (int i = 0; i < reps; ++i) {
-            Charset.forName(charsetName);
+        runOnThreads(reps, new Task() {
+            @Override public void run(int reps) {
+                for (int i = 0; i < reps; ++i) {
+                    Charset.forName(charsetName);
+                }
+            }
+        });
+    }
+
+    public void timeIsSupportedUnknownCharset(int reps) throws Exception {
+        runOnThreads(reps, new Task() {
+            @Override public void run(int reps) {
+                for (int i = 0; i < reps; ++i) {
+                    Charset.isSupported("x-no-such-charset");
+                }
+            }
+        });
+    }
+
+    private interface Task {
+        void run(int reps);
+    }
+
+    private void runOnThreads(int reps, final Task task) throws Exception {
+        if (threads == 1) {
+            task.run(reps);
+            return;
+        }
+        final int repsPerThread = reps / threads;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; ++t) {
+            workers[t] = new Thread() {
+                @Override public void run() {
+                    task.run(repsPerThread);
+                }
+            };
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
         }
     }
 }
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks.regression;
+
+import com.google.caliper.Param;
+import com.google.caliper.SimpleBenchmark;
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import libcore.io.DiskLruCache;
+import libcore.io.IoUtils;
+import libcore.io.SegmentedDiskLruCache;
+
+/**
+ * Measures concurrent reads and writes of a disk cache. Each rep is one
+ * operation; nine in ten operations read an existing entry and the rest
+ * replace one.
+ */
+public class DiskLruCacheBenchmark extends SimpleBenchmark {
+    private static final int KEY_COUNT = 256;
+
+    @Param({"1", "2", "4", "8", "16"}) private int threads;
+    @Param({"1", "16"}) private int segments;
+
+    private File directory;
+    private SegmentedDiskLruCache cache;
+
+    @Override protected void setUp() throws Exception {
+        directory = new File(System.getProperty("java.io.tmpdir"), "DiskLruCacheBenchmark");
+        directory.mkdirs();
+        IoUtils.deleteContents(directory);
+        cache = SegmentedDiskLruCache.open(directory, 1, 1, Long.MAX_VALUE, segments);
+        for (int i = 0; i < KEY_COUNT; i++) {
+            put("k" + i);
+        }
+    }
+
+    @Override protected void tearDown() throws Exception {
+        cache.delete();
+    }
+
+    public void time(final int reps) throws Exception {
+        final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int workerReps = reps / threads + (t < reps % threads ? 1 : 0);
+            final Random random = new Random(t);
+            workers[t] = new Thread() {
+                @Override public void run() {
+                    try {
+                        for (int rep = 0; rep < workerReps; rep++) {
+                            String key = "k" + random.nextInt(KEY_COUNT);
+                            if (random.nextInt(10) == 0) {
+                                put(key);
+                            } else {
+                                DiskLruCache.Snapshot snapshot = cache.get(key);
+                                if (snapshot != null) {
+                                    snapshot.close();
+                                }
+                            }
+                        }
+                    } catch (Exception e) {
+                        failure.set(e);
+                    }
+                }
+            };
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    private void put(String key) throws Exception {
+        DiskLruCache.Editor editor = cache.edit(key);
+        if (editor == null) {
+            return; // another thread is writing this entry
+        }
+        editor.set(0, "value");
+        editor.commit();
+    }
+}
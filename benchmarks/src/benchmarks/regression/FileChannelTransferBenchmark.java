@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks.regression;
+
+import com.google.caliper.Param;
+import com.google.caliper.SimpleBenchmark;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Measures the throughput of copying a file to a loopback socket or to another
+ * file, either with FileChannel.transferTo (which uses sendfile(2)) or by
+ * reading and writing through a buffer in user space.
+ */
+public class FileChannelTransferBenchmark extends SimpleBenchmark {
+    @Param({"4096", "1048576", "67108864", "1073741824"}) private int fileSize;
+    @Param private Target target;
+    @Param private Method method;
+
+    private File srcFile;
+    private File dstFile;
+    private FileChannel src;
+    private WritableByteChannel dst;
+    private ServerSocket serverSocket;
+    private Thread drainThread;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(65536);
+
+    @Override protected void setUp() throws Exception {
+        srcFile = File.createTempFile("FileChannelTransferBenchmark", "src");
+        RandomAccessFile raf = new RandomAccessFile(srcFile, "rw");
+        raf.setLength(fileSize);
+        raf.close();
+        src = new FileInputStream(srcFile).getChannel();
+
+        if (target == Target.FILE) {
+            dstFile = File.createTempFile("FileChannelTransferBenchmark", "dst");
+            dst = new FileOutputStream(dstFile).getChannel();
+        } else {
+            serverSocket = new ServerSocket(0);
+            dst = SocketChannel.open(new InetSocketAddress("localhost", serverSocket.getLocalPort()));
+            final Socket peer = serverSocket.accept();
+            drainThread = new Thread() {
+                @Override public void run() {
+                    try {
+                        InputStream in = peer.getInputStream();
+                        byte[] bytes = new byte[65536];
+                        while (in.read(bytes) != -1) {
+                        }
+                        peer.close();
+                    } catch (Exception ignored) {
+                    }
+                }
+            };
+            drainThread.start();
+        }
+    }
+
+    @Override protected void tearDown() throws Exception {
+        src.close();
+        dst.close();
+        srcFile.delete();
+        if (dstFile != null) {
+            dstFile.delete();
+        }
+        if (serverSocket != null) {
+            drainThread.join();
+            serverSocket.close();
+        }
+    }
+
+    public long time(int reps) throws Exception {
+        long total = 0;
+        for (int rep = 0; rep < reps; ++rep) {
+            if (target == Target.FILE) {
+                ((FileChannel) dst).position(0);
+            }
+            total += method.copy(src, fileSize, dst, buffer);
+        }
+        return total;
+    }
+
+    enum Target {
+        FILE,
+        SOCKET
+    }
+
+    enum Method {
+        TRANSFER_TO {
+            @Override long copy(FileChannel src, long size, WritableByteChannel dst,
+                    ByteBuffer buffer) throws Exception {
+                long position = 0;
+                while (position < size) {
+                    position += src.transferTo(position, size - position, dst);
+                }
+                return position;
+            }
+        },
+        READ_WRITE {
+            @Override long copy(FileChannel src, long size, WritableByteChannel dst,
+                    ByteBuffer buffer) throws Exception {
+                long position = 0;
+                while (position < size) {
+                    buffer.clear();
+                    position += src.read(buffer, position);
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        dst.write(buffer);
+                    }
+                }
+                return position;
+            }
+        };
+
+        abstract long copy(FileChannel src, long size, WritableByteChannel dst,
+                ByteBuffer buffer) throws Exception;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks.regression;
+
+import com.google.caliper.Param;
+import com.google.caliper.SimpleBenchmark;
+import java.io.Writer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONStringer;
+import org.json.JSONWriter;
+
+/**
+ * Compares encoding an array of small objects by building a tree, by using a
+ * JSONStringer and by streaming to a Writer with a JSONWriter.
+ */
+public class JSONWriterBenchmark extends SimpleBenchmark {
+    @Param({"10", "1000", "100000"}) private int count;
+    @Param private Api api;
+
+    enum Api {
+        TREE {
+            @Override void write(int count, Writer out) throws Exception {
+                JSONArray array = new JSONArray();
+                for (int i = 0; i < count; i++) {
+                    JSONObject object = new JSONObject();
+                    object.put("id", i);
+                    object.put("name", "element");
+                    object.put("enabled", true);
+                    array.put(object);
+                }
+                out.write(array.toString());
+            }
+        },
+        STRINGER {
+            @Override void write(int count, Writer out) throws Exception {
+                JSONStringer stringer = new JSONStringer();
+                stringer.array();
+                for (int i = 0; i < count; i++) {
+                    stringer.object()
+                            .key("id").value(i)
+                            .key("name").value("element")
+                            .key("enabled").value(true)
+                            .endObject();
+                }
+                stringer.endArray();
+                out.write(stringer.toString());
+            }
+        },
+        STREAM {
+            @Override void write(int count, Writer out) throws Exception {
+                JSONWriter writer = new JSONWriter(out);
+                writer.array();
+                for (int i = 0; i < count; i++) {
+                    writer.object()
+                            .key("id").value(i)
+                            .key("name").value("element")
+                            .key("enabled").value(true)
+                            .endObject();
+                }
+                writer.endArray();
+                writer.flush();
+            }
+        };
+
+        abstract void write(int count, Writer out) throws Exception;
+    }
+
+    public void time(int reps) throws Exception {
+        Writer out = new NullWriter();
+        for (int rep = 0; rep < reps; ++rep) {
+            api.write(count, out);
+        }
+    }
+
+    /** Discards its output, so only encoding is measured. */
+    private static class NullWriter extends Writer {
+        @Override public void write(char[] buffer, int offset, int count) {
+        }
+
+        @Override public void write(String s) {
+        }
+
+        @Override public void flush() {
+        }
+
+        @Override public void close() {
+        }
+    }
+}
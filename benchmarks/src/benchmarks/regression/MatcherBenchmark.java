@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks.regression;
+
+import com.google.caliper.Param;
+import com.google.caliper.SimpleBenchmark;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Measures the cost of the native matcher state behind java.util.regex:
+ * opening a matcher per call versus reusing one, and re-matching regions of
+ * one large input.
+ */
+public class MatcherBenchmark extends SimpleBenchmark {
+    @Param({"16", "1024", "65536"}) private int inputLength;
+
+    private Pattern pattern;
+    private String input;
+
+    @Override protected void setUp() throws Exception {
+        pattern = Pattern.compile("[a-z]+\\d");
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < inputLength) {
+            sb.append("abcdefg1 ");
+        }
+        sb.setLength(inputLength);
+        input = sb.toString();
+    }
+
+    public void timeNewMatcherEachCall(int reps) {
+        for (int i = 0; i < reps; ++i) {
+            pattern.matcher(input).lookingAt();
+        }
+    }
+
+    public void timeResetMatcher(int reps) {
+        Matcher m = pattern.matcher(input);
+        for (int i = 0; i < reps; ++i) {
+            m.reset(input).lookingAt();
+        }
+    }
+
+    public void timePatternMatches(int reps) {
+        for (int i = 0; i < reps; ++i) {
+            Pattern.matches("[a-z]+\\d.*", input);
+        }
+    }
+
+    public void timeRegions(int reps) {
+        Matcher m = pattern.matcher(input);
+        int regionCount = Math.max(1, inputLength / 9);
+        for (int i = 0; i < reps; ++i) {
+            int start = (i % regionCount) * 9;
+            m.region(start, Math.min(start + 9, inputLength)).lookingAt();
+        }
+    }
+
+    public void timeRegionsOfCopiedInput(int reps) {
+        Matcher m = pattern.matcher(input);
+        int regionCount = Math.max(1, inputLength / 9);
+        for (int i = 0; i < reps; ++i) {
+            int start = (i % regionCount) * 9;
+            // A different (but equal) String forces the input to be re-attached.
+            m.reset(new String(input)).region(start, Math.min(start + 9, inputLength)).lookingAt();
+        }
+    }
+}
@@ -18,7 +18,9 @@ package benchmarks.regression;
 
 import com.google.caliper.Param;
 import com.google.caliper.SimpleBenchmark;
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
+import org.apache.harmony.xnet.provider.jsse.OpenSSLMessageDigestJDK;
 
 public class MessageDigestBenchmark extends SimpleBenchmark {
 
@@ -30,6 +32,20 @@ public class MessageDigestBenchmark extends SimpleBenchmark {
         }
     }
 
+    private static final ByteBuffer DIRECT_DATA = ByteBuffer.allocateDirect(DATA_SIZE);
+    static {
+        DIRECT_DATA.put(DATA);
+    }
+
+    /** Many small messages, such as request signatures or content-addressed chunks. */
+    private static final byte[][] SMALL_MESSAGES = new byte[64][];
+    static {
+        for (int i = 0; i < SMALL_MESSAGES.length; i++) {
+            SMALL_MESSAGES[i] = new byte[64];
+            System.arraycopy(DATA, i, SMALL_MESSAGES[i], 0, 64);
+        }
+    }
+
     @Param private Algorithm algorithm;
 
     public enum Algorithm { MD5, SHA1, SHA256,  SHA384, SHA512 };
@@ -46,4 +62,41 @@ public class MessageDigestBenchmark extends SimpleBenchmark {
             digest.digest();
         }
     }
+
+    public void timeDirectByteBuffer(int reps) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance(algorithm.toString(),
+                                                         provider.toString());
+        for (int i = 0; i < reps; ++i) {
+            DIRECT_DATA.clear();
+            digest.update(DIRECT_DATA);
+            digest.digest();
+        }
+    }
+
+    public void timeSmallMessages(int reps) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance(algorithm.toString(),
+                                                         provider.toString());
+        for (int i = 0; i < reps; ++i) {
+            for (byte[] message : SMALL_MESSAGES) {
+                digest.digest(message);
+            }
+        }
+    }
+
+    /**
+     * Digests the same messages as timeSmallMessages, using the OpenSSL
+     * provider's batch API where available.
+     */
+    public void timeSmallMessagesBatch(int reps) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance(algorithm.toString(),
+                                                         provider.toString());
+        if (!(digest instanceof OpenSSLMessageDigestJDK)) {
+            timeSmallMessages(reps);
+            return;
+        }
+        OpenSSLMessageDigestJDK openSslDigest = (OpenSSLMessageDigestJDK) digest;
+        for (int i = 0; i < reps; ++i) {
+            openSslDigest.digestAll(SMALL_MESSAGES);
+        }
+    }
 }
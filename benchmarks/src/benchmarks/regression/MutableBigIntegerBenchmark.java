@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks.regression;
+
+import com.google.caliper.Param;
+import com.google.caliper.SimpleBenchmark;
+import java.math.BigInteger;
+import java.math.MutableBigInteger;
+import java.util.Random;
+
+/**
+ * Compares accumulating a sum, a factorial and a polynomial evaluation with
+ * immutable {@code BigInteger}s, which allocate a native BIGNUM for every
+ * intermediate result, and with a {@code MutableBigInteger}, which updates one
+ * in place.
+ */
+public class MutableBigIntegerBenchmark extends SimpleBenchmark {
+    @Param({"100", "1000"}) private int n;
+
+    private BigInteger[] coefficients;
+    private BigInteger x;
+    private BigInteger modulus;
+
+    @Override protected void setUp() throws Exception {
+        Random r = new Random(0);
+        coefficients = new BigInteger[n];
+        for (int i = 0; i < n; i++) {
+            coefficients[i] = new BigInteger(256, r);
+        }
+        x = new BigInteger(256, r);
+        modulus = BigInteger.probablePrime(256, r);
+    }
+
+    public void timeSumImmutable(int reps) {
+        for (int rep = 0; rep < reps; ++rep) {
+            BigInteger sum = BigInteger.ZERO;
+            for (int i = 0; i < n; i++) {
+                sum = sum.add(coefficients[i]);
+            }
+        }
+    }
+
+    public void timeSumMutable(int reps) {
+        for (int rep = 0; rep < reps; ++rep) {
+            MutableBigInteger sum = new MutableBigInteger();
+            for (int i = 0; i < n; i++) {
+                sum.add(coefficients[i]);
+            }
+            sum.toBigInteger();
+        }
+    }
+
+    public void timeFactorialImmutable(int reps) {
+        for (int rep = 0; rep < reps; ++rep) {
+            BigInteger product = BigInteger.ONE;
+            for (int i = 2; i <= n; i++) {
+                product = product.multiply(BigInteger.valueOf(i));
+            }
+        }
+    }
+
+    public void timeFactorialMutable(int reps) {
+        for (int rep = 0; rep < reps; ++rep) {
+            MutableBigInteger product = new MutableBigInteger(1);
+            for (int i = 2; i <= n; i++) {
+                product.multiply(i);
+            }
+            product.toBigInteger();
+        }
+    }
+
+    /** Evaluates the polynomial at x modulo a prime using Horner's rule. */
+    public void timePolynomialImmutable(int reps) {
+        for (int rep = 0; rep < reps; ++rep) {
+            BigInteger result = BigInteger.ZERO;
+            for (int i = n - 1; i >= 0; i--) {
+                result = result.multiply(x).add(coefficients[i]).mod(modulus);
+            }
+        }
+    }
+
+    public void timePolynomialMutable(int reps) {
+        for (int rep = 0; rep < reps; ++rep) {
+            MutableBigInteger result = new MutableBigInteger();
+            for (int i = n - 1; i >= 0; i--) {
+                result.multiplyMod(x, modulus).add(coefficients[i]);
+            }
+            result.mod(modulus).toBigInteger();
+        }
+    }
+}
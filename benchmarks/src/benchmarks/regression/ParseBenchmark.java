@@ -28,7 +28,9 @@ import java.io.StringWriter;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.SAXParserFactory;
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONReader;
 import org.xml.sax.InputSource;
 import org.xml.sax.helpers.DefaultHandler;
 import org.xmlpull.v1.XmlPullParser;
@@ -62,6 +64,11 @@ public final class ParseBenchmark extends SimpleBenchmark {
                 return new OrgJsonParser();
             }
         },
+        ORG_JSON_STREAM("json") {
+            @Override Parser newParser() {
+                return new OrgJsonStreamParser();
+            }
+        },
         XML_PULL("xml") {
             @Override Parser newParser() {
                 return new GeneralXmlPullParser();
@@ -189,6 +196,48 @@ public final class ParseBenchmark extends SimpleBenchmark {
         }
     }
 
+    private static class OrgJsonStreamParser implements Parser {
+        @Override public void parse(String data) throws Exception {
+            JSONReader reader = new JSONReader(new StringReader(data));
+            readToken(reader);
+            reader.close();
+        }
+
+        private void readToken(JSONReader reader) throws IOException, JSONException {
+            switch (reader.peek()) {
+            case BEGIN_ARRAY:
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    readToken(reader);
+                }
+                reader.endArray();
+                break;
+            case BEGIN_OBJECT:
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    reader.nextName();
+                    readToken(reader);
+                }
+                reader.endObject();
+                break;
+            case BOOLEAN:
+                reader.nextBoolean();
+                break;
+            case NULL:
+                reader.nextNull();
+                break;
+            case NUMBER:
+                reader.nextDouble();
+                break;
+            case STRING:
+                reader.nextString();
+                break;
+            default:
+                throw new IllegalArgumentException("Unexpected token" + reader.peek());
+            }
+        }
+    }
+
     private static class GeneralXmlPullParser implements Parser {
         @Override public void parse(String data) throws Exception {
             XmlPullParser xmlParser = android.util.Xml.newPullParser();
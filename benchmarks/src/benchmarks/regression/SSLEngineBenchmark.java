@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks.regression;
+
+import com.google.caliper.Param;
+import com.google.caliper.SimpleBenchmark;
+import java.nio.ByteBuffer;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLSession;
+
+import libcore.java.security.TestKeyStore;
+import libcore.javax.net.ssl.TestSSLContext;
+import libcore.javax.net.ssl.TestSSLEnginePair;
+
+/**
+ * Measures SSLEngine handshakes and bulk data transfer between a client and
+ * server engine connected through in-memory buffers.
+ */
+public class SSLEngineBenchmark extends SimpleBenchmark {
+    @Param private Implementation implementation;
+    @Param({"false", "true"}) private boolean direct;
+    @Param({"1024", "65536"}) private int messageSize;
+
+    public enum Implementation {
+        OPENSSL("AndroidOpenSSL"),
+        HARMONY("HarmonyJSSE");
+
+        final String providerName;
+
+        Implementation(String providerName) {
+            this.providerName = providerName;
+        }
+    };
+
+    private TestSSLContext context;
+    private SSLEngine client;
+    private SSLEngine server;
+    private ByteBuffer message;
+    private ByteBuffer packet;
+    private ByteBuffer received;
+
+    @Override protected void setUp() throws Exception {
+        context = TestSSLContext.create(TestKeyStore.getClient(), TestKeyStore.getServer(),
+                implementation.providerName, implementation.providerName);
+        SSLEngine[] engines = TestSSLEnginePair.connect(context, null);
+        server = engines[0];
+        client = engines[1];
+
+        SSLSession session = client.getSession();
+        message = allocate(messageSize);
+        packet = allocate(session.getPacketBufferSize());
+        received = allocate(Math.max(messageSize, session.getApplicationBufferSize()));
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    @Override protected void tearDown() throws Exception {
+        context.close();
+    }
+
+    public void timeHandshake(int reps) throws Exception {
+        for (int i = 0; i < reps; ++i) {
+            TestSSLEnginePair.connect(context, null);
+        }
+    }
+
+    public void timeWrapUnwrap(int reps) throws Exception {
+        for (int i = 0; i < reps; ++i) {
+            message.clear();
+            received.clear();
+            while (message.hasRemaining()) {
+                packet.clear();
+                SSLEngineResult wrapResult = client.wrap(message, packet);
+                if (wrapResult.getStatus() != SSLEngineResult.Status.OK) {
+                    throw new IllegalStateException("wrap: " + wrapResult);
+                }
+                packet.flip();
+                while (packet.hasRemaining()) {
+                    SSLEngineResult unwrapResult = server.unwrap(packet, received);
+                    if (unwrapResult.getStatus() != SSLEngineResult.Status.OK) {
+                        throw new IllegalStateException("unwrap: " + unwrapResult);
+                    }
+                }
+            }
+            if (received.position() != messageSize) {
+                throw new IllegalStateException("received " + received.position());
+            }
+        }
+    }
+}
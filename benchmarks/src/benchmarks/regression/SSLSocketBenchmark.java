@@ -21,11 +21,17 @@ import com.google.caliper.SimpleBenchmark;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.lang.reflect.Method;
 import java.net.InetAddress;
 import java.net.Socket;
 import java.net.URL;
 import javax.net.SocketFactory;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+
+import libcore.java.security.TestKeyStore;
+import libcore.javax.net.ssl.TestSSLContext;
+import libcore.javax.net.ssl.TestSSLSocketPair;
 
 public class SSLSocketBenchmark extends SimpleBenchmark {
 
@@ -73,24 +79,96 @@ public class SSLSocketBenchmark extends SimpleBenchmark {
 
     public enum Implementation { OPENSSL, HARMONY };
 
+    /** The size of each write to a loopback connection. */
+    @Param({"64", "1024", "16384", "65536"}) private int writeSize;
+
     private SocketFactory sf;
+    private TestSSLContext loopbackContext;
+    private SSLSocket loopbackClient;
+    private SSLSocket loopbackServer;
+    private Thread drain;
+    private byte[] writeBuffer;
 
     @Override protected void setUp() throws Exception {
-        SSLContext sslContext;
+        String providerName;
         switch (implementation) {
             case OPENSSL:
-                sslContext = SSLContext.getInstance("SSL", "AndroidOpenSSL");
+                providerName = "AndroidOpenSSL";
                 break;
             case HARMONY:
-                sslContext = SSLContext.getInstance("SSL", "HarmonyJSSE");
+                providerName = "HarmonyJSSE";
                 break;
             default:
                 throw new RuntimeException(implementation.toString());
         }
+        SSLContext sslContext = SSLContext.getInstance("SSL", providerName);
         sslContext.init(null, null, null);
         this.sf = sslContext.getSocketFactory();
+
+        loopbackContext = TestSSLContext.create(TestKeyStore.getClient(), TestKeyStore.getServer(),
+                providerName, providerName);
+        SSLSocket[] sockets = TestSSLSocketPair.connect(loopbackContext, null, null);
+        loopbackServer = sockets[0];
+        loopbackClient = sockets[1];
+        final InputStream serverIn = loopbackServer.getInputStream();
+        drain = new Thread() {
+            @Override public void run() {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                try {
+                    while (serverIn.read(buffer) != -1) {
+                    }
+                } catch (IOException ignored) {
+                }
+            }
+        };
+        drain.start();
+        writeBuffer = new byte[writeSize];
+    }
+
+    @Override protected void tearDown() throws Exception {
+        loopbackClient.close();
+        drain.join();
+        loopbackServer.close();
+        loopbackContext.close();
+    }
+
+    /**
+     * Measures writes of writeSize bytes to a loopback connection, each of
+     * which is sent as soon as it is written.
+     */
+    public void timeWrite(int reps) throws Exception {
+        OutputStream out = loopbackClient.getOutputStream();
+        for (int i = 0; i < reps; ++i) {
+            out.write(writeBuffer);
+        }
+    }
+
+    /**
+     * Like timeWrite, but with the OpenSSL socket's write coalescing enabled,
+     * so that small writes share records.
+     */
+    public void timeCoalescedWrite(int reps) throws Exception {
+        if (implementation != Implementation.OPENSSL) {
+            return;
+        }
+        // Reflection is used because OpenSSLSocketImpl isn't public API.
+        Method setWriteCoalescing = loopbackClient.getClass()
+                .getMethod("setWriteCoalescing", boolean.class);
+        setWriteCoalescing.invoke(loopbackClient, true);
+        OutputStream out = loopbackClient.getOutputStream();
+        try {
+            for (int i = 0; i < reps; ++i) {
+                out.write(writeBuffer);
+            }
+            out.flush();
+        } finally {
+            setWriteCoalescing.invoke(loopbackClient, false);
+        }
     }
 
+    /**
+     * Measures fetching a page from a web site. This ignores writeSize.
+     */
     public void time(int reps) throws Exception {
         for (int i = 0; i < reps; ++i) {
             Socket s = sf.createSocket(webSite.host, webSite.port);
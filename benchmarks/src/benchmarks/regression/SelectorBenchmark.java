@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks.regression;
+
+import com.google.caliper.Param;
+import com.google.caliper.SimpleBenchmark;
+import java.nio.ByteBuffer;
+import java.nio.SelectorProviderImpl;
+import java.nio.channels.Pipe;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.spi.SelectorProvider;
+
+/**
+ * Compares the poll(2) and epoll(7) selectors with many idle channels registered and
+ * only one of them ready, which is the common case for servers with keep-alive connections.
+ * Note that each channel is one end of a pipe, so the larger key counts need a high fd limit.
+ */
+public class SelectorBenchmark extends SimpleBenchmark {
+    @Param({"100", "10000", "50000"}) private int keyCount;
+
+    @Param({"false", "true"}) private boolean epoll;
+
+    private Selector selector;
+    private Pipe[] pipes;
+    private final ByteBuffer oneByte = ByteBuffer.allocate(1);
+
+    @Override protected void setUp() throws Exception {
+        SelectorProvider provider = new SelectorProviderImpl(epoll);
+        selector = provider.openSelector();
+        pipes = new Pipe[keyCount];
+        for (int i = 0; i < keyCount; ++i) {
+            pipes[i] = provider.openPipe();
+            pipes[i].source().configureBlocking(false);
+            pipes[i].source().register(selector, SelectionKey.OP_READ);
+        }
+    }
+
+    @Override protected void tearDown() throws Exception {
+        for (Pipe pipe : pipes) {
+            pipe.source().close();
+            pipe.sink().close();
+        }
+        selector.close();
+    }
+
+    public void timeSelectNowIdle(int reps) throws Exception {
+        for (int i = 0; i < reps; ++i) {
+            selector.selectNow();
+        }
+    }
+
+    public void timeSelectOneReady(int reps) throws Exception {
+        Pipe pipe = pipes[keyCount / 2];
+        for (int i = 0; i < reps; ++i) {
+            oneByte.clear();
+            pipe.sink().write(oneByte);
+            selector.select();
+            selector.selectedKeys().clear();
+            oneByte.clear();
+            pipe.source().read(oneByte);
+        }
+    }
+
+    public void timeToggleInterestOps(int reps) throws Exception {
+        SelectionKey key = pipes[0].source().keyFor(selector);
+        for (int i = 0; i < reps; ++i) {
+            key.interestOps(0);
+            selector.selectNow();
+            key.interestOps(SelectionKey.OP_READ);
+            selector.selectNow();
+        }
+    }
+}
@@ -175,6 +175,105 @@ public class SerializationBenchmark extends SimpleBenchmark {
         readSingleObject(reps, new SerializableReference());
     }
 
+    public void timeWriteObjectGraph(int reps) throws Exception {
+        writeSingleObject(reps, makeTree(10));
+    }
+    public void timeReadObjectGraph(int reps) throws Exception {
+        readSingleObject(reps, makeTree(10));
+    }
+    public void timeWriteManySmallObjects(int reps) throws Exception {
+        writeSingleObject(reps, makeRecords(1000));
+    }
+    public void timeReadManySmallObjects(int reps) throws Exception {
+        readSingleObject(reps, makeRecords(1000));
+    }
+
+    public void timeReadLongArray(int reps) throws Exception {
+        readSingleObject(reps, new long[4096]);
+    }
+    public void timeReadDoubleArray(int reps) throws Exception {
+        readSingleObject(reps, new double[4096]);
+    }
+    public void timeReadStringArray(int reps) throws Exception {
+        String[] strings = new String[256];
+        for (int i = 0; i < strings.length; ++i) {
+            strings[i] = "string number " + i + " \u00e9\u20ac";
+        }
+        readSingleObject(reps, strings);
+    }
+    public void timeReadBlockData(int reps) throws Exception {
+        readSingleObject(reps, new BlockData());
+    }
+
+    /** Returns a complete binary tree of the given depth whose nodes point to their parents. */
+    private static TreeNode makeTree(int depth) {
+        TreeNode root = new TreeNode();
+        addChildren(root, depth - 1);
+        return root;
+    }
+
+    private static void addChildren(TreeNode node, int depth) {
+        if (depth == 0) {
+            return;
+        }
+        node.left = new TreeNode();
+        node.left.parent = node;
+        node.left.value = 2 * node.value;
+        addChildren(node.left, depth - 1);
+        node.right = new TreeNode();
+        node.right.parent = node;
+        node.right.value = 2 * node.value + 1;
+        addChildren(node.right, depth - 1);
+    }
+
+    /** Returns records that share a small set of names, as in an RPC response. */
+    private static ArrayList<Record> makeRecords(int count) {
+        String[] names = { "alpha", "beta", "gamma", "delta" };
+        ArrayList<Record> result = new ArrayList<Record>(count);
+        for (int i = 0; i < count; ++i) {
+            Record record = new Record();
+            record.id = i;
+            record.timestamp = 1000000000000L + i;
+            record.name = names[i % names.length];
+            record.parent = (i > 0) ? result.get(i / 2) : null; // already written, so a back reference
+            result.add(record);
+        }
+        return result;
+    }
+
+    public static class TreeNode implements Serializable {
+        int value = 1;
+        TreeNode parent;
+        TreeNode left;
+        TreeNode right;
+    }
+
+    public static class Record implements Serializable {
+        int id;
+        long timestamp;
+        String name;
+        Record parent;
+    }
+
+    /** Writes its contents as primitive data from a custom writeObject method. */
+    public static class BlockData implements Serializable {
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            for (int i = 0; i < 1024; ++i) {
+                out.writeInt(i);
+                out.writeLong(i);
+                out.writeUTF("entry");
+            }
+        }
+
+        private void readObject(ObjectInputStream in) throws IOException {
+            for (int i = 0; i < 1024; ++i) {
+                in.readInt();
+                in.readLong();
+                in.readUTF();
+            }
+        }
+    }
+
     public static class SerializableBoolean implements Serializable {
         boolean z;
     }
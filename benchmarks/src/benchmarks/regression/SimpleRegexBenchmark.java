@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks.regression;
+
+import com.google.caliper.Param;
+import com.google.caliper.SimpleBenchmark;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the pure-Java engine for simple regular expressions with ICU. The
+ * ICU case uses the same expression wrapped in a non-capturing group, which
+ * doesn't change what it matches but is too complex for the Java engine.
+ */
+public class SimpleRegexBenchmark extends SimpleBenchmark {
+    enum Regex {
+        LITERAL("request"),
+        ALTERNATION("GET|POST|PUT|DELETE"),
+        CHAR_CLASS("[0-9]+");
+
+        final String regex;
+        Regex(String regex) {
+            this.regex = regex;
+        }
+    }
+
+    private static final String LINE =
+            "GET /index.html 200 request took 35ms; POST /form 302 request took 120ms";
+
+    @Param private Regex regex;
+    @Param({"true", "false"}) private boolean simple;
+
+    private Pattern pattern;
+
+    @Override protected void setUp() throws Exception {
+        pattern = Pattern.compile(simple ? regex.regex : "(?:" + regex.regex + ")");
+    }
+
+    /** Finds every match in a line, with one matcher. */
+    public void timeFindAll(int reps) {
+        Matcher m = pattern.matcher(LINE);
+        for (int i = 0; i < reps; ++i) {
+            m.reset();
+            while (m.find()) {
+            }
+        }
+    }
+
+    /** Finds the first match in a fresh matcher. */
+    public void timeFindFirst(int reps) {
+        for (int i = 0; i < reps; ++i) {
+            pattern.matcher(LINE).find();
+        }
+    }
+
+    public void timeLookingAt(int reps) {
+        Matcher m = pattern.matcher(LINE);
+        for (int i = 0; i < reps; ++i) {
+            m.lookingAt();
+        }
+    }
+
+    public void timeSplit(int reps) {
+        for (int i = 0; i < reps; ++i) {
+            pattern.split(LINE);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks.regression;
+
+import com.google.caliper.SimpleBenchmark;
+import java.util.regex.Pattern;
+
+/**
+ * Compares String's regular expression convenience methods with reusing a
+ * compiled Pattern.
+ */
+public class StringRegexBenchmark extends SimpleBenchmark {
+    private static final String LINE = "2013-05-01 12:00:00 INFO request took 35ms";
+
+    public void timeStringMatches(int reps) {
+        for (int i = 0; i < reps; ++i) {
+            LINE.matches(".*INFO.*");
+        }
+    }
+
+    public void timePatternMatches(int reps) {
+        Pattern p = Pattern.compile(".*INFO.*");
+        for (int i = 0; i < reps; ++i) {
+            p.matcher(LINE).matches();
+        }
+    }
+
+    public void timeStringReplaceAll(int reps) {
+        for (int i = 0; i < reps; ++i) {
+            LINE.replaceAll("[0-9]+", "#");
+        }
+    }
+
+    public void timePatternReplaceAll(int reps) {
+        Pattern p = Pattern.compile("[0-9]+");
+        for (int i = 0; i < reps; ++i) {
+            p.matcher(LINE).replaceAll("#");
+        }
+    }
+
+    public void timeStringReplaceFirst(int reps) {
+        for (int i = 0; i < reps; ++i) {
+            LINE.replaceFirst("[0-9]+", "#");
+        }
+    }
+
+    public void timePatternReplaceFirst(int reps) {
+        Pattern p = Pattern.compile("[0-9]+");
+        for (int i = 0; i < reps; ++i) {
+            p.matcher(LINE).replaceFirst("#");
+        }
+    }
+
+    public void timeStringSplitWhitespace(int reps) {
+        for (int i = 0; i < reps; ++i) {
+            LINE.split("\\s+");
+        }
+    }
+
+    public void timePatternSplitWhitespace(int reps) {
+        Pattern p = Pattern.compile("\\s+");
+        for (int i = 0; i < reps; ++i) {
+            p.split(LINE);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks.regression;
+
+import com.google.caliper.Param;
+import com.google.caliper.SimpleBenchmark;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.security.cert.X509Certificate;
+import libcore.java.security.TestKeyStore;
+import org.apache.harmony.xnet.provider.jsse.NativeCrypto;
+import org.apache.harmony.xnet.provider.jsse.SystemCertificateIndex;
+import org.apache.harmony.xnet.provider.jsse.TrustedCertificateStore;
+
+/**
+ * Measures the trusted certificate store lookups made by {@code
+ * TrustManagerImpl} to validate a server chain: building the chain from the
+ * leaf and checking that its root is a trust anchor. A cold validation uses a
+ * new store, as each new trust manager does; a warm one reuses a store. With
+ * an index, new stores share the process's mapping of the index and the
+ * certificates already parsed from it.
+ */
+public class TrustedCertificateStoreBenchmark extends SimpleBenchmark {
+    @Param({"false", "true"}) private boolean indexed;
+
+    private File dir;
+    private File systemDir;
+    private File addedDir;
+    private File deletedDir;
+    private X509Certificate leaf;
+    private X509Certificate root;
+    private TrustedCertificateStore store;
+
+    @Override protected void setUp() throws Exception {
+        dir = File.createTempFile("TrustedCertificateStoreBenchmark", null);
+        dir.delete();
+        systemDir = new File(dir, "cacerts");
+        addedDir = new File(dir, "cacerts-added");
+        deletedDir = new File(dir, "cacerts-removed");
+        systemDir.mkdirs();
+
+        X509Certificate[] chain = (X509Certificate[])
+                TestKeyStore.getServer().getPrivateKey("RSA", "RSA").getCertificateChain();
+        leaf = chain[0];
+        root = chain[chain.length - 1];
+        for (int i = 1; i < chain.length; i++) {
+            install(chain[i]);
+        }
+        install(TestKeyStore.getClient().getRootCertificate("RSA"));
+        install(TestKeyStore.getClientCA2().getRootCertificate("RSA"));
+        if (indexed) {
+            SystemCertificateIndex.write(systemDir);
+        }
+        store = newStore();
+    }
+
+    private void install(X509Certificate cert) throws Exception {
+        int hash = NativeCrypto.X509_NAME_hash_old(cert.getSubjectX500Principal());
+        String name = String.format("%08x.0", hash);
+        OutputStream out = new FileOutputStream(new File(systemDir, name));
+        out.write(cert.getEncoded());
+        out.close();
+    }
+
+    private TrustedCertificateStore newStore() {
+        return new TrustedCertificateStore(systemDir, addedDir, deletedDir);
+    }
+
+    @Override protected void tearDown() throws Exception {
+        for (File file : systemDir.listFiles()) {
+            file.delete();
+        }
+        systemDir.delete();
+        SystemCertificateIndex.indexFileFor(systemDir).delete();
+        dir.delete();
+    }
+
+    public void timeColdChainValidation(int reps) throws Exception {
+        for (int i = 0; i < reps; ++i) {
+            validate(newStore());
+        }
+    }
+
+    public void timeWarmChainValidation(int reps) throws Exception {
+        for (int i = 0; i < reps; ++i) {
+            validate(store);
+        }
+    }
+
+    private void validate(TrustedCertificateStore store) {
+        if (store.getCertificateChain(leaf).size() < 2 || !store.isTrustAnchor(root)) {
+            throw new AssertionError();
+        }
+    }
+}
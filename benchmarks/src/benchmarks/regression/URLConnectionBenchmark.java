@@ -25,12 +25,16 @@ import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.List;
+import libcore.net.http.HttpPipeline;
 
 public final class URLConnectionBenchmark extends SimpleBenchmark {
 
     @Param({"0", "1024", "1048576"}) private int bodySize;
     @Param({"2048"}) private int chunkSize;
     @Param({"1024"}) private int readBufferSize;
+    @Param({"8"}) private int pipelineDepth;
     @Param private ResponseHeaders responseHeaders;
     @Param private TransferEncoding transferEncoding;
     private byte[] readBuffer;
@@ -75,10 +79,35 @@ public final class URLConnectionBenchmark extends SimpleBenchmark {
         return totalBytesRead;
     }
 
-    private int get() throws IOException {
+    /**
+     * Like timeGet, but sends up to pipelineDepth requests on a single
+     * connection before reading their responses. Each rep is one request, so
+     * the results are directly comparable.
+     */
+    public int timePipelinedGet(int reps) throws IOException {
         int totalBytesRead = 0;
+        List<URLConnection> connections = new ArrayList<URLConnection>(pipelineDepth);
+        for (int i = 0; i < reps; i += pipelineDepth) {
+            connections.clear();
+            for (int j = i; j < reps && j < i + pipelineDepth; j++) {
+                connections.add(url.openConnection());
+            }
+            HttpPipeline.execute(connections);
+            for (URLConnection connection : connections) {
+                totalBytesRead += read(connection);
+            }
+        }
+        return totalBytesRead;
+    }
+
+    private int get() throws IOException {
         HttpURLConnection connection = (HttpURLConnection) url.openConnection();
         // URLConnection connection = url.openConnection();
+        return read(connection);
+    }
+
+    private int read(URLConnection connection) throws IOException {
+        int totalBytesRead = 0;
         InputStream in = connection.getInputStream();
         int count;
         while ((count = in.read(readBuffer)) != -1) {
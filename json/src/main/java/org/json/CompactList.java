@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.RandomAccess;
+
+/**
+ * The values of a {@link JSONArray}. While every element is an Integer, every
+ * element is a Long or every element is a Double, the elements are stored
+ * unboxed in a {@code long[]} and boxed only when they are read. Adding any
+ * other kind of element converts the list to ordinary boxed storage.
+ */
+final class CompactList extends AbstractList<Object> implements RandomAccess {
+
+    private static final int EMPTY = 0;
+    private static final int INTEGER = 1;
+    private static final int LONG = 2;
+    private static final int DOUBLE = 3;
+    private static final int OBJECT = 4;
+
+    /** The kind of every element, or OBJECT if the elements are mixed. */
+    private int kind = EMPTY;
+
+    /** Unboxed elements; doubles are stored as their raw bits. Null in OBJECT mode. */
+    private long[] bits;
+    private int size;
+
+    /** Boxed elements in OBJECT mode, otherwise null. */
+    private ArrayList<Object> objects;
+
+    void addInt(int value) {
+        addUnboxed(INTEGER, value);
+    }
+
+    void addLong(long value) {
+        addUnboxed(LONG, value);
+    }
+
+    void addDouble(double value) {
+        addUnboxed(DOUBLE, Double.doubleToRawLongBits(value));
+    }
+
+    private void addUnboxed(int valueKind, long valueBits) {
+        if (kind == EMPTY) {
+            kind = valueKind;
+            bits = new long[10];
+        } else if (kind != valueKind) {
+            inflate();
+        }
+
+        if (kind == OBJECT) {
+            objects.add(box(valueKind, valueBits));
+        } else {
+            if (size == bits.length) {
+                long[] newBits = new long[size + (size >> 1)];
+                System.arraycopy(bits, 0, newBits, 0, size);
+                bits = newBits;
+            }
+            bits[size++] = valueBits;
+        }
+        modCount++;
+    }
+
+    @Override public void add(int index, Object value) {
+        int valueKind = kindOf(value);
+        if (valueKind != OBJECT && index == size() && (kind == EMPTY || kind == valueKind)) {
+            addUnboxed(valueKind, unbox(valueKind, value));
+            return;
+        }
+        inflate();
+        objects.add(index, value);
+        modCount++;
+    }
+
+    @Override public Object get(int index) {
+        if (kind == OBJECT) {
+            return objects.get(index);
+        }
+        checkIndex(index);
+        return box(kind, bits[index]);
+    }
+
+    @Override public Object set(int index, Object value) {
+        if (kind != OBJECT) {
+            checkIndex(index);
+            if (kindOf(value) == kind) {
+                Object result = box(kind, bits[index]);
+                bits[index] = unbox(kind, value);
+                return result;
+            }
+            inflate();
+        }
+        return objects.set(index, value);
+    }
+
+    @Override public Object remove(int index) {
+        if (kind == OBJECT) {
+            modCount++;
+            return objects.remove(index);
+        }
+        checkIndex(index);
+        Object result = box(kind, bits[index]);
+        System.arraycopy(bits, index + 1, bits, index, size - index - 1);
+        size--;
+        modCount++;
+        return result;
+    }
+
+    @Override public int size() {
+        return kind == OBJECT ? objects.size() : size;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index=" + index + ", size=" + size);
+        }
+    }
+
+    /**
+     * Switches to boxed storage, which permits elements of any type.
+     */
+    private void inflate() {
+        if (kind == OBJECT) {
+            return;
+        }
+        objects = new ArrayList<Object>(Math.max(size, 10));
+        for (int i = 0; i < size; i++) {
+            objects.add(box(kind, bits[i]));
+        }
+        kind = OBJECT;
+        bits = null;
+        size = 0;
+    }
+
+    private static int kindOf(Object value) {
+        if (value instanceof Integer) {
+            return INTEGER;
+        } else if (value instanceof Long) {
+            return LONG;
+        } else if (value instanceof Double) {
+            return DOUBLE;
+        } else {
+            return OBJECT;
+        }
+    }
+
+    private static Object box(int kind, long bits) {
+        switch (kind) {
+            case INTEGER:
+                return (int) bits;
+            case LONG:
+                return bits;
+            default:
+                return Double.longBitsToDouble(bits);
+        }
+    }
+
+    private static long unbox(int kind, Object value) {
+        switch (kind) {
+            case INTEGER:
+                return (Integer) value;
+            case LONG:
+                return (Long) value;
+            default:
+                return Double.doubleToRawLongBits((Double) value);
+        }
+    }
+}
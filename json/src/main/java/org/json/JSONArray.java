@@ -16,9 +16,7 @@
 
 package org.json;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.List;
 
 // Note: this class was written without inspecting the non-free org.json sourcecode.
 
@@ -46,13 +44,17 @@ import java.util.List;
  */
 public class JSONArray {
 
-    private final List<Object> values;
+    /**
+     * Arrays of numbers are common and often large, so homogeneous numeric
+     * arrays are stored unboxed.
+     */
+    private final CompactList values;
 
     /**
      * Creates a {@code JSONArray} with no values.
      */
     public JSONArray() {
-        values = new ArrayList<Object>();
+        values = new CompactList();
     }
 
     /**
@@ -128,7 +130,7 @@ public class JSONArray {
      * @return this array.
      */
     public JSONArray put(double value) throws JSONException {
-        values.add(JSON.checkDouble(value));
+        values.addDouble(JSON.checkDouble(value));
         return this;
     }
 
@@ -138,7 +140,7 @@ public class JSONArray {
      * @return this array.
      */
     public JSONArray put(int value) {
-        values.add(value);
+        values.addInt(value);
         return this;
     }
 
@@ -148,10 +150,22 @@ public class JSONArray {
      * @return this array.
      */
     public JSONArray put(long value) {
-        values.add(value);
+        values.addLong(value);
         return this;
     }
 
+    /**
+     * Appends {@code value} as an Integer if it fits in an int, or as a Long
+     * otherwise. This is how {@link JSONTokener} represents integral numbers.
+     */
+    void putIntegral(long value) {
+        if (value == (int) value) {
+            values.addInt((int) value);
+        } else {
+            values.addLong(value);
+        }
+    }
+
     /**
      * Appends {@code value} to the end of this array.
      *
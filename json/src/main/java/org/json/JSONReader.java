@@ -0,0 +1,749 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.Charsets;
+import libcore.internal.StringPool;
+
+/**
+ * Reads a JSON (<a href="http://www.ietf.org/rfc/rfc4627.txt">RFC 4627</a>)
+ * encoded value as a stream of tokens. Unlike {@link JSONTokener}, this class
+ * doesn't need the whole document in memory and doesn't build a tree of
+ * {@link JSONObject JSONObjects} and {@link JSONArray JSONArrays}: the caller
+ * pulls each name and value as it is needed. Example usage: <pre>
+ * JSONReader reader = new JSONReader(in);
+ * reader.beginArray();
+ * while (reader.hasNext()) {
+ *     reader.beginObject();
+ *     while (reader.hasNext()) {
+ *         String name = reader.nextName();
+ *         if (name.equals("id")) {
+ *             ids.add(reader.nextLong());
+ *         } else {
+ *             reader.skipValue();
+ *         }
+ *     }
+ *     reader.endObject();
+ * }
+ * reader.endArray();
+ * reader.close();</pre>
+ *
+ * <p>This reader is strict: it accepts exactly one top-level value and none of
+ * the syntax extensions that {@link JSONTokener} tolerates, such as comments
+ * or unquoted strings. Malformed input and calls that don't match the next
+ * token fail with a {@link JSONException}.
+ *
+ * <p>Each reader may be used to read a single JSON value. Instances of this
+ * class are not thread safe.
+ */
+public class JSONReader implements Closeable {
+
+    /**
+     * The kinds of tokens returned by {@link #peek}.
+     */
+    public enum Token {
+        BEGIN_ARRAY,
+        END_ARRAY,
+        BEGIN_OBJECT,
+        END_OBJECT,
+        NAME,
+        STRING,
+        NUMBER,
+        BOOLEAN,
+        NULL,
+        END_DOCUMENT
+    }
+
+    /*
+     * Lexical scopes, which determine the separators that are permitted before
+     * the next token.
+     */
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int DANGLING_NAME = 5;
+    private static final int NONEMPTY_OBJECT = 6;
+    private static final int CLOSED = 7;
+
+    private final Reader in;
+
+    private final char[] buffer = new char[1024];
+    private int pos;
+    private int limit;
+
+    /** The number of characters discarded from the front of the buffer. */
+    private long charsDiscarded;
+
+    private int[] stack = new int[32];
+    private int stackSize = 1;
+
+    /** The next token, or null if it hasn't been read yet. */
+    private Token token;
+
+    /**
+     * The text of a STRING or NAME token, or null if it was read by {@link
+     * #skipValue}. The text of a NUMBER token is held in {@code scratch}.
+     */
+    private String value;
+    private boolean booleanValue;
+
+    /** Holds escaped strings and numbers while they are read. */
+    private final StringBuilder scratch = new StringBuilder();
+
+    /** Names repeat throughout most documents, so they are pooled. */
+    private final StringPool namePool = new StringPool();
+
+    /** True while skipping values whose text isn't needed. */
+    private boolean skipping;
+
+    /**
+     * @param in a reader of JSON encoded text. This reader buffers its input,
+     *     so {@code in} needn't be buffered.
+     */
+    public JSONReader(Reader in) {
+        if (in == null) {
+            throw new NullPointerException("in == null");
+        }
+        this.in = in;
+        stack[0] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * @param in a stream of UTF-8 encoded JSON.
+     */
+    public JSONReader(InputStream in) {
+        this(new InputStreamReader(in, Charsets.UTF_8));
+    }
+
+    /**
+     * Consumes the next token, which must be the beginning of an array.
+     */
+    public void beginArray() throws IOException, JSONException {
+        expect(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    /**
+     * Consumes the next token, which must be the end of the current array.
+     */
+    public void endArray() throws IOException, JSONException {
+        expect(Token.END_ARRAY);
+        stackSize--;
+    }
+
+    /**
+     * Consumes the next token, which must be the beginning of an object.
+     */
+    public void beginObject() throws IOException, JSONException {
+        expect(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    /**
+     * Consumes the next token, which must be the end of the current object.
+     */
+    public void endObject() throws IOException, JSONException {
+        expect(Token.END_OBJECT);
+        stackSize--;
+    }
+
+    /**
+     * Returns true if the current array or object has another element.
+     */
+    public boolean hasNext() throws IOException, JSONException {
+        Token next = peek();
+        return next != Token.END_ARRAY && next != Token.END_OBJECT && next != Token.END_DOCUMENT;
+    }
+
+    /**
+     * Returns the type of the next token without consuming it.
+     */
+    public Token peek() throws IOException, JSONException {
+        if (token != null) {
+            return token;
+        }
+
+        int c;
+        switch (stack[stackSize - 1]) {
+            case EMPTY_DOCUMENT:
+                stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+                return token = readValue(nextNonWhitespace());
+
+            case NONEMPTY_DOCUMENT:
+                if (nextNonWhitespace() != -1) {
+                    pos--;
+                    throw syntaxError("Multiple top-level values");
+                }
+                return token = Token.END_DOCUMENT;
+
+            case EMPTY_ARRAY:
+                c = nextNonWhitespace();
+                if (c == ']') {
+                    return token = Token.END_ARRAY;
+                }
+                stack[stackSize - 1] = NONEMPTY_ARRAY;
+                return token = readValue(c);
+
+            case NONEMPTY_ARRAY:
+                c = nextNonWhitespace();
+                if (c == ']') {
+                    return token = Token.END_ARRAY;
+                } else if (c != ',') {
+                    throw syntaxError("Unterminated array");
+                }
+                return token = readValue(nextNonWhitespace());
+
+            case EMPTY_OBJECT:
+                c = nextNonWhitespace();
+                if (c == '}') {
+                    return token = Token.END_OBJECT;
+                }
+                stack[stackSize - 1] = DANGLING_NAME;
+                return token = readName(c);
+
+            case NONEMPTY_OBJECT:
+                c = nextNonWhitespace();
+                if (c == '}') {
+                    return token = Token.END_OBJECT;
+                } else if (c != ',') {
+                    throw syntaxError("Unterminated object");
+                }
+                stack[stackSize - 1] = DANGLING_NAME;
+                return token = readName(nextNonWhitespace());
+
+            case DANGLING_NAME:
+                if (nextNonWhitespace() != ':') {
+                    throw syntaxError("Expected ':' after name");
+                }
+                stack[stackSize - 1] = NONEMPTY_OBJECT;
+                return token = readValue(nextNonWhitespace());
+
+            default:
+                throw new IllegalStateException("JSONReader is closed");
+        }
+    }
+
+    /**
+     * Consumes the next token, which must be a name, and returns it.
+     */
+    public String nextName() throws IOException, JSONException {
+        expect(Token.NAME);
+        return value;
+    }
+
+    /**
+     * Consumes the next token, which must be a string or a number, and returns
+     * its text.
+     */
+    public String nextString() throws IOException, JSONException {
+        Token next = peek();
+        if (next == Token.STRING) {
+            token = null;
+            return value;
+        } else if (next == Token.NUMBER) {
+            token = null;
+            return scratch.toString();
+        }
+        throw new JSONException("Expected a string but was " + next);
+    }
+
+    /**
+     * Consumes the next token, which must be a boolean, and returns it.
+     */
+    public boolean nextBoolean() throws IOException, JSONException {
+        expect(Token.BOOLEAN);
+        return booleanValue;
+    }
+
+    /**
+     * Consumes the next token, which must be null.
+     */
+    public void nextNull() throws IOException, JSONException {
+        expect(Token.NULL);
+    }
+
+    /**
+     * Consumes the next token, which must be a number, and returns it as a
+     * double.
+     */
+    public double nextDouble() throws IOException, JSONException {
+        expect(Token.NUMBER);
+        return Double.parseDouble(scratch.toString());
+    }
+
+    /**
+     * Consumes the next token, which must be a number that can be represented
+     * exactly as a long, and returns it.
+     */
+    public long nextLong() throws IOException, JSONException {
+        expect(Token.NUMBER);
+        long result = parseLong(scratch);
+        if (result == 0 && !isZero(scratch)) {
+            // An integer without a fraction or exponent that didn't parse is out of range.
+            if (!hasFractionOrExponent(scratch)) {
+                throw new JSONException("Expected a long but was " + scratch);
+            }
+            result = parseExactLong(scratch);
+        }
+        return result;
+    }
+
+    /**
+     * Consumes the next token, which must be a number that can be represented
+     * exactly as an int, and returns it.
+     */
+    public int nextInt() throws IOException, JSONException {
+        long result = nextLong();
+        if (result != (int) result) {
+            throw new JSONException("Expected an int but was " + result);
+        }
+        return (int) result;
+    }
+
+    /**
+     * Consumes the next value, including all of its elements if it is an array
+     * or an object. The text of skipped strings isn't retained.
+     */
+    public void skipValue() throws IOException, JSONException {
+        if (token == null) {
+            // Outside of an object the next token can't be a name, so read it
+            // without keeping its text. A name's text is kept so that it can
+            // still be read after being rejected below.
+            int scope = stack[stackSize - 1];
+            skipping = scope != EMPTY_OBJECT && scope != NONEMPTY_OBJECT;
+            try {
+                peek();
+            } finally {
+                skipping = false;
+            }
+        }
+        if (token == Token.NAME || token == Token.END_ARRAY || token == Token.END_OBJECT
+                || token == Token.END_DOCUMENT) {
+            throw new JSONException("Expected a value but was " + token);
+        }
+
+        skipping = true;
+        try {
+            int depth = 0;
+            do {
+                switch (peek()) {
+                    case BEGIN_ARRAY:
+                        beginArray();
+                        depth++;
+                        break;
+                    case BEGIN_OBJECT:
+                        beginObject();
+                        depth++;
+                        break;
+                    case END_ARRAY:
+                        endArray();
+                        depth--;
+                        break;
+                    case END_OBJECT:
+                        endObject();
+                        depth--;
+                        break;
+                    default:
+                        token = null;
+                        break;
+                }
+            } while (depth != 0);
+        } finally {
+            skipping = false;
+        }
+    }
+
+    /**
+     * Closes this reader and the underlying reader.
+     */
+    public void close() throws IOException {
+        token = null;
+        stack[0] = CLOSED;
+        stackSize = 1;
+        in.close();
+    }
+
+    private void expect(Token expected) throws IOException, JSONException {
+        Token next = peek();
+        if (next != expected) {
+            throw new JSONException("Expected " + expected + " but was " + next);
+        }
+        token = null;
+    }
+
+    private void push(int scope) {
+        if (stackSize == stack.length) {
+            int[] newStack = new int[stackSize * 2];
+            System.arraycopy(stack, 0, newStack, 0, stackSize);
+            stack = newStack;
+        }
+        stack[stackSize++] = scope;
+    }
+
+    private Token readName(int c) throws IOException, JSONException {
+        if (c != '"') {
+            throw syntaxError("Expected name");
+        }
+        value = readString(true);
+        return Token.NAME;
+    }
+
+    private Token readValue(int c) throws IOException, JSONException {
+        switch (c) {
+            case -1:
+                throw syntaxError("End of input");
+
+            case '[':
+                return Token.BEGIN_ARRAY;
+
+            case '{':
+                return Token.BEGIN_OBJECT;
+
+            case '"':
+                value = readString(false);
+                return Token.STRING;
+
+            case 't':
+                readKeyword("true");
+                booleanValue = true;
+                return Token.BOOLEAN;
+
+            case 'f':
+                readKeyword("false");
+                booleanValue = false;
+                return Token.BOOLEAN;
+
+            case 'n':
+                readKeyword("null");
+                return Token.NULL;
+
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    readNumber((char) c);
+                    return Token.NUMBER;
+                }
+                pos--;
+                throw syntaxError("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    /**
+     * Returns the next character that isn't whitespace, or -1 at the end of the
+     * input.
+     */
+    private int nextNonWhitespace() throws IOException {
+        while (pos < limit || fill(1)) {
+            char c = buffer[pos++];
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Moves the unread characters to the front of the buffer and reads until
+     * at least {@code minimum} characters are available. Returns false if the
+     * input ends first.
+     */
+    private boolean fill(int minimum) throws IOException {
+        charsDiscarded += pos;
+        limit -= pos;
+        if (limit != 0) {
+            System.arraycopy(buffer, pos, buffer, 0, limit);
+        }
+        pos = 0;
+
+        int count;
+        while ((count = in.read(buffer, limit, buffer.length - limit)) != -1) {
+            limit += count;
+            if (limit >= minimum) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the string up to the closing quote, unescaping any escape
+     * sequences. The opening quote should have already been read. Returns null
+     * if a value is being skipped.
+     */
+    private String readString(boolean name) throws IOException, JSONException {
+        boolean buffered = false;
+        while (true) {
+            int p = pos;
+            int start = p;
+            while (p < limit) {
+                char c = buffer[p++];
+                if (c == '"') {
+                    pos = p;
+                    if (skipping) {
+                        return null;
+                    } else if (buffered) {
+                        scratch.append(buffer, start, p - 1 - start);
+                        return scratch.toString();
+                    } else if (name) {
+                        return namePool.get(buffer, start, p - 1 - start);
+                    } else {
+                        return new String(buffer, start, p - 1 - start);
+                    }
+                } else if (c == '\\') {
+                    pos = p;
+                    if (!buffered) {
+                        scratch.setLength(0);
+                        buffered = true;
+                    }
+                    scratch.append(buffer, start, p - 1 - start);
+                    scratch.append(readEscapeCharacter());
+                    p = pos;
+                    start = p;
+                }
+            }
+
+            if (!buffered) {
+                scratch.setLength(0);
+                buffered = true;
+            }
+            scratch.append(buffer, start, p - start);
+            pos = p;
+            if (!fill(1)) {
+                throw syntaxError("Unterminated string");
+            }
+        }
+    }
+
+    /**
+     * Unescapes the character identified by the character or characters that
+     * immediately follow a backslash. The backslash '\' should have already
+     * been read.
+     */
+    private char readEscapeCharacter() throws IOException, JSONException {
+        if (pos == limit && !fill(1)) {
+            throw syntaxError("Unterminated escape sequence");
+        }
+
+        char escaped = buffer[pos++];
+        switch (escaped) {
+            case 'u':
+                if (limit - pos < 4 && !fill(4)) {
+                    throw syntaxError("Unterminated escape sequence");
+                }
+                int result = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(buffer[pos++], 16);
+                    if (digit == -1) {
+                        throw syntaxError("Malformed unicode escape");
+                    }
+                    result = (result << 4) | digit;
+                }
+                return (char) result;
+
+            case 't':
+                return '\t';
+
+            case 'b':
+                return '\b';
+
+            case 'n':
+                return '\n';
+
+            case 'r':
+                return '\r';
+
+            case 'f':
+                return '\f';
+
+            case '"':
+            case '\\':
+            case '/':
+                return escaped;
+
+            default:
+                throw syntaxError("Invalid escape sequence");
+        }
+    }
+
+    /**
+     * Consumes the rest of {@code keyword}, whose first character has already
+     * been read.
+     */
+    private void readKeyword(String keyword) throws IOException, JSONException {
+        for (int i = 1; i < keyword.length(); i++) {
+            if ((pos == limit && !fill(1)) || buffer[pos] != keyword.charAt(i)) {
+                throw syntaxError("Expected literal value");
+            }
+            pos++;
+        }
+        if ((pos < limit || fill(1)) && isLiteral(buffer[pos])) {
+            throw syntaxError("Expected literal value");
+        }
+    }
+
+    /**
+     * Reads a number into {@code scratch}. The first character, {@code c}, has
+     * already been read.
+     */
+    private void readNumber(char c) throws IOException, JSONException {
+        scratch.setLength(0);
+        scratch.append(c);
+        while ((pos < limit || fill(1)) && isLiteral(buffer[pos])) {
+            scratch.append(buffer[pos++]);
+        }
+        if (!isNumber(scratch)) {
+            throw syntaxError("Malformed number " + scratch);
+        }
+    }
+
+    private static boolean isLiteral(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+                || c == '-' || c == '+' || c == '.';
+    }
+
+    /**
+     * Returns true if {@code s} matches the RFC 4627 number grammar:
+     * {@code -?(0|[1-9][0-9]*)(\.[0-9]+)?([eE][-+]?[0-9]+)?}.
+     */
+    static boolean isNumber(CharSequence s) {
+        int i = 0;
+        int length = s.length();
+        if (i < length && s.charAt(i) == '-') {
+            i++;
+        }
+        if (i < length && s.charAt(i) == '0') {
+            i++;
+        } else {
+            int start = i;
+            i = skipDigits(s, i);
+            if (i == start) {
+                return false;
+            }
+        }
+        if (i < length && s.charAt(i) == '.') {
+            int start = ++i;
+            i = skipDigits(s, i);
+            if (i == start) {
+                return false;
+            }
+        }
+        if (i < length && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+            i++;
+            if (i < length && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+                i++;
+            }
+            int start = i;
+            i = skipDigits(s, i);
+            if (i == start) {
+                return false;
+            }
+        }
+        return i == length;
+    }
+
+    private static int skipDigits(CharSequence s, int i) {
+        while (i < s.length() && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Parses {@code s} as a decimal long without allocating. Returns 0 if it
+     * isn't a plain integer or doesn't fit in a long.
+     */
+    private static long parseLong(CharSequence s) {
+        boolean negative = s.charAt(0) == '-';
+        int i = negative ? 1 : 0;
+        if (i == s.length()) {
+            return 0;
+        }
+        // accumulate negatively so that Long.MIN_VALUE doesn't overflow
+        long result = 0;
+        for (; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9' || result < Long.MIN_VALUE / 10) {
+                return 0;
+            }
+            long next = result * 10 - (c - '0');
+            if (next > result) {
+                return 0; // overflow
+            }
+            result = next;
+        }
+        if (negative) {
+            return result;
+        }
+        return result == Long.MIN_VALUE ? 0 : -result;
+    }
+
+    private static boolean hasFractionOrExponent(CharSequence s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '.' || c == 'e' || c == 'E') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the value of a number like {@code 2.0} or {@code 1e3}, which
+     * must be an integer in the range of a long.
+     */
+    private static long parseExactLong(CharSequence s) throws JSONException {
+        try {
+            BigDecimal value = new BigDecimal(s.toString());
+            if (value.signum() == 0) {
+                return 0;
+            }
+            // Check the number of integer digits first, so that an exponent like
+            // 1e999999999 isn't expanded.
+            long integerDigits = value.precision() - (long) value.scale();
+            if (integerDigits >= 1 && integerDigits <= 19) {
+                return value.longValueExact();
+            }
+        } catch (NumberFormatException ignored) {
+        } catch (ArithmeticException ignored) {
+        }
+        throw new JSONException("Expected a long but was " + s);
+    }
+
+    private static boolean isZero(CharSequence s) {
+        return s.length() == 1 ? s.charAt(0) == '0'
+                : s.length() == 2 && s.charAt(0) == '-' && s.charAt(1) == '0';
+    }
+
+    /**
+     * Returns an exception containing the given message plus the position of
+     * the current character.
+     */
+    private JSONException syntaxError(String message) {
+        return new JSONException(message + " at character " + (charsDiscarded + pos));
+    }
+
+    @Override public String toString() {
+        return "JSONReader at character " + (charsDiscarded + pos);
+    }
+}
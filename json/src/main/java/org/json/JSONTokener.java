@@ -16,6 +16,8 @@
 
 package org.json;
 
+import libcore.internal.StringPool;
+
 // Note: this class was written without inspecting the non-free org.json sourcecode.
 
 /**
@@ -61,6 +63,11 @@ package org.json;
  */
 public class JSONTokener {
 
+    private static final int MAX_POOLED_LENGTH = 32;
+
+    /** Characters other than newlines that end a literal value. */
+    private static final String LITERAL_DELIMITERS = "{}[]/\\:,=;# \t\f";
+
     /** The input JSON. */
     private final String in;
 
@@ -70,6 +77,15 @@ public class JSONTokener {
      */
     private int pos;
 
+    /** The value of the integer most recently read by readDecimalInteger(). */
+    private long integerLiteral;
+
+    /**
+     * Short strings like names repeat within a document, so they are shared
+     * rather than copied for each occurrence. Created on first use.
+     */
+    private StringPool stringPool;
+
     /**
      * @param in JSON encoded string. Null is not permitted and will yield a
      *     tokener that throws {@code NullPointerExceptions} when methods are
@@ -206,6 +222,13 @@ public class JSONTokener {
             int c = in.charAt(pos++);
             if (c == quote) {
                 if (builder == null) {
+                    int length = pos - 1 - start;
+                    if (length <= MAX_POOLED_LENGTH) {
+                        if (stringPool == null) {
+                            stringPool = new StringPool();
+                        }
+                        return stringPool.get(in, start, length);
+                    }
                     // a new string avoids leaking memory
                     return new String(in.substring(start, pos - 1));
                 } else {
@@ -279,7 +302,16 @@ public class JSONTokener {
      * preference.
      */
     private Object readLiteral() throws JSONException {
-        String literal = nextToInternal("{}[]/\\:,=;# \t\f");
+        if (readDecimalInteger()) {
+            long longValue = integerLiteral;
+            if (longValue <= Integer.MAX_VALUE && longValue >= Integer.MIN_VALUE) {
+                return (int) longValue;
+            } else {
+                return longValue;
+            }
+        }
+
+        String literal = nextToInternal(LITERAL_DELIMITERS);
 
         if (literal.length() == 0) {
             throw syntaxError("Expected literal value");
@@ -328,6 +360,58 @@ public class JSONTokener {
         return new String(literal); // a new string avoids leaking memory
     }
 
+    /**
+     * Reads a plain decimal integer like "-123" directly from the input into
+     * {@link #integerLiteral}, without creating a substring. Returns false
+     * and consumes nothing if the next literal is something else, such as an
+     * octal, hexadecimal or floating point number, or if it doesn't fit in a
+     * long.
+     */
+    private boolean readDecimalInteger() {
+        int p = pos;
+        int length = in.length();
+        boolean negative = p < length && in.charAt(p) == '-';
+        if (negative) {
+            p++;
+        }
+
+        // accumulate negatively so that Long.MIN_VALUE doesn't overflow
+        int digitsStart = p;
+        long result = 0;
+        for (; p < length; p++) {
+            char c = in.charAt(p);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            long next = result * 10 - (c - '0');
+            if (result < Long.MIN_VALUE / 10 || next > result) {
+                return false; // overflow
+            }
+            result = next;
+        }
+
+        int digitCount = p - digitsStart;
+        if (digitCount == 0 || (digitCount > 1 && in.charAt(digitsStart) == '0')) {
+            return false;
+        }
+        if (p < length) {
+            char c = in.charAt(p);
+            if (c != '\r' && c != '\n' && LITERAL_DELIMITERS.indexOf(c) == -1) {
+                return false;
+            }
+        }
+        if (!negative) {
+            if (result == Long.MIN_VALUE) {
+                return false;
+            }
+            result = -result;
+        }
+
+        integerLiteral = result;
+        pos = p;
+        return true;
+    }
+
     /**
      * Returns the string up to but not including any of the given characters or
      * a newline character. This does not consume the excluded character.
@@ -427,7 +511,11 @@ public class JSONTokener {
                     pos--;
             }
 
-            result.put(nextValue());
+            if (readDecimalInteger()) {
+                result.putIntegral(integerLiteral);
+            } else {
+                result.put(nextValue());
+            }
 
             switch (nextCleanInternal()) {
                 case ']':
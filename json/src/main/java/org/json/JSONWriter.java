@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Encodes a JSON value to a {@link Writer} as it is built. This class has the
+ * same API and enforces the same rules as {@link JSONStringer}, but instead of
+ * accumulating the whole document in memory it writes the encoded text to the
+ * underlying writer in chunks. Example usage: <pre>
+ * JSONWriter writer = new JSONWriter(out);
+ * writer.array();
+ * for (Message message : messages) {
+ *     writer.object()
+ *             .key("id").value(message.getId())
+ *             .key("text").value(message.getText())
+ *             .endObject();
+ * }
+ * writer.endArray();
+ * writer.close();</pre>
+ *
+ * <p>Each writer may be used to encode a single top level value. Instances of
+ * this class are not thread safe.
+ */
+public class JSONWriter implements Closeable, Flushable {
+
+    /** Encoded text is written out once this many characters are buffered. */
+    private static final int CHUNK_SIZE = 8192;
+
+    private final Writer out;
+
+    /** Encodes values and checks nesting; its output is drained to {@code out}. */
+    private final JSONStringer stringer = new JSONStringer();
+
+    private final char[] chunk = new char[CHUNK_SIZE];
+
+    /** The number of open arrays and objects. */
+    private int depth;
+    private boolean rootStarted;
+
+    public JSONWriter(Writer out) {
+        if (out == null) {
+            throw new NullPointerException("out == null");
+        }
+        this.out = out;
+    }
+
+    /**
+     * Begins encoding a new array. Each call to this method must be paired with
+     * a call to {@link #endArray}.
+     *
+     * @return this writer.
+     */
+    public JSONWriter array() throws IOException, JSONException {
+        beforeOpen();
+        stringer.array();
+        depth++;
+        return drain();
+    }
+
+    /**
+     * Ends encoding the current array.
+     *
+     * @return this writer.
+     */
+    public JSONWriter endArray() throws IOException, JSONException {
+        stringer.endArray();
+        depth--;
+        return drain();
+    }
+
+    /**
+     * Begins encoding a new object. Each call to this method must be paired
+     * with a call to {@link #endObject}.
+     *
+     * @return this writer.
+     */
+    public JSONWriter object() throws IOException, JSONException {
+        beforeOpen();
+        stringer.object();
+        depth++;
+        return drain();
+    }
+
+    /**
+     * Ends encoding the current object.
+     *
+     * @return this writer.
+     */
+    public JSONWriter endObject() throws IOException, JSONException {
+        stringer.endObject();
+        depth--;
+        return drain();
+    }
+
+    /**
+     * Encodes the key (property name) to this writer.
+     *
+     * @param name the name of the forthcoming value. May not be null.
+     * @return this writer.
+     */
+    public JSONWriter key(String name) throws IOException, JSONException {
+        stringer.key(name);
+        return drain();
+    }
+
+    /**
+     * Encodes {@code value}.
+     *
+     * @param value a {@link JSONObject}, {@link JSONArray}, String, Boolean,
+     *     Integer, Long, Double or null. May not be {@link Double#isNaN() NaNs}
+     *     or {@link Double#isInfinite() infinities}.
+     * @return this writer.
+     */
+    public JSONWriter value(Object value) throws IOException, JSONException {
+        stringer.value(value);
+        return drain();
+    }
+
+    /**
+     * Encodes {@code value} to this writer.
+     *
+     * @return this writer.
+     */
+    public JSONWriter value(boolean value) throws IOException, JSONException {
+        stringer.value(value);
+        return drain();
+    }
+
+    /**
+     * Encodes {@code value} to this writer.
+     *
+     * @param value a finite value. May not be {@link Double#isNaN() NaNs} or
+     *     {@link Double#isInfinite() infinities}.
+     * @return this writer.
+     */
+    public JSONWriter value(double value) throws IOException, JSONException {
+        stringer.value(value);
+        return drain();
+    }
+
+    /**
+     * Encodes {@code value} to this writer.
+     *
+     * @return this writer.
+     */
+    public JSONWriter value(long value) throws IOException, JSONException {
+        stringer.value(value);
+        return drain();
+    }
+
+    /**
+     * Writes all encoded text to the underlying writer and flushes it.
+     */
+    public void flush() throws IOException {
+        writeBuffered();
+        out.flush();
+    }
+
+    /**
+     * Writes all encoded text to the underlying writer and closes it. This
+     * doesn't close any unterminated arrays or objects.
+     */
+    public void close() throws IOException {
+        writeBuffered();
+        out.close();
+    }
+
+    /**
+     * The stringer rejects a second root only while the first is still in its
+     * buffer, so check for it here.
+     */
+    private void beforeOpen() throws JSONException {
+        if (depth == 0) {
+            if (rootStarted) {
+                throw new JSONException("Nesting problem: multiple top-level roots");
+            }
+            rootStarted = true;
+        }
+    }
+
+    private JSONWriter drain() throws IOException {
+        if (stringer.out.length() >= CHUNK_SIZE) {
+            writeBuffered();
+        }
+        return this;
+    }
+
+    private void writeBuffered() throws IOException {
+        StringBuilder buffered = stringer.out;
+        for (int start = 0, length = buffered.length(); start < length; start += CHUNK_SIZE) {
+            int end = Math.min(start + CHUNK_SIZE, length);
+            buffered.getChars(start, end, chunk, 0);
+            out.write(chunk, 0, end - start);
+        }
+        buffered.setLength(0);
+    }
+}
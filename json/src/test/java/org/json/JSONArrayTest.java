@@ -538,4 +538,55 @@ public class JSONArrayTest extends TestCase {
         } catch (JSONException e) {
         }
     }
+
+    public void testHomogeneousNumbersKeepTheirTypes() throws JSONException {
+        JSONArray array = new JSONArray("[1, 2, 3000000000, -4]");
+        assertEquals(Integer.valueOf(1), array.get(0));
+        assertEquals(Long.valueOf(3000000000L), array.get(2));
+        assertEquals(Integer.valueOf(-4), array.get(3));
+
+        JSONArray longs = new JSONArray().put(5L).put(6L);
+        assertEquals(Long.valueOf(5), longs.get(0));
+        JSONArray doubles = new JSONArray().put(-0d).put(1.5);
+        assertEquals(Double.valueOf(-0d), doubles.get(0));
+        assertEquals("[-0,1.5]", doubles.toString());
+    }
+
+    public void testMixingTypesInNumericArray() throws JSONException {
+        JSONArray array = new JSONArray();
+        array.put(1);
+        array.put(2);
+        array.put(2, 3L);
+        array.put("four");
+        array.put(5, 5.0);
+        assertEquals(Integer.valueOf(1), array.get(0));
+        assertEquals(Long.valueOf(3), array.get(2));
+        assertEquals("four", array.get(3));
+        assertEquals("[1,2,3,\"four\",null,5]", array.toString());
+        assertEquals(new JSONArray(array.toString()).toString(), array.toString());
+    }
+
+    public void testReplaceInNumericArray() throws JSONException {
+        JSONArray array = new JSONArray("[1, 2, 3]");
+        array.put(1, 20);
+        assertEquals("[1,20,3]", array.toString());
+        array.put(1, true);
+        assertEquals("[1,true,3]", array.toString());
+        assertEquals(new JSONArray("[1,true,3]"), array);
+    }
+
+    public void testParseIntegers() throws JSONException {
+        JSONArray array = new JSONArray(
+                "[0, -0, 9223372036854775807, -9223372036854775808, 9223372036854775808,"
+                + " 010, 0x10, 1e2, 12abc]");
+        assertEquals(Integer.valueOf(0), array.get(0));
+        assertEquals(Integer.valueOf(0), array.get(1));
+        assertEquals(Long.valueOf(Long.MAX_VALUE), array.get(2));
+        assertEquals(Long.valueOf(Long.MIN_VALUE), array.get(3));
+        assertEquals(Double.valueOf(9223372036854775808d), array.get(4));
+        assertEquals(Integer.valueOf(8), array.get(5));
+        assertEquals(Integer.valueOf(16), array.get(6));
+        assertEquals(Double.valueOf(100), array.get(7));
+        assertEquals("12abc", array.get(8));
+    }
 }
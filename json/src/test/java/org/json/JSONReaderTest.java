@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import junit.framework.TestCase;
+
+public class JSONReaderTest extends TestCase {
+
+    public void testReadObject() throws Exception {
+        JSONReader reader = new JSONReader(new StringReader(
+                "{\"a\": \"android\", \"b\": [true, false, null], \"c\": {}}"));
+        assertEquals(JSONReader.Token.BEGIN_OBJECT, reader.peek());
+        reader.beginObject();
+        assertEquals("a", reader.nextName());
+        assertEquals("android", reader.nextString());
+        assertEquals("b", reader.nextName());
+        reader.beginArray();
+        assertTrue(reader.nextBoolean());
+        assertFalse(reader.nextBoolean());
+        reader.nextNull();
+        assertFalse(reader.hasNext());
+        reader.endArray();
+        assertEquals("c", reader.nextName());
+        reader.beginObject();
+        reader.endObject();
+        assertFalse(reader.hasNext());
+        reader.endObject();
+        assertEquals(JSONReader.Token.END_DOCUMENT, reader.peek());
+    }
+
+    public void testNumbers() throws Exception {
+        JSONReader reader = new JSONReader(new StringReader(
+                "[0, -1, 9223372036854775807, -9223372036854775808, 1.5, 1e3, 2.0, -0]"));
+        reader.beginArray();
+        assertEquals(0, reader.nextInt());
+        assertEquals(-1, reader.nextLong());
+        assertEquals(Long.MAX_VALUE, reader.nextLong());
+        assertEquals(Long.MIN_VALUE, reader.nextLong());
+        assertEquals(1.5, reader.nextDouble());
+        assertEquals(1000, reader.nextLong());
+        assertEquals("2.0", reader.nextString());
+        assertEquals(0, reader.nextLong());
+        reader.endArray();
+    }
+
+    public void testLongRejectsFractionsAndOverflow() throws Exception {
+        JSONReader reader = new JSONReader(new StringReader(
+                "[1.5, 9223372036854775808, 2147483648]"));
+        reader.beginArray();
+        try {
+            reader.nextLong();
+            fail();
+        } catch (JSONException expected) {
+        }
+        try {
+            reader.nextLong();
+            fail();
+        } catch (JSONException expected) {
+        }
+        try {
+            reader.nextInt();
+            fail();
+        } catch (JSONException expected) {
+        }
+    }
+
+    public void testLongFromFractionOrExponentMustBeExact() throws Exception {
+        JSONReader reader = new JSONReader(new StringReader("[9007199254740993.0, "
+                + "9.223372036854775807e18, -9.223372036854775808E18, 100e-2, 0.0e5]"));
+        reader.beginArray();
+        // 9007199254740993 isn't a double, so a double round trip would return ...992
+        assertEquals(9007199254740993L, reader.nextLong());
+        assertEquals(Long.MAX_VALUE, reader.nextLong());
+        assertEquals(Long.MIN_VALUE, reader.nextLong());
+        assertEquals(1, reader.nextLong());
+        assertEquals(0, reader.nextLong());
+        reader.endArray();
+    }
+
+    public void testLongRejectsInexactAndOutOfRangeValues() throws Exception {
+        String[] values = {
+            "-9223372036854775809",
+            "9223372036854775808.0",
+            "9.223372036854775808e18",
+            "1e19",
+            "1.5e0",
+            "1e-1",
+            "1e999999999",
+            "1e-999999999",
+            "1e99999999999",
+        };
+        for (String value : values) {
+            JSONReader reader = new JSONReader(new StringReader("[" + value + "]"));
+            reader.beginArray();
+            try {
+                reader.nextLong();
+                fail(value);
+            } catch (JSONException expected) {
+            }
+        }
+    }
+
+    public void testEscapes() throws Exception {
+        JSONReader reader = new JSONReader(new StringReader(
+                "[\"\\\"\\\\\\/\\b\\f\\n\\r\\t\\u00e9\"]"));
+        reader.beginArray();
+        assertEquals("\"\\/\b\f\n\r\t\u00e9", reader.nextString());
+        reader.endArray();
+    }
+
+    public void testStringsSpanningBufferRefills() throws Exception {
+        StringBuilder longString = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            longString.append((char) ('a' + i % 26));
+            if (i % 1000 == 999) {
+                longString.append("\\n");
+            }
+        }
+        JSONReader reader = new JSONReader(
+                new OneCharAtATimeReader("[\"" + longString + "\", 12345]"));
+        reader.beginArray();
+        assertEquals(longString.toString().replace("\\n", "\n"), reader.nextString());
+        assertEquals(12345, reader.nextInt());
+        reader.endArray();
+    }
+
+    public void testSkipValue() throws Exception {
+        JSONReader reader = new JSONReader(new StringReader(
+                "{\"a\": {\"b\": [1, \"two\", {\"c\": null}]}, \"d\": 4}"));
+        reader.beginObject();
+        assertEquals("a", reader.nextName());
+        reader.skipValue();
+        assertEquals("d", reader.nextName());
+        reader.skipValue();
+        reader.endObject();
+        assertEquals(JSONReader.Token.END_DOCUMENT, reader.peek());
+    }
+
+    public void testSkipValueRejectsNames() throws Exception {
+        JSONReader reader = new JSONReader(new StringReader("{\"a\": 1}"));
+        reader.beginObject();
+        try {
+            reader.skipValue();
+            fail();
+        } catch (JSONException expected) {
+        }
+        assertEquals("a", reader.nextName());
+    }
+
+    public void testWrongToken() throws Exception {
+        JSONReader reader = new JSONReader(new StringReader("[\"a\"]"));
+        reader.beginArray();
+        try {
+            reader.nextBoolean();
+            fail();
+        } catch (JSONException expected) {
+        }
+        assertEquals("a", reader.nextString());
+    }
+
+    public void testMalformedInput() throws Exception {
+        assertMalformed("");
+        assertMalformed("[1,]");
+        assertMalformed("[1 2]");
+        assertMalformed("{\"a\" 1}");
+        assertMalformed("{a: 1}");
+        assertMalformed("[tru]");
+        assertMalformed("[truex]");
+        assertMalformed("[01]");
+        assertMalformed("[1.]");
+        assertMalformed("['a']");
+        assertMalformed("[\"a]");
+        assertMalformed("[\"\\x\"]");
+        assertMalformed("[] []");
+        assertMalformed("[// comment\n]");
+    }
+
+    public void testInputStream() throws Exception {
+        JSONReader reader = new JSONReader(
+                new ByteArrayInputStream("[\"\u00e9\u4e2d\"]".getBytes("UTF-8")));
+        reader.beginArray();
+        assertEquals("\u00e9\u4e2d", reader.nextString());
+        reader.endArray();
+        reader.close();
+    }
+
+    public void testDeepNesting() throws Exception {
+        StringBuilder json = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            json.append('[');
+        }
+        for (int i = 0; i < 100; i++) {
+            json.append(']');
+        }
+        JSONReader reader = new JSONReader(new StringReader(json.toString()));
+        for (int i = 0; i < 100; i++) {
+            reader.beginArray();
+        }
+        for (int i = 0; i < 100; i++) {
+            reader.endArray();
+        }
+        assertEquals(JSONReader.Token.END_DOCUMENT, reader.peek());
+    }
+
+    private void assertMalformed(String json) throws IOException {
+        JSONReader reader = new JSONReader(new StringReader(json));
+        try {
+            while (reader.peek() != JSONReader.Token.END_DOCUMENT) {
+                reader.skipValue();
+            }
+            fail(json);
+        } catch (JSONException expected) {
+        }
+    }
+
+    /**
+     * Returns at most one character from each read, to exercise refilling.
+     */
+    private static class OneCharAtATimeReader extends Reader {
+        private final String s;
+        private int pos;
+
+        OneCharAtATimeReader(String s) {
+            this.s = s;
+        }
+
+        @Override public int read(char[] buffer, int offset, int count) {
+            if (pos == s.length()) {
+                return -1;
+            }
+            buffer[offset] = s.charAt(pos++);
+            return 1;
+        }
+
+        @Override public void close() {
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.json;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import junit.framework.TestCase;
+
+public class JSONWriterTest extends TestCase {
+
+    public void testWriteMatchesStringer() throws Exception {
+        StringWriter out = new StringWriter();
+        JSONWriter writer = new JSONWriter(out);
+        writer.object()
+                .key("a").value("android")
+                .key("b").array().value(true).value(5L).value(1.5).value(null).endArray()
+                .key("c").value(new JSONObject("{\"d\":\"e\"}"))
+                .endObject();
+        writer.close();
+
+        JSONStringer stringer = new JSONStringer();
+        stringer.object()
+                .key("a").value("android")
+                .key("b").array().value(true).value(5L).value(1.5).value(null).endArray()
+                .key("c").value(new JSONObject("{\"d\":\"e\"}"))
+                .endObject();
+        assertEquals(stringer.toString(), out.toString());
+    }
+
+    public void testLargeDocumentIsWrittenIncrementally() throws Exception {
+        StringWriter out = new StringWriter();
+        JSONWriter writer = new JSONWriter(out);
+        writer.array();
+        for (int i = 0; i < 10000; i++) {
+            writer.value("element " + i);
+        }
+        assertTrue(out.getBuffer().length() > 0);
+        writer.endArray();
+        writer.flush();
+
+        JSONReader reader = new JSONReader(new StringReader(out.toString()));
+        reader.beginArray();
+        for (int i = 0; i < 10000; i++) {
+            assertEquals("element " + i, reader.nextString());
+        }
+        reader.endArray();
+    }
+
+    public void testMultipleRootsRejected() throws Exception {
+        JSONWriter writer = new JSONWriter(new StringWriter());
+        writer.array().endArray();
+        writer.flush();
+        try {
+            writer.array();
+            fail();
+        } catch (JSONException expected) {
+        }
+    }
+
+    public void testNestingProblems() throws Exception {
+        JSONWriter writer = new JSONWriter(new StringWriter());
+        writer.object();
+        try {
+            writer.value(1L);
+            fail();
+        } catch (JSONException expected) {
+        }
+        try {
+            writer.endArray();
+            fail();
+        } catch (JSONException expected) {
+        }
+    }
+}
@@ -23,12 +23,15 @@ import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 import java.lang.reflect.Proxy;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.nio.ByteOrder;
+import java.nio.charset.ModifiedUtf8;
 import java.util.List;
+import libcore.io.Memory;
+import libcore.io.SizeOf;
 import libcore.util.EmptyArray;
 
 /**
@@ -71,6 +74,14 @@ public class ObjectInputStream extends InputStream implements ObjectInput, Objec
     // Where we keep primitive type data
     private InputStream primitiveData = emptyStream;
 
+    // The contents of the current block data record, refilled for each record
+    private final BlockDataInputStream blockBuffer = new BlockDataInputStream();
+
+    // Reused buffers for decoding primitive data, arrays and strings that
+    // aren't in block data records
+    private byte[] scratchBytes = EmptyArray.BYTE;
+    private char[] scratchChars = EmptyArray.CHAR;
+
     // Resolve object is a mechanism for replacement
     private boolean enableResolve;
 
@@ -101,6 +112,13 @@ public class ObjectInputStream extends InputStream implements ObjectInput, Objec
     // Handle for the current class descriptor
     private int descriptorHandle = -1;
 
+    // The smallest scratch buffer worth allocating
+    private static final int MIN_SCRATCH_SIZE = 256;
+
+    // The most bytes of a primitive array converted at once, which bounds the
+    // size of the scratch buffer
+    private static final int ARRAY_CHUNK_SIZE = 8192;
+
     private static final HashMap<String, Class<?>> PRIMITIVE_CLASSES = new HashMap<String, Class<?>>();
     static {
         PRIMITIVE_CLASSES.put("boolean", boolean.class);
@@ -121,6 +139,84 @@ public class ObjectInputStream extends InputStream implements ObjectInput, Objec
         int priority;
     }
 
+    /**
+     * The contents of a single block data record. Unlike a {@code
+     * ByteArrayInputStream}, the buffer is reused from one record to the next
+     * and isn't synchronized, and the enclosing stream decodes multi-byte
+     * primitives from it directly rather than a byte at a time.
+     */
+    private static final class BlockDataInputStream extends InputStream {
+        byte[] bytes = EmptyArray.BYTE;
+        int pos;
+        int count;
+
+        /**
+         * Replaces the contents with the next {@code length} bytes of {@code in}.
+         */
+        void fill(DataInputStream in, int length) throws IOException {
+            if (length < 0) {
+                throw new StreamCorruptedException("Negative block data length: " + length);
+            }
+            if (bytes.length < length) {
+                bytes = new byte[length];
+            }
+            pos = 0;
+            count = 0;
+            in.readFully(bytes, 0, length);
+            count = length;
+        }
+
+        int remaining() {
+            return count - pos;
+        }
+
+        short readShort() {
+            short result = Memory.peekShort(bytes, pos, ByteOrder.BIG_ENDIAN);
+            pos += SizeOf.SHORT;
+            return result;
+        }
+
+        int readInt() {
+            int result = Memory.peekInt(bytes, pos, ByteOrder.BIG_ENDIAN);
+            pos += SizeOf.INT;
+            return result;
+        }
+
+        long readLong() {
+            long result = Memory.peekLong(bytes, pos, ByteOrder.BIG_ENDIAN);
+            pos += SizeOf.LONG;
+            return result;
+        }
+
+        @Override public int read() {
+            return (pos < count) ? bytes[pos++] & 0xff : -1;
+        }
+
+        @Override public int read(byte[] buffer, int offset, int length) {
+            Arrays.checkOffsetAndCount(buffer.length, offset, length);
+            if (pos >= count) {
+                return -1;
+            }
+            if (length == 0) {
+                return 0;
+            }
+            int copied = Math.min(length, count - pos);
+            System.arraycopy(bytes, pos, buffer, offset, copied);
+            pos += copied;
+            return copied;
+        }
+
+        @Override public int available() {
+            return count - pos;
+        }
+
+        @Override public long skip(long byteCount) {
+            int skipped = (int) Math.min(Math.max(byteCount, 0), count - pos);
+            pos += skipped;
+            return skipped;
+        }
+    }
+
     /**
      * GetField is an inner class that provides access to the persistent fields
      * read from the source stream.
@@ -407,10 +503,12 @@ public class ObjectInputStream extends InputStream implements ObjectInput, Objec
             }
             switch (pushbackTC) {
                 case TC_BLOCKDATA:
-                    primitiveData = new ByteArrayInputStream(readBlockData());
+                    blockBuffer.fill(input, input.readByte() & 0xff);
+                    primitiveData = blockBuffer;
                     return;
                 case TC_BLOCKDATALONG:
-                    primitiveData = new ByteArrayInputStream(readBlockDataLong());
+                    blockBuffer.fill(input, input.readInt());
+                    primitiveData = blockBuffer;
                     return;
                 case TC_RESET:
                     resetState();
@@ -597,6 +695,53 @@ public class ObjectInputStream extends InputStream implements ObjectInput, Objec
         return result;
     }
 
+    /**
+     * Returns a buffer of at least {@code length} bytes, reusing the previous
+     * one if it's large enough. Callers must have finished with the previous
+     * contents, including before any nested call that may reuse it.
+     */
+    private byte[] scratchBytes(int length) {
+        if (scratchBytes.length < length) {
+            scratchBytes = new byte[Math.max(length, MIN_SCRATCH_SIZE)];
+        }
+        return scratchBytes;
+    }
+
+    private char[] scratchChars(int length) {
+        if (scratchChars.length < length) {
+            scratchChars = new char[Math.max(length, MIN_SCRATCH_SIZE)];
+        }
+        return scratchChars;
+    }
+
+    /**
+     * Reads a string in {@link DataInput modified UTF-8} from the source
+     * stream, decoding it through the scratch buffers.
+     */
+    private String readUtf() throws IOException {
+        int utfSize = input.readUnsignedShort();
+        byte[] bytes = scratchBytes(utfSize);
+        input.readFully(bytes, 0, utfSize);
+        return ModifiedUtf8.decode(bytes, scratchChars(utfSize), 0, utfSize);
+    }
+
+    /**
+     * Reads {@code count} big-endian elements of {@code sizeofElements} bytes
+     * each into the primitive array {@code dst}, converting a chunk at a time.
+     */
+    private void readPrimitiveArray(Object dst, int count, int sizeofElements) throws IOException {
+        int chunkElements = ARRAY_CHUNK_SIZE / sizeofElements;
+        byte[] bytes = scratchBytes(Math.min(count, chunkElements) * sizeofElements);
+        for (int offset = 0; offset < count; ) {
+            int elements = Math.min(count - offset, chunkElements);
+            int byteCount = elements * sizeofElements;
+            input.readFully(bytes, 0, byteCount);
+            Memory.unsafeBulkGet(dst, offset, byteCount, bytes, 0, sizeofElements,
+                    ByteOrder.BIG_ENDIAN.needsSwap);
+            offset += elements;
+        }
+    }
+
     /**
      * Reads a boolean from the source stream.
      *
@@ -608,6 +753,9 @@ public class ObjectInputStream extends InputStream implements ObjectInput, Objec
      *             if an error occurs while reading from the source stream.
      */
     public boolean readBoolean() throws IOException {
+        if (primitiveData == blockBuffer && blockBuffer.remaining() >= 1) {
+            return blockBuffer.bytes[blockBuffer.pos++] != 0;
+        }
         return primitiveTypes.readBoolean();
     }
 
@@ -622,6 +770,9 @@ public class ObjectInputStream extends InputStream implements ObjectInput, Objec
      *             if an error occurs while reading from the source stream.
      */
     public byte readByte() throws IOException {
+        if (primitiveData == blockBuffer && blockBuffer.remaining() >= 1) {
+            return blockBuffer.bytes[blockBuffer.pos++];
+        }
         return primitiveTypes.readByte();
     }
 
@@ -636,6 +787,9 @@ public class ObjectInputStream extends InputStream implements ObjectInput, Objec
      *             if an error occurs while reading from the source stream.
      */
     public char readChar() throws IOException {
+        if (primitiveData == blockBuffer && blockBuffer.remaining() >= SizeOf.CHAR) {
+            return (char) blockBuffer.readShort();
+        }
         return primitiveTypes.readChar();
     }
 
@@ -844,6 +998,9 @@ public class ObjectInputStream extends InputStream implements ObjectInput, Objec
      *             if an error occurs while reading from the source stream.
      */
     public double readDouble() throws IOException {
+        if (primitiveData == blockBuffer && blockBuffer.remaining() >= SizeOf.DOUBLE) {
+            return Double.longBitsToDouble(blockBuffer.readLong());
+        }
         return primitiveTypes.readDouble();
     }
 
@@ -917,7 +1074,7 @@ public class ObjectInputStream extends InputStream implements ObjectInput, Objec
         // Check ObjectOutputStream.writeFieldDescriptors
         for (short i = 0; i < numFields; i++) {
             char typecode = (char) input.readByte();
-            String fieldName = input.readUTF();
+            String fieldName = readUtf();
             boolean isPrimType = ObjectStreamClass.isPrimitiveType(typecode);
             String classSig;
             if (isPrimType) {
@@ -1087,52 +1244,74 @@ public class ObjectInputStream extends InputStream implements ObjectInput, Objec
             throw new ClassNotFoundException(classDesc.getName());
         }
 
-        for (ObjectStreamField fieldDesc : fields) {
-            Field field = classDesc.getReflectionField(fieldDesc);
-            if (field != null && Modifier.isTransient(field.getModifiers())) {
-                field = null; // No setting transient fields! (http://b/4471249)
-            }
+        ObjectStreamClass.FieldAccessor[] accessors = classDesc.loadFieldAccessors();
+        // The stream may describe a class that obj isn't an instance of. Its
+        // fields must then be set reflectively, which throws.
+        boolean isInstance = declaringClass != null && declaringClass.isInstance(obj);
+
+        // Read the leading primitive fields' data at once. They're decoded
+        // before any reference field is read, so the scratch buffer is free
+        // again by the time a nested object might need it.
+        int primitiveSize = classDesc.primitiveLoadFieldsSize();
+        byte[] primitives = scratchBytes(primitiveSize);
+        input.readFully(primitives, 0, primitiveSize);
+        int pos = 0;
+
+        for (int index = 0; index < fields.length; index++) {
+            ObjectStreamField fieldDesc = fields[index];
+            ObjectStreamClass.FieldAccessor accessor = accessors[index];
             // We may not have been able to find the field, or it may be transient, but we still
             // need to read the value and do the other checking...
+            Field field = accessor.field;
+            // A primitive field that follows a reference field is read from the stream directly
+            boolean buffered = pos < primitiveSize;
             try {
                 Class<?> type = fieldDesc.getTypeInternal();
-                if (type == byte.class) {
-                    byte b = input.readByte();
+                if (type == int.class) {
+                    int i = buffered ? Memory.peekInt(primitives, pos, ByteOrder.BIG_ENDIAN) : input.readInt();
+                    pos += SizeOf.INT;
+                    if (field != null) {
+                        accessor.setInt(obj, isInstance, i);
+                    }
+                } else if (type == long.class) {
+                    long j = buffered ? Memory.peekLong(primitives, pos, ByteOrder.BIG_ENDIAN) : input.readLong();
+                    pos += SizeOf.LONG;
+                    if (field != null) {
+                        accessor.setLong(obj, isInstance, j);
+                    }
+                } else if (type == byte.class) {
+                    byte b = buffered ? primitives[pos] : input.readByte();
+                    pos += 1;
                     if (field != null) {
                         field.setByte(obj, b);
                     }
                 } else if (type == char.class) {
-                    char c = input.readChar();
+                    char c = buffered ? (char) Memory.peekShort(primitives, pos, ByteOrder.BIG_ENDIAN) : input.readChar();
+                    pos += SizeOf.CHAR;
                     if (field != null) {
                         field.setChar(obj, c);
                     }
                 } else if (type == double.class) {
-                    double d = input.readDouble();
+                    double d = buffered ? Double.longBitsToDouble(Memory.peekLong(primitives, pos, ByteOrder.BIG_ENDIAN)) : input.readDouble();
+                    pos += SizeOf.DOUBLE;
                     if (field != null) {
                         field.setDouble(obj, d);
                     }
                 } else if (type == float.class) {
-                    float f = input.readFloat();
+                    float f = buffered ? Float.intBitsToFloat(Memory.peekInt(primitives, pos, ByteOrder.BIG_ENDIAN)) : input.readFloat();
+                    pos += SizeOf.FLOAT;
                     if (field != null) {
                         field.setFloat(obj, f);
                     }
-                } else if (type == int.class) {
-                    int i = input.readInt();
-                    if (field != null) {
-                        field.setInt(obj, i);
-                    }
-                } else if (type == long.class) {
-                    long j = input.readLong();
-                    if (field != null) {
-                        field.setLong(obj, j);
-                    }
                 } else if (type == short.class) {
-                    short s = input.readShort();
+                    short s = buffered ? Memory.peekShort(primitives, pos, ByteOrder.BIG_ENDIAN) : input.readShort();
+                    pos += SizeOf.SHORT;
                     if (field != null) {
                         field.setShort(obj, s);
                     }
                 } else if (type == boolean.class) {
-                    boolean z = input.readBoolean();
+                    boolean z = buffered ? primitives[pos] != 0 : input.readBoolean();
+                    pos += 1;
                     if (field != null) {
                         field.setBoolean(obj, z);
                     }
@@ -1151,7 +1330,7 @@ public class ObjectInputStream extends InputStream implements ObjectInput, Objec
                             throw new ClassCastException(classDesc.getName() + "." + fieldName + " - " + fieldType + " not compatible with " + valueType);
                         }
                         if (field != null) {
-                            field.set(obj, toSet);
+                            accessor.set(obj, isInstance, toSet);
                         }
                     }
                 }
@@ -1174,6 +1353,9 @@ public class ObjectInputStream extends InputStream implements ObjectInput, Objec
      *             if an error occurs while reading from the source stream.
      */
     public float readFloat() throws IOException {
+        if (primitiveData == blockBuffer && blockBuffer.remaining() >= SizeOf.FLOAT) {
+            return Float.intBitsToFloat(blockBuffer.readInt());
+        }
         return primitiveTypes.readFloat();
     }
 
@@ -1394,6 +1576,9 @@ public class ObjectInputStream extends InputStream implements ObjectInput, Objec
      *             if an error occurs while reading from the source stream.
      */
     public int readInt() throws IOException {
+        if (primitiveData == blockBuffer && blockBuffer.remaining() >= SizeOf.INT) {
+            return blockBuffer.readInt();
+        }
         return primitiveTypes.readInt();
     }
 
@@ -1422,6 +1607,9 @@ public class ObjectInputStream extends InputStream implements ObjectInput, Objec
      *             if an error occurs while reading from the source stream.
      */
     public long readLong() throws IOException {
+        if (primitiveData == blockBuffer && blockBuffer.remaining() >= SizeOf.LONG) {
+            return blockBuffer.readLong();
+        }
         return primitiveTypes.readLong();
     }
 
@@ -1464,43 +1652,30 @@ public class ObjectInputStream extends InputStream implements ObjectInput, Objec
         // elements.
         if (componentType.isPrimitive()) {
             if (componentType == int.class) {
-                int[] intArray = (int[]) result;
-                for (int i = 0; i < size; i++) {
-                    intArray[i] = input.readInt();
-                }
+                readPrimitiveArray(result, size, SizeOf.INT);
             } else if (componentType == byte.class) {
                 byte[] byteArray = (byte[]) result;
                 input.readFully(byteArray, 0, size);
             } else if (componentType == char.class) {
-                char[] charArray = (char[]) result;
-                for (int i = 0; i < size; i++) {
-                    charArray[i] = input.readChar();
-                }
+                readPrimitiveArray(result, size, SizeOf.CHAR);
             } else if (componentType == short.class) {
-                short[] shortArray = (short[]) result;
-                for (int i = 0; i < size; i++) {
-                    shortArray[i] = input.readShort();
-                }
+                readPrimitiveArray(result, size, SizeOf.SHORT);
             } else if (componentType == boolean.class) {
                 boolean[] booleanArray = (boolean[]) result;
-                for (int i = 0; i < size; i++) {
-                    booleanArray[i] = input.readBoolean();
+                byte[] bytes = scratchBytes(Math.min(size, ARRAY_CHUNK_SIZE));
+                for (int offset = 0; offset < size; ) {
+                    int count = Math.min(size - offset, bytes.length);
+                    input.readFully(bytes, 0, count);
+                    for (int i = 0; i < count; i++) {
+                        booleanArray[offset++] = bytes[i] != 0;
+                    }
                 }
             } else if (componentType == long.class) {
-                long[] longArray = (long[]) result;
-                for (int i = 0; i < size; i++) {
-                    longArray[i] = input.readLong();
-                }
+                readPrimitiveArray(result, size, SizeOf.LONG);
             } else if (componentType == float.class) {
-                float[] floatArray = (float[]) result;
-                for (int i = 0; i < size; i++) {
-                    floatArray[i] = input.readFloat();
-                }
+                readPrimitiveArray(result, size, SizeOf.FLOAT);
             } else if (componentType == double.class) {
-                double[] doubleArray = (double[]) result;
-                for (int i = 0; i < size; i++) {
-                    doubleArray[i] = input.readDouble();
-                }
+                readPrimitiveArray(result, size, SizeOf.DOUBLE);
             } else {
                 throw new ClassNotFoundException("Wrong base type in " + classDesc.getName());
             }
@@ -1704,7 +1879,7 @@ public class ObjectInputStream extends InputStream implements ObjectInput, Objec
         int count = input.readInt();
         String[] interfaceNames = new String[count];
         for (int i = 0; i < count; i++) {
-            interfaceNames[i] = input.readUTF();
+            interfaceNames[i] = readUtf();
         }
         Class<?> proxy = resolveProxyClass(interfaceNames);
         // Consume unread class annotation data and TC_ENDBLOCKDATA
@@ -1723,7 +1898,7 @@ public class ObjectInputStream extends InputStream implements ObjectInput, Objec
      */
     protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
         ObjectStreamClass newClassDesc = new ObjectStreamClass();
-        String name = input.readUTF();
+        String name = readUtf();
         if (name.length() == 0) {
             throw new IOException("The stream is corrupted");
         }
@@ -1914,7 +2089,7 @@ public class ObjectInputStream extends InputStream implements ObjectInput, Objec
      *             If an IO exception happened when reading the String.
      */
     private Object readNewString(boolean unshared) throws IOException {
-        Object result = input.readUTF();
+        Object result = readUtf();
         if (enableResolve) {
             result = resolveObject(result);
         }
@@ -2088,6 +2263,9 @@ public class ObjectInputStream extends InputStream implements ObjectInput, Objec
      *             if an error occurs while reading from the source stream.
      */
     public short readShort() throws IOException {
+        if (primitiveData == blockBuffer && blockBuffer.remaining() >= SizeOf.SHORT) {
+            return blockBuffer.readShort();
+        }
         return primitiveTypes.readShort();
     }
 
@@ -2121,6 +2299,9 @@ public class ObjectInputStream extends InputStream implements ObjectInput, Objec
      *             if an error occurs while reading from the source stream.
      */
     public int readUnsignedByte() throws IOException {
+        if (primitiveData == blockBuffer && blockBuffer.remaining() >= 1) {
+            return blockBuffer.bytes[blockBuffer.pos++] & 0xff;
+        }
         return primitiveTypes.readUnsignedByte();
     }
 
@@ -2136,6 +2317,9 @@ public class ObjectInputStream extends InputStream implements ObjectInput, Objec
      *             if an error occurs while reading from the source stream.
      */
     public int readUnsignedShort() throws IOException {
+        if (primitiveData == blockBuffer && blockBuffer.remaining() >= SizeOf.SHORT) {
+            return blockBuffer.readShort() & 0xffff;
+        }
         return primitiveTypes.readUnsignedShort();
     }
 
@@ -2152,6 +2336,15 @@ public class ObjectInputStream extends InputStream implements ObjectInput, Objec
      *             if an error occurs while reading from the source stream.
      */
     public String readUTF() throws IOException {
+        if (primitiveData == blockBuffer && blockBuffer.remaining() >= SizeOf.SHORT) {
+            int utfSize = Memory.peekShort(blockBuffer.bytes, blockBuffer.pos, ByteOrder.BIG_ENDIAN) & 0xffff;
+            if (blockBuffer.remaining() >= SizeOf.SHORT + utfSize) {
+                String result = ModifiedUtf8.decode(blockBuffer.bytes, scratchChars(utfSize),
+                        blockBuffer.pos + SizeOf.SHORT, utfSize);
+                blockBuffer.pos += SizeOf.SHORT + utfSize;
+                return result;
+            }
+        }
         return primitiveTypes.readUTF();
     }
 
@@ -23,6 +23,7 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.nio.ByteOrder;
 import java.nio.charset.ModifiedUtf8;
+import java.util.IdentityHashMap;
 import java.util.List;
 import libcore.io.Memory;
 import libcore.io.SizeOf;
@@ -76,6 +77,13 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput, Ob
      */
     private SerializationHandleMap objectsWritten;
 
+    /*
+     * Class descriptors already looked up by this stream. Unlike the handle
+     * table this isn't cleared by reset(), since descriptors don't change.
+     */
+    private final IdentityHashMap<Class<?>, ObjectStreamClass> classDescs =
+            new IdentityHashMap<Class<?>, ObjectStreamClass>();
+
     /*
      * All objects are assigned an ID (integer handle)
      */
@@ -584,10 +592,27 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput, Ob
      *
      */
     private void resetSeenObjects() {
-        objectsWritten = new SerializationHandleMap();
+        if (objectsWritten == null) {
+            objectsWritten = new SerializationHandleMap();
+        } else {
+            objectsWritten.clear();
+        }
         currentHandle = baseWireHandle;
     }
 
+    /**
+     * Returns the descriptor for {@code c}, consulting this stream's cache
+     * before the thread-local cache in {@link ObjectStreamClass}.
+     */
+    private ObjectStreamClass lookupStreamClass(Class<?> c) {
+        ObjectStreamClass result = classDescs.get(c);
+        if (result == null) {
+            result = ObjectStreamClass.lookupStreamClass(c);
+            classDescs.put(c, result);
+        }
+        return result;
+    }
+
     /**
      * Reset the receiver. The collection of objects already dumped by the
      * receiver is reset, and internal structures are also reset so that the
@@ -947,14 +972,22 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput, Ob
      * @see #writeObject(Object)
      */
     private void writeFieldValues(Object obj, ObjectStreamClass classDesc) throws IOException {
-        for (ObjectStreamField fieldDesc : classDesc.fields()) {
+        ObjectStreamField[] fields = classDesc.fields();
+        ObjectStreamClass.FieldAccessor[] accessors = classDesc.fieldAccessors();
+        for (int i = 0; i < fields.length; i++) {
+            ObjectStreamField fieldDesc = fields[i];
+            ObjectStreamClass.FieldAccessor accessor = accessors[i];
             try {
                 Class<?> type = fieldDesc.getTypeInternal();
-                Field field = classDesc.getReflectionField(fieldDesc);
+                Field field = accessor.field;
                 if (field == null) {
                     throw new InvalidClassException(classDesc.getName() + " doesn't have a field " + fieldDesc.getName() + " of type " + type);
                 }
-                if (type == byte.class) {
+                if (type == int.class) {
+                    output.writeInt(accessor.getInt(obj));
+                } else if (type == long.class) {
+                    output.writeLong(accessor.getLong(obj));
+                } else if (type == byte.class) {
                     output.writeByte(field.getByte(obj));
                 } else if (type == char.class) {
                     output.writeChar(field.getChar(obj));
@@ -962,17 +995,13 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput, Ob
                     output.writeDouble(field.getDouble(obj));
                 } else if (type == float.class) {
                     output.writeFloat(field.getFloat(obj));
-                } else if (type == int.class) {
-                    output.writeInt(field.getInt(obj));
-                } else if (type == long.class) {
-                    output.writeLong(field.getLong(obj));
                 } else if (type == short.class) {
                     output.writeShort(field.getShort(obj));
                 } else if (type == boolean.class) {
                     output.writeBoolean(field.getBoolean(obj));
                 } else {
                     // Reference types (including arrays).
-                    Object objField = field.get(obj);
+                    Object objField = accessor.get(obj);
                     if (fieldDesc.isUnshared()) {
                         writeUnshared(objField);
                     } else {
@@ -1229,7 +1258,7 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput, Ob
         // We cannot call lookup because it returns null if the parameter
         // represents instances that cannot be serialized, and that is not what
         // we want.
-        ObjectStreamClass clDesc = ObjectStreamClass.lookupStreamClass(object);
+        ObjectStreamClass clDesc = lookupStreamClass(object);
 
         // The handle for the classDesc is NOT the handle for the class object
         // being dumped. We must allocate a new handle and return it.
@@ -1571,7 +1600,7 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput, Ob
 
         // Non-null object, first time seen...
         Class<?> objClass = object.getClass();
-        ObjectStreamClass clDesc = ObjectStreamClass.lookupStreamClass(objClass);
+        ObjectStreamClass clDesc = lookupStreamClass(objClass);
 
         nestedLevels++;
         try {
@@ -1750,7 +1779,7 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput, Ob
         // Only write field "name" for enum class, which is the second field of
         // enum, that is fields[1]. Ignore all non-fields and fields.length < 2
         if (fields != null && fields.length > 1) {
-            Field field = classDesc.getSuperclass().getReflectionField(fields[1]);
+            Field field = classDesc.getSuperclass().fieldAccessors()[1].field;
             if (field == null) {
                 throw new NoSuchFieldError();
             }
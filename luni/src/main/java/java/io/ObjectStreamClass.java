@@ -29,11 +29,11 @@ import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
 import java.util.WeakHashMap;
 import libcore.io.Memory;
 import libcore.util.EmptyArray;
+import sun.misc.Unsafe;
 
 /**
  * Represents a descriptor for identifying a class during serialization and
@@ -169,10 +169,13 @@ public class ObjectStreamClass implements Serializable {
     // Array of ObjectStreamField describing the serialized fields of this class
     private transient ObjectStreamField[] loadFields;
 
-    // ObjectStreamField doesn't override hashCode or equals, so this is equivalent to an
-    // IdentityHashMap, which is fine for our purposes.
-    private transient HashMap<ObjectStreamField, Field> reflectionFields =
-            new HashMap<ObjectStreamField, Field>();
+    // Accessors for the fields in 'fields' and 'loadFields', created on first use
+    private transient volatile FieldAccessor[] fieldAccessors;
+    private transient volatile FieldAccessor[] loadFieldAccessors;
+
+    // The number of bytes taken by the leading primitive fields of 'loadFields',
+    // or -1 if not yet computed
+    private transient int primitiveLoadFieldsSize = -1;
 
     // MethodID for deserialization constructor
     private transient long constructor = CONSTRUCTOR_IS_NOT_RESOLVED;
@@ -185,25 +188,175 @@ public class ObjectStreamClass implements Serializable {
         return constructor;
     }
 
-    Field getReflectionField(ObjectStreamField osf) {
-        synchronized (reflectionFields) {
-            Field field = reflectionFields.get(osf);
-            if (field != null) {
-                return field;
+    /**
+     * Returns accessors for the fields in {@link #fields}, in the same order.
+     * The accessors are created once per class and shared by every stream.
+     */
+    FieldAccessor[] fieldAccessors() {
+        FieldAccessor[] result = fieldAccessors;
+        if (result == null) {
+            ObjectStreamField[] fields = fields();
+            result = new FieldAccessor[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                result[i] = FieldAccessor.create(forClass(), fields[i]);
             }
+            fieldAccessors = result;
         }
+        return result;
+    }
 
-        try {
+    /**
+     * Returns accessors for the fields in {@link #getLoadFields}, in the same
+     * order. Transient fields and fields that the local class doesn't declare
+     * get an accessor with a null field, whose values must be read and
+     * discarded. Fields that match the local class's serialized fields reuse
+     * that class's accessors.
+     */
+    FieldAccessor[] loadFieldAccessors() {
+        FieldAccessor[] result = loadFieldAccessors;
+        if (result == null) {
+            ObjectStreamField[] loadFields = (this.loadFields == null) ? NO_FIELDS : this.loadFields;
             Class<?> declaringClass = forClass();
-            Field field = declaringClass.getDeclaredField(osf.getName());
-            field.setAccessible(true);
-            synchronized (reflectionFields) {
-                reflectionFields.put(osf, field);
+            ObjectStreamClass localClassDesc = (declaringClass == null)
+                    ? null
+                    : lookupStreamClass(declaringClass);
+            result = new FieldAccessor[loadFields.length];
+            for (int i = 0; i < loadFields.length; i++) {
+                FieldAccessor accessor = (localClassDesc == null)
+                        ? FieldAccessor.MISSING
+                        : localClassDesc.accessorForLoadField(loadFields[i]);
+                if (accessor.field != null && Modifier.isTransient(accessor.field.getModifiers())) {
+                    accessor = FieldAccessor.MISSING; // No setting transient fields! (http://b/4471249)
+                }
+                result[i] = accessor;
+            }
+            loadFieldAccessors = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of bytes of field data that precede the first
+     * reference field in {@link #getLoadFields}. Conforming streams write all
+     * primitive fields before any reference field, so this is usually the
+     * size of all the primitive field data.
+     */
+    int primitiveLoadFieldsSize() {
+        int result = primitiveLoadFieldsSize;
+        if (result == -1) {
+            ObjectStreamField[] loadFields = (this.loadFields == null) ? NO_FIELDS : this.loadFields;
+            result = 0;
+            for (ObjectStreamField loadField : loadFields) {
+                Class<?> type = loadField.getTypeInternal();
+                if (type == null || !type.isPrimitive()) {
+                    break;
+                }
+                result += primitiveSize(type);
+            }
+            primitiveLoadFieldsSize = result;
+        }
+        return result;
+    }
+
+    private FieldAccessor accessorForLoadField(ObjectStreamField loadField) {
+        ObjectStreamField[] fields = fields();
+        FieldAccessor[] accessors = fieldAccessors();
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i].getName().equals(loadField.getName())
+                    && fields[i].getTypeInternal() == loadField.getTypeInternal()) {
+                return accessors[i];
+            }
+        }
+        return FieldAccessor.create(forClass(), loadField);
+    }
+
+    /**
+     * Gets and sets the value of one serialized field. Int, long and reference
+     * fields are accessed directly at their offset in the object. Unsafe has
+     * no accessors for the other primitive types, so they (and volatile and
+     * static fields) go through the reflective field.
+     *
+     * <p>Unsafe doesn't check that the object has the field, so the setters
+     * only use it when the caller has checked that the object is an instance
+     * of the field's declaring class. A stream can describe classes that
+     * aren't in the object's hierarchy, and setting their fields must fail
+     * like {@link Field#set} does rather than write to some other field.
+     */
+    static final class FieldAccessor {
+        private static final Unsafe UNSAFE = Unsafe.getUnsafe();
+
+        static final FieldAccessor MISSING = new FieldAccessor(null, null);
+
+        /** The reflective field, or null if the class doesn't declare it. */
+        final Field field;
+
+        /** The field's offset for use with Unsafe, or -1 to use {@code field}. */
+        final long offset;
+
+        private FieldAccessor(Field field, Class<?> serializedType) {
+            this.field = field;
+            long offset = -1;
+            if (field != null && serializedType != null
+                    && (field.getModifiers() & (Modifier.STATIC | Modifier.VOLATILE)) == 0) {
+                Class<?> fieldType = field.getType();
+                if (fieldType.isPrimitive()
+                        ? (fieldType == serializedType && (fieldType == int.class || fieldType == long.class))
+                        : !serializedType.isPrimitive()) {
+                    offset = UNSAFE.objectFieldOffset(field);
+                }
+            }
+            this.offset = offset;
+        }
+
+        static FieldAccessor create(Class<?> declaringClass, ObjectStreamField osf) {
+            if (declaringClass == null) {
+                return MISSING;
+            }
+            try {
+                Field field = declaringClass.getDeclaredField(osf.getName());
+                field.setAccessible(true);
+                return new FieldAccessor(field, osf.getTypeInternal());
+            } catch (NoSuchFieldException ex) {
+                // The class doesn't declare the field. We won't try to resolve it again.
+                return MISSING;
+            }
+        }
+
+        int getInt(Object obj) throws IllegalAccessException {
+            return (offset != -1) ? UNSAFE.getInt(obj, offset) : field.getInt(obj);
+        }
+
+        void setInt(Object obj, boolean isInstance, int value) throws IllegalAccessException {
+            if (offset != -1 && isInstance) {
+                UNSAFE.putInt(obj, offset, value);
+            } else {
+                field.setInt(obj, value);
+            }
+        }
+
+        long getLong(Object obj) throws IllegalAccessException {
+            return (offset != -1) ? UNSAFE.getLong(obj, offset) : field.getLong(obj);
+        }
+
+        void setLong(Object obj, boolean isInstance, long value) throws IllegalAccessException {
+            if (offset != -1 && isInstance) {
+                UNSAFE.putLong(obj, offset, value);
+            } else {
+                field.setLong(obj, value);
+            }
+        }
+
+        Object get(Object obj) throws IllegalAccessException {
+            return (offset != -1) ? UNSAFE.getObject(obj, offset) : field.get(obj);
+        }
+
+        void set(Object obj, boolean isInstance, Object value) throws IllegalAccessException {
+            // Field.set checks the value's type, which Unsafe doesn't.
+            if (offset != -1 && isInstance && field.getType().isInstance(value)) {
+                UNSAFE.putObject(obj, offset, value);
+            } else {
+                field.set(obj, value);
             }
-            return reflectionFields.get(osf);
-        } catch (NoSuchFieldException ex) {
-            // The caller messed up. We'll return null and won't try to resolve this again.
-            return null;
         }
     }
 
@@ -1199,6 +1352,8 @@ public class ObjectStreamClass implements Serializable {
      */
     void setClass(Class<?> c) {
         resolvedClass = c;
+        fieldAccessors = null;
+        loadFieldAccessors = null;
     }
 
     /**
@@ -1211,6 +1366,7 @@ public class ObjectStreamClass implements Serializable {
      */
     void setFields(ObjectStreamField[] f) {
         fields = f;
+        fieldAccessors = null;
     }
 
     /**
@@ -1223,6 +1379,8 @@ public class ObjectStreamClass implements Serializable {
      */
     void setLoadFields(ObjectStreamField[] f) {
         loadFields = f;
+        loadFieldAccessors = null;
+        primitiveLoadFieldsSize = -1;
     }
 
     /**
@@ -16,14 +16,18 @@
 
 package java.io;
 
+import java.util.Arrays;
+
 /**
  * A specialization of IdentityHashMap<Object, int> for use when serializing objects.
  * We need to assign each object we write an int 'handle' (densely packed but not starting
  * at zero), and use the same handle any time we write the same object again.
+ *
+ * <p>This is an open-addressed table with linear probing. Its length is a power of two so
+ * that an index can be masked rather than divided, and it's kept no more than 3/4 full.
  */
 final class SerializationHandleMap {
-    /* Default load factor of 0.75; */
-    private static final int LOAD_FACTOR = 7500;
+    private static final int MINIMUM_CAPACITY = 32;
 
     private Object[] keys;
     private int[] values;
@@ -35,10 +39,7 @@ final class SerializationHandleMap {
     private int threshold;
 
     public SerializationHandleMap() {
-        this.size = 0;
-        this.threshold = 21; // Copied from IdentityHashMap.
-        int arraySize = (int) (((long) threshold * 10000) / LOAD_FACTOR);
-        resizeArrays(arraySize);
+        resizeArrays(MINIMUM_CAPACITY);
     }
 
     private void resizeArrays(int newSize) {
@@ -47,14 +48,16 @@ final class SerializationHandleMap {
 
         this.keys = new Object[newSize];
         this.values = new int[newSize];
+        this.threshold = (newSize >> 1) + (newSize >> 2);
 
         if (oldKeys != null) {
             for (int i = 0; i < oldKeys.length; ++i) {
                 Object key = oldKeys[i];
-                int value = oldValues[i];
-                int index = findIndex(key, keys);
-                keys[index] = key;
-                values[index] = value;
+                if (key != null) {
+                    int index = findIndex(key, keys);
+                    keys[index] = key;
+                    values[index] = oldValues[i];
+                }
             }
         }
     }
@@ -69,90 +72,66 @@ final class SerializationHandleMap {
 
     /**
      * Returns the index where the key is found at, or the index of the next
-     * empty spot if the key is not found in this table.
+     * empty spot if the key is not found in this table. The table is never
+     * full, so there is always an empty spot.
      */
-    private int findIndex(Object key, Object[] array) {
-        int length = array.length;
-        int index = getModuloHash(key, length);
-        int last = (index + length - 1) % length;
-        while (index != last) {
-            if (array[index] == key || array[index] == null) {
-                /*
-                 * Found the key, or the next empty spot (which means key is not
-                 * in the table)
-                 */
-                break;
-            }
-            index = (index + 1) % length;
+    private static int findIndex(Object key, Object[] array) {
+        int mask = array.length - 1;
+        int index = hash(key) & mask;
+        while (array[index] != key && array[index] != null) {
+            index = (index + 1) & mask;
         }
         return index;
     }
 
-    private int getModuloHash(Object key, int length) {
-        return (System.identityHashCode(key) & 0x7FFFFFFF) % length;
+    private static int hash(Object key) {
+        // Spread the high bits of the identity hash code into the low bits used as an index.
+        int h = System.identityHashCode(key);
+        return h ^ (h >>> 16);
     }
 
     public int put(Object key, int value) {
-        Object _key = key;
-        int _value = value;
-
-        int index = findIndex(_key, keys);
+        int index = findIndex(key, keys);
 
         // if the key doesn't exist in the table
-        if (keys[index] != _key) {
+        if (keys[index] != key) {
             if (++size > threshold) {
-                rehash();
-                index = findIndex(_key, keys);
+                resizeArrays(keys.length * 2);
+                index = findIndex(key, keys);
             }
             // insert the key and assign the value to -1 initially
-            keys[index] = _key;
+            keys[index] = key;
             values[index] = -1;
         }
 
         // insert value to where it needs to go, return the old value
         int result = values[index];
-        values[index] = _value;
+        values[index] = value;
         return result;
     }
 
-    private void rehash() {
-        int newSize = keys.length * 2;
-        resizeArrays(newSize);
-        threshold = (int) ((long) (keys.length) * LOAD_FACTOR / 10000);
-    }
-
     public int remove(Object key) {
-        boolean hashedOk;
-        int index, next, hash;
-        int result;
-        Object object;
-        index = next = findIndex(key, keys);
-
+        int index = findIndex(key, keys);
         if (keys[index] != key) {
             return -1;
         }
 
         // store the value for this key
-        result = values[index];
+        int result = values[index];
 
-        // shift the following elements up if needed
-        // until we reach an empty spot
-        int length = keys.length;
+        // Shift following elements of the probe sequence back into the gap until we
+        // reach an empty spot, so that they can still be found.
+        int mask = keys.length - 1;
+        int next = index;
         while (true) {
-            next = (next + 2) % length;
-            object = keys[next];
+            next = (next + 1) & mask;
+            Object object = keys[next];
             if (object == null) {
                 break;
             }
-
-            hash = getModuloHash(object, length);
-            hashedOk = hash > index;
-            if (next < index) {
-                hashedOk = hashedOk || (hash <= next);
-            } else {
-                hashedOk = hashedOk && (hash <= next);
-            }
-            if (!hashedOk) {
+            // The element can fill the gap unless its home slot lies cyclically in (index, next].
+            int home = hash(object) & mask;
+            if (((next - home) & mask) >= ((next - index) & mask)) {
                 keys[index] = object;
                 values[index] = values[next];
                 index = next;
@@ -167,6 +146,17 @@ final class SerializationHandleMap {
         return result;
     }
 
+    /**
+     * Removes all entries. The table keeps its current capacity, so a stream that is
+     * reset between objects doesn't reallocate or regrow it.
+     */
+    public void clear() {
+        if (size != 0) {
+            Arrays.fill(keys, null);
+            size = 0;
+        }
+    }
+
     public boolean isEmpty() {
         return size == 0;
     }
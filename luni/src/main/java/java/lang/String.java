@@ -28,6 +28,7 @@ import java.util.Comparator;
 import java.util.Formatter;
 import java.util.Locale;
 import java.util.regex.Pattern;
+import java.util.regex.PatternCache;
 import libcore.util.EmptyArray;
 
 /**
@@ -1752,7 +1753,7 @@ outer:
      * @since 1.4
      */
     public boolean matches(String regularExpression) {
-        return Pattern.matches(regularExpression, this);
+        return PatternCache.matches(regularExpression, this);
     }
 
     /**
@@ -1771,7 +1772,7 @@ outer:
      * @since 1.4
      */
     public String replaceAll(String regularExpression, String replacement) {
-        return Pattern.compile(regularExpression).matcher(this).replaceAll(replacement);
+        return PatternCache.replaceAll(regularExpression, this, replacement);
     }
 
     /**
@@ -1790,7 +1791,7 @@ outer:
      * @since 1.4
      */
     public String replaceFirst(String regularExpression, String replacement) {
-        return Pattern.compile(regularExpression).matcher(this).replaceFirst(replacement);
+        return PatternCache.replaceFirst(regularExpression, this, replacement);
     }
 
     /**
@@ -1829,7 +1830,7 @@ outer:
      */
     public String[] split(String regularExpression, int limit) {
         String[] result = java.util.regex.Splitter.fastSplit(regularExpression, this, limit);
-        return result != null ? result : Pattern.compile(regularExpression).split(this, limit);
+        return result != null ? result : PatternCache.get(regularExpression).split(this, limit);
     }
 
     /**
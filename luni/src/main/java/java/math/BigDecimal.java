@@ -171,6 +171,9 @@ public class BigDecimal extends Number implements Comparable<BigDecimal>, Serial
      */
     private static final BigDecimal[] ZERO_SCALED_BY = new BigDecimal[11];
 
+    /** Half of {@code 10^19}, the smallest power of ten that doesn't fit in a long. */
+    private static final long HALF_OF_TEN_POW_19 = 5000000000000000000L;
+
     /** An array filled with characters <code>'0'</code>. */
     private static final char[] CH_ZEROS = new char[100];
 
@@ -1047,7 +1050,18 @@ public class BigDecimal extends Number implements Comparable<BigDecimal>, Serial
                             scale,
                             roundingMode);
                 }
-
+                if (this.bitLength < 63 && divisor.bitLength < 60) {
+                    // u1 * 10^(scale - (s1 - s2)) overflows, but the quotient may not
+                    long quotient = divideScaledLongs(this.smallValue, -diffScale, divisor.smallValue);
+                    if (quotient != -1) {
+                        int fraction = (int) (quotient % 10);
+                        quotient /= 10;
+                        int sign = Long.signum(this.smallValue) * Long.signum(divisor.smallValue);
+                        quotient *= sign;
+                        quotient += roundingBehavior(((int)quotient) & 1, sign * fraction, roundingMode);
+                        return valueOf(quotient, scale);
+                    }
+                }
             }
         }
         BigInteger scaledDividend = this.getUnscaledValue();
@@ -1100,13 +1114,18 @@ public class BigDecimal extends Number implements Comparable<BigDecimal>, Serial
     }
 
     private static BigDecimal dividePrimitiveLongs(long scaledDividend, long scaledDivisor, int scale, RoundingMode roundingMode) {
+        if (scaledDividend == Long.MIN_VALUE && scaledDivisor == -1) {
+            return new BigDecimal(BigInteger.valueOf(scaledDividend).negate(), scale);
+        }
         long quotient = scaledDividend / scaledDivisor;
         long remainder = scaledDividend % scaledDivisor;
         int sign = Long.signum( scaledDividend ) * Long.signum( scaledDivisor );
         if (remainder != 0) {
-            // Checking if:  remainder * 2 >= scaledDivisor
+            // Checking if:  remainder >= scaledDivisor - remainder, which
+            // can't overflow even if the divisor has 63 significant bits
             int compRem;                                      // 'compare to remainder'
-            compRem = longCompareTo(Math.abs(remainder) * 2,Math.abs(scaledDivisor));
+            long absRemainder = Math.abs(remainder);
+            compRem = longCompareTo(absRemainder, Math.abs(scaledDivisor) - absRemainder);
             // To look if there is a carry
             quotient += roundingBehavior(((int)quotient) & 1,
                     sign * (5 + compRem),
@@ -1278,6 +1297,12 @@ public class BigDecimal extends Number implements Comparable<BigDecimal>, Serial
         || (divisor.isZero())) {
             return this.divide(divisor);
         }
+        if (this.bitLength < 63 && divisor.bitLength < 60) {
+            BigDecimal result = dividePrimitiveLongs(divisor, trailingZeros, mc);
+            if (result != null) {
+                return result;
+            }
+        }
         if (trailingZeros > 0) {
             // To append trailing zeros at end of dividend
             quotAndRem[0] = getUnscaledValue().multiply( Multiplication.powerOf10(trailingZeros) );
@@ -1316,6 +1341,76 @@ public class BigDecimal extends Number implements Comparable<BigDecimal>, Serial
         return new BigDecimal(integerQuot, safeLongToInt(newScale), mc);
     }
 
+    /**
+     * Performs {@link #divide(BigDecimal, MathContext)} in {@code long}
+     * arithmetic, or returns null if the quotient would overflow.
+     */
+    private BigDecimal dividePrimitiveLongs(BigDecimal divisor, long trailingZeros, MathContext mc) {
+        long diffScale = (long)scale - divisor.scale;
+        long newScale = diffScale + Math.max(trailingZeros, 0);
+        long quotient = divideScaledLongs(smallValue, Math.max(trailingZeros, 0), divisor.smallValue);
+        if (quotient == -1) {
+            return null;
+        }
+        if (quotient % 10 != 0) {
+            // Keep the rounding digit, which is in {4, 5, 6}
+            newScale++;
+        } else {
+            quotient /= 10;
+            // To strip trailing zeros until the preferred scale is reached
+            while (newScale > diffScale && quotient % 10 == 0) {
+                quotient /= 10;
+                newScale--;
+            }
+        }
+        if (Long.signum(smallValue) != Long.signum(divisor.smallValue)) {
+            quotient = -quotient;
+        }
+        // To perform rounding
+        BigDecimal result = new BigDecimal(quotient, safeLongToInt(newScale));
+        result.inplaceRound(mc);
+        return result;
+    }
+
+    /**
+     * Returns {@code q * 10 + r}, where {@code q} is the integer part of
+     * {@code |dividend| * 10^tenPow / |divisor|} and {@code r} is 0 if the
+     * division is exact, or 4, 5 or 6 if the discarded fraction is less than,
+     * equal to or greater than one half. Returns -1 if that doesn't fit in a
+     * long.
+     *
+     * <p>The dividend is scaled a few digits at a time by long division, so
+     * only the quotient needs to fit in a long. {@code |dividend|} must be at
+     * most {@code 2^62} and {@code |divisor|} at most {@code 2^59}, so
+     * that the remainder can always be multiplied by at least ten.
+     */
+    private static long divideScaledLongs(long dividend, long tenPow, long divisor) {
+        long absDivisor = Math.abs(divisor);
+        long quotient = Math.abs(dividend) / absDivisor;
+        long remainder = Math.abs(dividend) % absDivisor;
+        for (long zeros = tenPow; zeros > 0; ) {
+            int digits = (int) Math.min(zeros, MathUtils.LONG_POWERS_OF_TEN.length - 1);
+            while (bitLength(remainder) + LONG_POWERS_OF_TEN_BIT_LENGTH[digits] >= 64) {
+                digits--;
+            }
+            if (bitLength(quotient) + LONG_POWERS_OF_TEN_BIT_LENGTH[digits] >= 64) {
+                return -1;
+            }
+            long powerOfTen = MathUtils.LONG_POWERS_OF_TEN[digits];
+            long scaledRemainder = remainder * powerOfTen;
+            quotient = quotient * powerOfTen + scaledRemainder / absDivisor;
+            remainder = scaledRemainder % absDivisor;
+            zeros -= digits;
+        }
+        if (bitLength(quotient) + LONG_POWERS_OF_TEN_BIT_LENGTH[1] >= 64) {
+            return -1;
+        }
+        if (remainder == 0) {
+            return quotient * 10;
+        }
+        return quotient * 10 + 5 + longCompareTo(remainder * 2, absDivisor);
+    }
+
     /**
      * Returns a new {@code BigDecimal} whose value is the integral part of
      * {@code this / divisor}. The quotient is rounded down towards zero to the
@@ -1836,7 +1931,9 @@ public class BigDecimal extends Number implements Comparable<BigDecimal>, Serial
      *             precision.
      */
     public BigDecimal round(MathContext mc) {
-        BigDecimal thisBD = new BigDecimal(getUnscaledValue(), scale);
+        BigDecimal thisBD = (bitLength < 64)
+                ? new BigDecimal(smallValue, scale)
+                : new BigDecimal(getUnscaledValue(), scale);
 
         thisBD.inplaceRound(mc);
         return thisBD;
@@ -1886,6 +1983,18 @@ public class BigDecimal extends Number implements Comparable<BigDecimal>, Serial
         if(this.bitLength < 64 && -diffScale < MathUtils.LONG_POWERS_OF_TEN.length) {
             return dividePrimitiveLongs(this.smallValue, MathUtils.LONG_POWERS_OF_TEN[(int)-diffScale], newScale,roundingMode);
         }
+        if (this.bitLength < 64) {
+            // |u| < 2^63 < 10^19 <= 10^(s - newScale), so the quotient is zero
+            // and only the discarded fraction decides the rounding
+            int compRem = -1;
+            if (-diffScale == MathUtils.LONG_POWERS_OF_TEN.length) {
+                // Checking if:  |u| >= 10^19 / 2 (compared as negative numbers
+                // because |Long.MIN_VALUE| doesn't fit in a long)
+                compRem = longCompareTo(-HALF_OF_TEN_POW_19, -Math.abs(smallValue));
+            }
+            return valueOf(roundingBehavior(0, Long.signum(smallValue) * (5 + compRem), roundingMode),
+                    newScale);
+        }
         return divideBigIntegers(this.getUnscaledValue(),Multiplication.powerOf10(-diffScale),newScale,roundingMode);
     }
 
@@ -2077,8 +2186,14 @@ public class BigDecimal extends Number implements Comparable<BigDecimal>, Serial
         int valueSign = val.signum();
 
         if( thisSign == valueSign) {
-            if(this.scale == val.scale && this.bitLength<64 && val.bitLength<64 ) {
-                return (smallValue < val.smallValue) ? -1 : (smallValue > val.smallValue) ? 1 : 0;
+            if(this.bitLength<64 && val.bitLength<64 ) {
+                if (this.scale == val.scale) {
+                    return longCompareTo(smallValue, val.smallValue);
+                } else if (this.scale < val.scale) {
+                    return compareScaledLongs(smallValue, val.smallValue, (long)val.scale - this.scale);
+                } else {
+                    return -compareScaledLongs(val.smallValue, smallValue, (long)this.scale - val.scale);
+                }
             }
             long diffScale = (long)this.scale - val.scale;
             int diffPrecision = this.approxPrecision() - val.approxPrecision();
@@ -2104,6 +2219,25 @@ public class BigDecimal extends Number implements Comparable<BigDecimal>, Serial
         }
     }
 
+    /**
+     * Compares {@code a * 10^diffScale} with {@code b} without overflow, by
+     * comparing {@code a} with the integer part of {@code b / 10^diffScale}
+     * and then the fractional part with zero.
+     */
+    private static int compareScaledLongs(long a, long b, long diffScale) {
+        long bIntegerPart = 0;
+        long bFraction = b;
+        if (diffScale < MathUtils.LONG_POWERS_OF_TEN.length) {
+            long powerOfTen = MathUtils.LONG_POWERS_OF_TEN[(int)diffScale];
+            bIntegerPart = b / powerOfTen;
+            bFraction = b % powerOfTen;
+        }
+        if (a != bIntegerPart) {
+            return longCompareTo(a, bIntegerPart);
+        }
+        return -Long.signum(bFraction);
+    }
+
     /**
      * Returns {@code true} if {@code x} is a {@code BigDecimal} instance and if
      * this instance is equal to this big decimal. Two big decimals are equal if
@@ -2187,7 +2321,7 @@ public class BigDecimal extends Number implements Comparable<BigDecimal>, Serial
         if (toStringImage != null) {
             return toStringImage;
         }
-        if(bitLength < 32) {
+        if(bitLength < 63 || (bitLength == 63 && smallValue != Long.MIN_VALUE)) {
             toStringImage = Conversion.toDecimalScaledString(smallValue,scale);
             return toStringImage;
         }
@@ -2728,7 +2862,8 @@ public class BigDecimal extends Number implements Comparable<BigDecimal>, Serial
                     Long.signum(fraction) * (5 + compRem),
                     mc.getRoundingMode());
             // If after to add the increment the precision changed, we normalize the size
-            if (Math.log10(Math.abs(integer)) >= mc.getPrecision()) {
+            if (mc.getPrecision() < MathUtils.LONG_POWERS_OF_TEN.length
+                    && Math.abs(integer) >= MathUtils.LONG_POWERS_OF_TEN[mc.getPrecision()]) {
                 integer /= 10;
                 newScale--;
             }
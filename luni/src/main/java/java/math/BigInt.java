@@ -299,6 +299,14 @@ final class BigInt {
         Check(NativeBN.BN_add(this.bignum, this.bignum, a.bignum));
     }
 
+    void subtract(BigInt a) {
+        Check(NativeBN.BN_sub(this.bignum, this.bignum, a.bignum));
+    }
+
+    void subtractPositiveInt(int w) {
+        Check(NativeBN.BN_sub_word(this.bignum, w));
+    }
+
     static BigInt subtraction(BigInt a, BigInt b) {
         BigInt r = newBigInt();
         Check(NativeBN.BN_sub(r.bignum, a.bignum, b.bignum));
@@ -318,6 +326,31 @@ final class BigInt {
         return r;
     }
 
+    // The in-place operations below take a BN_CTX from newContext so that
+    // callers doing many operations can reuse one.
+
+    static int newContext() {
+        int ctx = NativeBN.BN_CTX_new();
+        Check(ctx != 0);
+        return ctx;
+    }
+
+    static void freeContext(int ctx) {
+        NativeBN.BN_CTX_free(ctx);
+    }
+
+    void multiply(BigInt a, int ctx) {
+        Check(NativeBN.BN_mul_ctx(this.bignum, this.bignum, a.bignum, ctx));
+    }
+
+    void modulus(BigInt m, int ctx) {
+        Check(NativeBN.BN_nnmod_ctx(this.bignum, this.bignum, m.bignum, ctx));
+    }
+
+    void modMultiply(BigInt a, BigInt m, int ctx) {
+        Check(NativeBN.BN_mod_mul(this.bignum, this.bignum, a.bignum, m.bignum, ctx));
+    }
+
     static BigInt bigExp(BigInt a, BigInt p) {
         // Sign of p is ignored!
         BigInt r = newBigInt();
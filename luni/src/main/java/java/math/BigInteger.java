@@ -37,6 +37,13 @@ import java.util.Random;
  * this implementation, so such methods may be inefficient. Use {@link
  * java.util.BitSet} for high-performance bitwise operations on
  * arbitrarily-large sequences of bits.
+ *
+ * <h3>Small Values</h3>
+ * Values whose magnitude fits in a {@code long} are created, added,
+ * subtracted, compared, divided and formatted on the Java heap, as are
+ * products of up to 256 bits. This avoids allocating (and finalizing) a
+ * native OpenSSL {@code BIGNUM} for each intermediate result of arithmetic
+ * on small numbers. Larger operands use OpenSSL.
  */
 public class BigInteger extends Number
         implements Comparable<BigInteger>, Serializable {
@@ -62,6 +69,15 @@ public class BigInteger extends Number
     /** The sign of this. */
     transient int sign;
 
+    /**
+     * Operands and products with at most this many ints are multiplied and
+     * divided on the Java heap.
+     */
+    private static final int MAX_JAVA_ARITHMETIC_LENGTH = 8;
+
+    /** Decimal strings of at most this many digits are parsed on the Java heap. */
+    private static final int MAX_JAVA_DECIMAL_DIGITS = 18;
+
     /** The {@code BigInteger} constant 0. */
     public static final BigInteger ZERO = new BigInteger(0, 0);
 
@@ -98,10 +114,12 @@ public class BigInteger extends Number
         setBigInt(bigInt);
     }
 
+    /**
+     * Constructs a number with the given sign and the magnitude {@code value},
+     * which is treated as unsigned.
+     */
     BigInteger(int sign, long value) {
-        BigInt bigInt = new BigInt();
-        bigInt.putULongInt(value, (sign < 0));
-        setBigInt(bigInt);
+        setJavaRepresentation(sign, 2, new int[] { (int) value, (int) (value >>> 32) });
     }
 
     /**
@@ -179,6 +197,9 @@ public class BigInteger extends Number
      *     representation of a {@code BigInteger}.
      */
     public BigInteger(String value) {
+        if (parseSmallDecimal(value)) {
+            return;
+        }
         BigInt bigInt = new BigInt();
         bigInt.putDecString(value);
         setBigInt(bigInt);
@@ -202,6 +223,9 @@ public class BigInteger extends Number
             throw new NullPointerException("value == null");
         }
         if (radix == 10) {
+            if (parseSmallDecimal(value)) {
+                return;
+            }
             BigInt bigInt = new BigInt();
             bigInt.putDecString(value);
             setBigInt(bigInt);
@@ -326,6 +350,33 @@ public class BigInteger extends Number
         }
     }
 
+    /**
+     * Returns true if this has a Java representation whose value fits in a
+     * {@code long}.
+     */
+    private boolean isSmall() {
+        return javaIsValid && (numberLength == 1 || (numberLength == 2 && digits[1] >= 0));
+    }
+
+    /**
+     * Returns the value of this, which must be {@link #isSmall small}.
+     */
+    private long smallValue() {
+        long magnitude = (numberLength == 1)
+                ? digits[0] & 0xFFFFFFFFL
+                : ((long) digits[1]) << 32 | digits[0] & 0xFFFFFFFFL;
+        return sign < 0 ? -magnitude : magnitude;
+    }
+
+    /**
+     * Returns true if this and {@code value} have Java representations that
+     * are small enough to be multiplied or divided on the Java heap.
+     */
+    private boolean isJavaArithmeticOperand(BigInteger value, int maxLength) {
+        return javaIsValid && value.javaIsValid && numberLength <= maxLength
+                && value.numberLength <= maxLength;
+    }
+
     /** Returns a {@code BigInteger} whose value is equal to {@code value}. */
     public static BigInteger valueOf(long value) {
         if (value < 0) {
@@ -353,6 +404,10 @@ public class BigInteger extends Number
      * this}.
      */
     public BigInteger abs() {
+        if (javaIsValid) {
+            // digits are never modified, so they can be shared
+            return (sign >= 0) ? this : new BigInteger(1, numberLength, digits);
+        }
         BigInt bigInt = getBigInt();
         if (bigInt.sign() >= 0) {
             return this;
@@ -366,6 +421,9 @@ public class BigInteger extends Number
      * Returns a {@code BigInteger} whose value is the {@code -this}.
      */
     public BigInteger negate() {
+        if (javaIsValid) {
+            return (sign == 0) ? this : new BigInteger(-sign, numberLength, digits);
+        }
         BigInt bigInt = getBigInt();
         int sign = bigInt.sign();
         if (sign == 0) {
@@ -380,6 +438,16 @@ public class BigInteger extends Number
      * Returns a {@code BigInteger} whose value is {@code this + value}.
      */
     public BigInteger add(BigInteger value) {
+        if (isSmall() && value.isSmall()) {
+            long a = smallValue();
+            long b = value.smallValue();
+            long result = a + b;
+            if (((a ^ result) & (b ^ result)) >= 0) {
+                return valueOf(result);
+            }
+            // a and b have the same sign, and |a| + |b| fits in an unsigned long.
+            return new BigInteger(sign, Math.abs(a) + Math.abs(b));
+        }
         BigInt lhs = getBigInt();
         BigInt rhs = value.getBigInt();
         if (rhs.sign() == 0) {
@@ -395,6 +463,16 @@ public class BigInteger extends Number
      * Returns a {@code BigInteger} whose value is {@code this - value}.
      */
     public BigInteger subtract(BigInteger value) {
+        if (isSmall() && value.isSmall()) {
+            long a = smallValue();
+            long b = value.smallValue();
+            long result = a - b;
+            if (((a ^ b) & (a ^ result)) >= 0) {
+                return valueOf(result);
+            }
+            // a and b have opposite signs, and |a| + |b| fits in an unsigned long.
+            return new BigInteger(sign, Math.abs(a) + Math.abs(b));
+        }
         BigInt lhs = getBigInt();
         BigInt rhs = value.getBigInt();
         if (rhs.sign() == 0) {
@@ -766,9 +844,33 @@ public class BigInteger extends Number
      * @throws NullPointerException if {@code value == null}.
      */
     public int compareTo(BigInteger value) {
+        if (javaIsValid && value.javaIsValid) {
+            if (sign != value.sign) {
+                return sign < value.sign ? -1 : 1;
+            }
+            return sign * compareMagnitudes(value);
+        }
         return BigInt.cmp(getBigInt(), value.getBigInt());
     }
 
+    /**
+     * Returns -1, 0 or 1 as the magnitude of this is less than, equal to or
+     * greater than that of {@code value}. Both must have Java representations.
+     */
+    private int compareMagnitudes(BigInteger value) {
+        if (numberLength != value.numberLength) {
+            return numberLength < value.numberLength ? -1 : 1;
+        }
+        for (int i = numberLength - 1; i >= 0; i--) {
+            if (digits[i] != value.digits[i]) {
+                // compare as unsigned ints
+                return (digits[i] ^ Integer.MIN_VALUE) < (value.digits[i] ^ Integer.MIN_VALUE)
+                        ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
     /**
      * Returns the minimum of this {@code BigInteger} and {@code value}.
      *
@@ -819,6 +921,9 @@ public class BigInteger extends Number
      */
     @Override
     public String toString() {
+        if (isSmall()) {
+            return Long.toString(smallValue());
+        }
         return getBigInt().decString();
     }
 
@@ -833,7 +938,7 @@ public class BigInteger extends Number
      */
     public String toString(int radix) {
         if (radix == 10) {
-            return getBigInt().decString();
+            return toString();
         } else {
             prepareJavaRepresentation();
             return Conversion.bigInteger2String(this, radix);
@@ -849,6 +954,16 @@ public class BigInteger extends Number
      * @throws NullPointerException if {@code value == null}.
      */
     public BigInteger gcd(BigInteger value) {
+        if (isSmall() && value.isSmall()) {
+            long a = Math.abs(smallValue());
+            long b = Math.abs(value.smallValue());
+            while (b != 0) {
+                long t = a % b;
+                a = b;
+                b = t;
+            }
+            return valueOf(a);
+        }
         return new BigInteger(BigInt.gcd(getBigInt(), value.getBigInt()));
     }
 
@@ -858,6 +973,17 @@ public class BigInteger extends Number
      * @throws NullPointerException if {@code value == null}.
      */
     public BigInteger multiply(BigInteger value) {
+        if (javaIsValid && value.javaIsValid
+                && numberLength + value.numberLength <= MAX_JAVA_ARITHMETIC_LENGTH) {
+            if (sign == 0 || value.sign == 0) {
+                return ZERO;
+            }
+            int resLength = numberLength + value.numberLength;
+            int[] resDigits = new int[resLength];
+            Multiplication.multArraysPAP(digits, numberLength, value.digits, value.numberLength,
+                    resDigits);
+            return new BigInteger(sign * value.sign, resLength, resDigits);
+        }
         return new BigInteger(BigInt.product(getBigInt(), value.getBigInt()));
     }
 
@@ -870,6 +996,25 @@ public class BigInteger extends Number
         if (exp < 0) {
             throw new ArithmeticException("exp < 0: " + exp);
         }
+        if (javaIsValid && numberLength <= MAX_JAVA_ARITHMETIC_LENGTH) {
+            int magnitudeBits = (numberLength << 5)
+                    - Integer.numberOfLeadingZeros(digits[numberLength - 1]);
+            if ((long) magnitudeBits * exp <= MAX_JAVA_ARITHMETIC_LENGTH * 32) {
+                // every intermediate product is no longer than the result
+                BigInteger result = ONE;
+                BigInteger base = this;
+                while (exp != 0) {
+                    if ((exp & 1) != 0) {
+                        result = result.multiply(base);
+                    }
+                    exp >>= 1;
+                    if (exp != 0) {
+                        base = base.multiply(base);
+                    }
+                }
+                return result;
+            }
+        }
         return new BigInteger(BigInt.exp(getBigInt(), exp));
     }
 
@@ -884,6 +1029,15 @@ public class BigInteger extends Number
      * @see #remainder
      */
     public BigInteger[] divideAndRemainder(BigInteger divisor) {
+        if (isSmall() && divisor.isSmall()) {
+            long a = smallValue();
+            long b = divisor.checkedSmallDivisor();
+            return new BigInteger[] { valueOf(a / b), valueOf(a % b) };
+        }
+        if (isJavaArithmeticOperand(divisor, MAX_JAVA_ARITHMETIC_LENGTH)
+                && divisor.numberLength == 1) {
+            return divideAndRemainderByInt(divisor);
+        }
         BigInt divisorBigInt = divisor.getBigInt();
         BigInt quotient = new BigInt();
         BigInt remainder = new BigInt();
@@ -900,6 +1054,13 @@ public class BigInteger extends Number
      * @throws ArithmeticException if {@code divisor == 0}.
      */
     public BigInteger divide(BigInteger divisor) {
+        if (isSmall() && divisor.isSmall()) {
+            return valueOf(smallValue() / divisor.checkedSmallDivisor());
+        }
+        if (isJavaArithmeticOperand(divisor, MAX_JAVA_ARITHMETIC_LENGTH)
+                && divisor.numberLength == 1) {
+            return divideAndRemainderByInt(divisor)[0];
+        }
         BigInt quotient = new BigInt();
         BigInt.division(getBigInt(), divisor.getBigInt(), quotient, null);
         return new BigInteger(quotient);
@@ -915,6 +1076,13 @@ public class BigInteger extends Number
      * @throws ArithmeticException if {@code divisor == 0}.
      */
     public BigInteger remainder(BigInteger divisor) {
+        if (isSmall() && divisor.isSmall()) {
+            return valueOf(smallValue() % divisor.checkedSmallDivisor());
+        }
+        if (isJavaArithmeticOperand(divisor, MAX_JAVA_ARITHMETIC_LENGTH)
+                && divisor.numberLength == 1) {
+            return divideAndRemainderByInt(divisor)[1];
+        }
         BigInt remainder = new BigInt();
         BigInt.division(getBigInt(), divisor.getBigInt(), null, remainder);
         return new BigInteger(remainder);
@@ -978,6 +1146,11 @@ public class BigInteger extends Number
         if (m.signum() <= 0) {
             throw new ArithmeticException("m.signum() <= 0");
         }
+        if (isSmall() && m.isSmall()) {
+            long modulus = m.smallValue();
+            long result = smallValue() % modulus;
+            return valueOf(result < 0 ? result + modulus : result);
+        }
         return new BigInteger(BigInt.modulus(getBigInt(), m.getBigInt()));
     }
 
@@ -1032,6 +1205,69 @@ public class BigInteger extends Number
 
     /* Private Methods */
 
+    /**
+     * Returns the value of this small divisor, throwing if it is zero.
+     */
+    private long checkedSmallDivisor() {
+        if (sign == 0) {
+            throw new ArithmeticException("BigInteger division by zero");
+        }
+        return smallValue();
+    }
+
+    /**
+     * Divides this by {@code divisor}, whose magnitude fits in an int, on the
+     * Java heap. Returns the quotient and the remainder, which has the sign of
+     * this.
+     */
+    private BigInteger[] divideAndRemainderByInt(BigInteger divisor) {
+        if (divisor.sign == 0) {
+            throw new ArithmeticException("BigInteger division by zero");
+        }
+        int[] quotientDigits = new int[numberLength];
+        int remainder = Division.divideArrayByInt(quotientDigits, digits, numberLength,
+                divisor.digits[0]);
+        return new BigInteger[] {
+                new BigInteger(sign * divisor.sign, numberLength, quotientDigits),
+                new BigInteger(sign, remainder & 0xFFFFFFFFL) };
+    }
+
+    /**
+     * Parses {@code value} as a decimal integer on the Java heap, returning
+     * false if it is too long to be sure that its value fits in a {@code long}.
+     * Validates {@code value} like {@code BigInt.checkString}.
+     */
+    private boolean parseSmallDecimal(String value) {
+        int length = value.length();
+        if (length == 0) {
+            return false;
+        }
+        int i = 0;
+        int resultSign = 1;
+        char first = value.charAt(0);
+        if (first == '-' || first == '+') {
+            resultSign = (first == '-') ? -1 : 1;
+            i++;
+        }
+        if (length - i > MAX_JAVA_DECIMAL_DIGITS) {
+            return false;
+        }
+        if (i == length) {
+            throw new NumberFormatException("Invalid BigInteger: " + value);
+        }
+        long magnitude = 0;
+        for (; i < length; i++) {
+            int digit = Character.digit(value.charAt(i), 10);
+            if (digit == -1) {
+                throw new NumberFormatException("Invalid BigInteger: " + value);
+            }
+            magnitude = magnitude * 10 + digit;
+        }
+        setJavaRepresentation(resultSign, 2,
+                new int[] { (int) magnitude, (int) (magnitude >>> 32) });
+        return true;
+    }
+
     /**
      * Returns the two's complement representation of this BigInteger in a byte
      * array.
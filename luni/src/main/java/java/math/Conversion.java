@@ -293,7 +293,7 @@ class Conversion {
         return result1.toString();
     }
 
-    /* can process only 32-bit numbers */
+    /* can process any long except Long.MIN_VALUE */
     static String toDecimalScaledString(long value, int scale) {
         int resLengthInChars;
         int currentChar;
@@ -322,12 +322,12 @@ class Conversion {
                     return result1.toString();
             }
         }
-        // one 32-bit unsigned value may contains 10 decimal digits
-        resLengthInChars = 18;
+        // one 63-bit unsigned value may contain 19 decimal digits
         // Explanation why +1+7:
         // +1 - one char for sign if needed.
         // +7 - For "special case 2" (see below) we have 7 free chars for
         //  inserting necessary scaled digits.
+        resLengthInChars = 19 + 1 + 7;
         result = new char[resLengthInChars+1];
         //  Allocated [resLengthInChars+1] characters.
         // a free latest character may be used for "special case 1" (see below)
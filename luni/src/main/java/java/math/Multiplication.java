@@ -80,8 +80,34 @@ class Multiplication {
     }
 
     // BEGIN android-note: multiply has been removed in favor of using OpenSSL BIGNUM
+    // except for small operands, which BigInteger multiplies with multArraysPAP.
     // END android-note
 
+    /**
+     * Multiplies two magnitudes using the pencil and paper algorithm, which is
+     * fastest for the small operands it is used for.
+     * @param aDigits the magnitude of the first factor, little-endian
+     * @param aLen the number of ints of {@code aDigits} to use, at least 1
+     * @param bDigits the magnitude of the second factor, little-endian
+     * @param bLen the number of ints of {@code bDigits} to use, at least 1
+     * @param resDigits a zeroed array of at least {@code aLen + bLen} ints
+     *     that receives the product
+     */
+    static void multArraysPAP(int[] aDigits, int aLen, int[] bDigits, int bLen,
+            int[] resDigits) {
+        for (int i = 0; i < aLen; i++) {
+            long aI = aDigits[i] & 0xFFFFFFFFL;
+            long carry = 0;
+            for (int j = 0; j < bLen; j++) {
+                // at most (2^32 - 1)^2 + 2 * (2^32 - 1), which fits in an unsigned long
+                carry += aI * (bDigits[j] & 0xFFFFFFFFL) + (resDigits[i + j] & 0xFFFFFFFFL);
+                resDigits[i + j] = (int) carry;
+                carry >>>= 32;
+            }
+            resDigits[i + bLen] = (int) carry;
+        }
+    }
+
     /**
      * Multiplies a number by a positive integer.
      * @param val an arbitrary {@code BigInteger}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package java.math;
+
+/**
+ * A mutable arbitrary-precision signed integer for accumulating the result of
+ * many operations, such as a sum, a factorial or the evaluation of a
+ * polynomial. Each {@link BigInteger} operation allocates a new native OpenSSL
+ * {@code BIGNUM} for its result. This class instead updates a single {@code
+ * BIGNUM} in place, and reuses a single {@code BN_CTX} for the temporaries of
+ * multiplication and reduction. Call {@link #toBigInteger} to get the result.
+ *
+ * <p>Instances are not safe for use by multiple threads.
+ *
+ * @hide
+ */
+public final class MutableBigInteger {
+    private final BigInt value = new BigInt();
+
+    /** Holds {@code long} operands that don't fit in a word. Lazily allocated. */
+    private BigInt scratch;
+
+    /** The native BN_CTX, or 0 if it hasn't been allocated yet. */
+    private int ctx;
+
+    /**
+     * Constructs an accumulator with the value 0.
+     */
+    public MutableBigInteger() {
+        value.putLongInt(0);
+    }
+
+    /**
+     * Constructs an accumulator with the given value.
+     */
+    public MutableBigInteger(BigInteger value) {
+        this();
+        set(value);
+    }
+
+    /**
+     * Constructs an accumulator with the given value.
+     */
+    public MutableBigInteger(long value) {
+        this();
+        set(value);
+    }
+
+    @Override protected void finalize() throws Throwable {
+        try {
+            if (ctx != 0) {
+                BigInt.freeContext(ctx);
+                ctx = 0;
+            }
+        } finally {
+            super.finalize();
+        }
+    }
+
+    private int ctx() {
+        if (ctx == 0) {
+            ctx = BigInt.newContext();
+        }
+        return ctx;
+    }
+
+    private BigInt scratch(long value) {
+        if (scratch == null) {
+            scratch = new BigInt();
+        }
+        scratch.putLongInt(value);
+        return scratch;
+    }
+
+    /**
+     * Sets this to {@code value}.
+     */
+    public MutableBigInteger set(BigInteger value) {
+        this.value.putCopy(value.getBigInt());
+        return this;
+    }
+
+    /**
+     * Sets this to {@code value}.
+     */
+    public MutableBigInteger set(long value) {
+        this.value.putLongInt(value);
+        return this;
+    }
+
+    /**
+     * Sets this to {@code this + value}.
+     */
+    public MutableBigInteger add(BigInteger value) {
+        this.value.add(value.getBigInt());
+        return this;
+    }
+
+    /**
+     * Sets this to {@code this + value}.
+     */
+    public MutableBigInteger add(long value) {
+        // word operands are passed to OpenSSL as jint, so keep them positive
+        if (value >= 0 && value <= Integer.MAX_VALUE) {
+            this.value.addPositiveInt((int) value);
+        } else if (value < 0 && value >= -Integer.MAX_VALUE) {
+            this.value.subtractPositiveInt((int) -value);
+        } else {
+            this.value.add(scratch(value));
+        }
+        return this;
+    }
+
+    /**
+     * Sets this to {@code this - value}.
+     */
+    public MutableBigInteger subtract(BigInteger value) {
+        this.value.subtract(value.getBigInt());
+        return this;
+    }
+
+    /**
+     * Sets this to {@code this - value}.
+     */
+    public MutableBigInteger subtract(long value) {
+        if (value == Long.MIN_VALUE) {
+            this.value.subtract(scratch(value));
+            return this;
+        }
+        return add(-value);
+    }
+
+    /**
+     * Sets this to {@code this * value}.
+     */
+    public MutableBigInteger multiply(BigInteger value) {
+        this.value.multiply(value.getBigInt(), ctx());
+        return this;
+    }
+
+    /**
+     * Sets this to {@code this * value}.
+     */
+    public MutableBigInteger multiply(long value) {
+        long magnitude = Math.abs(value); // negative for Long.MIN_VALUE
+        if (magnitude >= 0 && magnitude <= Integer.MAX_VALUE) {
+            this.value.multiplyByPositiveInt((int) magnitude);
+            if (value < 0) {
+                this.value.setSign(-this.value.sign());
+            }
+        } else {
+            this.value.multiply(scratch(value), ctx());
+        }
+        return this;
+    }
+
+    /**
+     * Sets this to {@code this mod m}, which is in the interval {@code [0, m)}.
+     *
+     * @throws ArithmeticException if {@code m <= 0}.
+     */
+    public MutableBigInteger mod(BigInteger m) {
+        if (m.signum() <= 0) {
+            throw new ArithmeticException("m.signum() <= 0");
+        }
+        this.value.modulus(m.getBigInt(), ctx());
+        return this;
+    }
+
+    /**
+     * Sets this to {@code (this * value) mod m}, which is in the interval
+     * {@code [0, m)}. This is cheaper than a multiplication followed by a
+     * reduction.
+     *
+     * @throws ArithmeticException if {@code m <= 0}.
+     */
+    public MutableBigInteger multiplyMod(BigInteger value, BigInteger m) {
+        if (m.signum() <= 0) {
+            throw new ArithmeticException("m.signum() <= 0");
+        }
+        this.value.modMultiply(value.getBigInt(), m.getBigInt(), ctx());
+        return this;
+    }
+
+    /**
+     * Returns the sign of this: -1, 0 or 1.
+     */
+    public int signum() {
+        return value.sign();
+    }
+
+    /**
+     * Returns a {@code BigInteger} equal to the current value of this.
+     */
+    public BigInteger toBigInteger() {
+        return new BigInteger(value.copy());
+    }
+
+    /**
+     * Returns the current value of this in decimal.
+     */
+    @Override public String toString() {
+        return value.decString();
+    }
+}
@@ -30,6 +30,12 @@ final class NativeBN {
     public static native void BN_free(int a);
     // void BN_free(BIGNUM *a);
 
+    public static native int BN_CTX_new();
+    // BN_CTX *BN_CTX_new(void);
+
+    public static native void BN_CTX_free(int ctx);
+    // void BN_CTX_free(BN_CTX *c);
+
     public static native int BN_cmp(int a, int b);
     // int BN_cmp(const BIGNUM *a, const BIGNUM *b);
 
@@ -128,6 +134,9 @@ final class NativeBN {
     public static native boolean BN_mul(int r, int a, int b);
     // int BN_mul(BIGNUM *r, const BIGNUM *a, const BIGNUM *b, BN_CTX *ctx);
 
+    public static native boolean BN_mul_ctx(int r, int a, int b, int ctx);
+    // Like BN_mul, but with a caller-owned BN_CTX.
+
     public static native boolean BN_exp(int r, int a, int p);
     // int BN_exp(BIGNUM *r, const BIGNUM *a, const BIGNUM *p, BN_CTX *ctx);
 
@@ -141,6 +150,12 @@ final class NativeBN {
     public static native boolean BN_nnmod(int r, int a, int m);
     // int BN_nnmod(BIGNUM *r, const BIGNUM *a, const BIGNUM *m, BN_CTX *ctx);
 
+    public static native boolean BN_nnmod_ctx(int r, int a, int m, int ctx);
+    // Like BN_nnmod, but with a caller-owned BN_CTX.
+
+    public static native boolean BN_mod_mul(int r, int a, int b, int m, int ctx);
+    // int BN_mod_mul(BIGNUM *r, const BIGNUM *a, const BIGNUM *b, const BIGNUM *m, BN_CTX *ctx);
+
     public static native boolean BN_mod_exp(int r, int a, int p, int m);
     // int BN_mod_exp(BIGNUM *r, const BIGNUM *a, const BIGNUM *p, const BIGNUM *m, BN_CTX *ctx);
 
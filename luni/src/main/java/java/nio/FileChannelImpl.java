@@ -367,8 +367,8 @@ final class FileChannelImpl extends FileChannel {
             return 0;
         }
 
-        // Although sendfile(2) originally supported writing to a regular file.
-        // In Linux 2.6 and later, it only supports writing to sockets.
+        // We can't use sendfile(2) here: it writes at the output file's current
+        // offset, but we must write at 'position' without moving that offset.
 
         // If our source is a regular file, mmap(2) rather than reading.
         // Callers should only be using transferFrom for large transfers,
@@ -413,25 +413,20 @@ final class FileChannelImpl extends FileChannel {
         count = Math.min(count, size() - position);
 
         // Try sendfile(2) first...
-        boolean completed = false;
+        FileDescriptor outFd = null;
+        boolean blocking = true;
         if (target instanceof SocketChannelImpl) {
-            FileDescriptor outFd = ((SocketChannelImpl) target).getFD();
-            try {
-                begin();
-                try {
-                    MutableLong offset = new MutableLong(position);
-                    long rc = Libcore.os.sendfile(outFd, fd, offset, count);
-                    completed = true;
-                    return rc;
-                } catch (ErrnoException errnoException) {
-                    // If the OS doesn't support what we asked for, we want to fall through and
-                    // try a different approach. If it does support it, but it failed, we're done.
-                    if (errnoException.errno != ENOSYS && errnoException.errno != EINVAL) {
-                        throw errnoException.rethrowAsIOException();
-                    }
-                }
-            } finally {
-                end(completed);
+            SocketChannelImpl socketChannel = (SocketChannelImpl) target;
+            outFd = socketChannel.getFD();
+            blocking = socketChannel.isBlocking();
+        } else if (target instanceof FileChannelImpl) {
+            // Since Linux 2.6.33 the output may be any file, not just a socket.
+            outFd = ((FileChannelImpl) target).fd;
+        }
+        if (outFd != null) {
+            long rc = sendfile(outFd, position, count, blocking);
+            if (rc != -1) {
+                return rc;
             }
         }
         // ...fall back to write(2).
@@ -444,6 +439,53 @@ final class FileChannelImpl extends FileChannel {
         }
     }
 
+    /**
+     * Copies up to {@code count} bytes starting at {@code position} to {@code
+     * outFd} without copying them through user space. A single sendfile(2) may
+     * transfer fewer bytes than requested, so this loops until the transfer is
+     * complete, the end of the file is reached, or a non-blocking target would
+     * block. Returns the number of bytes transferred, or -1 if the kernel
+     * can't sendfile(2) to {@code outFd} and the caller should fall back.
+     */
+    private long sendfile(FileDescriptor outFd, long position, long count, boolean blocking)
+            throws IOException {
+        MutableLong offset = new MutableLong(position);
+        long transferred = 0;
+        boolean completed = false;
+        try {
+            begin();
+            while (transferred < count) {
+                long rc;
+                try {
+                    rc = Libcore.os.sendfile(outFd, fd, offset, count - transferred);
+                } catch (ErrnoException errnoException) {
+                    if (errnoException.errno == EAGAIN && !blocking) {
+                        break; // The target can't take any more right now.
+                    }
+                    // If the OS doesn't support what we asked for, we want to fall through and
+                    // try a different approach. If it does support it, but it failed, we're done.
+                    if (transferred == 0
+                            && (errnoException.errno == ENOSYS || errnoException.errno == EINVAL)) {
+                        completed = true;
+                        return -1;
+                    }
+                    if (transferred > 0) {
+                        break; // Report what we did transfer; the error will recur on the next call.
+                    }
+                    throw errnoException.rethrowAsIOException();
+                }
+                if (rc == 0) {
+                    break; // The file was truncated underneath us.
+                }
+                transferred += rc;
+            }
+            completed = true;
+            return transferred;
+        } finally {
+            end(completed);
+        }
+    }
+
     public FileChannel truncate(long size) throws IOException {
         checkOpen();
         if (size < 0) {
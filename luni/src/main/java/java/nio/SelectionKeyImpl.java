@@ -37,6 +37,13 @@ final class SelectionKeyImpl extends AbstractSelectionKey {
 
     private SelectorImpl selector;
 
+    /**
+     * Used by SelectorImpl when it's backed by epoll: the id this key's fd is registered
+     * with, and the events currently registered with the kernel. Guarded by the selector.
+     */
+    int epollId;
+    int epollEvents;
+
     public SelectionKeyImpl(AbstractSelectableChannel channel, int operations,
             Object attachment, SelectorImpl selector) {
         this.channel = channel;
@@ -72,6 +79,7 @@ final class SelectionKeyImpl extends AbstractSelectionKey {
         }
         synchronized (selector.keysLock) {
             interestOps = operations;
+            selector.interestOpsChanged(this);
         }
         return this;
     }
@@ -28,9 +28,11 @@ import java.nio.channels.spi.AbstractSelectableChannel;
 import java.nio.channels.spi.AbstractSelectionKey;
 import java.nio.channels.spi.AbstractSelector;
 import java.nio.channels.spi.SelectorProvider;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
@@ -39,12 +41,16 @@ import libcore.io.ErrnoException;
 import libcore.io.IoBridge;
 import libcore.io.IoUtils;
 import libcore.io.Libcore;
+import libcore.io.StructEpollEvent;
 import libcore.io.StructPollfd;
 import libcore.util.EmptyArray;
 import static libcore.io.OsConstants.*;
 
 /*
- * Default implementation of java.nio.channels.Selector
+ * Default implementation of java.nio.channels.Selector. This uses poll(2) by default, or
+ * epoll(7) if requested by SelectorProviderImpl. With poll, each select costs time
+ * proportional to the number of registered keys; with epoll, the kernel maintains the
+ * interest set and we only pay for interest ops changes and ready keys.
  */
 final class SelectorImpl extends AbstractSelector {
 
@@ -80,7 +86,30 @@ final class SelectorImpl extends AbstractSelector {
 
     private final UnsafeArrayList<StructPollfd> pollFds = new UnsafeArrayList<StructPollfd>(StructPollfd.class, 8);
 
+    /**
+     * The epoll instance, or null if this selector uses poll. The wakeup pipe is
+     * registered with the reserved data value {@code WAKEUP_ID}; every key is registered
+     * with its own id so that ready events can be mapped back to keys.
+     */
+    private final FileDescriptor epollFd;
+    private static final int WAKEUP_ID = 0;
+    private static final int MAX_EPOLL_EVENTS = 4096;
+    private int nextEpollId = WAKEUP_ID + 1;
+    private final HashMap<Integer, SelectionKeyImpl> epollKeys = new HashMap<Integer, SelectionKeyImpl>();
+    private StructEpollEvent[] epollEvents = new StructEpollEvent[8];
+    private final StructEpollEvent epollCtlEvent = new StructEpollEvent();
+
+    /**
+     * Keys whose interest ops have changed since the last select, guarded by keysLock.
+     * These are applied to the epoll instance incrementally at the start of each select.
+     */
+    private final ArrayList<SelectionKeyImpl> pendingEpollUpdates = new ArrayList<SelectionKeyImpl>();
+
     public SelectorImpl(SelectorProvider selectorProvider) throws IOException {
+        this(selectorProvider, false);
+    }
+
+    public SelectorImpl(SelectorProvider selectorProvider, boolean useEpoll) throws IOException {
         super(selectorProvider);
 
         /*
@@ -93,8 +122,19 @@ final class SelectorImpl extends AbstractSelector {
             wakeupIn = pipeFds[0];
             wakeupOut = pipeFds[1];
             IoUtils.setBlocking(wakeupIn, false);
-            pollFds.add(new StructPollfd());
-            setPollFd(0, wakeupIn, POLLIN, null);
+            if (useEpoll) {
+                epollFd = Libcore.os.epoll_create(MAX_EPOLL_EVENTS);
+                epollCtlEvent.events = EPOLLIN;
+                epollCtlEvent.data = WAKEUP_ID;
+                Libcore.os.epoll_ctl(epollFd, EPOLL_CTL_ADD, wakeupIn, epollCtlEvent);
+                for (int i = 0; i < epollEvents.length; ++i) {
+                    epollEvents[i] = new StructEpollEvent();
+                }
+            } else {
+                epollFd = null;
+                pollFds.add(new StructPollfd());
+                setPollFd(0, wakeupIn, POLLIN, null);
+            }
         } catch (ErrnoException errnoException) {
             throw errnoException.rethrowAsIOException();
         }
@@ -107,6 +147,7 @@ final class SelectorImpl extends AbstractSelector {
                 synchronized (selectedKeys) {
                     IoUtils.close(wakeupIn);
                     IoUtils.close(wakeupOut);
+                    IoUtils.close(epollFd);
                     doCancel();
                     for (SelectionKey sk : mutableKeys) {
                         deregister((AbstractSelectionKey) sk);
@@ -126,7 +167,14 @@ final class SelectorImpl extends AbstractSelector {
                 SelectionKeyImpl selectionKey = new SelectionKeyImpl(channel, operations,
                         attachment, this);
                 mutableKeys.add(selectionKey);
-                ensurePollFdsCapacity();
+                if (epollFd != null) {
+                    synchronized (keysLock) {
+                        selectionKey.epollId = nextEpollId++;
+                        pendingEpollUpdates.add(selectionKey);
+                    }
+                } else {
+                    ensurePollFdsCapacity();
+                }
                 return selectionKey;
             }
         }
@@ -168,7 +216,11 @@ final class SelectorImpl extends AbstractSelector {
                     doCancel();
                     boolean isBlock = (timeout != 0);
                     synchronized (keysLock) {
-                        preparePollFds();
+                        if (epollFd != null) {
+                            applyEpollUpdates();
+                        } else {
+                            preparePollFds();
+                        }
                     }
                     int rc = -1;
                     try {
@@ -176,7 +228,11 @@ final class SelectorImpl extends AbstractSelector {
                             begin();
                         }
                         try {
-                            rc = Libcore.os.poll(pollFds.array(), (int) timeout);
+                            if (epollFd != null) {
+                                rc = Libcore.os.epoll_wait(epollFd, epollEvents, (int) timeout);
+                            } else {
+                                rc = Libcore.os.poll(pollFds.array(), (int) timeout);
+                            }
                         } catch (ErrnoException errnoException) {
                             if (errnoException.errno != EINTR) {
                                 throw errnoException.rethrowAsIOException();
@@ -188,7 +244,10 @@ final class SelectorImpl extends AbstractSelector {
                         }
                     }
 
-                    int readyCount = (rc > 0) ? processPollFds() : 0;
+                    int readyCount = 0;
+                    if (rc > 0) {
+                        readyCount = (epollFd != null) ? processEpollEvents(rc) : processPollFds();
+                    }
                     readyCount -= doCancel();
                     return readyCount;
                 }
@@ -265,19 +324,140 @@ final class SelectorImpl extends AbstractSelector {
                 }
             }
 
-            if (selectedOp != 0) {
-                boolean wasSelected = mutableSelectedKeys.contains(key);
-                if (wasSelected && key.readyOps() != selectedOp) {
-                    key.setReadyOps(key.readyOps() | selectedOp);
-                    ++readyKeyCount;
-                } else if (!wasSelected) {
-                    key.setReadyOps(selectedOp);
-                    mutableSelectedKeys.add(key);
-                    ++readyKeyCount;
+            if (updateSelectedKey(key, selectedOp)) {
+                ++readyKeyCount;
+            }
+        }
+
+        return readyKeyCount;
+    }
+
+    /**
+     * Adds {@code selectedOp} to the key's ready ops, adding the key to the selected
+     * key set if necessary. Returns true if the key should be counted as ready.
+     */
+    private boolean updateSelectedKey(SelectionKeyImpl key, int selectedOp) {
+        if (selectedOp == 0) {
+            return false;
+        }
+        boolean wasSelected = mutableSelectedKeys.contains(key);
+        if (wasSelected && key.readyOps() != selectedOp) {
+            key.setReadyOps(key.readyOps() | selectedOp);
+            return true;
+        } else if (!wasSelected) {
+            key.setReadyOps(selectedOp);
+            mutableSelectedKeys.add(key);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Called with keysLock held when a key's interest ops change.
+     */
+    void interestOpsChanged(SelectionKeyImpl key) {
+        if (epollFd != null) {
+            pendingEpollUpdates.add(key);
+        }
+    }
+
+    /**
+     * Pushes the interest ops of keys that have changed since the last select down to the
+     * kernel. Keys whose interest set is empty are removed from the epoll instance altogether,
+     * because epoll always reports EPOLLERR and EPOLLHUP and would otherwise wake us up
+     * repeatedly for keys nobody is interested in.
+     */
+    private void applyEpollUpdates() throws IOException {
+        for (int i = 0; i < pendingEpollUpdates.size(); ++i) {
+            SelectionKeyImpl key = pendingEpollUpdates.get(i);
+            if (!key.isValid()) {
+                continue;
+            }
+            int interestOps = key.interestOpsNoCheck();
+            int eventMask = 0;
+            if (((OP_ACCEPT | OP_READ) & interestOps) != 0) {
+                eventMask |= EPOLLIN;
+            }
+            if (((OP_CONNECT | OP_WRITE) & interestOps) != 0) {
+                eventMask |= EPOLLOUT;
+            }
+            if (eventMask == key.epollEvents) {
+                continue;
+            }
+            FileDescriptor fd = ((FileDescriptorChannel) key.channel()).getFD();
+            try {
+                if (eventMask == 0) {
+                    Libcore.os.epoll_ctl(epollFd, EPOLL_CTL_DEL, fd, null);
+                    epollKeys.remove(key.epollId);
+                } else {
+                    epollCtlEvent.events = eventMask;
+                    epollCtlEvent.data = key.epollId;
+                    int op = (key.epollEvents == 0) ? EPOLL_CTL_ADD : EPOLL_CTL_MOD;
+                    Libcore.os.epoll_ctl(epollFd, op, fd, epollCtlEvent);
+                    epollKeys.put(key.epollId, key);
+                }
+                key.epollEvents = eventMask;
+            } catch (ErrnoException errnoException) {
+                // The channel was closed behind our back; its key will be cancelled shortly.
+                if (errnoException.errno != EBADF && errnoException.errno != ENOENT) {
+                    throw errnoException.rethrowAsIOException();
                 }
             }
         }
+        pendingEpollUpdates.clear();
+        ensureEpollEventsCapacity();
+    }
 
+    private void ensureEpollEventsCapacity() {
+        // We need one slot for each registered fd plus the wakeup pipe, up to a fixed limit.
+        // Any ready fds beyond that limit are level-triggered, so they'll be reported next time.
+        int wanted = Math.min(epollKeys.size() + 1, MAX_EPOLL_EVENTS);
+        if (epollEvents.length < wanted) {
+            int oldLength = epollEvents.length;
+            epollEvents = Arrays.copyOf(epollEvents, Math.min(wanted * 2, MAX_EPOLL_EVENTS));
+            for (int i = oldLength; i < epollEvents.length; ++i) {
+                epollEvents[i] = new StructEpollEvent();
+            }
+        }
+    }
+
+    /**
+     * Updates the key ready ops and selected key set from the first {@code eventCount}
+     * events returned by epoll_wait.
+     */
+    private int processEpollEvents(int eventCount) throws IOException {
+        int readyKeyCount = 0;
+        for (int i = 0; i < eventCount; ++i) {
+            StructEpollEvent event = epollEvents[i];
+            if (event.data == WAKEUP_ID) {
+                // Read bytes from the wakeup pipe until the pipe is empty.
+                byte[] buffer = new byte[8];
+                while (IoBridge.read(wakeupIn, buffer, 0, 1) > 0) {
+                }
+                continue;
+            }
+
+            SelectionKeyImpl key = epollKeys.get((int) event.data);
+            if (key == null || !key.isValid()) {
+                continue;
+            }
+
+            int ops = key.interestOpsNoCheck();
+            int selectedOp = 0;
+            if ((event.events & EPOLLIN) != 0) {
+                selectedOp = ops & (OP_ACCEPT | OP_READ);
+            } else if ((event.events & EPOLLOUT) != 0) {
+                if (key.isConnected()) {
+                    selectedOp = ops & OP_WRITE;
+                } else {
+                    selectedOp = ops & OP_CONNECT;
+                }
+            }
+
+            if (updateSelectedKey(key, selectedOp)) {
+                ++readyKeyCount;
+            }
+        }
         return readyKeyCount;
     }
 
@@ -299,6 +479,9 @@ final class SelectorImpl extends AbstractSelector {
             if (cancelledKeys.size() > 0) {
                 for (SelectionKey currentKey : cancelledKeys) {
                     mutableKeys.remove(currentKey);
+                    if (epollFd != null) {
+                        removeEpollKey((SelectionKeyImpl) currentKey);
+                    }
                     deregister((AbstractSelectionKey) currentKey);
                     if (mutableSelectedKeys.remove(currentKey)) {
                         deselected++;
@@ -311,6 +494,18 @@ final class SelectorImpl extends AbstractSelector {
         return deselected;
     }
 
+    private void removeEpollKey(SelectionKeyImpl key) {
+        if (epollKeys.remove(key.epollId) == null) {
+            return;
+        }
+        key.epollEvents = 0;
+        try {
+            Libcore.os.epoll_ctl(epollFd, EPOLL_CTL_DEL, ((FileDescriptorChannel) key.channel()).getFD(), null);
+        } catch (ErrnoException ignored) {
+            // Closing an fd removes it from all epoll sets, so EBADF and ENOENT are expected here.
+        }
+    }
+
     @Override public Selector wakeup() {
         try {
             Libcore.os.write(wakeupOut, new byte[] { 1 }, 0, 1);
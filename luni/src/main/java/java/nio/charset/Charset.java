@@ -22,7 +22,6 @@ import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.spi.CharsetProvider;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Locale;
@@ -30,6 +29,7 @@ import java.util.ServiceLoader;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import libcore.icu.NativeConverter;
 
 /**
@@ -153,7 +153,21 @@ import libcore.icu.NativeConverter;
  * it returns are inherently stateful.
  */
 public abstract class Charset implements Comparable<Charset> {
-    private static final HashMap<String, Charset> CACHED_CHARSETS = new HashMap<String, Charset>();
+    /**
+     * Maps charset names and aliases to charsets. Lookups don't lock; threads
+     * that race to cache the same charset agree on one instance via putIfAbsent.
+     */
+    private static final ConcurrentHashMap<String, Charset> CACHED_CHARSETS =
+            new ConcurrentHashMap<String, Charset>();
+
+    /**
+     * Names recently found not to be supported, so that repeated lookups don't
+     * each go to ICU and every CharsetProvider. Names can come from untrusted
+     * input, so the map is cleared when it fills.
+     */
+    private static final ConcurrentHashMap<String, Boolean> UNSUPPORTED_CHARSETS =
+            new ConcurrentHashMap<String, Boolean>();
+    private static final int MAX_UNSUPPORTED_CHARSETS = 64;
 
     private static final Charset DEFAULT_CHARSET = getDefaultCharset();
 
@@ -236,30 +250,25 @@ public abstract class Charset implements Comparable<Charset> {
     }
 
     private static Charset cacheCharset(String charsetName, Charset cs) {
-        synchronized (CACHED_CHARSETS) {
-            // Get the canonical name for this charset, and the canonical instance from the table.
-            String canonicalName = cs.name();
-            Charset canonicalCharset = CACHED_CHARSETS.get(canonicalName);
-            if (canonicalCharset == null) {
-                canonicalCharset = cs;
-            }
-
-            // Cache the charset by its canonical name...
-            CACHED_CHARSETS.put(canonicalName, canonicalCharset);
+        // Get the canonical name for this charset, and the canonical instance from the table.
+        String canonicalName = cs.name();
+        Charset canonicalCharset = CACHED_CHARSETS.putIfAbsent(canonicalName, cs);
+        if (canonicalCharset == null) {
+            canonicalCharset = cs;
+        }
 
-            // And the name the user used... (Section 1.4 of http://unicode.org/reports/tr22/ means
-            // that many non-alias, non-canonical names are valid. For example, "utf8" isn't an
-            // alias of the canonical name "UTF-8", but we shouldn't penalize consistent users of
-            // such names unduly.)
-            CACHED_CHARSETS.put(charsetName, canonicalCharset);
+        // Cache the charset by the name the user used... (Section 1.4 of
+        // http://unicode.org/reports/tr22/ means that many non-alias, non-canonical names are
+        // valid. For example, "utf8" isn't an alias of the canonical name "UTF-8", but we
+        // shouldn't penalize consistent users of such names unduly.)
+        CACHED_CHARSETS.put(charsetName, canonicalCharset);
 
-            // And all its aliases...
-            for (String alias : cs.aliasesSet) {
-                CACHED_CHARSETS.put(alias, canonicalCharset);
-            }
-
-            return canonicalCharset;
+        // And all its aliases...
+        for (String alias : cs.aliasesSet) {
+            CACHED_CHARSETS.put(alias, canonicalCharset);
         }
+
+        return canonicalCharset;
     }
 
     /**
@@ -272,17 +281,19 @@ public abstract class Charset implements Comparable<Charset> {
      *             if the desired charset is not supported by this runtime.
      */
     public static Charset forName(String charsetName) {
+        if (charsetName == null) {
+            throw new IllegalCharsetNameException(null);
+        }
+
         // Is this charset in our cache?
-        Charset cs;
-        synchronized (CACHED_CHARSETS) {
-            cs = CACHED_CHARSETS.get(charsetName);
-            if (cs != null) {
-                return cs;
-            }
+        Charset cs = CACHED_CHARSETS.get(charsetName);
+        if (cs != null) {
+            return cs;
         }
 
-        if (charsetName == null) {
-            throw new IllegalCharsetNameException(null);
+        // Did we recently fail to find it?
+        if (UNSUPPORTED_CHARSETS.containsKey(charsetName)) {
+            throw new UnsupportedCharsetException(charsetName);
         }
 
         // Is this a built-in charset supported by ICU?
@@ -300,6 +311,10 @@ public abstract class Charset implements Comparable<Charset> {
             }
         }
 
+        if (UNSUPPORTED_CHARSETS.size() >= MAX_UNSUPPORTED_CHARSETS) {
+            UNSUPPORTED_CHARSETS.clear();
+        }
+        UNSUPPORTED_CHARSETS.put(charsetName, Boolean.TRUE);
         throw new UnsupportedCharsetException(charsetName);
     }
 
@@ -0,0 +1,312 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package java.nio.charset;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * Pure-Java decoders for UTF-8, ISO-8859-1 and US-ASCII. These are used in
+ * place of {@link CharsetDecoderICU} for the most common charsets, avoiding a
+ * JNI call and a copy per buffer. Malformed input is reported the way ICU
+ * reports it, one maximal ill-formed subsequence at a time.
+ *
+ * <p>Like ICU, the decoder remembers an incomplete sequence at the end of the
+ * input, so that it can be completed by the start of the next input buffer.
+ */
+abstract class CharsetDecoderJava extends CharsetDecoder {
+    /** The size of the arrays used to decode from and to buffers without arrays. */
+    private static final int STAGING_SIZE = 1024;
+
+    private byte[] stagedBytes;
+    private char[] stagedChars;
+
+    /** The start of a sequence that the next input may complete. */
+    private final byte[] pending = new byte[4];
+    private int pendingCount;
+    private final char[] pendingChars = new char[2];
+
+    /** The positions reached by the last call to {@link #decode}. */
+    int inPos;
+    int outPos;
+
+    /**
+     * Returns a decoder for {@code cs}, or null if there's no pure-Java
+     * decoder for the ICU charset {@code icuCanonicalName}.
+     */
+    static CharsetDecoder newInstance(Charset cs, String icuCanonicalName) {
+        if (icuCanonicalName.equals("UTF-8")) {
+            return new Utf8(cs);
+        } else if (icuCanonicalName.equals("ISO-8859-1")) {
+            return new Latin1(cs);
+        } else if (icuCanonicalName.equals("US-ASCII")) {
+            return new Ascii(cs);
+        }
+        return null;
+    }
+
+    CharsetDecoderJava(Charset cs, float averageCharsPerByte, float maxCharsPerByte) {
+        super(cs, averageCharsPerByte, maxCharsPerByte);
+    }
+
+    /**
+     * Decodes {@code in[inPos, inLimit)} into {@code out[outPos, outLimit)},
+     * leaving the positions reached in {@link #inPos} and {@link #outPos}.
+     */
+    abstract CoderResult decode(byte[] in, int inPos, int inLimit,
+            char[] out, int outPos, int outLimit);
+
+    final CoderResult result(CoderResult result, int inPos, int outPos) {
+        this.inPos = inPos;
+        this.outPos = outPos;
+        return result;
+    }
+
+    @Override protected final CoderResult decodeLoop(ByteBuffer in, CharBuffer out) {
+        if (pendingCount > 0) {
+            CoderResult result = decodePending(in, out);
+            if (result != null) {
+                return result;
+            }
+        }
+        CoderResult result = decodeBuffers(in, out);
+        if (result.isUnderflow() && in.hasRemaining()) {
+            // The input ends with an incomplete sequence.
+            pendingCount = in.remaining();
+            in.get(pending, 0, pendingCount);
+        }
+        return result;
+    }
+
+    /**
+     * Completes the pending sequence with bytes from {@code in}. Returns null
+     * once the pending sequence has been dealt with, or the result to return
+     * from {@link #decodeLoop}.
+     */
+    private CoderResult decodePending(ByteBuffer in, CharBuffer out) {
+        while (true) {
+            CoderResult result = decode(pending, 0, pendingCount, pendingChars, 0, pendingChars.length);
+            if (result.isUnderflow() && inPos == pendingCount) {
+                if (out.remaining() < outPos) {
+                    return CoderResult.OVERFLOW;
+                }
+                out.put(pendingChars, 0, outPos);
+                pendingCount = 0;
+                return null;
+            } else if (result.isMalformed()) {
+                // Only the byte just added can be invalid. It belongs to the input.
+                pendingCount--;
+                in.position(in.position() - 1);
+                return dropPending(out);
+            } else if (!in.hasRemaining()) {
+                return CoderResult.UNDERFLOW;
+            }
+            pending[pendingCount++] = in.get();
+        }
+    }
+
+    /**
+     * Handles the pending bytes as malformed input. The bytes aren't in the
+     * current input buffer, so we apply the malformed-input action here
+     * rather than leaving it to {@link #decode(ByteBuffer, CharBuffer, boolean)}.
+     */
+    private CoderResult dropPending(CharBuffer out) {
+        CodingErrorAction action = malformedInputAction();
+        if (action == CodingErrorAction.REPLACE) {
+            if (out.remaining() < replacement().length()) {
+                return CoderResult.OVERFLOW;
+            }
+            out.put(replacement());
+        } else if (action == CodingErrorAction.REPORT) {
+            int length = pendingCount;
+            pendingCount = 0;
+            return CoderResult.malformedForLength(length);
+        }
+        pendingCount = 0;
+        return null;
+    }
+
+    @Override protected final CoderResult implFlush(CharBuffer out) {
+        if (pendingCount > 0) {
+            // The input ended with an incomplete sequence.
+            CoderResult result = dropPending(out);
+            if (result != null) {
+                return result;
+            }
+        }
+        return CoderResult.UNDERFLOW;
+    }
+
+    @Override protected final void implReset() {
+        pendingCount = 0;
+    }
+
+    private CoderResult decodeBuffers(ByteBuffer in, CharBuffer out) {
+        if (in.hasArray() && out.hasArray()) {
+            int inOffset = in.arrayOffset();
+            int outOffset = out.arrayOffset();
+            CoderResult result = decode(in.array(), inOffset + in.position(), inOffset + in.limit(),
+                    out.array(), outOffset + out.position(), outOffset + out.limit());
+            in.position(inPos - inOffset);
+            out.position(outPos - outOffset);
+            return result;
+        }
+
+        // Direct and read-only buffers are decoded a chunk at a time through arrays.
+        if (stagedBytes == null) {
+            stagedBytes = new byte[STAGING_SIZE];
+            stagedChars = new char[STAGING_SIZE];
+        }
+        while (true) {
+            int byteCount = Math.min(in.remaining(), STAGING_SIZE);
+            int charCount = Math.min(out.remaining(), STAGING_SIZE);
+            int start = in.position();
+            in.get(stagedBytes, 0, byteCount);
+            CoderResult result = decode(stagedBytes, 0, byteCount, stagedChars, 0, charCount);
+            in.position(start + inPos);
+            out.put(stagedChars, 0, outPos);
+
+            // Stop unless the chunk boundaries, rather than the buffers, caused the result.
+            boolean moreInput = result.isUnderflow() && in.remaining() > byteCount - inPos;
+            boolean moreOutput = result.isOverflow() && out.hasRemaining();
+            if (inPos == 0 || !(moreInput || moreOutput)) {
+                return result;
+            }
+        }
+    }
+
+    static final class Utf8 extends CharsetDecoderJava {
+        Utf8(Charset cs) {
+            super(cs, 1.0f, 1.0f);
+        }
+
+        @Override CoderResult decode(byte[] in, int inPos, int inLimit,
+                char[] out, int outPos, int outLimit) {
+            while (inPos < inLimit) {
+                // Copy a run of ASCII. Bounding the run by both buffers up front
+                // leaves one test per byte in the loop.
+                int runEnd = inPos + Math.min(inLimit - inPos, outLimit - outPos);
+                while (inPos < runEnd && in[inPos] >= 0) {
+                    out[outPos++] = (char) in[inPos++];
+                }
+                if (inPos == inLimit) {
+                    break;
+                }
+
+                int b0 = in[inPos] & 0xff;
+                if (b0 < 0x80) {
+                    return result(CoderResult.OVERFLOW, inPos, outPos);
+                }
+
+                // Work out the length of the sequence and the valid range of its
+                // second byte, which excludes overlong forms, surrogates and
+                // code points above U+10FFFF.
+                int length;
+                int min = 0x80;
+                int max = 0xbf;
+                if (b0 >= 0xc2 && b0 <= 0xdf) {
+                    length = 2;
+                } else if (b0 >= 0xe0 && b0 <= 0xef) {
+                    length = 3;
+                    if (b0 == 0xe0) {
+                        min = 0xa0;
+                    } else if (b0 == 0xed) {
+                        max = 0x9f;
+                    }
+                } else if (b0 >= 0xf0 && b0 <= 0xf4) {
+                    length = 4;
+                    if (b0 == 0xf0) {
+                        min = 0x90;
+                    } else if (b0 == 0xf4) {
+                        max = 0x8f;
+                    }
+                } else {
+                    return result(CoderResult.malformedForLength(1), inPos, outPos);
+                }
+
+                // Check each byte that's available, so that an ill-formed sequence
+                // is reported even if it's truncated.
+                int available = Math.min(length, inLimit - inPos);
+                int codePoint = b0 & (0x7f >> length);
+                for (int i = 1; i < available; i++) {
+                    int b = in[inPos + i] & 0xff;
+                    if (i == 1 ? (b < min || b > max) : (b & 0xc0) != 0x80) {
+                        return result(CoderResult.malformedForLength(i), inPos, outPos);
+                    }
+                    codePoint = (codePoint << 6) | (b & 0x3f);
+                }
+                if (available < length) {
+                    return result(CoderResult.UNDERFLOW, inPos, outPos);
+                }
+
+                if (length < 4) {
+                    if (outPos == outLimit) {
+                        return result(CoderResult.OVERFLOW, inPos, outPos);
+                    }
+                    out[outPos++] = (char) codePoint;
+                } else {
+                    if (outLimit - outPos < 2) {
+                        return result(CoderResult.OVERFLOW, inPos, outPos);
+                    }
+                    out[outPos++] = Character.highSurrogate(codePoint);
+                    out[outPos++] = Character.lowSurrogate(codePoint);
+                }
+                inPos += length;
+            }
+            return result(CoderResult.UNDERFLOW, inPos, outPos);
+        }
+    }
+
+    static final class Latin1 extends CharsetDecoderJava {
+        Latin1(Charset cs) {
+            super(cs, 1.0f, 1.0f);
+        }
+
+        @Override CoderResult decode(byte[] in, int inPos, int inLimit,
+                char[] out, int outPos, int outLimit) {
+            int count = Math.min(inLimit - inPos, outLimit - outPos);
+            for (int end = inPos + count; inPos < end; ) {
+                out[outPos++] = (char) (in[inPos++] & 0xff);
+            }
+            CoderResult result = (inPos < inLimit) ? CoderResult.OVERFLOW : CoderResult.UNDERFLOW;
+            return result(result, inPos, outPos);
+        }
+    }
+
+    static final class Ascii extends CharsetDecoderJava {
+        Ascii(Charset cs) {
+            super(cs, 1.0f, 1.0f);
+        }
+
+        @Override CoderResult decode(byte[] in, int inPos, int inLimit,
+                char[] out, int outPos, int outLimit) {
+            int runEnd = inPos + Math.min(inLimit - inPos, outLimit - outPos);
+            while (inPos < runEnd && in[inPos] >= 0) {
+                out[outPos++] = (char) in[inPos++];
+            }
+            CoderResult result;
+            if (inPos == inLimit) {
+                result = CoderResult.UNDERFLOW;
+            } else if (in[inPos] < 0) {
+                result = CoderResult.malformedForLength(1);
+            } else {
+                result = CoderResult.OVERFLOW;
+            }
+            return result(result, inPos, outPos);
+        }
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package java.nio.charset;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * Pure-Java encoders for UTF-8, ISO-8859-1 and US-ASCII. These are used in
+ * place of {@link CharsetEncoderICU} for the most common charsets, avoiding a
+ * JNI call and a copy per buffer. As with ICU, an unpaired surrogate is
+ * malformed input, and a character the charset can't represent is unmappable.
+ *
+ * <p>Like ICU, the encoder remembers a high surrogate at the end of the input,
+ * so that it can be paired with a low surrogate at the start of the next
+ * input buffer.
+ */
+abstract class CharsetEncoderJava extends CharsetEncoder {
+    /** The size of the arrays used to encode from and to buffers without arrays. */
+    private static final int STAGING_SIZE = 1024;
+
+    private char[] stagedChars;
+    private byte[] stagedBytes;
+
+    /** A high surrogate that the next input may complete, or 0. */
+    private char pendingHighSurrogate;
+    private final char[] pendingPair = new char[2];
+    private final byte[] pendingBytes = new byte[4];
+
+    /** The positions reached by the last call to {@link #encode}. */
+    int inPos;
+    int outPos;
+
+    /**
+     * Returns an encoder for {@code cs}, or null if there's no pure-Java
+     * encoder for the ICU charset {@code icuCanonicalName}.
+     */
+    static CharsetEncoder newInstance(Charset cs, String icuCanonicalName) {
+        if (icuCanonicalName.equals("UTF-8")) {
+            return new Utf8(cs);
+        } else if (icuCanonicalName.equals("ISO-8859-1")) {
+            return new SingleByte(cs, 0xff);
+        } else if (icuCanonicalName.equals("US-ASCII")) {
+            return new SingleByte(cs, 0x7f);
+        }
+        return null;
+    }
+
+    CharsetEncoderJava(Charset cs, float averageBytesPerChar, float maxBytesPerChar) {
+        // The RI (and CharsetEncoderICU) use '?' as the replacement for all three charsets.
+        super(cs, averageBytesPerChar, maxBytesPerChar, new byte[] { (byte) '?' }, true);
+    }
+
+    /**
+     * Encodes {@code in[inPos, inLimit)} into {@code out[outPos, outLimit)},
+     * leaving the positions reached in {@link #inPos} and {@link #outPos}.
+     */
+    abstract CoderResult encode(char[] in, int inPos, int inLimit,
+            byte[] out, int outPos, int outLimit);
+
+    final CoderResult result(CoderResult result, int inPos, int outPos) {
+        this.inPos = inPos;
+        this.outPos = outPos;
+        return result;
+    }
+
+    @Override protected final CoderResult encodeLoop(CharBuffer in, ByteBuffer out) {
+        if (pendingHighSurrogate != 0) {
+            CoderResult result = encodePending(in, out);
+            if (result != null) {
+                return result;
+            }
+        }
+        CoderResult result = encodeBuffers(in, out);
+        if (result.isUnderflow() && in.hasRemaining()) {
+            // The input ends with a high surrogate.
+            pendingHighSurrogate = in.get();
+        }
+        return result;
+    }
+
+    /**
+     * Encodes the pending high surrogate and the char that follows it. Returns
+     * null once the pending surrogate has been dealt with, or the result to
+     * return from {@link #encodeLoop}.
+     */
+    private CoderResult encodePending(CharBuffer in, ByteBuffer out) {
+        if (!in.hasRemaining()) {
+            return CoderResult.UNDERFLOW;
+        }
+        pendingPair[0] = pendingHighSurrogate;
+        pendingPair[1] = in.get(in.position());
+        CoderResult result = encode(pendingPair, 0, 2, pendingBytes, 0, pendingBytes.length);
+        if (result.isUnderflow()) {
+            if (out.remaining() < outPos) {
+                return CoderResult.OVERFLOW;
+            }
+            out.put(pendingBytes, 0, outPos);
+            in.get();
+            pendingHighSurrogate = 0;
+            return null;
+        }
+        // Either the pair can't be represented, or the char that follows isn't a low surrogate.
+        boolean unmappable = result.isUnmappable();
+        result = dropPending(out, unmappable);
+        if (result == null && unmappable) {
+            in.get(); // The low surrogate was part of the unmappable pair.
+        }
+        return result;
+    }
+
+    /**
+     * Handles the pending high surrogate, which is malformed or half of an
+     * unmappable pair. The surrogate isn't in the current input buffer, so we
+     * apply the action here rather than leaving it to
+     * {@link #encode(CharBuffer, ByteBuffer, boolean)}.
+     */
+    private CoderResult dropPending(ByteBuffer out, boolean unmappable) {
+        CodingErrorAction action = unmappable ? unmappableCharacterAction() : malformedInputAction();
+        if (action == CodingErrorAction.REPLACE) {
+            if (out.remaining() < replacement().length) {
+                return CoderResult.OVERFLOW;
+            }
+            out.put(replacement());
+        } else if (action == CodingErrorAction.REPORT) {
+            pendingHighSurrogate = 0;
+            return unmappable ? CoderResult.unmappableForLength(1) : CoderResult.malformedForLength(1);
+        }
+        pendingHighSurrogate = 0;
+        return null;
+    }
+
+    @Override protected final CoderResult implFlush(ByteBuffer out) {
+        if (pendingHighSurrogate != 0) {
+            // The input ended with a high surrogate.
+            CoderResult result = dropPending(out, false);
+            if (result != null) {
+                return result;
+            }
+        }
+        return CoderResult.UNDERFLOW;
+    }
+
+    @Override protected final void implReset() {
+        pendingHighSurrogate = 0;
+    }
+
+    private CoderResult encodeBuffers(CharBuffer in, ByteBuffer out) {
+        if (in.hasArray() && out.hasArray()) {
+            int inOffset = in.arrayOffset();
+            int outOffset = out.arrayOffset();
+            CoderResult result = encode(in.array(), inOffset + in.position(), inOffset + in.limit(),
+                    out.array(), outOffset + out.position(), outOffset + out.limit());
+            in.position(inPos - inOffset);
+            out.position(outPos - outOffset);
+            return result;
+        }
+
+        // Direct, read-only and string buffers are encoded a chunk at a time through arrays.
+        if (stagedChars == null) {
+            stagedChars = new char[STAGING_SIZE];
+            stagedBytes = new byte[STAGING_SIZE];
+        }
+        while (true) {
+            int charCount = Math.min(in.remaining(), STAGING_SIZE);
+            int byteCount = Math.min(out.remaining(), STAGING_SIZE);
+            int start = in.position();
+            in.get(stagedChars, 0, charCount);
+            CoderResult result = encode(stagedChars, 0, charCount, stagedBytes, 0, byteCount);
+            in.position(start + inPos);
+            out.put(stagedBytes, 0, outPos);
+
+            // Stop unless the chunk boundaries, rather than the buffers, caused the result.
+            boolean moreInput = result.isUnderflow() && in.remaining() > charCount - inPos;
+            boolean moreOutput = result.isOverflow() && out.hasRemaining();
+            if (inPos == 0 || !(moreInput || moreOutput)) {
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Returns the result for the surrogate at {@code in[inPos]}: malformed if
+     * it's unpaired, underflow if its pair may be in the next input, or
+     * unmappable (for charsets that can't encode supplementary characters).
+     */
+    final CoderResult surrogateResult(char[] in, int inPos, int inLimit, int outPos) {
+        char ch = in[inPos];
+        CoderResult result;
+        if (Character.isLowSurrogate(ch)) {
+            result = CoderResult.malformedForLength(1);
+        } else if (inPos + 1 == inLimit) {
+            result = CoderResult.UNDERFLOW;
+        } else if (!Character.isLowSurrogate(in[inPos + 1])) {
+            result = CoderResult.malformedForLength(1);
+        } else {
+            result = CoderResult.unmappableForLength(2);
+        }
+        return result(result, inPos, outPos);
+    }
+
+    static final class Utf8 extends CharsetEncoderJava {
+        Utf8(Charset cs) {
+            super(cs, 1.1f, 3.0f);
+        }
+
+        @Override CoderResult encode(char[] in, int inPos, int inLimit,
+                byte[] out, int outPos, int outLimit) {
+            while (inPos < inLimit) {
+                // Copy a run of ASCII. Bounding the run by both buffers up front
+                // leaves one test per char in the loop.
+                int runEnd = inPos + Math.min(inLimit - inPos, outLimit - outPos);
+                char ch;
+                while (inPos < runEnd && (ch = in[inPos]) < 0x80) {
+                    out[outPos++] = (byte) ch;
+                    inPos++;
+                }
+                if (inPos == inLimit) {
+                    break;
+                }
+
+                ch = in[inPos];
+                int room = outLimit - outPos;
+                if (ch < 0x80) {
+                    return result(CoderResult.OVERFLOW, inPos, outPos);
+                } else if (ch < 0x800) {
+                    if (room < 2) {
+                        return result(CoderResult.OVERFLOW, inPos, outPos);
+                    }
+                    out[outPos++] = (byte) (0xc0 | (ch >> 6));
+                    out[outPos++] = (byte) (0x80 | (ch & 0x3f));
+                    inPos++;
+                } else if (!Character.isSurrogate(ch)) {
+                    if (room < 3) {
+                        return result(CoderResult.OVERFLOW, inPos, outPos);
+                    }
+                    out[outPos++] = (byte) (0xe0 | (ch >> 12));
+                    out[outPos++] = (byte) (0x80 | ((ch >> 6) & 0x3f));
+                    out[outPos++] = (byte) (0x80 | (ch & 0x3f));
+                    inPos++;
+                } else {
+                    CoderResult result = surrogateResult(in, inPos, inLimit, outPos);
+                    if (!result.isUnmappable()) {
+                        return result;
+                    }
+                    // A valid surrogate pair, which UTF-8 can represent.
+                    if (room < 4) {
+                        return result(CoderResult.OVERFLOW, inPos, outPos);
+                    }
+                    int codePoint = Character.toCodePoint(ch, in[inPos + 1]);
+                    out[outPos++] = (byte) (0xf0 | (codePoint >> 18));
+                    out[outPos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                    out[outPos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                    out[outPos++] = (byte) (0x80 | (codePoint & 0x3f));
+                    inPos += 2;
+                }
+            }
+            return result(CoderResult.UNDERFLOW, inPos, outPos);
+        }
+    }
+
+    /**
+     * ISO-8859-1 and US-ASCII, which map U+0000 up to {@code maxChar} to the
+     * byte with the same value.
+     */
+    static final class SingleByte extends CharsetEncoderJava {
+        private final char maxChar;
+
+        SingleByte(Charset cs, int maxChar) {
+            super(cs, 1.0f, 1.0f);
+            this.maxChar = (char) maxChar;
+        }
+
+        @Override CoderResult encode(char[] in, int inPos, int inLimit,
+                byte[] out, int outPos, int outLimit) {
+            int runEnd = inPos + Math.min(inLimit - inPos, outLimit - outPos);
+            char ch;
+            while (inPos < runEnd && (ch = in[inPos]) <= maxChar) {
+                out[outPos++] = (byte) ch;
+                inPos++;
+            }
+            if (inPos == inLimit) {
+                return result(CoderResult.UNDERFLOW, inPos, outPos);
+            }
+            ch = in[inPos];
+            if (ch <= maxChar) {
+                return result(CoderResult.OVERFLOW, inPos, outPos);
+            } else if (Character.isSurrogate(ch)) {
+                return surrogateResult(in, inPos, inLimit, outPos);
+            }
+            return result(CoderResult.unmappableForLength(1), inPos, outPos);
+        }
+    }
+}
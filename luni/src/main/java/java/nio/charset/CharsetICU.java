@@ -20,11 +20,13 @@ final class CharsetICU extends Charset {
     }
 
     public CharsetDecoder newDecoder() {
-        return CharsetDecoderICU.newInstance(this, icuCanonicalName);
+        CharsetDecoder decoder = CharsetDecoderJava.newInstance(this, icuCanonicalName);
+        return (decoder != null) ? decoder : CharsetDecoderICU.newInstance(this, icuCanonicalName);
     }
 
     public CharsetEncoder newEncoder() {
-        return CharsetEncoderICU.newInstance(this, icuCanonicalName);
+        CharsetEncoder encoder = CharsetEncoderJava.newInstance(this, icuCanonicalName);
+        return (encoder != null) ? encoder : CharsetEncoderICU.newInstance(this, icuCanonicalName);
     }
 
     public boolean contains(Charset cs) {
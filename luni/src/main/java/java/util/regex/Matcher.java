@@ -76,6 +76,36 @@ public final class Matcher implements MatchResult {
      */
     private boolean transparentBounds;
 
+    /**
+     * The pure-Java engine for the pattern, or null if matching uses ICU.
+     */
+    private SimplePattern simplePattern;
+
+    /**
+     * The bounds searched by the Java engine: the region, or the whole input
+     * after {@link #find(int)}.
+     */
+    private int activeStart;
+    private int activeEnd;
+
+    /**
+     * Where the Java engine's next {@link #find()} starts, or -1 if the
+     * previous one failed.
+     */
+    private int nextFindStart;
+
+    // The native matcher doesn't see matches made by the Java engine. To bring
+    // it up to date for hitEnd() or requireEnd(), we repeat the last reset,
+    // find(int), lookingAt() or matches(), then the find() calls that followed.
+    private static final int RESET = 0;
+    private static final int FIND_AT = 1;
+    private static final int LOOKING_AT = 2;
+    private static final int MATCHES = 3;
+    private int lastOperation;
+    private int lastFindStart;
+    private int findsSinceLastOperation;
+    private boolean nativeStateStale;
+
     /**
      * Creates a matcher for a given combination of pattern and input. Both
      * elements can be changed later on.
@@ -202,13 +232,24 @@ public final class Matcher implements MatchResult {
             throw new IndexOutOfBoundsException();
         }
 
-        this.input = input.toString();
-        this.regionStart = start;
-        this.regionEnd = end;
-        resetForInput();
+        if (input == this.input) {
+            // Only the region is changing, so the native matcher can keep its
+            // view of the input text and its bounds.
+            this.regionStart = start;
+            this.regionEnd = end;
+            synchronized (this) {
+                setRegionImpl(address, this.input, start, end);
+            }
+        } else {
+            this.input = input.toString();
+            this.regionStart = start;
+            this.regionEnd = end;
+            resetForInput();
+        }
 
         matchFound = false;
         appendPos = 0;
+        resetSimplePattern();
 
         return this;
     }
@@ -238,8 +279,10 @@ public final class Matcher implements MatchResult {
             address = openImpl(pattern.address);
         }
 
+        this.simplePattern = pattern.simplePattern;
         if (input != null) {
             resetForInput();
+            resetSimplePattern();
         }
 
         matchOffsets = new int[(groupCount() + 1) * 2];
@@ -247,6 +290,52 @@ public final class Matcher implements MatchResult {
         return this;
     }
 
+    /**
+     * Resets the Java engine's state to match the native matcher's after a reset.
+     */
+    private void resetSimplePattern() {
+        activeStart = regionStart;
+        activeEnd = regionEnd;
+        nextFindStart = regionStart;
+        lastOperation = RESET;
+        findsSinceLastOperation = 0;
+        nativeStateStale = false;
+    }
+
+    /**
+     * Records the operation just performed by the Java engine.
+     */
+    private void simpleOperation(int operation, int nextFindStart) {
+        this.nextFindStart = nextFindStart;
+        lastOperation = operation;
+        findsSinceLastOperation = 0;
+        nativeStateStale = true;
+    }
+
+    /**
+     * Replays the Java engine's operations on the native matcher, so that it can
+     * answer questions only ICU knows the answers to. Must be called with this
+     * matcher's lock held.
+     */
+    private void syncNativeState() {
+        if (!nativeStateStale) {
+            return;
+        }
+        int[] offsets = new int[matchOffsets.length];
+        setRegionImpl(address, input, activeStart, activeEnd);
+        if (lastOperation == FIND_AT) {
+            findImpl(address, input, lastFindStart, offsets);
+        } else if (lastOperation == LOOKING_AT) {
+            lookingAtImpl(address, input, offsets);
+        } else if (lastOperation == MATCHES) {
+            matchesImpl(address, input, offsets);
+        }
+        for (int i = 0; i < findsSinceLastOperation; i++) {
+            findNextImpl(address, input, offsets);
+        }
+        nativeStateStale = false;
+    }
+
     private void resetForInput() {
         synchronized (this) {
             setInputImpl(address, input, regionStart, regionEnd);
@@ -255,6 +344,17 @@ public final class Matcher implements MatchResult {
         }
     }
 
+    /**
+     * Drops this matcher's reference to its input so that a matcher kept for
+     * reuse by its {@code Pattern} doesn't retain the input. The matcher must
+     * be given new input with {@link #reset(CharSequence)} before it is used
+     * again.
+     */
+    void clearInput() {
+        input = null;
+        matchFound = false;
+    }
+
     /**
      * Resets this matcher and sets a region. Only characters inside the region
      * are considered for a match.
@@ -386,6 +486,16 @@ public final class Matcher implements MatchResult {
             throw new IndexOutOfBoundsException("start=" + start + "; length=" + input.length());
         }
 
+        if (simplePattern != null) {
+            // Like ICU, find(int) resets the region to the whole input.
+            activeStart = 0;
+            activeEnd = input.length();
+            matchFound = simplePattern.find(input, start, activeEnd, matchOffsets);
+            simpleOperation(FIND_AT, matchFound ? matchOffsets[1] : -1);
+            lastFindStart = start;
+            return matchFound;
+        }
+
         synchronized (this) {
             matchFound = findImpl(address, input, start, matchOffsets);
         }
@@ -401,6 +511,17 @@ public final class Matcher implements MatchResult {
      * @return true if (and only if) a match has been found.
      */
     public boolean find() {
+        if (simplePattern != null) {
+            // Simple patterns never match the empty string, so there's no need
+            // to bump along after an empty match.
+            matchFound = nextFindStart != -1
+                    && simplePattern.find(input, nextFindStart, activeEnd, matchOffsets);
+            nextFindStart = matchFound ? matchOffsets[1] : -1;
+            findsSinceLastOperation++;
+            nativeStateStale = true;
+            return matchFound;
+        }
+
         synchronized (this) {
             matchFound = findNextImpl(address, input, matchOffsets);
         }
@@ -415,6 +536,12 @@ public final class Matcher implements MatchResult {
      * @return true if (and only if) the {@code Pattern} matches.
      */
     public boolean lookingAt() {
+        if (simplePattern != null) {
+            matchFound = simplePattern.lookingAt(input, activeStart, activeEnd, matchOffsets);
+            simpleOperation(LOOKING_AT, matchFound ? matchOffsets[1] : activeStart);
+            return matchFound;
+        }
+
         synchronized (this) {
             matchFound = lookingAtImpl(address, input, matchOffsets);
         }
@@ -429,6 +556,12 @@ public final class Matcher implements MatchResult {
      *         region.
      */
     public boolean matches() {
+        if (simplePattern != null) {
+            matchFound = simplePattern.matches(input, activeStart, activeEnd, matchOffsets);
+            simpleOperation(MATCHES, matchFound ? matchOffsets[1] : activeStart);
+            return matchFound;
+        }
+
         synchronized (this) {
             matchFound = matchesImpl(address, input, matchOffsets);
         }
@@ -633,6 +766,7 @@ public final class Matcher implements MatchResult {
      */
     public boolean requireEnd() {
         synchronized (this) {
+            syncNativeState();
             return requireEndImpl(address);
         }
     }
@@ -642,6 +776,7 @@ public final class Matcher implements MatchResult {
      */
     public boolean hitEnd() {
         synchronized (this) {
+            syncNativeState();
             return hitEndImpl(address);
         }
     }
@@ -666,6 +801,7 @@ public final class Matcher implements MatchResult {
     private static native long openImpl(long patternAddr);
     private static native boolean requireEndImpl(long addr);
     private static native void setInputImpl(long addr, String s, int start, int end);
+    private static native void setRegionImpl(long addr, String s, int start, int end);
     private static native void useAnchoringBoundsImpl(long addr, boolean value);
     private static native void useTransparentBoundsImpl(long addr, boolean value);
 }
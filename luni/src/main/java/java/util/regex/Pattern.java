@@ -287,6 +287,15 @@ public final class Pattern implements Serializable {
 
     transient long address;
 
+    /** A pure-Java equivalent of this pattern, or null if it needs ICU. */
+    transient SimplePattern simplePattern;
+
+    /**
+     * A matcher that isn't in use, kept for the convenience methods so that they
+     * needn't open a new native matcher for each call. Guarded by this.
+     */
+    private transient Matcher spareMatcher;
+
     /**
      * Returns a {@link Matcher} for this pattern applied to the given {@code input}.
      * The {@code Matcher} can be used to match the {@code Pattern} against the
@@ -297,6 +306,31 @@ public final class Pattern implements Serializable {
         return new Matcher(this, input);
     }
 
+    /**
+     * Returns a matcher for {@code input}, reusing this pattern's spare matcher
+     * unless another caller is already using it. The caller must not expose the
+     * matcher, and should pass it to {@link #releaseMatcher} when done.
+     */
+    Matcher acquireMatcher(CharSequence input) {
+        Matcher matcher;
+        synchronized (this) {
+            matcher = spareMatcher;
+            spareMatcher = null;
+        }
+        return (matcher != null) ? matcher.reset(input) : new Matcher(this, input);
+    }
+
+    /**
+     * Makes {@code matcher}, which was returned by {@link #acquireMatcher},
+     * available for reuse.
+     */
+    void releaseMatcher(Matcher matcher) {
+        matcher.clearInput();
+        synchronized (this) {
+            spareMatcher = matcher;
+        }
+    }
+
     /**
      * Splits the given {@code input} at occurrences of this pattern.
      *
@@ -405,6 +439,7 @@ public final class Pattern implements Serializable {
         int icuFlags = flags & (CASE_INSENSITIVE | COMMENTS | MULTILINE | DOTALL | UNIX_LINES);
 
         address = compileImpl(icuPattern, icuFlags);
+        simplePattern = SimplePattern.compile(pattern, flags);
     }
 
     /**
@@ -417,7 +452,7 @@ public final class Pattern implements Serializable {
      * @see Matcher#matches()
      */
     public static boolean matches(String regularExpression, CharSequence input) {
-        return new Matcher(new Pattern(regularExpression, 0), input).matches();
+        return PatternCache.matches(regularExpression, input);
     }
 
     /**
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package java.util.regex;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches compiled patterns for the regular expression convenience methods on
+ * {@code String}, which would otherwise compile (and allocate a native ICU
+ * pattern for) their regular expression on every call.
+ *
+ * <p>The cache is split into independently locked segments, each of which
+ * evicts its least recently used pattern. Patterns are compiled without
+ * holding a lock. Patterns are immutable, so a cached pattern may be used by
+ * any number of threads. The {@code matches}, {@code replaceAll} and
+ * {@code replaceFirst} methods also reuse the cached pattern's native matcher.
+ *
+ * @hide
+ */
+public final class PatternCache {
+    private static final int SEGMENT_COUNT = 4; // must be a power of two
+    private static final int PATTERNS_PER_SEGMENT = 16;
+
+    private static final Segment[] SEGMENTS = new Segment[SEGMENT_COUNT];
+    static {
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            SEGMENTS[i] = new Segment();
+        }
+    }
+
+    private PatternCache() {
+    }
+
+    /**
+     * Returns a pattern equivalent to {@code Pattern.compile(regularExpression)}.
+     */
+    public static Pattern get(String regularExpression) throws PatternSyntaxException {
+        return get(regularExpression, 0);
+    }
+
+    /**
+     * Returns a pattern equivalent to {@code Pattern.compile(regularExpression, flags)}.
+     */
+    public static Pattern get(String regularExpression, int flags) throws PatternSyntaxException {
+        Key key = new Key(regularExpression, flags);
+        int h = key.hashCode();
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        Segment segment = SEGMENTS[h & (SEGMENT_COUNT - 1)];
+
+        synchronized (segment) {
+            Pattern pattern = segment.get(key);
+            if (pattern != null) {
+                segment.hitCount++;
+                return pattern;
+            }
+            segment.missCount++;
+        }
+
+        // Compile without holding the lock. If another thread compiles the same
+        // expression with the same flags concurrently, the last pattern to be put wins.
+        Pattern pattern = Pattern.compile(regularExpression, flags);
+        synchronized (segment) {
+            segment.put(key, pattern);
+        }
+        return pattern;
+    }
+
+    /**
+     * Equivalent to {@code Pattern.compile(regularExpression).matcher(input).matches()}.
+     */
+    public static boolean matches(String regularExpression, CharSequence input) {
+        Pattern pattern = get(regularExpression);
+        Matcher matcher = pattern.acquireMatcher(input);
+        try {
+            return matcher.matches();
+        } finally {
+            pattern.releaseMatcher(matcher);
+        }
+    }
+
+    /**
+     * Equivalent to {@code Pattern.compile(regularExpression).matcher(input).replaceAll(replacement)}.
+     */
+    public static String replaceAll(String regularExpression, CharSequence input,
+            String replacement) {
+        Pattern pattern = get(regularExpression);
+        Matcher matcher = pattern.acquireMatcher(input);
+        try {
+            return matcher.replaceAll(replacement);
+        } finally {
+            pattern.releaseMatcher(matcher);
+        }
+    }
+
+    /**
+     * Equivalent to {@code Pattern.compile(regularExpression).matcher(input).replaceFirst(replacement)}.
+     */
+    public static String replaceFirst(String regularExpression, CharSequence input,
+            String replacement) {
+        Pattern pattern = get(regularExpression);
+        Matcher matcher = pattern.acquireMatcher(input);
+        try {
+            return matcher.replaceFirst(replacement);
+        } finally {
+            pattern.releaseMatcher(matcher);
+        }
+    }
+
+    /**
+     * Returns the number of lookups that returned a cached pattern.
+     */
+    public static long getHitCount() {
+        long result = 0;
+        for (Segment segment : SEGMENTS) {
+            synchronized (segment) {
+                result += segment.hitCount;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of lookups that compiled a new pattern.
+     */
+    public static long getMissCount() {
+        long result = 0;
+        for (Segment segment : SEGMENTS) {
+            synchronized (segment) {
+                result += segment.missCount;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes all cached patterns.
+     */
+    public static void evictAll() {
+        for (Segment segment : SEGMENTS) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * A regular expression and the flags it was compiled with.
+     */
+    private static final class Key {
+        final String regularExpression;
+        final int flags;
+
+        Key(String regularExpression, int flags) {
+            this.regularExpression = regularExpression;
+            this.flags = flags;
+        }
+
+        @Override public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return flags == other.flags && regularExpression.equals(other.regularExpression);
+        }
+
+        @Override public int hashCode() {
+            return regularExpression.hashCode() * 31 + flags;
+        }
+    }
+
+    /**
+     * An access-ordered map from regular expressions and flags to their most
+     * recently compiled patterns. Guarded by its own monitor.
+     */
+    private static final class Segment extends LinkedHashMap<Key, Pattern> {
+        long hitCount;
+        long missCount;
+
+        Segment() {
+            super(PATTERNS_PER_SEGMENT, 0.75f, true);
+        }
+
+        @Override protected boolean removeEldestEntry(Map.Entry<Key, Pattern> eldest) {
+            return size() > PATTERNS_PER_SEGMENT;
+        }
+    }
+}
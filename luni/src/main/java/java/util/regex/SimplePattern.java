@@ -0,0 +1,443 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package java.util.regex;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Matches regular expressions that are simple enough to not need ICU: a
+ * literal string, an alternation of literal strings, or a character class of
+ * literal characters and ranges optionally followed by {@code +}. Matching
+ * these in Java avoids a JNI transition (and pinning the input) per match.
+ *
+ * <p>None of these patterns have groups, anchors, lookaround or empty matches,
+ * so anchoring and transparent bounds don't affect them. Literal characters
+ * are never surrogates, so a match can't split a surrogate pair.
+ */
+abstract class SimplePattern {
+    // The RI allows regular expressions beginning with ] or }, but that's probably a bug.
+    private static final String METACHARACTERS = "\\?*+[](){}^$.|";
+
+    /**
+     * Searches {@code s[start, end)} for the leftmost match, writing its start
+     * and end to {@code offsets[0]} and {@code offsets[1]}.
+     */
+    abstract boolean find(String s, int start, int end, int[] offsets);
+
+    /**
+     * Tries to match a prefix of {@code s[start, end)}.
+     */
+    abstract boolean lookingAt(String s, int start, int end, int[] offsets);
+
+    /**
+     * Tries to match all of {@code s[start, end)}.
+     */
+    abstract boolean matches(String s, int start, int end, int[] offsets);
+
+    /**
+     * Returns a simple pattern equivalent to {@code regularExpression} compiled
+     * with {@code flags}, or null if ICU is needed.
+     */
+    static SimplePattern compile(String regularExpression, int flags) {
+        // The other flags only affect constructs that simple patterns don't have.
+        if ((flags & (Pattern.CASE_INSENSITIVE | Pattern.COMMENTS)) != 0) {
+            return null;
+        }
+        if ((flags & Pattern.LITERAL) != 0) {
+            return isLiteral(regularExpression) ? new Literal(regularExpression) : null;
+        }
+        if (regularExpression.startsWith("[")) {
+            return CharClass.parse(regularExpression);
+        }
+
+        List<String> alternatives = new ArrayList<String>();
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < regularExpression.length(); i++) {
+            char ch = regularExpression.charAt(i);
+            if (ch == '|') {
+                if (literal.length() == 0) {
+                    return null; // An empty alternative matches the empty string.
+                }
+                alternatives.add(literal.toString());
+                literal.setLength(0);
+            } else if (ch == '\\') {
+                if (++i == regularExpression.length()) {
+                    return null;
+                }
+                ch = unescape(regularExpression.charAt(i));
+                if (ch == 0) {
+                    return null;
+                }
+                literal.append(ch);
+            } else if (METACHARACTERS.indexOf(ch) != -1 || Character.isSurrogate(ch)) {
+                return null;
+            } else {
+                literal.append(ch);
+            }
+        }
+        if (literal.length() == 0) {
+            return null;
+        }
+        if (alternatives.isEmpty()) {
+            return new Literal(literal.toString());
+        }
+        alternatives.add(literal.toString());
+        return new Alternation(alternatives.toArray(new String[alternatives.size()]));
+    }
+
+    private static boolean isLiteral(String s) {
+        if (s.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (Character.isSurrogate(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the character denoted by {@code \ch}, or 0 if that escape isn't
+     * a literal character.
+     */
+    private static char unescape(char ch) {
+        switch (ch) {
+        case 't':
+            return '\t';
+        case 'n':
+            return '\n';
+        case 'r':
+            return '\r';
+        case 'f':
+            return '\f';
+        }
+        // Escaped letters and digits are classes, back references and the like.
+        boolean literal = ch < 0x80 && !Character.isLetterOrDigit(ch) && ch > ' ';
+        return literal ? ch : 0;
+    }
+
+    /**
+     * A literal string, found using Boyer-Moore-Horspool.
+     */
+    static final class Literal extends SimplePattern {
+        private final String literal;
+        /** Shifts for the low 8 bits of the text character aligned with the pattern's last. */
+        private final int[] shifts;
+
+        Literal(String literal) {
+            this.literal = literal;
+            int length = literal.length();
+            if (length > 1) {
+                shifts = new int[256];
+                for (int i = 0; i < shifts.length; i++) {
+                    shifts[i] = length;
+                }
+                // Characters sharing low bits keep the smallest (safe) shift.
+                for (int i = 0; i < length - 1; i++) {
+                    shifts[literal.charAt(i) & 0xff] = length - 1 - i;
+                }
+            } else {
+                shifts = null;
+            }
+        }
+
+        @Override boolean find(String s, int start, int end, int[] offsets) {
+            int length = literal.length();
+            int last = length - 1;
+            char lastChar = literal.charAt(last);
+            int i = start;
+            if (shifts == null) {
+                for (; i < end; i++) {
+                    if (s.charAt(i) == lastChar) {
+                        return setMatch(offsets, i, i + 1);
+                    }
+                }
+                return false;
+            }
+            while (i + length <= end) {
+                char ch = s.charAt(i + last);
+                if (ch == lastChar && s.regionMatches(i, literal, 0, last)) {
+                    return setMatch(offsets, i, i + length);
+                }
+                i += shifts[ch & 0xff];
+            }
+            return false;
+        }
+
+        @Override boolean lookingAt(String s, int start, int end, int[] offsets) {
+            int matchEnd = start + literal.length();
+            return matchEnd <= end && s.regionMatches(start, literal, 0, literal.length())
+                    && setMatch(offsets, start, matchEnd);
+        }
+
+        @Override boolean matches(String s, int start, int end, int[] offsets) {
+            return end - start == literal.length() && lookingAt(s, start, end, offsets);
+        }
+    }
+
+    /**
+     * Literal alternatives. As in ICU, the leftmost match wins, and at a given
+     * position the first alternative that matches wins, even if a later one
+     * would be longer. Candidate alternatives are looked up by their first
+     * character, so positions that can't start a match cost one table probe.
+     */
+    static final class Alternation extends SimplePattern {
+        private static final int[] NONE = new int[0];
+
+        private final String[] alternatives;
+        /** Indices of the alternatives starting with each ASCII character, in order. */
+        private final int[][] asciiCandidates = new int[128][];
+        /** Whether any alternative starts with a non-ASCII character. */
+        private final boolean hasNonAscii;
+
+        Alternation(String[] alternatives) {
+            this.alternatives = alternatives;
+            boolean hasNonAscii = false;
+            for (int c = 0; c < 128; c++) {
+                asciiCandidates[c] = candidates((char) c);
+            }
+            for (String alternative : alternatives) {
+                hasNonAscii |= alternative.charAt(0) >= 128;
+            }
+            this.hasNonAscii = hasNonAscii;
+        }
+
+        private int[] candidates(char ch) {
+            int count = 0;
+            int[] result = new int[alternatives.length];
+            for (int i = 0; i < alternatives.length; i++) {
+                if (alternatives[i].charAt(0) == ch) {
+                    result[count++] = i;
+                }
+            }
+            if (count == 0) {
+                return NONE;
+            }
+            int[] trimmed = new int[count];
+            System.arraycopy(result, 0, trimmed, 0, count);
+            return trimmed;
+        }
+
+        /**
+         * Returns the index of the first alternative matching at {@code i}, or -1.
+         */
+        private int matchAt(String s, int i, int end) {
+            char ch = s.charAt(i);
+            if (ch < 128) {
+                for (int candidate : asciiCandidates[ch]) {
+                    String alternative = alternatives[candidate];
+                    if (i + alternative.length() <= end
+                            && s.regionMatches(i, alternative, 0, alternative.length())) {
+                        return candidate;
+                    }
+                }
+            } else if (hasNonAscii) {
+                for (int candidate = 0; candidate < alternatives.length; candidate++) {
+                    String alternative = alternatives[candidate];
+                    if (i + alternative.length() <= end
+                            && s.regionMatches(i, alternative, 0, alternative.length())) {
+                        return candidate;
+                    }
+                }
+            }
+            return -1;
+        }
+
+        @Override boolean find(String s, int start, int end, int[] offsets) {
+            for (int i = start; i < end; i++) {
+                int match = matchAt(s, i, end);
+                if (match != -1) {
+                    return setMatch(offsets, i, i + alternatives[match].length());
+                }
+            }
+            return false;
+        }
+
+        @Override boolean lookingAt(String s, int start, int end, int[] offsets) {
+            if (start == end) {
+                return false;
+            }
+            int match = matchAt(s, start, end);
+            return match != -1 && setMatch(offsets, start, start + alternatives[match].length());
+        }
+
+        @Override boolean matches(String s, int start, int end, int[] offsets) {
+            // Backtracking would try every alternative, so any exact one will do.
+            for (String alternative : alternatives) {
+                if (end - start == alternative.length()
+                        && s.regionMatches(start, alternative, 0, alternative.length())) {
+                    return setMatch(offsets, start, end);
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A character class such as {@code [a-z0-9_]}, optionally repeated with a
+     * greedy {@code +}. Negation, nested classes, set operations, property
+     * escapes and surrogates are left to ICU.
+     */
+    static final class CharClass extends SimplePattern {
+        private final boolean[] ascii = new boolean[128];
+        /** Inclusive non-ASCII ranges, as (first, last) pairs. */
+        private final char[] ranges;
+        private final boolean repeated;
+
+        private CharClass(char[] ranges, boolean repeated) {
+            this.ranges = ranges;
+            this.repeated = repeated;
+        }
+
+        static CharClass parse(String re) {
+            int close = re.length() - 1;
+            boolean repeated = false;
+            if (re.endsWith("]+")) {
+                close--;
+                repeated = true;
+            }
+            if (close < 2 || re.charAt(close) != ']') {
+                return null;
+            }
+
+            List<Character> members = new ArrayList<Character>(); // Pairs of first and last.
+            for (int i = 1; i < close; ) {
+                char first = re.charAt(i);
+                if (i == 1 && first == '^') {
+                    return null;
+                }
+                int[] next = new int[1];
+                int lo = classChar(re, i, close, next);
+                if (lo == -1) {
+                    return null;
+                }
+                i = next[0];
+                int hi = lo;
+                if (i < close && re.charAt(i) == '-') {
+                    hi = classChar(re, i + 1, close, next);
+                    if (hi == -1 || hi < lo || (lo <= Character.MAX_SURROGATE
+                            && hi >= Character.MIN_SURROGATE)) {
+                        return null;
+                    }
+                    i = next[0];
+                }
+                members.add((char) lo);
+                members.add((char) hi);
+            }
+
+            List<Character> nonAscii = new ArrayList<Character>();
+            for (int i = 0; i < members.size(); i += 2) {
+                char lo = members.get(i);
+                char hi = members.get(i + 1);
+                if (hi >= 128) {
+                    nonAscii.add((char) Math.max(lo, 128));
+                    nonAscii.add(hi);
+                }
+            }
+            char[] ranges = new char[nonAscii.size()];
+            for (int i = 0; i < ranges.length; i++) {
+                ranges[i] = nonAscii.get(i);
+            }
+            CharClass result = new CharClass(ranges, repeated);
+            for (int i = 0; i < members.size(); i += 2) {
+                for (int c = members.get(i); c <= members.get(i + 1) && c < 128; c++) {
+                    result.ascii[c] = true;
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Returns the literal class member at {@code re[i]}, storing the index
+         * following it in {@code next[0]}, or returns -1 if it isn't a literal.
+         */
+        private static int classChar(String re, int i, int close, int[] next) {
+            if (i >= close) {
+                return -1;
+            }
+            char ch = re.charAt(i);
+            if (ch == '\\') {
+                if (i + 1 >= close) {
+                    return -1;
+                }
+                char escaped = unescape(re.charAt(i + 1));
+                next[0] = i + 2;
+                return escaped == 0 ? -1 : escaped;
+            }
+            // '-' and '&' are operators in ICU sets, '[' nests, ':' may start [:alpha:],
+            // and '$', '{' and '}' have meanings in some set syntaxes; leave them all to ICU.
+            if ("[]-&:${}".indexOf(ch) != -1 || Character.isSurrogate(ch)) {
+                return -1;
+            }
+            next[0] = i + 1;
+            return ch;
+        }
+
+        private boolean contains(char ch) {
+            if (ch < 128) {
+                return ascii[ch];
+            }
+            for (int i = 0; i < ranges.length; i += 2) {
+                if (ch >= ranges[i] && ch <= ranges[i + 1]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Returns the end of the match starting at {@code i}, which must be a
+         * member of this class.
+         */
+        private int matchEnd(String s, int i, int end) {
+            i++;
+            if (repeated) {
+                while (i < end && contains(s.charAt(i))) {
+                    i++;
+                }
+            }
+            return i;
+        }
+
+        @Override boolean find(String s, int start, int end, int[] offsets) {
+            for (int i = start; i < end; i++) {
+                if (contains(s.charAt(i))) {
+                    return setMatch(offsets, i, matchEnd(s, i, end));
+                }
+            }
+            return false;
+        }
+
+        @Override boolean lookingAt(String s, int start, int end, int[] offsets) {
+            return start < end && contains(s.charAt(start))
+                    && setMatch(offsets, start, matchEnd(s, start, end));
+        }
+
+        @Override boolean matches(String s, int start, int end, int[] offsets) {
+            return start < end && contains(s.charAt(start)) && matchEnd(s, start, end) == end
+                    && setMatch(offsets, start, end);
+        }
+    }
+
+    private static boolean setMatch(int[] offsets, int start, int end) {
+        offsets[0] = start;
+        offsets[1] = end;
+        return true;
+    }
+}
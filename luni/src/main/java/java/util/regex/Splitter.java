@@ -115,11 +115,15 @@ public class Splitter {
 
         // Collect text preceding each occurrence of the separator, while there's enough space.
         ArrayList<String> list = new ArrayList<String>();
-        Matcher matcher = new Matcher(pattern, input);
+        Matcher matcher = pattern.acquireMatcher(input);
         int begin = 0;
-        while (list.size() + 1 != limit && matcher.find()) {
-            list.add(input.substring(begin, matcher.start()));
-            begin = matcher.end();
+        try {
+            while (list.size() + 1 != limit && matcher.find()) {
+                list.add(input.substring(begin, matcher.start()));
+                begin = matcher.end();
+            }
+        } finally {
+            pattern.releaseMatcher(matcher);
         }
         return finishSplit(list, input, begin, limit);
     }
@@ -0,0 +1,322 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package java.util.zip;
+
+import java.io.IOException;
+import java.nio.charset.Charsets;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import libcore.io.BufferIterator;
+import libcore.io.ErrnoException;
+import libcore.io.MemoryMappedFile;
+
+/**
+ * A compact index over the central directory of a memory-mapped zip file. For
+ * each entry only its offset and a hash of its name are kept on the Java heap;
+ * {@link ZipEntry} instances are created on demand from the mapped directory.
+ *
+ * <p>Lookups don't modify any shared state, so an index may be used by many
+ * threads at once. They hold a read lock while they touch the mapping, and
+ * {@link #close} takes the write lock before unmapping it, so a lookup racing
+ * with close throws {@code IllegalStateException} rather than reading memory
+ * that's no longer mapped.
+ *
+ * <p>Lookups compare UTF-8 encoded names with the raw bytes in the directory,
+ * so only archives whose names are all well-formed UTF-8 can be indexed. Other
+ * names decode to a different string than the bytes they came from.
+ */
+final class ZipDirectoryIndex implements ZipConstants {
+    private final MemoryMappedFile mappedFile;
+
+    /** The file offset of each central directory entry, in directory order. */
+    private final int[] offsets;
+
+    /** The hash of each entry's UTF-8 encoded name. */
+    private final int[] hashes;
+
+    /**
+     * An open-addressed hash table whose slots hold an index into offsets plus
+     * one, or zero if the slot is empty.
+     */
+    private final int[] table;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** True once the file has been unmapped. Guarded by lock. */
+    private boolean closed;
+
+    private ZipDirectoryIndex(MemoryMappedFile mappedFile, int numEntries) {
+        this.mappedFile = mappedFile;
+        this.offsets = new int[numEntries];
+        this.hashes = new int[numEntries];
+        int capacity = 1;
+        while (capacity < numEntries * 2) {
+            capacity <<= 1;
+        }
+        this.table = new int[capacity];
+    }
+
+    /**
+     * Maps the zip file at {@code path} and indexes the {@code numEntries}
+     * entries of its central directory, which starts at {@code
+     * centralDirOffset}. The file must be smaller than 2GiB. Returns null if
+     * an entry name isn't well-formed UTF-8.
+     */
+    static ZipDirectoryIndex create(String path, long centralDirOffset, int numEntries)
+            throws IOException {
+        MemoryMappedFile mappedFile;
+        try {
+            mappedFile = MemoryMappedFile.mmapRO(path);
+        } catch (ErrnoException errnoException) {
+            throw errnoException.rethrowAsIOException();
+        }
+
+        boolean success = false;
+        try {
+            ZipDirectoryIndex result = new ZipDirectoryIndex(mappedFile, numEntries);
+            if (!result.readCentralDir(centralDirOffset)) {
+                return null;
+            }
+            success = true;
+            return result;
+        } finally {
+            if (!success) {
+                try {
+                    mappedFile.close();
+                } catch (ErrnoException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Validates every central directory entry and fills in the index. Since
+     * {@link libcore.io.NioBufferIterator} doesn't check bounds, we must check
+     * that each entry lies within the mapping before reading from it. Returns
+     * false if a name isn't well-formed UTF-8.
+     */
+    private boolean readCentralDir(long centralDirOffset) throws ZipException {
+        long fileSize = mappedFile.size();
+        BufferIterator it = mappedFile.littleEndianIterator();
+        byte[] name = new byte[256];
+        long offset = centralDirOffset;
+        for (int i = 0; i < offsets.length; ++i) {
+            if (offset + CENHDR > fileSize) {
+                throw new ZipException("Central Directory Entry not found");
+            }
+            it.seek((int) offset);
+            if (it.readInt() != CENSIG) {
+                throw new ZipException("Central Directory Entry not found");
+            }
+            it.skip(4);
+            int gpbf = it.readShort() & 0xffff;
+            if ((gpbf & ZipFile.GPBF_UNSUPPORTED_MASK) != 0) {
+                throw new ZipException("Invalid General Purpose Bit Flag: " + gpbf);
+            }
+            it.seek((int) offset + 28);
+            int nameLength = it.readShort() & 0xffff;
+            int extraLength = it.readShort() & 0xffff;
+            int commentByteCount = it.readShort() & 0xffff;
+            long nextOffset = offset + CENHDR + nameLength + extraLength + commentByteCount;
+            if (nextOffset > fileSize) {
+                throw new ZipException("Central Directory Entry extends past end of file");
+            }
+
+            if (nameLength > name.length) {
+                name = new byte[nameLength];
+            }
+            it.seek((int) offset + CENHDR);
+            it.readByteArray(name, 0, nameLength);
+            if (!isWellFormedUtf8(name, nameLength)) {
+                return false;
+            }
+
+            offsets[i] = (int) offset;
+            hashes[i] = hash(name, nameLength);
+            if (find(it, name, nameLength, hashes[i], i + 1) != -1) {
+                throw new ZipException("Duplicate entry name: "
+                        + new String(name, 0, nameLength, Charsets.UTF_8));
+            }
+            offset = nextOffset;
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the first {@code length} bytes of {@code bytes} are
+     * well-formed UTF-8, which decodes to a string that encodes back to the
+     * same bytes. Overlong forms, surrogates and values above U+10FFFF aren't.
+     */
+    static boolean isWellFormedUtf8(byte[] bytes, int length) {
+        int i = 0;
+        while (i < length) {
+            int b = bytes[i++] & 0xff;
+            if (b < 0x80) {
+                continue;
+            }
+            int trailing;
+            int min;
+            if (b >= 0xc2 && b <= 0xdf) {
+                trailing = 1;
+                min = 0x80;
+            } else if (b >= 0xe0 && b <= 0xef) {
+                trailing = 2;
+                min = 0x800;
+            } else if (b >= 0xf0 && b <= 0xf4) {
+                trailing = 3;
+                min = 0x10000;
+            } else {
+                return false;
+            }
+            if (i + trailing > length) {
+                return false;
+            }
+            int codePoint = b & (0x3f >> trailing);
+            for (int j = 0; j < trailing; ++j) {
+                int next = bytes[i++] & 0xff;
+                if ((next & 0xc0) != 0x80) {
+                    return false;
+                }
+                codePoint = (codePoint << 6) | (next & 0x3f);
+            }
+            if (codePoint < min || codePoint > 0x10ffff
+                    || (codePoint >= 0xd800 && codePoint <= 0xdfff)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the index of the entry named by the first {@code nameLength}
+     * bytes of {@code name}. If the entry isn't present, returns -1 and, if
+     * {@code insert} is non-zero, stores it in the empty slot.
+     */
+    private int find(BufferIterator it, byte[] name, int nameLength, int hash, int insert) {
+        int mask = table.length - 1;
+        for (int slot = (hash ^ (hash >>> 16)) & mask; ; slot = (slot + 1) & mask) {
+            int index = table[slot] - 1;
+            if (index == -1) {
+                if (insert != 0) {
+                    table[slot] = insert;
+                }
+                return -1;
+            }
+            if (hashes[index] == hash && nameEquals(it, index, name, nameLength)) {
+                return index;
+            }
+        }
+    }
+
+    private boolean nameEquals(BufferIterator it, int index, byte[] name, int nameLength) {
+        it.seek(offsets[index] + 28);
+        if ((it.readShort() & 0xffff) != nameLength) {
+            return false;
+        }
+        // Compare against the mapping directly; this runs on every probe.
+        it.seek(offsets[index] + CENHDR);
+        for (int i = 0; i < nameLength; ++i) {
+            if (it.readByte() != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(byte[] name, int nameLength) {
+        int result = 0;
+        for (int i = 0; i < nameLength; ++i) {
+            result = 31 * result + name[i];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of entries in the central directory.
+     */
+    int size() {
+        return offsets.length;
+    }
+
+    /**
+     * Returns a new entry for the {@code index}th entry of the central directory.
+     */
+    ZipEntry entryAt(int index) {
+        lock.readLock().lock();
+        try {
+            checkNotClosed();
+            return readEntry(index);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a new entry read from the mapping. The caller must hold the read lock.
+     */
+    private ZipEntry readEntry(int index) {
+        BufferIterator it = mappedFile.littleEndianIterator();
+        it.seek(offsets[index]);
+        try {
+            return new ZipEntry(it);
+        } catch (ZipException e) {
+            throw new AssertionError(e); // readCentralDir already validated this entry.
+        }
+    }
+
+    /**
+     * Returns a new entry for the entry named {@code entryName}, or null if
+     * there is no such entry.
+     */
+    ZipEntry get(String entryName) {
+        byte[] name = entryName.getBytes(Charsets.UTF_8);
+        lock.readLock().lock();
+        try {
+            checkNotClosed();
+            int index = find(mappedFile.littleEndianIterator(), name, name.length,
+                    hash(name, name.length), 0);
+            return index != -1 ? readEntry(index) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void checkNotClosed() {
+        if (closed) {
+            throw new IllegalStateException("Zip file closed");
+        }
+    }
+
+    /**
+     * Unmaps the zip file once any lookups in progress have finished. Entries
+     * that have already been returned remain valid.
+     */
+    void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            mappedFile.close();
+        } catch (ErrnoException errnoException) {
+            throw errnoException.rethrowAsIOException();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -351,13 +351,64 @@ public class ZipEntry implements ZipConstants, Cloneable {
         Streams.readFully(in, hdrBuf, 0, hdrBuf.length);
 
         BufferIterator it = HeapBufferIterator.iterator(hdrBuf, 0, hdrBuf.length, ByteOrder.LITTLE_ENDIAN);
+        int commentByteCount = readFixedFields(it);
 
+        byte[] nameBytes = new byte[nameLength];
+        Streams.readFully(in, nameBytes, 0, nameBytes.length);
+        name = new String(nameBytes, 0, nameBytes.length, Charsets.UTF_8);
+
+        if (extra != null) {
+            Streams.readFully(in, extra, 0, extra.length);
+        }
+
+        // The RI has always assumed UTF-8. (If GPBF_UTF8_FLAG isn't set, the encoding is
+        // actually IBM-437.)
+        if (commentByteCount > 0) {
+            byte[] commentBytes = new byte[commentByteCount];
+            Streams.readFully(in, commentBytes, 0, commentByteCount);
+            comment = new String(commentBytes, 0, commentBytes.length, Charsets.UTF_8);
+        }
+    }
+
+    /*
+     * Internal constructor.  Creates a new ZipEntry by reading the
+     * Central Directory Entry from "it", which must be positioned at
+     * the CDE signature.
+     *
+     * On exit, "it" will be positioned at the start of the next entry.
+     */
+    ZipEntry(BufferIterator it) throws ZipException {
+        int commentByteCount = readFixedFields(it);
+
+        byte[] nameBytes = new byte[nameLength];
+        it.readByteArray(nameBytes, 0, nameBytes.length);
+        name = new String(nameBytes, 0, nameBytes.length, Charsets.UTF_8);
+
+        if (extra != null) {
+            it.readByteArray(extra, 0, extra.length);
+        }
+
+        // The RI has always assumed UTF-8. (If GPBF_UTF8_FLAG isn't set, the encoding is
+        // actually IBM-437.)
+        if (commentByteCount > 0) {
+            byte[] commentBytes = new byte[commentByteCount];
+            it.readByteArray(commentBytes, 0, commentByteCount);
+            comment = new String(commentBytes, 0, commentBytes.length, Charsets.UTF_8);
+        }
+    }
+
+    /**
+     * Reads the fixed-size part of the Central Directory Entry at the
+     * position of "it", leaving "it" positioned at the entry's name. Allocates
+     * "extra" if the entry has extra data, and returns the comment's length.
+     */
+    private int readFixedFields(BufferIterator it) throws ZipException {
         int sig = it.readInt();
         if (sig != CENSIG) {
              throw new ZipException("Central Directory Entry not found");
         }
 
-        it.seek(8);
+        it.skip(4);
         int gpbf = it.readShort() & 0xffff;
 
         if ((gpbf & ZipFile.GPBF_UNSUPPORTED_MASK) != 0) {
@@ -378,24 +429,12 @@ public class ZipEntry implements ZipConstants, Cloneable {
         int commentByteCount = it.readShort() & 0xffff;
 
         // This is a 32-bit value in the file, but a 64-bit field in this object.
-        it.seek(42);
+        it.skip(8);
         localHeaderRelOffset = ((long) it.readInt()) & 0xffffffffL;
 
-        byte[] nameBytes = new byte[nameLength];
-        Streams.readFully(in, nameBytes, 0, nameBytes.length);
-        name = new String(nameBytes, 0, nameBytes.length, Charsets.UTF_8);
-
         if (extraLength > 0) {
             extra = new byte[extraLength];
-            Streams.readFully(in, extra, 0, extraLength);
-        }
-
-        // The RI has always assumed UTF-8. (If GPBF_UTF8_FLAG isn't set, the encoding is
-        // actually IBM-437.)
-        if (commentByteCount > 0) {
-            byte[] commentBytes = new byte[commentByteCount];
-            Streams.readFully(in, commentBytes, 0, commentByteCount);
-            comment = new String(commentBytes, 0, commentBytes.length, Charsets.UTF_8);
         }
+        return commentByteCount;
     }
 }
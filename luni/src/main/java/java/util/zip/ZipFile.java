@@ -22,15 +22,22 @@ import java.io.BufferedInputStream;
 import java.io.EOFException;
 import java.io.DataInputStream;
 import java.io.File;
+import java.io.FileDescriptor;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
 import java.nio.ByteOrder;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import libcore.io.BufferIterator;
+import libcore.io.ErrnoException;
 import libcore.io.HeapBufferIterator;
+import libcore.io.Libcore;
 import libcore.io.Streams;
 
 /**
@@ -44,6 +51,14 @@ import libcore.io.Streams;
  *
  * <p>If you want to create a zip file, use {@link ZipOutputStream}. There is no API for updating
  * an existing zip file.
+ *
+ * <p>If the system property {@code libcore.zip.mmap} is true, the central directory is
+ * memory-mapped rather than read onto the heap, and the index holds just a few bytes per entry.
+ * Each call to {@link #getEntry} or {@link #entries} then returns new {@code ZipEntry}
+ * instances. This makes opening zip files with many entries much cheaper.
+ *
+ * <p>Entry data is read with positional reads, so many threads may read entries concurrently.
+ * Closing the zip file waits for reads in progress, and later reads throw {@code IOException}.
  */
 public class ZipFile implements ZipConstants {
     /**
@@ -99,7 +114,18 @@ public class ZipFile implements ZipConstants {
 
     private RandomAccessFile raf;
 
-    private final LinkedHashMap<String, ZipEntry> entries = new LinkedHashMap<String, ZipEntry>();
+    /**
+     * Held for reading by every read of raf's file descriptor, and for writing
+     * while it's closed, so a read can't use the descriptor's number after it
+     * has been closed and reused by another file.
+     */
+    private final ReadWriteLock fdLock = new ReentrantReadWriteLock();
+
+    /** The entries of this zip file, or null if the central directory is memory-mapped. */
+    private LinkedHashMap<String, ZipEntry> entries;
+
+    /** The index of the memory-mapped central directory, or null if it's on the heap. */
+    private ZipDirectoryIndex directoryIndex;
 
     private final CloseGuard guard = CloseGuard.get();
 
@@ -175,9 +201,15 @@ public class ZipFile implements ZipConstants {
 
         RandomAccessFile localRaf = raf;
         if (localRaf != null) { // Only close initialized instances
-            synchronized (localRaf) {
+            fdLock.writeLock().lock();
+            try {
                 raf = null;
                 localRaf.close();
+            } finally {
+                fdLock.writeLock().unlock();
+            }
+            if (directoryIndex != null) {
+                directoryIndex.close();
             }
             if (fileToDeleteOnClose != null) {
                 fileToDeleteOnClose.delete();
@@ -204,6 +236,25 @@ public class ZipFile implements ZipConstants {
      */
     public Enumeration<? extends ZipEntry> entries() {
         checkNotClosed();
+        if (directoryIndex != null) {
+            return new Enumeration<ZipEntry>() {
+                private int index = 0;
+
+                public boolean hasMoreElements() {
+                    checkNotClosed();
+                    return index < directoryIndex.size();
+                }
+
+                public ZipEntry nextElement() {
+                    checkNotClosed();
+                    if (index >= directoryIndex.size()) {
+                        throw new NoSuchElementException();
+                    }
+                    return directoryIndex.entryAt(index++);
+                }
+            };
+        }
+
         final Iterator<ZipEntry> iterator = entries.values().iterator();
 
         return new Enumeration<ZipEntry>() {
@@ -230,6 +281,14 @@ public class ZipFile implements ZipConstants {
             throw new NullPointerException("entryName == null");
         }
 
+        if (directoryIndex != null) {
+            ZipEntry ze = directoryIndex.get(entryName);
+            if (ze == null) {
+                ze = directoryIndex.get(entryName + "/");
+            }
+            return ze;
+        }
+
         ZipEntry ze = entries.get(entryName);
         if (ze == null) {
             ze = entries.get(entryName + "/");
@@ -254,35 +313,37 @@ public class ZipFile implements ZipConstants {
             return null;
         }
 
-        // Create an InputStream at the right part of the file.
+        // Create an InputStream at the right part of the file. RAFStream uses positional
+        // reads, so there's no need to lock the shared RandomAccessFile.
         RandomAccessFile localRaf = raf;
-        synchronized (localRaf) {
-            // We don't know the entry data's start position. All we have is the
-            // position of the entry's local header. At position 6 we find the
-            // General Purpose Bit Flag.
-            // http://www.pkware.com/documents/casestudies/APPNOTE.TXT
-            RAFStream rafStream= new RAFStream(localRaf, entry.localHeaderRelOffset + 6);
-            DataInputStream is = new DataInputStream(rafStream);
-            int gpbf = Short.reverseBytes(is.readShort()) & 0xffff;
-            if ((gpbf & ZipFile.GPBF_UNSUPPORTED_MASK) != 0) {
-                throw new ZipException("Invalid General Purpose Bit Flag: " + gpbf);
-            }
+        if (localRaf == null) {
+            throw new IllegalStateException("Zip file closed");
+        }
+        // We don't know the entry data's start position. All we have is the
+        // position of the entry's local header. At position 6 we find the
+        // General Purpose Bit Flag.
+        // http://www.pkware.com/documents/casestudies/APPNOTE.TXT
+        RAFStream rafStream= new RAFStream(localRaf, fdLock, entry.localHeaderRelOffset + 6);
+        DataInputStream is = new DataInputStream(rafStream);
+        int gpbf = Short.reverseBytes(is.readShort()) & 0xffff;
+        if ((gpbf & ZipFile.GPBF_UNSUPPORTED_MASK) != 0) {
+            throw new ZipException("Invalid General Purpose Bit Flag: " + gpbf);
+        }
 
-            // At position 28 we find the length of the extra data. In some cases
-            // this length differs from the one coming in the central header.
-            is.skipBytes(20);
-            int localExtraLenOrWhatever = Short.reverseBytes(is.readShort()) & 0xffff;
-            is.close();
-
-            // Skip the name and this "extra" data or whatever it is:
-            rafStream.skip(entry.nameLength + localExtraLenOrWhatever);
-            rafStream.length = rafStream.offset + entry.compressedSize;
-            if (entry.compressionMethod == ZipEntry.DEFLATED) {
-                int bufSize = Math.max(1024, (int)Math.min(entry.getSize(), 65535L));
-                return new ZipInflaterInputStream(rafStream, new Inflater(true), bufSize, entry);
-            } else {
-                return rafStream;
-            }
+        // At position 28 we find the length of the extra data. In some cases
+        // this length differs from the one coming in the central header.
+        is.skipBytes(20);
+        int localExtraLenOrWhatever = Short.reverseBytes(is.readShort()) & 0xffff;
+        is.close();
+
+        // Skip the name and this "extra" data or whatever it is:
+        rafStream.skip(entry.nameLength + localExtraLenOrWhatever);
+        rafStream.length = rafStream.offset + entry.compressedSize;
+        if (entry.compressionMethod == ZipEntry.DEFLATED) {
+            int bufSize = Math.max(1024, (int)Math.min(entry.getSize(), 65535L));
+            return new ZipInflaterInputStream(rafStream, new Inflater(true), bufSize, entry);
+        } else {
+            return rafStream;
         }
     }
 
@@ -303,7 +364,7 @@ public class ZipFile implements ZipConstants {
      */
     public int size() {
         checkNotClosed();
-        return entries.size();
+        return (directoryIndex != null) ? directoryIndex.size() : entries.size();
     }
 
     /**
@@ -365,11 +426,22 @@ public class ZipFile implements ZipConstants {
             throw new ZipException("spanned archives not supported");
         }
 
+        // With a large central directory it's cheaper to map the file and index the
+        // entries in place. NioBufferIterator can only address the first 2GiB. Archives
+        // with names that aren't UTF-8 can't be indexed in place, and use the heap.
+        if (Boolean.getBoolean("libcore.zip.mmap") && raf.length() <= Integer.MAX_VALUE) {
+            directoryIndex = ZipDirectoryIndex.create(filename, centralDirOffset, numEntries);
+            if (directoryIndex != null) {
+                return;
+            }
+        }
+
         // Seek to the first CDE and read all entries.
         // We have to do this now (from the constructor) rather than lazily because the
         // public API doesn't allow us to throw IOException except from the constructor
         // or from getInputStream.
-        RAFStream rafStream = new RAFStream(raf, centralDirOffset);
+        entries = new LinkedHashMap<String, ZipEntry>();
+        RAFStream rafStream = new RAFStream(raf, fdLock, centralDirOffset);
         BufferedInputStream bufferedStream = new BufferedInputStream(rafStream, 4096);
         byte[] hdrBuf = new byte[CENHDR]; // Reuse the same buffer for each entry.
         for (int i = 0; i < numEntries; ++i) {
@@ -383,21 +455,42 @@ public class ZipFile implements ZipConstants {
 
     /**
      * Wrap a stream around a RandomAccessFile.  The RandomAccessFile is shared
-     * among all streams returned by getInputStream(), so we have to synchronize
-     * access to it.  (We can optimize this by adding buffering here to reduce
-     * collisions.)
+     * among all streams returned by getInputStream(), so we use positional reads
+     * and never move its file pointer. Each read holds the zip file's fdLock for
+     * reading, so reads don't wait for each other but close() waits for them.
      *
      * <p>We could support mark/reset, but we don't currently need them.
      */
     static class RAFStream extends InputStream {
         private final RandomAccessFile sharedRaf;
+        private final ReadWriteLock fdLock;
         private long length;
         private long offset;
 
-        public RAFStream(RandomAccessFile raf, long initialOffset) throws IOException {
+        public RAFStream(RandomAccessFile raf, ReadWriteLock fdLock, long initialOffset)
+                throws IOException {
             sharedRaf = raf;
+            this.fdLock = fdLock;
             offset = initialOffset;
-            length = raf.length();
+            fdLock.readLock().lock();
+            try {
+                length = Libcore.os.fstat(openFd()).st_size;
+            } catch (ErrnoException errnoException) {
+                throw errnoException.rethrowAsIOException();
+            } finally {
+                fdLock.readLock().unlock();
+            }
+        }
+
+        /**
+         * Returns the shared file descriptor. The caller must hold fdLock for reading.
+         */
+        private FileDescriptor openFd() throws IOException {
+            FileDescriptor fd = sharedRaf.getFD();
+            if (!fd.valid()) {
+                throw new IOException("Zip file closed");
+            }
+            return fd;
         }
 
         @Override public int available() throws IOException {
@@ -409,18 +502,27 @@ public class ZipFile implements ZipConstants {
         }
 
         @Override public int read(byte[] b, int off, int len) throws IOException {
-            synchronized (sharedRaf) {
-                sharedRaf.seek(offset);
-                if (len > length - offset) {
-                    len = (int) (length - offset);
-                }
-                int count = sharedRaf.read(b, off, len);
-                if (count > 0) {
-                    offset += count;
-                    return count;
-                } else {
-                    return -1;
-                }
+            Arrays.checkOffsetAndCount(b.length, off, len);
+            if (len > length - offset) {
+                len = (int) (length - offset);
+            }
+            if (len <= 0) {
+                return -1;
+            }
+            int count;
+            fdLock.readLock().lock();
+            try {
+                count = Libcore.os.pread(openFd(), b, off, len, offset);
+            } catch (ErrnoException errnoException) {
+                throw errnoException.rethrowAsIOException();
+            } finally {
+                fdLock.readLock().unlock();
+            }
+            if (count > 0) {
+                offset += count;
+                return count;
+            } else {
+                return -1;
             }
         }
 
@@ -433,14 +535,16 @@ public class ZipFile implements ZipConstants {
         }
 
         public int fill(Inflater inflater, int nativeEndBufSize) throws IOException {
-            synchronized (sharedRaf) {
-                int len = Math.min((int) (length - offset), nativeEndBufSize);
-                int cnt = inflater.setFileInput(sharedRaf.getFD(), offset, nativeEndBufSize);
-                // setFileInput read from the file, so we need to get the OS and RAFStream back
-                // in sync...
-                skip(cnt);
-                return len;
+            int len = Math.min((int) (length - offset), nativeEndBufSize);
+            int cnt;
+            fdLock.readLock().lock();
+            try {
+                cnt = inflater.setFileInput(openFd(), offset, nativeEndBufSize);
+            } finally {
+                fdLock.readLock().unlock();
             }
+            skip(cnt);
+            return len;
         }
     }
 
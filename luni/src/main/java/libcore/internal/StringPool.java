@@ -19,11 +19,52 @@ package libcore.internal;
 /**
  * A pool of string instances. Unlike the {@link String#intern() VM's
  * interned strings}, this pool provides no guarantee of reference equality.
- * It is intended only to save allocations. This class is not thread safe.
+ * It is intended only to save allocations.
+ *
+ * <p>The pool is divided into sets of {@code associativity} slots. A string
+ * may only be stored in the set selected by its hash, and each set evicts its
+ * least recently used string. The default pool has 512 sets of one slot.
+ *
+ * <p>A pool is not thread safe unless it is created with {@code threadSafe}
+ * set. A thread safe pool doesn't lock: concurrent updates to the same set may
+ * drop or duplicate pooled strings, but strings are immutable and every hit is
+ * compared by content, so callers always get a string with the right
+ * characters. Thread safe pools don't count hits and misses, since a shared
+ * counter would make every lookup contend.
  */
 public final class StringPool {
 
-    private final String[] pool = new String[512];
+    private final String[] pool;
+    private final int associativity;
+
+    private final boolean threadSafe;
+
+    /* statistics, kept only by pools that aren't thread safe */
+    private long hitCount;
+    private long missCount;
+
+    public StringPool() {
+        this(512, 1, false);
+    }
+
+    /**
+     * @param size the number of strings to pool. Must be a power of two.
+     * @param associativity the number of slots each string may be stored in.
+     *     Must be a power of two no greater than {@code size}.
+     * @param threadSafe true if the pool will be used by multiple threads.
+     */
+    public StringPool(int size, int associativity, boolean threadSafe) {
+        if (size <= 0 || (size & (size - 1)) != 0) {
+            throw new IllegalArgumentException("size is not a power of two: " + size);
+        }
+        if (associativity <= 0 || (associativity & (associativity - 1)) != 0
+                || associativity > size) {
+            throw new IllegalArgumentException("bad associativity: " + associativity);
+        }
+        this.pool = new String[size];
+        this.associativity = associativity;
+        this.threadSafe = threadSafe;
+    }
 
     private static boolean contentEquals(String s, char[] chars, int start, int length) {
         if (s.length() != length) {
@@ -47,18 +88,95 @@ public final class StringPool {
             hashCode = (hashCode * 31) + array[i];
         }
 
-        // Pick a bucket using Doug Lea's supplemental secondaryHash function (from HashMap)
+        int set = firstSlot(hashCode);
+        for (int i = 0; i < associativity; i++) {
+            String pooled = pool[set + i];
+            if (pooled == null) {
+                break;
+            }
+            if (contentEquals(pooled, array, start, length)) {
+                return hit(set, i, pooled);
+            }
+        }
+
+        return miss(set, new String(array, start, length));
+    }
+
+    /**
+     * Returns a string equal to {@code s.substring(start, start + length)}.
+     * Unlike a substring, a newly created result doesn't share {@code s}'s
+     * characters, so holding it won't keep all of {@code s} reachable.
+     */
+    public String get(String s, int start, int length) {
+        // Compute an arbitrary hash of the content
+        int hashCode = 0;
+        for (int i = start; i < start + length; i++) {
+            hashCode = (hashCode * 31) + s.charAt(i);
+        }
+
+        int set = firstSlot(hashCode);
+        for (int i = 0; i < associativity; i++) {
+            String pooled = pool[set + i];
+            if (pooled == null) {
+                break;
+            }
+            if (pooled.length() == length && pooled.regionMatches(0, s, start, length)) {
+                return hit(set, i, pooled);
+            }
+        }
+
+        return miss(set, new String(s.substring(start, start + length)));
+    }
+
+    /**
+     * Returns the index of the first slot of the set for {@code hashCode}.
+     */
+    private int firstSlot(int hashCode) {
+        // Pick a set using Doug Lea's supplemental secondaryHash function (from HashMap)
         hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
         hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
-        int index = hashCode & (pool.length - 1);
+        return hashCode & (pool.length - associativity);
+    }
 
-        String pooled = pool[index];
-        if (pooled != null && contentEquals(pooled, array, start, length)) {
-            return pooled;
+    /**
+     * Moves {@code pooled}, found at slot {@code way} of {@code set}, to the
+     * front of its set.
+     */
+    private String hit(int set, int way, String pooled) {
+        if (way != 0) {
+            System.arraycopy(pool, set, pool, set + 1, way);
+            pool[set] = pooled;
         }
+        hitCount++;
+        return pooled;
+    }
 
-        String result = new String(array, start, length);
-        pool[index] = result;
+    /**
+     * Adds {@code result} to the front of {@code set}, evicting the set's
+     * least recently used string.
+     */
+    private String miss(int set, String result) {
+        if (associativity != 1) {
+            System.arraycopy(pool, set, pool, set + 1, associativity - 1);
+        }
+        pool[set] = result;
+        missCount++;
         return result;
     }
+
+    /**
+     * Returns the number of lookups that returned a pooled string, or -1 if
+     * this pool is thread safe.
+     */
+    public long getHitCount() {
+        return threadSafe ? -1 : hitCount;
+    }
+
+    /**
+     * Returns the number of lookups that created a new string, or -1 if this
+     * pool is thread safe.
+     */
+    public long getMissCount() {
+        return threadSafe ? -1 : missCount;
+    }
 }
@@ -87,6 +87,14 @@ public class BlockGuardOs extends ForwardingOs {
 
     // TODO: Untag newFd when needed for dup2(FileDescriptor oldFd, int newFd)
 
+    @Override public int epoll_wait(FileDescriptor epfd, StructEpollEvent[] events, int timeoutMs) throws ErrnoException {
+        // As with poll, a timeout of 0 means "return immediately" and isn't subject to BlockGuard.
+        if (timeoutMs != 0) {
+            BlockGuard.getThreadPolicy().onNetwork();
+        }
+        return os.epoll_wait(epfd, events, timeoutMs);
+    }
+
     @Override public void fdatasync(FileDescriptor fd) throws ErrnoException {
         BlockGuard.getThreadPolicy().onWriteToDisk();
         os.fdatasync(fd);
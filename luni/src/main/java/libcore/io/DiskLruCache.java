@@ -156,6 +156,16 @@ public final class DiskLruCache implements Closeable {
      */
     private long nextSequenceNumber = 0;
 
+    /**
+     * Journal lines that must reach the filesystem before an operation
+     * returns are numbered. Concurrent operations share a single flush: each
+     * flush covers every line written before it started, so callers whose
+     * lines have already been flushed don't flush again.
+     */
+    private long journalLinesWritten = 0;
+    private long journalLinesFlushed = 0; // guarded by journalFlushLock
+    private final Object journalFlushLock = new Object();
+
     /** This cache uses a single background thread to evict entries. */
     private final ExecutorService executorService = new ThreadPoolExecutor(0, 1,
             60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
@@ -419,30 +429,70 @@ public final class DiskLruCache implements Closeable {
         return edit(key, ANY_SEQUENCE_NUMBER);
     }
 
-    private synchronized Editor edit(String key, long expectedSequenceNumber) throws IOException {
-        checkNotClosed();
-        validateKey(key);
-        Entry entry = lruEntries.get(key);
-        if (expectedSequenceNumber != ANY_SEQUENCE_NUMBER
-                && (entry == null || entry.sequenceNumber != expectedSequenceNumber)) {
-            return null; // snapshot is stale
-        }
-        if (entry == null) {
-            entry = new Entry(key);
-            lruEntries.put(key, entry);
-        } else if (entry.currentEditor != null) {
-            return null; // another edit is in progress
-        }
+    private Editor edit(String key, long expectedSequenceNumber) throws IOException {
+        Editor editor;
+        long journalLine;
+        synchronized (this) {
+            checkNotClosed();
+            validateKey(key);
+            Entry entry = lruEntries.get(key);
+            if (expectedSequenceNumber != ANY_SEQUENCE_NUMBER
+                    && (entry == null || entry.sequenceNumber != expectedSequenceNumber)) {
+                return null; // snapshot is stale
+            }
+            if (entry == null) {
+                entry = new Entry(key);
+                lruEntries.put(key, entry);
+            } else if (entry.currentEditor != null) {
+                return null; // another edit is in progress
+            }
 
-        Editor editor = new Editor(entry);
-        entry.currentEditor = editor;
+            editor = new Editor(entry);
+            entry.currentEditor = editor;
+
+            journalWriter.write(DIRTY + ' ' + key + '\n');
+            journalLine = ++journalLinesWritten;
+        }
 
         // flush the journal before creating files to prevent file leaks
-        journalWriter.write(DIRTY + ' ' + key + '\n');
-        journalWriter.flush();
+        flushJournalThrough(journalLine);
         return editor;
     }
 
+    /**
+     * Flushes the journal if line {@code journalLine} hasn't been flushed
+     * yet. Callers must not hold the cache's lock. The flush itself happens
+     * outside that lock, so other operations can append to the journal while
+     * it's in progress, and operations waiting for a flush can be grouped
+     * into a single write.
+     */
+    private void flushJournalThrough(long journalLine) throws IOException {
+        synchronized (journalFlushLock) {
+            if (journalLinesFlushed >= journalLine) {
+                return; // another caller's flush included our line
+            }
+            Writer writer;
+            long flushedThrough;
+            synchronized (this) {
+                writer = journalWriter;
+                flushedThrough = journalLinesWritten;
+            }
+            if (writer != null) {
+                try {
+                    writer.flush(); // the writer synchronizes with concurrent appends
+                } catch (IOException e) {
+                    synchronized (this) {
+                        if (writer == journalWriter) {
+                            throw e;
+                        }
+                    }
+                    // The journal was rebuilt or closed meanwhile, which wrote our lines.
+                }
+            }
+            journalLinesFlushed = flushedThrough;
+        }
+    }
+
     /**
      * Returns the directory where this cache stores its data.
      */
@@ -467,7 +517,20 @@ public final class DiskLruCache implements Closeable {
         return size;
     }
 
-    private synchronized void completeEdit(Editor editor, boolean success) throws IOException {
+    private void completeEdit(Editor editor, boolean success) throws IOException {
+        long journalLine;
+        synchronized (this) {
+            journalLine = completeEditLocked(editor, success);
+        }
+        flushJournalThrough(journalLine);
+    }
+
+    /**
+     * Publishes or discards the files of {@code editor} and records the
+     * outcome in the journal. Returns the journal line that must be flushed
+     * before the edit is complete.
+     */
+    private long completeEditLocked(Editor editor, boolean success) throws IOException {
         Entry entry = editor.entry;
         if (entry.currentEditor != editor) {
             throw new IllegalStateException();
@@ -477,13 +540,12 @@ public final class DiskLruCache implements Closeable {
         if (success && !entry.readable) {
             for (int i = 0; i < valueCount; i++) {
                 if (!editor.written[i]) {
-                    editor.abort();
+                    completeEditLocked(editor, false); // the next flush records the abort
                     throw new IllegalStateException("Newly created entry didn't create value for index " + i);
                 }
                 if (!entry.getDirtyFile(i).exists()) {
-                    editor.abort();
                     System.logW("DiskLruCache: Newly created entry doesn't have file for index " + i);
-                    return;
+                    return completeEditLocked(editor, false);
                 }
             }
         }
@@ -516,11 +578,11 @@ public final class DiskLruCache implements Closeable {
             lruEntries.remove(entry.key);
             journalWriter.write(REMOVE + ' ' + entry.key + '\n');
         }
-        journalWriter.flush();
 
         if (size > maxSize || journalRebuildRequired()) {
             executorService.submit(cleanupCallable);
         }
+        return ++journalLinesWritten;
     }
 
     /**
@@ -598,7 +660,7 @@ public final class DiskLruCache implements Closeable {
         }
         for (Entry entry : new ArrayList<Entry>(lruEntries.values())) {
             if (entry.currentEditor != null) {
-                entry.currentEditor.abort();
+                completeEditLocked(entry.currentEditor, false);
             }
         }
         trimToSize();
@@ -45,6 +45,9 @@ public class ForwardingOs implements Os {
     public FileDescriptor dup(FileDescriptor oldFd) throws ErrnoException { return os.dup(oldFd); }
     public FileDescriptor dup2(FileDescriptor oldFd, int newFd) throws ErrnoException { return os.dup2(oldFd, newFd); }
     public String[] environ() { return os.environ(); }
+    public FileDescriptor epoll_create(int size) throws ErrnoException { return os.epoll_create(size); }
+    public void epoll_ctl(FileDescriptor epfd, int op, FileDescriptor fd, StructEpollEvent event) throws ErrnoException { os.epoll_ctl(epfd, op, fd, event); }
+    public int epoll_wait(FileDescriptor epfd, StructEpollEvent[] events, int timeoutMs) throws ErrnoException { return os.epoll_wait(epfd, events, timeoutMs); }
     public void execv(String filename, String[] argv) throws ErrnoException { os.execv(filename, argv); }
     public void execve(String filename, String[] argv, String[] envp) throws ErrnoException { os.execve(filename, argv, envp); }
     public void fchmod(FileDescriptor fd, int mode) throws ErrnoException { os.fchmod(fd, mode); }
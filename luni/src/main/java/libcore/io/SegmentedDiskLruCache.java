@@ -0,0 +1,325 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package libcore.io;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.Charsets;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A {@link DiskLruCache} split into independent segments to reduce lock
+ * contention. Each key is assigned to one segment by its hash; each segment
+ * has its own journal, its own lock and an equal share of the maximum size.
+ * Eviction is least-recently-used within each segment.
+ *
+ * <p>A cache with {@code n > 1} segments stores segment {@code i} in the
+ * subdirectory {@code "n-i"} of its directory. A cache with a single segment
+ * stores its files in the directory itself, in the same layout as a plain
+ * {@link DiskLruCache}. Opening a directory with a different segment count
+ * than it was written with discards the values written with the other count:
+ * its segment directories, or the journal and entry files of a single-segment
+ * cache. Other files in the directory are never deleted.
+ */
+public final class SegmentedDiskLruCache implements Closeable {
+    private final File directory;
+    private final long maxSize;
+    private final DiskLruCache[] segments;
+
+    private SegmentedDiskLruCache(File directory, long maxSize, DiskLruCache[] segments) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.segments = segments;
+    }
+
+    /**
+     * Opens the cache in {@code directory}, creating a cache if none exists
+     * there.
+     *
+     * @param directory a writable directory
+     * @param appVersion
+     * @param valueCount the number of values per cache entry. Must be positive.
+     * @param maxSize the maximum number of bytes this cache should use to store
+     * @param segmentCount the number of independently locked segments. Must be
+     *     positive.
+     * @throws IOException if reading or writing the cache directory fails
+     */
+    public static SegmentedDiskLruCache open(File directory, int appVersion, int valueCount,
+            long maxSize, int segmentCount) throws IOException {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        if (segmentCount <= 0) {
+            throw new IllegalArgumentException("segmentCount <= 0");
+        }
+
+        deleteStaleSegments(directory, segmentCount);
+        if (segmentCount > 1) {
+            deleteUnsegmentedCache(directory, valueCount);
+        }
+
+        long segmentMaxSize = maxSize / segmentCount + (maxSize % segmentCount != 0 ? 1 : 0);
+        DiskLruCache[] segments = new DiskLruCache[segmentCount];
+        try {
+            for (int i = 0; i < segmentCount; i++) {
+                segments[i] = DiskLruCache.open(segmentDirectory(directory, segmentCount, i),
+                        appVersion, valueCount, segmentMaxSize);
+            }
+        } catch (IOException e) {
+            for (DiskLruCache segment : segments) {
+                IoUtils.closeQuietly(segment);
+            }
+            throw e;
+        }
+        return new SegmentedDiskLruCache(directory, maxSize, segments);
+    }
+
+    private static File segmentDirectory(File directory, int segmentCount, int index) {
+        return segmentCount == 1 ? directory : new File(directory, segmentCount + "-" + index);
+    }
+
+    /**
+     * Deletes the segments left behind by a cache that used a different
+     * segment count. Only subdirectories named like a segment, {@code "n-i"}
+     * with {@code n} other than {@code segmentCount}, are removed; any other
+     * files in the directory are left alone.
+     */
+    private static void deleteStaleSegments(File directory, int segmentCount) throws IOException {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return; // the directory doesn't exist yet
+        }
+        for (File file : files) {
+            if (!file.isDirectory() || !isStaleSegment(file.getName(), segmentCount)) {
+                continue;
+            }
+            IoUtils.deleteContents(file);
+            if (!file.delete()) {
+                throw new IOException("failed to delete file: " + file);
+            }
+        }
+    }
+
+    /**
+     * Deletes the journal of a single-segment cache in {@code directory}, and
+     * the entry files it names. A cache with more than one segment never reads
+     * them, and would otherwise leave them to take up space forever.
+     */
+    private static void deleteUnsegmentedCache(File directory, int valueCount)
+            throws IOException {
+        File journal = new File(directory, DiskLruCache.JOURNAL_FILE);
+        if (!journal.exists()) {
+            return;
+        }
+
+        Set<String> keys = new HashSet<String>();
+        StrictLineReader reader = new StrictLineReader(new FileInputStream(journal),
+                Charsets.US_ASCII);
+        try {
+            reader.readLine(); // magic
+            reader.readLine(); // version
+            reader.readLine(); // app version
+            int journalValueCount = parseCanonicalInt(reader.readLine());
+            if (journalValueCount > 0) {
+                valueCount = journalValueCount;
+            }
+            reader.readLine(); // blank
+            while (true) {
+                // lines are "CLEAN key lengths", "DIRTY key", "REMOVE key" and "READ key"
+                String[] parts = reader.readLine().split(" ");
+                if (parts.length >= 2 && parts[1].indexOf('/') == -1) {
+                    keys.add(parts[1]);
+                }
+            }
+        } catch (EOFException endOfJournal) {
+        } finally {
+            IoUtils.closeQuietly(reader);
+        }
+
+        for (String key : keys) {
+            for (int i = 0; i < valueCount; i++) {
+                deleteIfExists(new File(directory, key + "." + i));
+                deleteIfExists(new File(directory, key + "." + i + ".tmp"));
+            }
+        }
+        deleteIfExists(new File(directory, DiskLruCache.JOURNAL_FILE_TMP));
+        deleteIfExists(journal);
+    }
+
+    private static void deleteIfExists(File file) throws IOException {
+        if (!file.delete() && file.exists()) {
+            throw new IOException("failed to delete file: " + file);
+        }
+    }
+
+    /**
+     * Returns true if {@code name} is the name of a segment directory of a
+     * cache with a segment count other than {@code segmentCount}.
+     */
+    private static boolean isStaleSegment(String name, int segmentCount) {
+        int dash = name.indexOf('-');
+        if (dash == -1) {
+            return false;
+        }
+        int count = parseCanonicalInt(name.substring(0, dash));
+        int index = parseCanonicalInt(name.substring(dash + 1));
+        return count > 1 && index >= 0 && index < count && count != segmentCount;
+    }
+
+    /**
+     * Returns the non-negative integer spelled by {@code s} exactly as
+     * {@code Integer.toString} would spell it, or -1.
+     */
+    private static int parseCanonicalInt(String s) {
+        if (s.isEmpty() || s.length() > 9 || (s.length() > 1 && s.charAt(0) == '0')) {
+            return -1;
+        }
+        int result = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    private DiskLruCache segmentFor(String key) {
+        int h = key.hashCode();
+        // spread the high bits, which String.hashCode mixes poorly for short keys
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return segments[(h & 0x7fffffff) % segments.length];
+    }
+
+    /**
+     * Returns a snapshot of the entry named {@code key}, or null if it doesn't
+     * exist or is not currently readable.
+     */
+    public DiskLruCache.Snapshot get(String key) throws IOException {
+        return segmentFor(key).get(key);
+    }
+
+    /**
+     * Returns an editor for the entry named {@code key}, or null if another
+     * edit is in progress.
+     */
+    public DiskLruCache.Editor edit(String key) throws IOException {
+        return segmentFor(key).edit(key);
+    }
+
+    /**
+     * Drops the entry for {@code key} if it exists and can be removed.
+     *
+     * @return true if an entry was removed.
+     */
+    public boolean remove(String key) throws IOException {
+        return segmentFor(key).remove(key);
+    }
+
+    /**
+     * Returns the directory where this cache stores its data.
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the number of segments in this cache.
+     */
+    public int getSegmentCount() {
+        return segments.length;
+    }
+
+    /**
+     * Returns the segment at {@code index}. A single-segment cache's only
+     * segment is a plain {@link DiskLruCache} over the whole directory.
+     */
+    public DiskLruCache getSegment(int index) {
+        return segments[index];
+    }
+
+    /**
+     * Returns the maximum number of bytes that this cache should use to store
+     * its data. Each segment may use an equal share of this.
+     */
+    public long maxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the number of bytes currently being used to store the values in
+     * all segments of this cache.
+     */
+    public long size() {
+        long size = 0;
+        for (DiskLruCache segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Returns true if this cache has been closed.
+     */
+    public boolean isClosed() {
+        return segments[0].isClosed();
+    }
+
+    /**
+     * Force buffered operations to the filesystem.
+     */
+    public void flush() throws IOException {
+        for (DiskLruCache segment : segments) {
+            segment.flush();
+        }
+    }
+
+    /**
+     * Closes this cache. Stored values will remain on the filesystem.
+     */
+    public void close() throws IOException {
+        IOException thrown = null;
+        for (DiskLruCache segment : segments) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                if (thrown == null) {
+                    thrown = e;
+                }
+            }
+        }
+        if (thrown != null) {
+            throw thrown;
+        }
+    }
+
+    /**
+     * Closes the cache and deletes all of its stored values. This will delete
+     * all files in the cache directory including files that weren't created by
+     * the cache.
+     */
+    public void delete() throws IOException {
+        close();
+        IoUtils.deleteContents(directory);
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package libcore.io;
+
+/**
+ * Corresponds to Linux's {@code struct epoll_event} from {@code <sys/epoll.h>}.
+ */
+public final class StructEpollEvent {
+    /**
+     * The events we're interested in (for epoll_ctl), or the events that actually happened
+     * (for epoll_wait). EPOLLIN and EPOLLOUT correspond to POLLIN and POLLOUT.
+     */
+    public int events;
+
+    /**
+     * The opaque user data returned by epoll_wait. Unlike StructPollfd's userData this has
+     * to survive a trip through the kernel, so it's a plain 64-bit value rather than an Object.
+     */
+    public long data;
+
+    public StructEpollEvent() {
+    }
+
+    public StructEpollEvent(int events, long data) {
+        this.events = events;
+        this.data = data;
+    }
+
+    @Override public String toString() {
+        return "StructEpollEvent[events=" + events + ",data=" + data + "]";
+    }
+}
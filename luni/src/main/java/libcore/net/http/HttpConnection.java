@@ -57,6 +57,7 @@ final class HttpConnection {
     private InputStream sslInputStream;
     private OutputStream sslOutputStream;
     private boolean recycled = false;
+    private long idleStartTimeNs;
 
     private HttpConnection(Address config, int connectTimeout) throws IOException {
         this.address = config;
@@ -245,6 +246,18 @@ final class HttpConnection {
         this.recycled = true;
     }
 
+    /**
+     * Returns the {@link System#nanoTime} at which this connection was last
+     * returned to the pool.
+     */
+    public long getIdleStartTimeNs() {
+        return idleStartTimeNs;
+    }
+
+    public void setIdleStartTimeNs(long idleStartTimeNs) {
+        this.idleStartTimeNs = idleStartTimeNs;
+    }
+
     /**
      * Returns true if this connection is eligible to be reused for another
      * request/response pair.
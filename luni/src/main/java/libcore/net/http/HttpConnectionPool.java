@@ -23,7 +23,11 @@ import java.net.Socket;
 import java.net.SocketException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A pool of HTTP connections. This class exposes its tuning parameters as
@@ -31,59 +35,123 @@ import java.util.List;
  * <ul>
  *   <li>{@code http.keepAlive} true if HTTP connections should be pooled at
  *       all. Default is true.
- *   <li>{@code http.maxConnections} maximum number of connections to each URI.
- *       Default is 5.
+ *   <li>{@code http.maxConnections} maximum number of idle connections to
+ *       each URI. Default is 5.
+ *   <li>{@code http.maxTotalConnections} maximum number of idle connections
+ *       across all URIs. Default is unlimited.
+ *   <li>{@code http.keepAliveDuration} time in milliseconds to keep an idle
+ *       connection in the pool before closing it. Default is 5 minutes.
  * </ul>
  *
  * <p>This class <i>doesn't</i> adjust its configuration as system properties
  * are changed. This assumes that the applications that set these parameters do
  * so before making HTTP connections, and that this class is initialized lazily.
+ *
+ * <p>Connections are partitioned into stripes by address, each with its own
+ * lock, so that requests to different hosts don't contend with one another.
+ * Idle connections are closed by a daemon thread that runs only while the pool
+ * is non-empty, and stale connections are never returned by {@link #get}.
  */
-final class HttpConnectionPool {
+public final class HttpConnectionPool {
 
     public static final HttpConnectionPool INSTANCE = new HttpConnectionPool();
 
+    private static final int STRIPE_COUNT = 16;
+    private static final long DEFAULT_KEEP_ALIVE_DURATION_MS = 5 * 60 * 1000;
+
     private final int maxConnections;
-    private final HashMap<HttpConnection.Address, List<HttpConnection>> connectionPool
-            = new HashMap<HttpConnection.Address, List<HttpConnection>>();
+    private final int maxTotalConnections;
+    private final long keepAliveDurationNs;
+    private final Stripe[] stripes = new Stripe[STRIPE_COUNT];
+
+    private final AtomicInteger idleConnectionCount = new AtomicInteger();
+    private final AtomicBoolean evictorRunning = new AtomicBoolean();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong lockWaitTimeNs = new AtomicLong();
 
     private HttpConnectionPool() {
+        this(maxConnectionsFromProperties(),
+                intProperty("http.maxTotalConnections", Integer.MAX_VALUE),
+                longProperty("http.keepAliveDuration", DEFAULT_KEEP_ALIVE_DURATION_MS));
+    }
+
+    HttpConnectionPool(int maxConnections, int maxTotalConnections, long keepAliveDurationMs) {
+        this.maxConnections = maxConnections;
+        this.maxTotalConnections = maxTotalConnections;
+        this.keepAliveDurationNs = keepAliveDurationMs * 1000000L;
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    private static int maxConnectionsFromProperties() {
         String keepAlive = System.getProperty("http.keepAlive");
         if (keepAlive != null && !Boolean.parseBoolean(keepAlive)) {
-            maxConnections = 0;
-            return;
+            return 0;
         }
+        return intProperty("http.maxConnections", 5);
+    }
+
+    private static int intProperty(String name, int defaultValue) {
+        String value = System.getProperty(name);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
 
-        String maxConnectionsString = System.getProperty("http.maxConnections");
-        this.maxConnections = maxConnectionsString != null
-                ? Integer.parseInt(maxConnectionsString)
-                : 5;
+    private static long longProperty(String name, long defaultValue) {
+        String value = System.getProperty(name);
+        return value != null ? Long.parseLong(value) : defaultValue;
     }
 
     public HttpConnection get(HttpConnection.Address address, int connectTimeout)
             throws IOException {
         // First try to reuse an existing HTTP connection.
-        synchronized (connectionPool) {
-            List<HttpConnection> connections = connectionPool.get(address);
+        HttpConnection result = null;
+        List<HttpConnection> stale = null;
+        Stripe stripe = stripeFor(address);
+        long lockStart = System.nanoTime();
+        synchronized (stripe) {
+            long now = System.nanoTime();
+            lockWaitTimeNs.addAndGet(now - lockStart);
+            List<HttpConnection> connections = stripe.connections.get(address);
             while (connections != null) {
                 HttpConnection connection = connections.remove(connections.size() - 1);
+                idleConnectionCount.decrementAndGet();
                 if (connections.isEmpty()) {
-                    connectionPool.remove(address);
+                    stripe.connections.remove(address);
                     connections = null;
                 }
-                if (connection.isEligibleForRecycling()) {
-                    // Since Socket is recycled, re-tag before using
-                    Socket socket = connection.getSocket();
-                    SocketTagger.get().tag(socket);
-                    return connection;
+                if (!isExpired(connection, now) && connection.isEligibleForRecycling()) {
+                    result = connection;
+                    break;
+                }
+                if (stale == null) {
+                    stale = new ArrayList<HttpConnection>();
                 }
+                stale.add(connection);
             }
         }
 
+        // Don't close streams or touch sockets while holding a lock!
+        if (stale != null) {
+            closeAll(stale);
+        }
+
+        if (result != null) {
+            hitCount.incrementAndGet();
+            // Since Socket is recycled, re-tag before using
+            Socket socket = result.getSocket();
+            SocketTagger.get().tag(socket);
+            return result;
+        }
+
         /*
          * We couldn't find a reusable connection, so we need to create a new
          * connection. We're careful not to do so while holding a lock!
          */
+        missCount.incrementAndGet();
         return address.connect(connectTimeout);
     }
 
@@ -100,21 +168,178 @@ final class HttpConnectionPool {
 
         if (maxConnections > 0 && connection.isEligibleForRecycling()) {
             HttpConnection.Address address = connection.getAddress();
-            synchronized (connectionPool) {
-                List<HttpConnection> connections = connectionPool.get(address);
-                if (connections == null) {
-                    connections = new ArrayList<HttpConnection>();
-                    connectionPool.put(address, connections);
-                }
-                if (connections.size() < maxConnections) {
+            Stripe stripe = stripeFor(address);
+            boolean pooled = false;
+            long lockStart = System.nanoTime();
+            synchronized (stripe) {
+                long now = System.nanoTime();
+                lockWaitTimeNs.addAndGet(now - lockStart);
+                List<HttpConnection> connections = stripe.connections.get(address);
+                int size = (connections != null) ? connections.size() : 0;
+                if (size < maxConnections && reserveIdleSlot()) {
+                    if (connections == null) {
+                        connections = new ArrayList<HttpConnection>();
+                        stripe.connections.put(address, connections);
+                    }
                     connection.setRecycled();
+                    connection.setIdleStartTimeNs(now);
                     connections.add(connection);
-                    return; // keep the connection open
+                    pooled = true;
                 }
             }
+            if (pooled) {
+                startEvictorIfNecessary();
+                return; // keep the connection open
+            }
         }
 
         // don't close streams while holding a lock!
         connection.closeSocketAndStreams();
     }
+
+    /**
+     * Closes and removes all idle connections from the pool.
+     */
+    public void evictAll() {
+        List<HttpConnection> evicted = new ArrayList<HttpConnection>();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (List<HttpConnection> connections : stripe.connections.values()) {
+                    idleConnectionCount.addAndGet(-connections.size());
+                    evicted.addAll(connections);
+                }
+                stripe.connections.clear();
+            }
+        }
+        closeAll(evicted);
+    }
+
+    /** Returns the number of requests that were satisfied by a pooled connection. */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /** Returns the number of requests that required a new connection. */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /** Returns the number of pooled connections closed because they were idle or unusable. */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /** Returns the total time in nanoseconds that callers have waited to acquire pool locks. */
+    public long getLockWaitTimeNanos() {
+        return lockWaitTimeNs.get();
+    }
+
+    /** Returns the number of idle connections currently in the pool. */
+    public int getIdleConnectionCount() {
+        return idleConnectionCount.get();
+    }
+
+    private Stripe stripeFor(HttpConnection.Address address) {
+        int h = address.hashCode();
+        // Spread the hash so that addresses differing only in high bits use different stripes.
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return stripes[h & (STRIPE_COUNT - 1)];
+    }
+
+    private boolean isExpired(HttpConnection connection, long now) {
+        return now - connection.getIdleStartTimeNs() >= keepAliveDurationNs;
+    }
+
+    /**
+     * Claims one of the global idle connection slots, returning false if the
+     * pool is already at its global limit.
+     */
+    private boolean reserveIdleSlot() {
+        if (idleConnectionCount.incrementAndGet() > maxTotalConnections) {
+            idleConnectionCount.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    private void closeAll(List<HttpConnection> connections) {
+        for (HttpConnection connection : connections) {
+            connection.closeSocketAndStreams();
+        }
+        evictionCount.addAndGet(connections.size());
+    }
+
+    /**
+     * Closes connections that have been idle for longer than the keep-alive
+     * duration. Returns the number of nanoseconds until the next idle
+     * connection expires, or -1 if the pool is empty.
+     */
+    long evictIdleConnections() {
+        List<HttpConnection> expired = new ArrayList<HttpConnection>();
+        long nextExpiryNs = Long.MAX_VALUE;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                long now = System.nanoTime();
+                Iterator<List<HttpConnection>> i = stripe.connections.values().iterator();
+                while (i.hasNext()) {
+                    List<HttpConnection> connections = i.next();
+                    Iterator<HttpConnection> j = connections.iterator();
+                    while (j.hasNext()) {
+                        HttpConnection connection = j.next();
+                        long idleNs = now - connection.getIdleStartTimeNs();
+                        if (idleNs >= keepAliveDurationNs || !connection.isEligibleForRecycling()) {
+                            j.remove();
+                            idleConnectionCount.decrementAndGet();
+                            expired.add(connection);
+                        } else {
+                            nextExpiryNs = Math.min(nextExpiryNs, keepAliveDurationNs - idleNs);
+                        }
+                    }
+                    if (connections.isEmpty()) {
+                        i.remove();
+                    }
+                }
+            }
+        }
+        closeAll(expired);
+        return (nextExpiryNs != Long.MAX_VALUE) ? nextExpiryNs : -1;
+    }
+
+    private void startEvictorIfNecessary() {
+        if (evictorRunning.compareAndSet(false, true)) {
+            Thread evictor = new Thread(evictionRunnable, "HttpConnectionPool evictor");
+            evictor.setDaemon(true);
+            evictor.start();
+        }
+    }
+
+    private final Runnable evictionRunnable = new Runnable() {
+        @Override public void run() {
+            while (true) {
+                long waitNs = evictIdleConnections();
+                if (waitNs == -1) {
+                    evictorRunning.set(false);
+                    // A connection may have been pooled after we looked but before we
+                    // cleared the flag, in which case nobody else will start an evictor.
+                    if (idleConnectionCount.get() == 0 || !evictorRunning.compareAndSet(false, true)) {
+                        return;
+                    }
+                    continue;
+                }
+                try {
+                    Thread.sleep(waitNs / 1000000 + 1);
+                } catch (InterruptedException ignored) {
+                }
+            }
+        }
+    };
+
+    /**
+     * One partition of the pool. Each stripe is its own lock.
+     */
+    private static final class Stripe {
+        final HashMap<HttpConnection.Address, List<HttpConnection>> connections
+                = new HashMap<HttpConnection.Address, List<HttpConnection>>();
+    }
 }
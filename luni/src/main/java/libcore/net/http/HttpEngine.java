@@ -176,6 +176,23 @@ public class HttpEngine {
     /** True if the socket connection is no longer needed by this engine. */
     private boolean connectionReleased;
 
+    /**
+     * The pipeline whose connection this engine shares, or null if this engine
+     * has a connection of its own.
+     */
+    private HttpPipeline pipeline;
+    private int pipelineIndex;
+
+    /**
+     * True if the response body was delimited by the end of the stream. A
+     * pipelined body is wrapped before it is returned, so this can't be
+     * determined from the type of {@link #responseBodyIn}.
+     */
+    private boolean responseBodyEndsConnection;
+
+    /** The body of this engine's pipelined response, or null. */
+    private PipelinedInputStream pipelinedBody;
+
     /**
      * @param requestHeaders the client's supplied request headers. This class
      *     creates a private copy that it can mutate.
@@ -204,6 +221,15 @@ public class HttpEngine {
         return uri;
     }
 
+    /**
+     * Makes this engine a member of {@code pipeline}. The engine's connection is
+     * released to the pipeline rather than to the connection pool.
+     */
+    final void setPipeline(HttpPipeline pipeline, int index) {
+        this.pipeline = pipeline;
+        this.pipelineIndex = index;
+    }
+
     /**
      * Figures out what the response source will be, and opens a socket to that
      * source if necessary. Prepares the request headers and gets ready to start
@@ -239,11 +265,33 @@ public class HttpEngine {
         if (responseSource.requiresConnection()) {
             sendSocketRequest();
         } else if (connection != null) {
-            HttpConnectionPool.INSTANCE.recycle(connection);
+            if (pipeline != null) {
+                pipeline.release(pipelineIndex, true);
+            } else {
+                HttpConnectionPool.INSTANCE.recycle(connection);
+            }
             connection = null;
         }
     }
 
+    /**
+     * Writes the request headers and flushes them to the server without
+     * waiting for the response. This is only valid for requests without a
+     * body, which don't need to be written before their headers.
+     */
+    final void flushRequest() throws IOException {
+        if (responseSource == null) {
+            throw new IllegalStateException("flushRequest() without sendRequest()");
+        }
+        if (!responseSource.requiresConnection() || hasRequestBody()) {
+            return;
+        }
+        if (sentRequestMillis == -1) {
+            writeRequestHeaders(-1);
+        }
+        requestOut.flush();
+    }
+
     /**
      * Initialize the source for this response. It may be corrected later if the
      * request headers forbids network use.
@@ -509,7 +557,8 @@ public class HttpEngine {
                 reusable = false;
             }
 
-            if (responseBodyIn instanceof UnknownLengthHttpInputStream) {
+            if (responseBodyIn instanceof UnknownLengthHttpInputStream
+                    || responseBodyEndsConnection) {
                 reusable = false;
             }
 
@@ -522,7 +571,10 @@ public class HttpEngine {
                 }
             }
 
-            if (!reusable) {
+            if (pipeline != null) {
+                pipeline.release(pipelineIndex, reusable);
+                connection = null;
+            } else if (!reusable) {
                 connection.closeSocketAndStreams();
                 connection = null;
             } else if (automaticallyReleaseConnectionToPool) {
@@ -824,6 +876,10 @@ public class HttpEngine {
         requestOut.flush();
         requestOut = socketOut;
 
+        if (pipeline != null) {
+            pipeline.awaitTurn(pipelineIndex);
+        }
+
         readResponseHeaders();
         responseHeaders.setLocalTimestamps(sentRequestMillis, System.currentTimeMillis());
 
@@ -847,6 +903,24 @@ public class HttpEngine {
             maybeCache(); // reentrant. this calls into user code which may call back into this!
         }
 
-        initContentStream(getTransferStream());
+        InputStream transferStream = getTransferStream();
+        if (pipeline != null) {
+            // Decide whether the connection can be reused before the stream's type is lost.
+            responseBodyEndsConnection = transferStream instanceof UnknownLengthHttpInputStream;
+            // The pipeline reads the rest of the body into memory if a response behind it is needed.
+            pipelinedBody = new PipelinedInputStream(transferStream);
+            transferStream = pipelinedBody;
+        }
+        initContentStream(transferStream);
+    }
+
+    /**
+     * Reads the rest of this engine's pipelined response body into memory, so
+     * that the response behind it can be read from the shared connection.
+     * Returns the number of bytes read, or -1 if there were more than {@code
+     * byteLimit}.
+     */
+    final int readPipelinedBody(int byteLimit) {
+        return (pipelinedBody != null) ? pipelinedBody.readRemaining(byteLimit) : 0;
     }
 }
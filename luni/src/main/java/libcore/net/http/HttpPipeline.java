@@ -0,0 +1,344 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package libcore.net.http;
+
+import java.io.IOException;
+import java.net.Proxy;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import libcore.util.Objects;
+
+/**
+ * Sends several HTTP GET requests on a single connection before reading any of
+ * their responses. This saves a round trip per request when an application
+ * makes many small requests to the same server.
+ *
+ * <p>Responses are read in the order that their requests were sent. Reading the
+ * response of one connection first reads the responses of all connections
+ * pipelined ahead of it. The body of the response being read is streamed from
+ * the connection; only when a later response is needed is the rest of it read
+ * into memory. If the bodies that would need to be buffered exceed {@link
+ * #MAX_BUFFERED_BYTES}, the rest of the pipeline is abandoned: the requests
+ * behind the large body are retried on new connections, and the large body
+ * continues to stream.
+ *
+ * <p>GET is idempotent, so if the shared connection fails, requests whose
+ * responses haven't been read yet are silently retried on new connections.
+ * The connection is also closed, and those requests retried, when a member
+ * whose response is being read is disconnected or doesn't read its body to the
+ * end, or when a request can't be sent.
+ */
+public final class HttpPipeline {
+    /** The most response body bytes that may be held in memory per pipeline. */
+    static final int MAX_BUFFERED_BYTES = 1024 * 1024;
+
+    private final HttpConnection connection;
+    private final Proxy proxy;
+
+    /** The only thread that may send requests or read responses. */
+    private final Thread owner = Thread.currentThread();
+    private final List<Member> members = new ArrayList<Member>();
+
+    /** The index of the next member whose response should be read. Guarded by this. */
+    private int nextToRead;
+
+    /** The number of body bytes buffered so far. Confined to the owner. */
+    private int bufferedBytes;
+
+    /**
+     * The index of the member whose body was too large to buffer, or -1. The
+     * responses of the members behind it are never read from the connection.
+     * Confined to the owner.
+     */
+    private int abandonedAfter = -1;
+
+    /**
+     * The number of members that still need the shared connection, plus one
+     * while requests are still being added. When this drops to zero the
+     * connection is returned to the pool, or closed if it can't be reused.
+     * Guarded by this.
+     */
+    private int holdCount = 1;
+
+    /** False once the connection can't be returned to the pool. Guarded by this. */
+    private boolean reusable = true;
+
+    /** True once the shared connection has been closed. Guarded by this. */
+    private boolean closed;
+
+    private static final class Member {
+        final HttpURLConnectionImpl connection;
+        final HttpEngine engine;
+
+        /** True once the engine has released the shared connection. Guarded by the pipeline. */
+        boolean released;
+
+        /** True if the member released the connection without reading its response. */
+        boolean releasedUnread;
+
+        Member(HttpURLConnectionImpl connection, HttpEngine engine) {
+            this.connection = connection;
+            this.engine = engine;
+        }
+    }
+
+    private HttpPipeline(HttpConnection connection, Proxy proxy) {
+        this.connection = connection;
+        this.proxy = proxy;
+    }
+
+    /**
+     * Sends the requests of {@code connections}, pipelining those that go to
+     * the same server. Only unconnected plain HTTP GET requests are pipelined;
+     * other connections are skipped and make their requests as usual when
+     * their responses are first needed.
+     *
+     * <p>Reading the response of a pipelined connection reads the responses
+     * ahead of it on the same thread, so the responses of pipelined
+     * connections must be read on the thread that called this method.
+     * Reading them on another thread throws {@code IllegalStateException}.
+     * Connections may be disconnected from any thread.
+     *
+     * <p>This method doesn't throw. If a request cannot be sent, its failure is
+     * reported when the corresponding connection's response is read.
+     */
+    public static void execute(List<? extends URLConnection> connections) {
+        Map<String, HttpPipeline> pipelines = new HashMap<String, HttpPipeline>();
+        for (URLConnection urlConnection : connections) {
+            if (!(urlConnection instanceof HttpURLConnectionImpl)) {
+                continue;
+            }
+            HttpURLConnectionImpl member = (HttpURLConnectionImpl) urlConnection;
+            if (!member.isPipelineable()) {
+                continue;
+            }
+
+            URL url = member.getURL();
+            String key = url.getHost() + ":" + url.getEffectivePort();
+            HttpPipeline pipeline = pipelines.get(key);
+            if (pipeline == null || !pipeline.accepts(member)) {
+                pipeline = open(member);
+                if (pipeline == null) {
+                    continue;
+                }
+                HttpPipeline previous = pipelines.put(key, pipeline);
+                if (previous != null) {
+                    previous.releaseSender();
+                }
+            }
+            pipeline.send(member);
+        }
+
+        for (HttpPipeline pipeline : pipelines.values()) {
+            pipeline.releaseSender();
+        }
+    }
+
+    /**
+     * Returns a new pipeline using a connection to {@code member}'s server, or
+     * null if no connection could be established.
+     */
+    private static HttpPipeline open(HttpURLConnectionImpl member) {
+        try {
+            HttpConnection connection = HttpConnection.connect(member.getURL().toURILenient(),
+                    null, member.getProxy(), false, member.getConnectTimeout());
+            connection.setSoTimeout(member.getReadTimeout());
+            /*
+             * Every pipelined request is retried if the connection fails, even
+             * the first, so treat the connection as recycled from the start.
+             */
+            connection.setRecycled();
+            return new HttpPipeline(connection, connection.getAddress().getProxy());
+        } catch (URISyntaxException e) {
+            return null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private synchronized boolean accepts(HttpURLConnectionImpl member) {
+        return reusable && (member.getProxy() == null || Objects.equal(member.getProxy(), proxy));
+    }
+
+    private void send(HttpURLConnectionImpl member) {
+        if (proxy != null && member.getProxy() == null) {
+            member.setProxy(proxy);
+        }
+        member.sendPipelinedRequest(this, connection);
+    }
+
+    /**
+     * Adds {@code engine} as the next request on this pipeline and returns its
+     * position.
+     */
+    synchronized int join(HttpURLConnectionImpl member, HttpEngine engine) {
+        checkOwner();
+        members.add(new Member(member, engine));
+        holdCount++;
+        return members.size() - 1;
+    }
+
+    /**
+     * Reads the responses of all members ahead of the member at {@code index}
+     * so that its response is the next one on the connection. The rest of
+     * their bodies is read into memory for their own readers.
+     *
+     * @throws IOException if the response can't be read from this pipeline,
+     *     and the request should be retried on a connection of its own.
+     */
+    void awaitTurn(int index) throws IOException {
+        checkOwner();
+        while (true) {
+            if (abandonedAfter != -1 && index > abandonedAfter) {
+                throw new IOException("Pipelined response body too large to buffer");
+            }
+
+            // The body of the last response read is in the way of the next one.
+            int last;
+            synchronized (this) {
+                if (nextToRead > index) {
+                    return;
+                }
+                last = nextToRead - 1;
+            }
+            if (last != -1) {
+                int byteCount = members.get(last).engine.readPipelinedBody(
+                        MAX_BUFFERED_BYTES - bufferedBytes);
+                if (byteCount == -1) {
+                    abandon(last);
+                    continue;
+                }
+                bufferedBytes += byteCount;
+            }
+
+            Member member;
+            synchronized (this) {
+                int i = nextToRead++;
+                if (i == index) {
+                    return;
+                }
+                member = members.get(i);
+                if (member.releasedUnread) {
+                    // This response is in the way and nobody will read it. Everything ahead of
+                    // it has been read, so closing the connection only affects the members
+                    // behind it, which will retry.
+                    close();
+                }
+                if (member.released || closed) {
+                    continue;
+                }
+            }
+            try {
+                member.connection.getResponse();
+            } catch (IOException e) {
+                // this failure is reported to the member's own caller
+            }
+        }
+    }
+
+    /**
+     * Stops reading responses after the member at {@code index}, whose body
+     * is still streaming. The members behind it give up their holds now, since
+     * they will retry on connections of their own, and the connection is
+     * closed once the streaming body has been read.
+     */
+    private synchronized void abandon(int index) {
+        abandonedAfter = index;
+        reusable = false;
+        for (int i = index + 1; i < members.size(); i++) {
+            Member member = members.get(i);
+            if (!member.released) {
+                member.released = true;
+                holdCount--;
+            }
+        }
+        if (holdCount == 0) {
+            close();
+        }
+    }
+
+    /**
+     * Closes the shared connection after a request couldn't be completely
+     * written. Nothing has been read from the connection yet, and the other
+     * members will retry.
+     */
+    synchronized void sendFailed() {
+        close();
+    }
+
+    /**
+     * Releases the hold of the member at {@code index} on the shared
+     * connection. If {@code reusable} is false and the member's response is
+     * being read, the connection is closed, causing the requests still waiting
+     * on it to be retried elsewhere. If the member's response hasn't been
+     * reached yet, the connection is closed when it is, so that the responses
+     * being read ahead of it aren't cut off.
+     */
+    synchronized void release(int index, boolean reusable) {
+        Member member = members.get(index);
+        if (member.released) {
+            return;
+        }
+        member.released = true;
+        if (!reusable) {
+            if (index < nextToRead) {
+                close();
+            } else {
+                member.releasedUnread = true;
+                this.reusable = false;
+            }
+        }
+        releaseHold();
+    }
+
+    /**
+     * Releases the hold taken while requests were being added.
+     */
+    private synchronized void releaseSender() {
+        releaseHold();
+    }
+
+    private void releaseHold() {
+        if (--holdCount == 0) {
+            if (reusable && !closed) {
+                HttpConnectionPool.INSTANCE.recycle(connection);
+            } else {
+                close();
+            }
+        }
+    }
+
+    private void close() {
+        reusable = false;
+        if (!closed) {
+            closed = true;
+            connection.closeSocketAndStreams();
+        }
+    }
+
+    private void checkOwner() {
+        if (Thread.currentThread() != owner) {
+            throw new IllegalStateException("Pipelined requests must be sent and read on the thread "
+                    + "that called execute(): " + owner);
+        }
+    }
+}
@@ -52,6 +52,7 @@ import javax.net.ssl.SSLPeerUnverifiedException;
 import libcore.io.Base64;
 import libcore.io.DiskLruCache;
 import libcore.io.IoUtils;
+import libcore.io.SegmentedDiskLruCache;
 import libcore.io.StrictLineReader;
 
 /**
@@ -66,7 +67,7 @@ public final class HttpResponseCache extends ResponseCache implements ExtendedRe
     private static final int ENTRY_BODY = 1;
     private static final int ENTRY_COUNT = 2;
 
-    private final DiskLruCache cache;
+    private final SegmentedDiskLruCache cache;
 
     /* read and write statistics, all guarded by 'this' */
     private int writeSuccessCount;
@@ -76,7 +77,16 @@ public final class HttpResponseCache extends ResponseCache implements ExtendedRe
     private int requestCount;
 
     public HttpResponseCache(File directory, long maxSize) throws IOException {
-        cache = DiskLruCache.open(directory, VERSION, ENTRY_COUNT, maxSize);
+        this(directory, maxSize, 1);
+    }
+
+    /**
+     * Creates a cache whose entries are spread over {@code segmentCount}
+     * independently locked segments. Use more than one segment when many
+     * threads read and write the cache concurrently.
+     */
+    public HttpResponseCache(File directory, long maxSize, int segmentCount) throws IOException {
+        cache = SegmentedDiskLruCache.open(directory, VERSION, ENTRY_COUNT, maxSize, segmentCount);
     }
 
     private String uriToKey(URI uri) {
@@ -218,7 +228,25 @@ public final class HttpResponseCache extends ResponseCache implements ExtendedRe
         }
     }
 
+    /**
+     * Returns the disk cache of a single-segment response cache.
+     *
+     * @throws IllegalStateException if this cache has more than one segment.
+     *     Use {@link #getSegmentedCache} instead.
+     */
     public DiskLruCache getCache() {
+        if (cache.getSegmentCount() != 1) {
+            throw new IllegalStateException("cache has " + cache.getSegmentCount() + " segments");
+        }
+        return cache.getSegment(0);
+    }
+
+    /**
+     * Returns the disk cache that holds this cache's entries, whatever its
+     * number of segments. Use this to find the cache's directory, size and
+     * maximum size, or to flush, close or delete it.
+     */
+    public SegmentedDiskLruCache getSegmentedCache() {
         return cache;
     }
 
@@ -256,6 +256,38 @@ class HttpURLConnectionImpl extends HttpURLConnection {
         }
     }
 
+    /**
+     * Returns true if this connection's request may be sent on an {@link
+     * HttpPipeline}: an unconnected GET without a request body.
+     */
+    final boolean isPipelineable() {
+        return !connected && !doOutput && method == HttpEngine.GET;
+    }
+
+    /**
+     * Sends this connection's request on {@code connection}, which is shared by
+     * the members of {@code pipeline}, without waiting for the response. If the
+     * request cannot be sent it will be made normally on a connection of its
+     * own when the response is needed.
+     */
+    final void sendPipelinedRequest(HttpPipeline pipeline, HttpConnection connection) {
+        connected = true;
+        try {
+            httpEngine = newHttpEngine(method, rawRequestHeaders, connection, null);
+            httpEngine.setPipeline(pipeline, pipeline.join(this, httpEngine));
+            httpEngine.sendRequest();
+            httpEngine.flushRequest();
+        } catch (IOException e) {
+            if (httpEngine != null) {
+                // Part of the request may have been written, so no response on the
+                // connection can be trusted.
+                pipeline.sendFailed();
+                httpEngine.release(false);
+                httpEngine = null;
+            }
+        }
+    }
+
     /**
      * Create a new HTTP engine. This hook method is non-final so it can be
      * overridden by HttpsURLConnectionImpl.
@@ -270,7 +302,7 @@ class HttpURLConnectionImpl extends HttpURLConnection {
      * many HTTP requests in the process in order to cope with redirects and
      * authentication.
      */
-    private HttpEngine getResponse() throws IOException {
+    final HttpEngine getResponse() throws IOException {
         initHttpEngine();
 
         if (httpEngine.hasResponse()) {
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package libcore.net.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import libcore.io.Streams;
+
+/**
+ * The body of a response read from an {@link HttpPipeline}. The body is
+ * streamed from the shared connection until the response behind it is needed,
+ * at which point the rest of it is read into memory.
+ */
+final class PipelinedInputStream extends InputStream {
+    private final InputStream source;
+
+    /** Bytes read ahead of the caller, or null if none have been. */
+    private byte[] buffer;
+    private int pos;
+
+    /** True once source has been read to the end. */
+    private boolean exhausted;
+
+    /** The failure to report once the buffered bytes have been read, if any. */
+    private IOException failure;
+
+    PipelinedInputStream(InputStream source) {
+        this.source = source;
+    }
+
+    @Override public int read() throws IOException {
+        return Streams.readSingleByte(this);
+    }
+
+    @Override public int read(byte[] b, int offset, int count) throws IOException {
+        Arrays.checkOffsetAndCount(b.length, offset, count);
+        if (buffer != null && pos < buffer.length) {
+            count = Math.min(count, buffer.length - pos);
+            System.arraycopy(buffer, pos, b, offset, count);
+            pos += count;
+            return count;
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        if (exhausted) {
+            return -1;
+        }
+        int read = source.read(b, offset, count);
+        if (read == -1) {
+            exhausted = true;
+        }
+        return read;
+    }
+
+    @Override public int available() throws IOException {
+        int buffered = (buffer != null) ? buffer.length - pos : 0;
+        return (buffered > 0 || exhausted || failure != null) ? buffered : source.available();
+    }
+
+    @Override public void close() throws IOException {
+        source.close();
+    }
+
+    /**
+     * Reads the rest of the body into memory, unless it is longer than {@code
+     * byteLimit}. Returns the number of bytes read from the connection, or -1
+     * if the limit was exceeded. In that case the bytes read so far stay
+     * buffered and the rest of the body is streamed as usual.
+     */
+    int readRemaining(int byteLimit) {
+        if (exhausted || failure != null) {
+            return 0;
+        }
+        ByteArrayOutputStream remaining = new ByteArrayOutputStream();
+        if (buffer != null) {
+            remaining.write(buffer, pos, buffer.length - pos);
+        }
+        int total = 0;
+        byte[] chunk = new byte[8192];
+        try {
+            int count;
+            while (total <= byteLimit && (count = source.read(chunk)) != -1) {
+                remaining.write(chunk, 0, count);
+                total += count;
+            }
+            exhausted = total <= byteLimit;
+        } catch (IOException e) {
+            // The body's own reader sees this after the bytes that were read.
+            failure = e;
+        }
+        buffer = remaining.toByteArray();
+        pos = 0;
+        return exhausted || failure != null ? total : -1;
+    }
+}
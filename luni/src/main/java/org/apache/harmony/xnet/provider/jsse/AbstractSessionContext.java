@@ -23,12 +23,20 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateEncodingException;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.net.ssl.SSLSession;
 import javax.net.ssl.SSLSessionContext;
 import org.apache.harmony.security.provider.cert.X509CertImpl;
@@ -46,17 +54,50 @@ abstract class AbstractSessionContext implements SSLSessionContext {
     /** Identifies OpenSSL sessions. */
     static final int OPEN_SSL = 1;
 
-    private final Map<ByteArray, SSLSession> sessions
-            = new LinkedHashMap<ByteArray, SSLSession>() {
-        @Override
-        protected boolean removeEldestEntry(
-                Map.Entry<ByteArray, SSLSession> eldest) {
-            boolean remove = maximumSize > 0 && size() > maximumSize;
-            if (remove) {
-                remove(eldest.getKey());
-                sessionRemoved(eldest.getValue());
-            }
-            return false;
+    /** The number of independently locked segments. Must be a power of two. */
+    private static final int SEGMENT_COUNT = 8;
+
+    /** How often putSession schedules a sweep of expired sessions. */
+    private static final long SWEEP_INTERVAL_MILLIS = 60 * 1000;
+
+    /**
+     * Sweeps expired sessions from every context on a single background
+     * thread, so that putSession never pays for a sweep.
+     */
+    private static final Executor SWEEP_EXECUTOR = new ThreadPoolExecutor(0, 1,
+            60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "SSLSessionSweeper");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    /**
+     * Sessions indexed by ID, split into segments by hash so that lookups
+     * for different sessions rarely contend. Each segment is ordered from
+     * oldest to newest insertion; the eldest session across all segments is
+     * found by comparing their sequence numbers.
+     */
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+    {
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /** The number of sessions in all segments. */
+    private final AtomicInteger sessionCount = new AtomicInteger();
+
+    /** Orders insertions across segments. */
+    private final AtomicLong nextSequence = new AtomicLong();
+
+    private volatile long nextSweepMillis = System.currentTimeMillis() + SWEEP_INTERVAL_MILLIS;
+
+    private final Runnable sweeper = new Runnable() {
+        public void run() {
+            removeInvalidSessions();
         }
     };
 
@@ -75,11 +116,18 @@ abstract class AbstractSessionContext implements SSLSessionContext {
      * Returns the collection of sessions ordered from oldest to newest
      */
     private Iterator<SSLSession> sessionIterator() {
-        synchronized (sessions) {
-            SSLSession[] array = sessions.values().toArray(
-                    new SSLSession[sessions.size()]);
-            return Arrays.asList(array).iterator();
+        List<Entry> entries = new ArrayList<Entry>();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                entries.addAll(segment.values());
+            }
         }
+        Collections.sort(entries);
+        List<SSLSession> result = new ArrayList<SSLSession>(entries.size());
+        for (Entry entry : entries) {
+            result.add(entry.session);
+        }
+        return result.iterator();
     }
 
     public final Enumeration getIds() {
@@ -123,17 +171,43 @@ abstract class AbstractSessionContext implements SSLSessionContext {
      * Makes sure cache size is < maximumSize.
      */
     protected void trimToSize() {
-        synchronized (sessions) {
-            int size = sessions.size();
-            if (size > maximumSize) {
-                int removals = size - maximumSize;
-                Iterator<SSLSession> i = sessions.values().iterator();
-                do {
-                    SSLSession session = i.next();
-                    i.remove();
-                    sessionRemoved(session);
-                } while (--removals > 0);
+        while (maximumSize > 0 && sessionCount.get() > maximumSize) {
+            if (!removeEldest()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes the least recently inserted session from the cache. Returns
+     * false if the cache is empty.
+     */
+    private boolean removeEldest() {
+        while (true) {
+            Segment eldestSegment = null;
+            Entry eldest = null;
+            for (Segment segment : segments) {
+                synchronized (segment) {
+                    Entry entry = segment.eldestEntry();
+                    if (entry != null && (eldest == null || entry.sequence < eldest.sequence)) {
+                        eldestSegment = segment;
+                        eldest = entry;
+                    }
+                }
             }
+            if (eldest == null) {
+                return false;
+            }
+            // Another thread may have removed or replaced it since the scan.
+            synchronized (eldestSegment) {
+                if (eldestSegment.get(eldest.key) != eldest) {
+                    continue;
+                }
+                eldestSegment.remove(eldest.key);
+            }
+            sessionCount.decrementAndGet();
+            sessionRemoved(eldest.session);
+            return true;
         }
     }
 
@@ -143,15 +217,33 @@ abstract class AbstractSessionContext implements SSLSessionContext {
             throw new IllegalArgumentException("seconds < 0");
         }
         timeout = seconds;
+        removeInvalidSessions();
+    }
 
-        synchronized (sessions) {
-            Iterator<SSLSession> i = sessions.values().iterator();
-            while (i.hasNext()) {
-                SSLSession session = i.next();
-                // SSLSession's know their context and consult the
-                // timeout as part of their validity condition.
-                if (!session.isValid()) {
-                    i.remove();
+    /**
+     * Removes sessions that have expired or been invalidated.
+     */
+    private void removeInvalidSessions() {
+        for (Segment segment : segments) {
+            List<SSLSession> removed = null;
+            synchronized (segment) {
+                Iterator<Entry> i = segment.values().iterator();
+                while (i.hasNext()) {
+                    SSLSession session = i.next().session;
+                    // SSLSession's know their context and consult the
+                    // timeout as part of their validity condition.
+                    if (!session.isValid()) {
+                        i.remove();
+                        if (removed == null) {
+                            removed = new ArrayList<SSLSession>();
+                        }
+                        removed.add(session);
+                    }
+                }
+            }
+            if (removed != null) {
+                sessionCount.addAndGet(-removed.size());
+                for (SSLSession session : removed) {
                     sessionRemoved(session);
                 }
             }
@@ -263,12 +355,15 @@ abstract class AbstractSessionContext implements SSLSessionContext {
             throw new NullPointerException("sessionId == null");
         }
         ByteArray key = new ByteArray(sessionId);
-        SSLSession session;
-        synchronized (sessions) {
-            session = sessions.get(key);
-        }
-        if (session != null && session.isValid()) {
-            return session;
+        Segment segment = segmentFor(key);
+        Entry entry;
+        synchronized (segment) {
+            entry = segment.get(key);
+            if (entry != null && entry.session.isValid()) {
+                segment.hitCount++;
+                return entry.session;
+            }
+            segment.missCount++;
         }
         return null;
     }
@@ -279,15 +374,97 @@ abstract class AbstractSessionContext implements SSLSessionContext {
             return;
         }
         ByteArray key = new ByteArray(id);
-        synchronized (sessions) {
-            sessions.put(key, session);
+        Segment segment = segmentFor(key);
+        Entry previous;
+        synchronized (segment) {
+            // Remove first so that the segment stays ordered by sequence.
+            previous = segment.remove(key);
+            segment.put(key, new Entry(key, session, nextSequence.getAndIncrement()));
+        }
+        if (previous == null) {
+            sessionCount.incrementAndGet();
+            trimToSize();
+        }
+
+        // Sweep expired sessions in the background rather than on lookups.
+        long now = System.currentTimeMillis();
+        if (now >= nextSweepMillis) {
+            nextSweepMillis = now + SWEEP_INTERVAL_MILLIS;
+            SWEEP_EXECUTOR.execute(sweeper);
+        }
+    }
+
+    private Segment segmentFor(ByteArray key) {
+        int h = key.hashCode();
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return segments[h & (SEGMENT_COUNT - 1)];
+    }
+
+    /**
+     * Returns the number of lookups by session ID that found a valid
+     * session, which the native code resumes.
+     */
+    public long getHitCount() {
+        long result = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                result += segment.hitCount;
+            }
         }
+        return result;
+    }
+
+    /**
+     * Returns the number of lookups by session ID that found no valid session.
+     */
+    public long getMissCount() {
+        long result = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                result += segment.missCount;
+            }
+        }
+        return result;
     }
 
     static void log(Throwable t) {
         System.logW("Error converting session.", t);
     }
 
+    /**
+     * A cached session and the order in which it was inserted.
+     */
+    static final class Entry implements Comparable<Entry> {
+        final ByteArray key;
+        final SSLSession session;
+        final long sequence;
+
+        Entry(ByteArray key, SSLSession session, long sequence) {
+            this.key = key;
+            this.session = session;
+            this.sequence = sequence;
+        }
+
+        public int compareTo(Entry another) {
+            return sequence < another.sequence ? -1 : (sequence == another.sequence ? 0 : 1);
+        }
+    }
+
+    /**
+     * An insertion-ordered map from session IDs to entries, with lookup
+     * counts. Guarded by its own monitor.
+     */
+    static final class Segment extends LinkedHashMap<ByteArray, Entry> {
+        long hitCount;
+        long missCount;
+
+        /** Returns the least recently inserted entry, or null if empty. */
+        AbstractSessionContext.Entry eldestEntry() {
+            return isEmpty() ? null : values().iterator().next();
+        }
+    }
+
     @Override protected void finalize() throws Throwable {
         try {
             NativeCrypto.SSL_CTX_free(sslCtxNativePointer);
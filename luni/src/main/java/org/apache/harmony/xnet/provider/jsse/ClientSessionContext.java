@@ -16,8 +16,8 @@
 
 package org.apache.harmony.xnet.provider.jsse;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.net.ssl.SSLSession;
 
 /**
@@ -26,12 +26,13 @@ import javax.net.ssl.SSLSession;
  */
 public class ClientSessionContext extends AbstractSessionContext {
 
-    /**
-     * Sessions indexed by host and port. Protect from concurrent
-     * access by holding a lock on sessionsByHostAndPort.
-     */
-    final Map<HostAndPort, SSLSession> sessionsByHostAndPort
-        = new HashMap<HostAndPort, SSLSession>();
+    /** Sessions indexed by host and port. */
+    final ConcurrentHashMap<HostAndPort, SSLSession> sessionsByHostAndPort
+        = new ConcurrentHashMap<HostAndPort, SSLSession>();
+
+    private final AtomicLong hostAndPortHitCount = new AtomicLong();
+    private final AtomicLong persistentHitCount = new AtomicLong();
+    private final AtomicLong hostAndPortMissCount = new AtomicLong();
 
     private SSLClientSessionCache persistentCache;
 
@@ -53,10 +54,8 @@ public class ClientSessionContext extends AbstractSessionContext {
         if (host == null) {
             return;
         }
-        HostAndPort hostAndPortKey = new HostAndPort(host, port);
-        synchronized (sessionsByHostAndPort) {
-            sessionsByHostAndPort.remove(hostAndPortKey);
-        }
+        // Leave any newer session for the same host and port in place.
+        sessionsByHostAndPort.remove(new HostAndPort(host, port), session);
     }
 
     /**
@@ -70,12 +69,10 @@ public class ClientSessionContext extends AbstractSessionContext {
         if (host == null) {
             return null;
         }
-        SSLSession session;
         HostAndPort hostAndPortKey = new HostAndPort(host, port);
-        synchronized (sessionsByHostAndPort) {
-            session = sessionsByHostAndPort.get(hostAndPortKey);
-        }
+        SSLSession session = sessionsByHostAndPort.get(hostAndPortKey);
         if (session != null && session.isValid()) {
+            hostAndPortHitCount.incrementAndGet();
             return session;
         }
 
@@ -86,17 +83,41 @@ public class ClientSessionContext extends AbstractSessionContext {
                 session = toSession(data, host, port);
                 if (session != null && session.isValid()) {
                     super.putSession(session);
-                    synchronized (sessionsByHostAndPort) {
-                        sessionsByHostAndPort.put(hostAndPortKey, session);
-                    }
+                    sessionsByHostAndPort.put(hostAndPortKey, session);
+                    persistentHitCount.incrementAndGet();
                     return session;
                 }
             }
         }
 
+        hostAndPortMissCount.incrementAndGet();
         return null;
     }
 
+    /**
+     * Returns the number of lookups by host and port that found a valid
+     * session in memory.
+     */
+    public long getHostAndPortHitCount() {
+        return hostAndPortHitCount.get();
+    }
+
+    /**
+     * Returns the number of lookups by host and port that found a valid
+     * session in the persistent cache.
+     */
+    public long getPersistentHitCount() {
+        return persistentHitCount.get();
+    }
+
+    /**
+     * Returns the number of lookups by host and port that found no valid
+     * session, and so required a full handshake.
+     */
+    public long getHostAndPortMissCount() {
+        return hostAndPortMissCount.get();
+    }
+
     @Override
     public void putSession(SSLSession session) {
         super.putSession(session);
@@ -107,10 +128,7 @@ public class ClientSessionContext extends AbstractSessionContext {
             return;
         }
 
-        HostAndPort hostAndPortKey = new HostAndPort(host, port);
-        synchronized (sessionsByHostAndPort) {
-            sessionsByHostAndPort.put(hostAndPortKey, session);
-        }
+        sessionsByHostAndPort.put(new HostAndPort(host, port), session);
 
         // TODO: This in a background thread.
         if (persistentCache != null) {
@@ -16,12 +16,17 @@
 
 package org.apache.harmony.xnet.provider.jsse;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -34,7 +39,7 @@ import libcore.io.IoUtils;
 
 /**
  * File-based cache implementation. Only one process should access the
- * underlying directory at a time.
+ * underlying directory or file at a time.
  */
 public class FileClientSessionCache {
 
@@ -119,7 +124,7 @@ public class FileClientSessionCache {
         /**
          * Gets the file name for the given host and port.
          */
-        private static String fileName(String host, int port) {
+        static String fileName(String host, int port) {
             if (host == null) {
                 throw new NullPointerException("host == null");
             }
@@ -298,6 +303,247 @@ public class FileClientSessionCache {
         }
     }
 
+    /**
+     * This cache stores all sessions in a single append-only file. Each put
+     * appends a record, and evictions append a removal record, so no write
+     * rewrites existing data. An in-memory index maps each "host.port" name
+     * to the offset of its latest record, so hits read only that record and
+     * misses don't touch the disk.
+     *
+     * <p>Once dead records make up most of the file, the live records are
+     * copied to a new file which replaces the old one. A record truncated by
+     * a crash is discarded when the file is next opened.
+     */
+    static class LogImpl implements SSLClientSessionCache {
+
+        /** Identifies a session log file, and its format version. */
+        private static final int MAGIC = 0x53534c31; // "SSL1"
+
+        /** The length that marks a removal record. */
+        private static final int REMOVED = -1;
+
+        /** Files smaller than this are never compacted. */
+        static final int MIN_COMPACTION_LENGTH = 64 * 1024;
+
+        final File file;
+        private RandomAccessFile raf;
+
+        /** Latest record of each live session, least recently used first. */
+        private Map<String, Record> index = newIndex();
+
+        /** The total length of the live records' session data. */
+        private long liveBytes;
+
+        LogImpl(File file) throws IOException {
+            this.file = file;
+            File parent = file.getParentFile();
+            if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("Creation of " + parent + " directory failed.");
+            }
+            raf = new RandomAccessFile(file, "rw");
+            boolean success = false;
+            try {
+                if (raf.length() < 4) {
+                    raf.setLength(0);
+                    raf.writeInt(MAGIC);
+                } else if (raf.readInt() != MAGIC) {
+                    throw new IOException(file + " is not a session cache file.");
+                } else {
+                    readIndex();
+                }
+                success = true;
+            } finally {
+                if (!success) {
+                    IoUtils.closeQuietly(raf);
+                }
+            }
+        }
+
+        private static Map<String, Record> newIndex() {
+            return new LinkedHashMap<String, Record>(MAX_SIZE, 0.75f, true /* access order */);
+        }
+
+        /**
+         * Replays the log to rebuild the index, truncating any partial record
+         * at its end.
+         */
+        private void readIndex() throws IOException {
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(file)));
+            long fileLength = raf.length();
+            long validLength = 4;
+            try {
+                in.readInt(); // magic, already checked
+                while (true) {
+                    String name = in.readUTF();
+                    int length = in.readInt();
+                    long dataOffset = validLength + utfLength(name) + 4;
+                    if (length == REMOVED) {
+                        removeFromIndex(name);
+                    } else {
+                        // Skipping may go past the end of the file, so check the
+                        // record's length against the file's.
+                        if (length < 0 || dataOffset + length > fileLength) {
+                            break;
+                        }
+                        if (in.skipBytes(length) != length) {
+                            break;
+                        }
+                        removeFromIndex(name);
+                        index.put(name, new Record(dataOffset, length));
+                        liveBytes += length;
+                    }
+                    validLength = dataOffset + Math.max(length, 0);
+                }
+            } catch (EOFException endOfLog) {
+            } finally {
+                IoUtils.closeQuietly(in);
+            }
+            if (validLength < fileLength) {
+                raf.setLength(validLength);
+            }
+            while (index.size() > MAX_SIZE) {
+                evictEldest();
+            }
+        }
+
+        private static int utfLength(String name) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            new DataOutputStream(bytes).writeUTF(name);
+            return bytes.size();
+        }
+
+        private void removeFromIndex(String name) {
+            Record removed = index.remove(name);
+            if (removed != null) {
+                liveBytes -= removed.length;
+            }
+        }
+
+        public synchronized byte[] getSessionData(String host, int port) {
+            String name = FileClientSessionCache.Impl.fileName(host, port);
+            Record record = index.get(name);
+            if (record == null) {
+                return null;
+            }
+            try {
+                byte[] data = new byte[record.length];
+                raf.seek(record.offset);
+                raf.readFully(data);
+                return data;
+            } catch (IOException e) {
+                Impl.logReadError(host, file, e);
+                return null;
+            }
+        }
+
+        public synchronized void putSessionData(SSLSession session, byte[] sessionData) {
+            String host = session.getPeerHost();
+            if (sessionData == null) {
+                throw new NullPointerException("sessionData == null");
+            }
+            String name = FileClientSessionCache.Impl.fileName(host, session.getPeerPort());
+            try {
+                long dataOffset = append(name, sessionData);
+                removeFromIndex(name);
+                index.put(name, new Record(dataOffset, sessionData.length));
+                liveBytes += sessionData.length;
+                while (index.size() > MAX_SIZE) {
+                    evictEldest();
+                }
+                if (raf.length() > MIN_COMPACTION_LENGTH && raf.length() > 2 * liveBytes) {
+                    compact();
+                }
+            } catch (IOException e) {
+                Impl.logWriteError(host, file, e);
+            }
+        }
+
+        /**
+         * Appends a record to the log, returning the offset of its data.
+         */
+        private long append(String name, byte[] data) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeUTF(name);
+            out.writeInt(data != null ? data.length : REMOVED);
+            int headerLength = bytes.size();
+            if (data != null) {
+                out.write(data);
+            }
+            long recordOffset = raf.length();
+            raf.seek(recordOffset);
+            raf.write(bytes.toByteArray());
+            return recordOffset + headerLength;
+        }
+
+        private void evictEldest() throws IOException {
+            String name = index.keySet().iterator().next();
+            removeFromIndex(name);
+            append(name, null);
+        }
+
+        /**
+         * Rewrites the log with only its live records, oldest first.
+         */
+        private void compact() throws IOException {
+            File tmp = new File(file.getPath() + ".tmp");
+            RandomAccessFile newRaf = new RandomAccessFile(tmp, "rw");
+            Map<String, Record> newIndex = newIndex();
+            boolean success = false;
+            try {
+                newRaf.setLength(0);
+                newRaf.writeInt(MAGIC);
+                for (Map.Entry<String, Record> entry : index.entrySet()) {
+                    Record record = entry.getValue();
+                    byte[] data = new byte[record.length];
+                    raf.seek(record.offset);
+                    raf.readFully(data);
+
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    DataOutputStream out = new DataOutputStream(bytes);
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(data.length);
+                    long dataOffset = newRaf.length() + bytes.size();
+                    out.write(data);
+                    newRaf.write(bytes.toByteArray());
+                    newIndex.put(entry.getKey(), new Record(dataOffset, data.length));
+                }
+                if (!tmp.renameTo(file)) {
+                    throw new IOException("Failed to rename " + tmp + " to " + file);
+                }
+                success = true;
+            } finally {
+                if (success) {
+                    IoUtils.closeQuietly(raf);
+                    raf = newRaf;
+                    index = newIndex;
+                } else {
+                    IoUtils.closeQuietly(newRaf);
+                    tmp.delete();
+                }
+            }
+        }
+
+        /**
+         * Closes the log file. Later reads miss and later writes are dropped.
+         */
+        synchronized void close() {
+            IoUtils.closeQuietly(raf);
+        }
+
+        /** The location of a session's data in the log. */
+        static final class Record {
+            final long offset;
+            final int length;
+
+            Record(long offset, int length) {
+                this.offset = offset;
+                this.length = length;
+            }
+        }
+    }
+
     /**
      * Maps directories to the cache instances that are backed by those
      * directories. We synchronize access using the cache instance, so it's
@@ -326,9 +572,39 @@ public class FileClientSessionCache {
         return cache;
     }
 
+    /**
+     * Maps files to the single-file cache instances that are backed by them.
+     */
+    static final Map<File, FileClientSessionCache.LogImpl> logs
+            = new HashMap<File, FileClientSessionCache.LogImpl>();
+
+    /**
+     * Returns a cache backed by a single append-only file. Creates the file
+     * and its parent directories if necessary. This cache should have
+     * exclusive access to the given file. Unlike {@link #usingDirectory},
+     * this creates no file per session, and a miss never touches the disk.
+     *
+     * @param file to store sessions in
+     * @return a cache backed by the given file
+     * @throws IOException if the file can't be created, or exists and isn't
+     *  a session cache file
+     */
+    public static synchronized SSLClientSessionCache usingFile(File file) throws IOException {
+        FileClientSessionCache.LogImpl cache = logs.get(file);
+        if (cache == null) {
+            cache = new FileClientSessionCache.LogImpl(file);
+            logs.put(file, cache);
+        }
+        return cache;
+    }
+
     /** For testing. */
     static synchronized void reset() {
         caches.clear();
+        for (FileClientSessionCache.LogImpl log : logs.values()) {
+            log.close();
+        }
+        logs.clear();
     }
 
     /** A file containing a piece of cached data. */
@@ -254,10 +254,37 @@ public final class NativeCrypto {
 
     public static native long EVP_DigestInit(long evp_md);
 
-    public static native void EVP_DigestUpdate(long ctx, byte[] buffer, int offset, int length);
+    /**
+     * Updates the digest with bytes from {@code buffer}, which is a byte[] or
+     * a direct ByteBuffer. For a direct buffer, {@code offset} is an absolute
+     * index.
+     */
+    public static native void EVP_DigestUpdate(long ctx, Object buffer, int offset, int length);
 
+    /**
+     * Writes the digest to {@code hash} and frees the context.
+     */
     public static native int EVP_DigestFinal(long ctx, byte[] hash, int offset);
 
+    /**
+     * Reinitializes an existing context, without reallocating it.
+     */
+    public static native void EVP_DigestInit_ex(long ctx, long evp_md);
+
+    /**
+     * Writes the digest to {@code hash}, leaving the context allocated.
+     */
+    public static native int EVP_DigestFinal_ex(long ctx, byte[] hash, int offset);
+
+    /**
+     * Digests each of {@code messages} independently using {@code ctx},
+     * writing the digests one after another to {@code output}. If
+     * {@code evp_pkey} is non-zero, each message is instead signed with it,
+     * as for a MAC.
+     */
+    public static native void EVP_DigestBatch(long ctx, long evp_md, long evp_pkey,
+                                              byte[][] messages, byte[] output);
+
     // --- MAC handling functions ----------------------------------------------
 
     public static native void EVP_DigestSignInit(long evp_md_ctx, long evp_md, long evp_pkey);
@@ -1002,21 +1029,25 @@ public final class NativeCrypto {
 
     /**
      * Reads with the native SSL_read function from the encrypted data stream
+     * into {@code b}, which is a byte[] or a direct ByteBuffer. The bytes of
+     * a direct buffer are read in place; {@code off} is an absolute index.
      * @return -1 if error or the end of the stream is reached.
      */
     public static native int SSL_read(long sslNativePointer,
                                       FileDescriptor fd,
                                       SSLHandshakeCallbacks shc,
-                                      byte[] b, int off, int len, int readTimeoutMillis)
+                                      Object b, int off, int len, int readTimeoutMillis)
         throws IOException;
 
     /**
-     * Writes with the native SSL_write function to the encrypted data stream.
+     * Writes with the native SSL_write function to the encrypted data stream
+     * from {@code b}, which is a byte[] or a direct ByteBuffer. The bytes of
+     * a direct buffer are written in place; {@code off} is an absolute index.
      */
     public static native void SSL_write(long sslNativePointer,
                                         FileDescriptor fd,
                                         SSLHandshakeCallbacks shc,
-                                        byte[] b, int off, int len, int writeTimeoutMillis)
+                                        Object b, int off, int len, int writeTimeoutMillis)
         throws IOException;
 
     public static native void SSL_interrupt(long sslNativePointer);
@@ -1024,6 +1055,85 @@ public final class NativeCrypto {
                                            FileDescriptor fd,
                                            SSLHandshakeCallbacks shc) throws IOException;
 
+    /**
+     * Replaces the SSL's socket BIOs with memory BIOs for use by an
+     * SSLEngine. The {@code *_bio} and {@code *_network_*} methods may only
+     * be used on an SSL configured this way.
+     */
+    public static native void SSL_set_memory_bios(long sslNativePointer, boolean clientMode)
+        throws SSLException;
+
+    /**
+     * Buffers bytes received from the network. {@code buffer} is a
+     * {@code byte[]} or a direct {@code ByteBuffer}.
+     */
+    public static native int SSL_write_network_input(long sslNativePointer,
+                                                     Object buffer, int offset, int byteCount)
+        throws SSLException;
+
+    /**
+     * Removes bytes to be sent to the network, returning the number removed.
+     * {@code buffer} is a {@code byte[]} or a direct {@code ByteBuffer}.
+     */
+    public static native int SSL_read_network_output(long sslNativePointer,
+                                                     Object buffer, int offset, int byteCount);
+
+    /**
+     * Returns the number of bytes waiting to be sent to the network.
+     */
+    public static native int SSL_pending_network_output(long sslNativePointer);
+
+    /**
+     * Returns the number of decrypted bytes that can be read without more
+     * network input.
+     */
+    public static native int SSL_pending_readable_bytes(long sslNativePointer);
+
+    /**
+     * Advances the handshake using the buffered network input. Returns the
+     * sslSessionNativePointer of the negotiated session once the handshake is
+     * complete, or 0 if more network input is required.
+     */
+    public static native long SSL_do_handshake_bio(long sslNativePointer,
+                                                   SSLHandshakeCallbacks shc,
+                                                   byte[] npnProtocols)
+        throws SSLException, CertificateException;
+
+    /**
+     * Decrypts buffered network input. Returns the number of bytes read, 0 if
+     * more network input is required, or -1 if the peer has closed the
+     * connection. {@code buffer} is a {@code byte[]} or a direct
+     * {@code ByteBuffer}.
+     */
+    public static native int SSL_read_bio(long sslNativePointer,
+                                          SSLHandshakeCallbacks shc,
+                                          Object buffer, int offset, int byteCount)
+        throws SSLException;
+
+    /**
+     * Encrypts application data for the network. Returns the number of bytes
+     * consumed. {@code buffer} is a {@code byte[]} or a direct
+     * {@code ByteBuffer}.
+     */
+    public static native int SSL_write_bio(long sslNativePointer,
+                                           SSLHandshakeCallbacks shc,
+                                           Object buffer, int offset, int byteCount)
+        throws SSLException;
+
+    /**
+     * Queues a close_notify alert for the network.
+     */
+    public static native void SSL_shutdown_bio(long sslNativePointer,
+                                               SSLHandshakeCallbacks shc) throws SSLException;
+
+    /**
+     * Queues the first message of a renegotiation for the network. The rest
+     * of the handshake is driven by {@link #SSL_read_bio} and {@link
+     * #SSL_write_bio}.
+     */
+    public static native void SSL_renegotiate_bio(long sslNativePointer,
+                                                  SSLHandshakeCallbacks shc) throws SSLException;
+
     public static native void SSL_free(long sslNativePointer);
 
     public static native byte[] SSL_SESSION_session_id(long sslSessionNativePointer);
@@ -18,12 +18,13 @@ package org.apache.harmony.xnet.provider.jsse;
 
 import java.io.IOException;
 import java.security.GeneralSecurityException;
+import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLServerSocketFactory;
 import javax.net.ssl.SSLSocketFactory;
 
 /**
  * Overrides the original SSLContextImpl to provide OpenSSL-based
- * SSLSocketFactory and SSLServerSocketFactory instances.
+ * SSLSocketFactory, SSLServerSocketFactory and SSLEngine instances.
  */
 public class OpenSSLContextImpl extends SSLContextImpl {
 
@@ -49,4 +50,24 @@ public class OpenSSLContextImpl extends SSLContextImpl {
         }
         return new OpenSSLServerSocketFactoryImpl(sslParameters);
     }
+
+    @Override
+    public SSLEngine engineCreateSSLEngine(String host, int port) {
+        if (sslParameters == null) {
+            throw new IllegalStateException("SSLContext is not initialized.");
+        }
+        SSLParametersImpl p = (SSLParametersImpl) sslParameters.clone();
+        p.setUseClientMode(false);
+        return new OpenSSLEngineImpl(host, port, p);
+    }
+
+    @Override
+    public SSLEngine engineCreateSSLEngine() {
+        if (sslParameters == null) {
+            throw new IllegalStateException("SSLContext is not initialized.");
+        }
+        SSLParametersImpl p = (SSLParametersImpl) sslParameters.clone();
+        p.setUseClientMode(false);
+        return new OpenSSLEngineImpl(p);
+    }
 }
@@ -0,0 +1,830 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.harmony.xnet.provider.jsse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.NioUtils;
+import java.nio.ReadOnlyBufferException;
+import java.security.PrivateKey;
+import java.security.SecureRandom;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLEngineResult.Status;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLHandshakeException;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.X509ExtendedKeyManager;
+import javax.net.ssl.X509KeyManager;
+import javax.net.ssl.X509TrustManager;
+import javax.security.auth.x500.X500Principal;
+import org.apache.harmony.security.provider.cert.X509CertImpl;
+
+/**
+ * Implementation of SSLEngine based on OpenSSL.
+ *
+ * <p>The native SSL reads and writes TLS records through a pair of memory
+ * BIOs instead of a socket. Direct and array-backed buffers are handed to
+ * native code without copying, both for the network data and the application
+ * data. Records are passed to OpenSSL one at a time, so that {@code unwrap}
+ * never consumes more input than it can produce output for.
+ */
+public class OpenSSLEngineImpl extends SSLEngine implements NativeCrypto.SSLHandshakeCallbacks {
+
+    /** The length of a TLS record header: type(1) + version(2) + length(2). */
+    private static final int RECORD_HEADER_LENGTH = 5;
+
+    /** The range of valid TLS record content types. */
+    private static final int CONTENT_TYPE_CHANGE_CIPHER_SPEC = 20;
+    private static final int CONTENT_TYPE_APPLICATION_DATA = 23;
+
+    /**
+     * An upper bound on what {@code wrap} adds to each record: the header, an
+     * explicit IV, the largest MAC and the largest block cipher padding.
+     */
+    private static final int MAX_RECORD_OVERHEAD = RECORD_HEADER_LENGTH + 16 + 48 + 256;
+
+    /** The handshake has not begun; the native SSL does not exist yet. */
+    private static final int STATE_NEW = 0;
+
+    /**
+     * The handshake is in progress. It remains in progress until OpenSSL
+     * reports it complete and its final messages have been wrapped.
+     */
+    private static final int STATE_HANDSHAKING = 1;
+
+    /** Application data may be exchanged. */
+    private static final int STATE_READY = 2;
+
+    /** The engine has failed or been closed; the native SSL has been freed. */
+    private static final int STATE_CLOSED = 3;
+
+    private final SSLParametersImpl sslParameters;
+    private String[] enabledProtocols;
+    private String[] enabledCipherSuites;
+    private boolean peerModeSet;
+
+    private int state = STATE_NEW;
+    private long sslNativePointer;
+    private OpenSSLSessionImpl sslSession;
+    private OpenSSLSessionImpl sessionToReuse;
+
+    /** True once our close_notify has been queued, or the engine is closed. */
+    private boolean outboundClosed;
+
+    /** True once the peer's close_notify has been read, or inbound is closed. */
+    private boolean inboundDone;
+    private boolean closeNotifyReceived;
+
+    OpenSSLEngineImpl(SSLParametersImpl sslParameters) {
+        this.sslParameters = sslParameters;
+        this.enabledProtocols = NativeCrypto.getDefaultProtocols();
+        this.enabledCipherSuites = NativeCrypto.getDefaultCipherSuites();
+    }
+
+    OpenSSLEngineImpl(String host, int port, SSLParametersImpl sslParameters) {
+        super(host, port);
+        this.sslParameters = sslParameters;
+        this.enabledProtocols = NativeCrypto.getDefaultProtocols();
+        this.enabledCipherSuites = NativeCrypto.getDefaultCipherSuites();
+    }
+
+    @Override public synchronized void beginHandshake() throws SSLException {
+        if (state == STATE_CLOSED || outboundClosed || inboundDone) {
+            throw new SSLException("Engine has already been closed");
+        }
+        if (!peerModeSet) {
+            throw new IllegalStateException("Client/Server mode was not set");
+        }
+        if (state == STATE_NEW) {
+            startHandshake();
+            // A client's ClientHello is ready to wrap as soon as it begins.
+            doHandshake();
+        } else if (state == STATE_READY) {
+            // OpenSSL completes the renegotiation as wrap and unwrap move records. The
+            // session reported by getSession() remains the one from the initial handshake.
+            try {
+                NativeCrypto.SSL_renegotiate_bio(sslNativePointer, this);
+            } catch (SSLException e) {
+                close();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Creates and configures the native SSL, exactly as {@link
+     * OpenSSLSocketImpl#startHandshake} does for a socket, but attached to
+     * memory BIOs.
+     */
+    private void startHandshake() throws SSLException {
+        // note that this modifies the global seed, not something specific to the connection
+        final int seedLengthInBytes = NativeCrypto.RAND_SEED_LENGTH_IN_BYTES;
+        final SecureRandom secureRandom = sslParameters.getSecureRandomMember();
+        if (secureRandom == null) {
+            NativeCrypto.RAND_load_file("/dev/urandom", seedLengthInBytes);
+        } else {
+            NativeCrypto.RAND_seed(secureRandom.generateSeed(seedLengthInBytes));
+        }
+
+        final boolean client = sslParameters.getUseClientMode();
+        final long sslCtxNativePointer = (client) ?
+            sslParameters.getClientSessionContext().sslCtxNativePointer :
+            sslParameters.getServerSessionContext().sslCtxNativePointer;
+
+        boolean exception = true;
+        try {
+            sslNativePointer = NativeCrypto.SSL_new(sslCtxNativePointer);
+
+            // setup server certificates and private keys.
+            // clients will receive a call back to request certificates.
+            if (!client) {
+                Set<String> keyTypes = new HashSet<String>();
+                for (String enabledCipherSuite : enabledCipherSuites) {
+                    if (enabledCipherSuite.equals(NativeCrypto.TLS_EMPTY_RENEGOTIATION_INFO_SCSV)) {
+                        continue;
+                    }
+                    String keyType = CipherSuite.getByName(enabledCipherSuite).getServerKeyType();
+                    if (keyType != null) {
+                        keyTypes.add(keyType);
+                    }
+                }
+                X509KeyManager keyManager = sslParameters.getKeyManager();
+                for (String keyType : keyTypes) {
+                    if (keyManager instanceof X509ExtendedKeyManager) {
+                        X509ExtendedKeyManager extendedKeyManager = (X509ExtendedKeyManager) keyManager;
+                        setCertificate(extendedKeyManager.chooseEngineServerAlias(keyType, null, this));
+                    } else {
+                        setCertificate(keyManager.chooseServerAlias(keyType, null, null));
+                    }
+                }
+            }
+
+            NativeCrypto.setEnabledProtocols(sslNativePointer, enabledProtocols);
+            NativeCrypto.setEnabledCipherSuites(sslNativePointer, enabledCipherSuites);
+
+            boolean enableSessionCreation = sslParameters.getEnableSessionCreation();
+            if (!enableSessionCreation) {
+                NativeCrypto.SSL_set_session_creation_enabled(sslNativePointer,
+                                                              enableSessionCreation);
+            }
+
+            if (client) {
+                sessionToReuse = getCachedClientSession(sslParameters.getClientSessionContext());
+                if (sessionToReuse != null) {
+                    NativeCrypto.SSL_set_session(sslNativePointer,
+                                                 sessionToReuse.sslSessionNativePointer);
+                }
+            } else {
+                boolean certRequested;
+                if (sslParameters.getNeedClientAuth()) {
+                    NativeCrypto.SSL_set_verify(sslNativePointer,
+                                                NativeCrypto.SSL_VERIFY_PEER
+                                                | NativeCrypto.SSL_VERIFY_FAIL_IF_NO_PEER_CERT);
+                    certRequested = true;
+                } else if (sslParameters.getWantClientAuth()) {
+                    NativeCrypto.SSL_set_verify(sslNativePointer, NativeCrypto.SSL_VERIFY_PEER);
+                    certRequested = true;
+                } else {
+                    certRequested = false;
+                }
+
+                if (certRequested) {
+                    X509Certificate[] issuers = sslParameters.getTrustManager().getAcceptedIssuers();
+                    if (issuers != null && issuers.length != 0) {
+                        NativeCrypto.SSL_set_client_CA_list(sslNativePointer,
+                                NativeCrypto.encodeIssuerX509Principals(issuers));
+                    }
+                }
+            }
+
+            NativeCrypto.SSL_set_memory_bios(sslNativePointer, client);
+            state = STATE_HANDSHAKING;
+            exception = false;
+        } catch (CertificateEncodingException e) {
+            SSLException wrapper = new SSLException("Problem encoding certificates");
+            wrapper.initCause(e);
+            throw wrapper;
+        } finally {
+            if (exception) {
+                close();
+            }
+        }
+    }
+
+    /**
+     * Returns a cached session for the peer that is compatible with the
+     * enabled protocols and cipher suites, or null.
+     */
+    private OpenSSLSessionImpl getCachedClientSession(ClientSessionContext sessionContext) {
+        String hostName = getPeerHost();
+        if (hostName == null) {
+            return null;
+        }
+        OpenSSLSessionImpl session
+                = (OpenSSLSessionImpl) sessionContext.getSession(hostName, getPeerPort());
+        if (session == null
+                || !Arrays.asList(enabledProtocols).contains(session.getProtocol())
+                || !Arrays.asList(enabledCipherSuites).contains(session.getCipherSuite())) {
+            return null;
+        }
+        return session;
+    }
+
+    private void setCertificate(String alias) throws CertificateEncodingException, SSLException {
+        if (alias == null) {
+            return;
+        }
+        PrivateKey privateKey = sslParameters.getKeyManager().getPrivateKey(alias);
+        if (privateKey == null) {
+            return;
+        }
+        X509Certificate[] certificates = sslParameters.getKeyManager().getCertificateChain(alias);
+        if (certificates == null) {
+            return;
+        }
+
+        if (privateKey instanceof OpenSSLKeyHolder) {
+            OpenSSLKey key = ((OpenSSLKeyHolder) privateKey).getOpenSSLKey();
+            NativeCrypto.SSL_use_OpenSSL_PrivateKey(sslNativePointer, key.getPkeyContext());
+        } else if ("PKCS#8".equals(privateKey.getFormat())) {
+            NativeCrypto.SSL_use_PrivateKey(sslNativePointer, privateKey.getEncoded());
+        } else {
+            throw new SSLException("Unsupported PrivateKey format: " + privateKey.getFormat());
+        }
+
+        NativeCrypto.SSL_use_certificate(sslNativePointer,
+                                         NativeCrypto.encodeCertificates(certificates));
+        NativeCrypto.SSL_check_private_key(sslNativePointer);
+    }
+
+    /**
+     * Advances the handshake with the buffered network input. Once OpenSSL
+     * reports the handshake complete, the session is established; the engine
+     * stays in STATE_HANDSHAKING until the final messages have been wrapped.
+     */
+    private void doHandshake() throws SSLException {
+        long sslSessionNativePointer;
+        try {
+            sslSessionNativePointer = NativeCrypto.SSL_do_handshake_bio(sslNativePointer, this, null);
+        } catch (CertificateException e) {
+            close();
+            SSLHandshakeException wrapper = new SSLHandshakeException(e.getMessage());
+            wrapper.initCause(e);
+            throw wrapper;
+        } catch (SSLHandshakeException e) {
+            close();
+            throw e;
+        } catch (SSLException e) {
+            close();
+            throw new SSLHandshakeException(e);
+        }
+        if (sslSessionNativePointer == 0) {
+            return;
+        }
+
+        AbstractSessionContext sessionContext = (sslParameters.getUseClientMode())
+                ? sslParameters.getClientSessionContext()
+                : sslParameters.getServerSessionContext();
+        byte[] sessionId = NativeCrypto.SSL_SESSION_session_id(sslSessionNativePointer);
+        if (sessionToReuse != null && Arrays.equals(sessionToReuse.getId(), sessionId)) {
+            sslSession = sessionToReuse;
+            sslSession.lastAccessedTime = System.currentTimeMillis();
+            NativeCrypto.SSL_SESSION_free(sslSessionNativePointer);
+        } else {
+            try {
+                X509Certificate[] localCertificates
+                        = createCertChain(NativeCrypto.SSL_get_certificate(sslNativePointer));
+                X509Certificate[] peerCertificates
+                        = createCertChain(NativeCrypto.SSL_get_peer_cert_chain(sslNativePointer));
+                sslSession = new OpenSSLSessionImpl(sslSessionNativePointer, localCertificates,
+                        peerCertificates, getPeerHost(), getPeerPort(), sessionContext);
+            } catch (IOException e) {
+                NativeCrypto.SSL_SESSION_free(sslSessionNativePointer);
+                close();
+                SSLHandshakeException wrapper = new SSLHandshakeException(e.getMessage());
+                wrapper.initCause(e);
+                throw wrapper;
+            }
+            sessionContext.putSession(sslSession);
+        }
+        sessionToReuse = null;
+    }
+
+    /**
+     * Return a possibly null array of X509Certificates given the
+     * possibly null array of DER encoded bytes.
+     */
+    private static X509Certificate[] createCertChain(byte[][] certificatesBytes) throws IOException {
+        if (certificatesBytes == null) {
+            return null;
+        }
+        X509Certificate[] certificates = new X509Certificate[certificatesBytes.length];
+        for (int i = 0; i < certificatesBytes.length; i++) {
+            certificates[i] = new X509CertImpl(certificatesBytes[i]);
+        }
+        return certificates;
+    }
+
+    @Override public synchronized SSLEngineResult wrap(ByteBuffer[] srcs, int offset, int length,
+            ByteBuffer dst) throws SSLException {
+        if (srcs == null) {
+            throw new IllegalArgumentException("srcs == null");
+        }
+        if (dst == null) {
+            throw new IllegalArgumentException("dst == null");
+        }
+        Arrays.checkOffsetAndCount(srcs.length, offset, length);
+        for (int i = offset; i < offset + length; i++) {
+            if (srcs[i] == null) {
+                throw new IllegalArgumentException("srcs[" + i + "] == null");
+            }
+        }
+        if (dst.isReadOnly()) {
+            throw new ReadOnlyBufferException();
+        }
+
+        if (state == STATE_NEW && !outboundClosed) {
+            beginHandshake();
+        }
+        if (state == STATE_NEW || state == STATE_CLOSED) {
+            return new SSLEngineResult(Status.CLOSED, getHandshakeStatus(), 0, 0);
+        }
+
+        // Messages already produced by OpenSSL go out before any new data.
+        int pending = pendingNetworkOutput();
+        if (pending > 0) {
+            if (dst.remaining() < Math.min(pending, SSLRecordProtocol.MAX_SSL_PACKET_SIZE)) {
+                return new SSLEngineResult(Status.BUFFER_OVERFLOW, getHandshakeStatus(), 0, 0);
+            }
+            int bytesProduced = readNetworkOutput(dst);
+            HandshakeStatus handshakeStatus = handshakeStatusAfterOperation();
+            Status status = (outboundClosed && pendingNetworkOutput() == 0)
+                    ? Status.CLOSED
+                    : Status.OK;
+            closeIfDone();
+            return new SSLEngineResult(status, handshakeStatus, 0, bytesProduced);
+        }
+        if (state == STATE_HANDSHAKING) {
+            return new SSLEngineResult(Status.OK, handshakeStatusAfterOperation(), 0, 0);
+        }
+        if (outboundClosed) {
+            return new SSLEngineResult(Status.CLOSED, getHandshakeStatus(), 0, 0);
+        }
+
+        int bytesConsumed = 0;
+        int bytesProduced = 0;
+        boolean awaitingPeer = false;
+        for (int i = offset; i < offset + length && !awaitingPeer; i++) {
+            ByteBuffer src = srcs[i];
+            while (src.hasRemaining()) {
+                int byteCount = Math.min(Math.min(src.remaining(), SSLRecordProtocol.MAX_DATA_LENGTH),
+                                         dst.remaining() - MAX_RECORD_OVERHEAD);
+                if (byteCount <= 0) {
+                    break;
+                }
+                int written = NativeCrypto.SSL_write_bio(sslNativePointer, this,
+                        bufferObject(src), bufferOffset(src), byteCount);
+                if (written == 0) {
+                    // Renegotiating: OpenSSL may have queued handshake messages, and
+                    // can't write more data until the peer's reply has been unwrapped.
+                    bytesProduced += readNetworkOutput(dst);
+                    awaitingPeer = true;
+                    break;
+                }
+                src.position(src.position() + written);
+                bytesConsumed += written;
+                bytesProduced += readNetworkOutput(dst);
+            }
+            if (src.hasRemaining()) {
+                break;
+            }
+        }
+        if (awaitingPeer) {
+            HandshakeStatus handshakeStatus = (pendingNetworkOutput() > 0)
+                    ? HandshakeStatus.NEED_WRAP
+                    : HandshakeStatus.NEED_UNWRAP;
+            return new SSLEngineResult(Status.OK, handshakeStatus, bytesConsumed, bytesProduced);
+        }
+        Status status = (bytesConsumed == 0 && hasRemaining(srcs, offset, length))
+                ? Status.BUFFER_OVERFLOW
+                : Status.OK;
+        return new SSLEngineResult(status, getHandshakeStatus(), bytesConsumed, bytesProduced);
+    }
+
+    @Override public synchronized SSLEngineResult unwrap(ByteBuffer src, ByteBuffer[] dsts,
+            int offset, int length) throws SSLException {
+        if (src == null) {
+            throw new IllegalArgumentException("src == null");
+        }
+        if (dsts == null) {
+            throw new IllegalArgumentException("dsts == null");
+        }
+        Arrays.checkOffsetAndCount(dsts.length, offset, length);
+        for (int i = offset; i < offset + length; i++) {
+            if (dsts[i] == null) {
+                throw new IllegalArgumentException("dsts[" + i + "] == null");
+            }
+            if (dsts[i].isReadOnly()) {
+                throw new ReadOnlyBufferException();
+            }
+        }
+
+        if (state == STATE_NEW && !inboundDone) {
+            beginHandshake();
+        }
+        if (state == STATE_NEW || state == STATE_CLOSED || inboundDone) {
+            return new SSLEngineResult(Status.CLOSED, getHandshakeStatus(), 0, 0);
+        }
+        if (state == STATE_HANDSHAKING && (sslSession != null || pendingNetworkOutput() > 0)) {
+            // Handshake messages already produced must be wrapped first.
+            return new SSLEngineResult(Status.OK, getHandshakeStatus(), 0, 0);
+        }
+
+        int capacity = remaining(dsts, offset, length);
+        int bytesConsumed = 0;
+        if (state == STATE_HANDSHAKING
+                || NativeCrypto.SSL_pending_readable_bytes(sslNativePointer) == 0) {
+            int recordLength = nextRecordLength(src);
+            if (recordLength == -1) {
+                return new SSLEngineResult(Status.BUFFER_UNDERFLOW, getHandshakeStatus(), 0, 0);
+            }
+            if (state == STATE_READY
+                    && capacity < Math.min(recordLength - RECORD_HEADER_LENGTH,
+                                           SSLRecordProtocol.MAX_DATA_LENGTH)) {
+                return new SSLEngineResult(Status.BUFFER_OVERFLOW, getHandshakeStatus(), 0, 0);
+            }
+            NativeCrypto.SSL_write_network_input(sslNativePointer,
+                    bufferObject(src), bufferOffset(src), recordLength);
+            src.position(src.position() + recordLength);
+            bytesConsumed = recordLength;
+        } else if (capacity == 0) {
+            return new SSLEngineResult(Status.BUFFER_OVERFLOW, getHandshakeStatus(), 0, 0);
+        }
+
+        if (state == STATE_HANDSHAKING) {
+            doHandshake();
+            return new SSLEngineResult(Status.OK, handshakeStatusAfterOperation(),
+                                       bytesConsumed, 0);
+        }
+
+        int bytesProduced = 0;
+        for (int i = offset; i < offset + length && !closeNotifyReceived; i++) {
+            ByteBuffer dst = dsts[i];
+            while (dst.hasRemaining()) {
+                int read = NativeCrypto.SSL_read_bio(sslNativePointer, this,
+                        bufferObject(dst), bufferOffset(dst), dst.remaining());
+                if (read == 0) {
+                    break;
+                }
+                if (read == -1) {
+                    // Answer the peer's close_notify with our own.
+                    closeNotifyReceived = true;
+                    inboundDone = true;
+                    closeOutbound();
+                    break;
+                }
+                dst.position(dst.position() + read);
+                bytesProduced += read;
+            }
+            if (dst.hasRemaining()) {
+                break;
+            }
+        }
+        Status status = inboundDone ? Status.CLOSED : Status.OK;
+        HandshakeStatus handshakeStatus = getHandshakeStatus();
+        closeIfDone();
+        return new SSLEngineResult(status, handshakeStatus, bytesConsumed, bytesProduced);
+    }
+
+    /**
+     * Returns the length of the complete record at the start of {@code src},
+     * or -1 if the record is incomplete.
+     */
+    private static int nextRecordLength(ByteBuffer src) throws SSLException {
+        int position = src.position();
+        if (src.remaining() < RECORD_HEADER_LENGTH) {
+            return -1;
+        }
+        int first = src.get(position) & 0xff;
+        int recordLength;
+        if ((first & 0x80) != 0) {
+            // An SSLv2-compatible ClientHello with a two-byte header.
+            recordLength = (((first & 0x7f) << 8) | (src.get(position + 1) & 0xff)) + 2;
+        } else if (first >= CONTENT_TYPE_CHANGE_CIPHER_SPEC
+                && first <= CONTENT_TYPE_APPLICATION_DATA) {
+            recordLength = (((src.get(position + 3) & 0xff) << 8) | (src.get(position + 4) & 0xff))
+                    + RECORD_HEADER_LENGTH;
+        } else {
+            throw new SSLException("Unexpected record content type: " + first);
+        }
+        return (src.remaining() < recordLength) ? -1 : recordLength;
+    }
+
+    /**
+     * Moves as much pending network output as fits into {@code dst}.
+     */
+    private int readNetworkOutput(ByteBuffer dst) {
+        int read = NativeCrypto.SSL_read_network_output(sslNativePointer,
+                bufferObject(dst), bufferOffset(dst), dst.remaining());
+        dst.position(dst.position() + read);
+        return read;
+    }
+
+    private int pendingNetworkOutput() {
+        return (sslNativePointer == 0) ? 0 : NativeCrypto.SSL_pending_network_output(sslNativePointer);
+    }
+
+    /**
+     * Returns the object to pass to native code for a buffer's contents: the
+     * buffer itself if it is direct, otherwise its backing array.
+     */
+    private static Object bufferObject(ByteBuffer buffer) {
+        return buffer.isDirect() ? buffer : NioUtils.unsafeArray(buffer);
+    }
+
+    private static int bufferOffset(ByteBuffer buffer) {
+        return buffer.isDirect()
+                ? buffer.position()
+                : NioUtils.unsafeArrayOffset(buffer) + buffer.position();
+    }
+
+    private static boolean hasRemaining(ByteBuffer[] buffers, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (buffers[i].hasRemaining()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int remaining(ByteBuffer[] buffers, int offset, int length) {
+        long result = 0;
+        for (int i = offset; i < offset + length; i++) {
+            result += buffers[i].remaining();
+        }
+        return (int) Math.min(result, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Completes the handshake once OpenSSL has established the session and
+     * its final messages have been wrapped, returning FINISHED on that
+     * transition and the current status otherwise.
+     */
+    private HandshakeStatus handshakeStatusAfterOperation() {
+        if (state == STATE_HANDSHAKING && sslSession != null && pendingNetworkOutput() == 0) {
+            state = STATE_READY;
+            return HandshakeStatus.FINISHED;
+        }
+        return getHandshakeStatus();
+    }
+
+    @Override public synchronized HandshakeStatus getHandshakeStatus() {
+        switch (state) {
+            case STATE_HANDSHAKING:
+                return (pendingNetworkOutput() > 0 || sslSession != null)
+                        ? HandshakeStatus.NEED_WRAP
+                        : HandshakeStatus.NEED_UNWRAP;
+            case STATE_READY:
+                if (pendingNetworkOutput() > 0) {
+                    return HandshakeStatus.NEED_WRAP;
+                }
+                if (outboundClosed && !inboundDone) {
+                    // waiting for the peer's close_notify
+                    return HandshakeStatus.NEED_UNWRAP;
+                }
+                return HandshakeStatus.NOT_HANDSHAKING;
+            default:
+                return HandshakeStatus.NOT_HANDSHAKING;
+        }
+    }
+
+    @Override public synchronized void closeInbound() throws SSLException {
+        if (inboundDone) {
+            return;
+        }
+        inboundDone = true;
+        boolean truncated = (state == STATE_READY || state == STATE_HANDSHAKING)
+                && !closeNotifyReceived;
+        closeOutbound();
+        if (truncated) {
+            if (sslSession != null) {
+                sslSession.invalidate();
+            }
+            throw new SSLException("Inbound is closed before close_notify alert has been received");
+        }
+    }
+
+    @Override public synchronized void closeOutbound() {
+        if (outboundClosed) {
+            return;
+        }
+        outboundClosed = true;
+        if (state == STATE_READY) {
+            try {
+                NativeCrypto.SSL_shutdown_bio(sslNativePointer, this);
+            } catch (SSLException e) {
+                close();
+            }
+        } else {
+            // nothing useful can be sent before the handshake is complete
+            close();
+        }
+        closeIfDone();
+    }
+
+    /**
+     * Frees the native SSL once both directions are closed and our
+     * close_notify has been wrapped.
+     */
+    private void closeIfDone() {
+        if (inboundDone && outboundClosed && pendingNetworkOutput() == 0) {
+            close();
+        }
+    }
+
+    private void close() {
+        state = STATE_CLOSED;
+        outboundClosed = true;
+        inboundDone = true;
+        if (sslNativePointer != 0) {
+            NativeCrypto.SSL_free(sslNativePointer);
+            sslNativePointer = 0;
+        }
+    }
+
+    @Override public synchronized boolean isInboundDone() {
+        return inboundDone;
+    }
+
+    @Override public synchronized boolean isOutboundDone() {
+        return outboundClosed && pendingNetworkOutput() == 0;
+    }
+
+    @Override public Runnable getDelegatedTask() {
+        // Certificate checks run synchronously in the handshake callbacks.
+        return null;
+    }
+
+    @Override public synchronized SSLSession getSession() {
+        if (sslSession != null) {
+            return sslSession;
+        }
+        return SSLSessionImpl.getNullSession();
+    }
+
+    @Override public String[] getSupportedCipherSuites() {
+        return NativeCrypto.getSupportedCipherSuites();
+    }
+
+    @Override public synchronized String[] getEnabledCipherSuites() {
+        return enabledCipherSuites.clone();
+    }
+
+    @Override public synchronized void setEnabledCipherSuites(String[] suites) {
+        enabledCipherSuites = NativeCrypto.checkEnabledCipherSuites(suites);
+    }
+
+    @Override public String[] getSupportedProtocols() {
+        return NativeCrypto.getSupportedProtocols();
+    }
+
+    @Override public synchronized String[] getEnabledProtocols() {
+        return enabledProtocols.clone();
+    }
+
+    @Override public synchronized void setEnabledProtocols(String[] protocols) {
+        enabledProtocols = NativeCrypto.checkEnabledProtocols(protocols);
+    }
+
+    @Override public synchronized void setUseClientMode(boolean mode) {
+        if (state != STATE_NEW) {
+            throw new IllegalArgumentException(
+                    "Could not change the mode after the initial handshake has begun.");
+        }
+        sslParameters.setUseClientMode(mode);
+        peerModeSet = true;
+    }
+
+    @Override public boolean getUseClientMode() {
+        return sslParameters.getUseClientMode();
+    }
+
+    @Override public void setNeedClientAuth(boolean need) {
+        sslParameters.setNeedClientAuth(need);
+    }
+
+    @Override public boolean getNeedClientAuth() {
+        return sslParameters.getNeedClientAuth();
+    }
+
+    @Override public void setWantClientAuth(boolean want) {
+        sslParameters.setWantClientAuth(want);
+    }
+
+    @Override public boolean getWantClientAuth() {
+        return sslParameters.getWantClientAuth();
+    }
+
+    @Override public void setEnableSessionCreation(boolean flag) {
+        sslParameters.setEnableSessionCreation(flag);
+    }
+
+    @Override public boolean getEnableSessionCreation() {
+        return sslParameters.getEnableSessionCreation();
+    }
+
+    @SuppressWarnings("unused") // used by NativeCrypto.SSLHandshakeCallbacks / client_cert_cb
+    public void clientCertificateRequested(byte[] keyTypeBytes, byte[][] asn1DerEncodedPrincipals)
+            throws CertificateEncodingException, SSLException {
+        String[] keyTypes = new String[keyTypeBytes.length];
+        for (int i = 0; i < keyTypeBytes.length; i++) {
+            keyTypes[i] = CipherSuite.getClientKeyType(keyTypeBytes[i]);
+        }
+
+        X500Principal[] issuers;
+        if (asn1DerEncodedPrincipals == null) {
+            issuers = null;
+        } else {
+            issuers = new X500Principal[asn1DerEncodedPrincipals.length];
+            for (int i = 0; i < asn1DerEncodedPrincipals.length; i++) {
+                issuers[i] = new X500Principal(asn1DerEncodedPrincipals[i]);
+            }
+        }
+        X509KeyManager keyManager = sslParameters.getKeyManager();
+        if (keyManager instanceof X509ExtendedKeyManager) {
+            X509ExtendedKeyManager extendedKeyManager = (X509ExtendedKeyManager) keyManager;
+            setCertificate(extendedKeyManager.chooseEngineClientAlias(keyTypes, issuers, this));
+        } else {
+            setCertificate(keyManager.chooseClientAlias(keyTypes, issuers, null));
+        }
+    }
+
+    @SuppressWarnings("unused") // used by NativeCrypto.SSLHandshakeCallbacks / info_callback
+    public void handshakeCompleted() {
+        // The session is established when SSL_do_handshake_bio returns it.
+    }
+
+    @SuppressWarnings("unused") // used by NativeCrypto.SSLHandshakeCallbacks
+    @Override public void verifyCertificateChain(byte[][] bytes, String authMethod)
+            throws CertificateException {
+        try {
+            if (bytes == null || bytes.length == 0) {
+                throw new SSLException("Peer sent no certificate");
+            }
+            X509Certificate[] peerCertificateChain = new X509Certificate[bytes.length];
+            for (int i = 0; i < bytes.length; i++) {
+                peerCertificateChain[i] = new X509CertImpl(bytes[i]);
+            }
+            X509TrustManager x509tm = sslParameters.getTrustManager();
+            if (sslParameters.getUseClientMode()) {
+                if (x509tm instanceof TrustManagerImpl) {
+                    TrustManagerImpl tm = (TrustManagerImpl) x509tm;
+                    tm.checkServerTrusted(peerCertificateChain, authMethod, getPeerHost());
+                } else {
+                    x509tm.checkServerTrusted(peerCertificateChain, authMethod);
+                }
+            } else {
+                String authType = peerCertificateChain[0].getPublicKey().getAlgorithm();
+                x509tm.checkClientTrusted(peerCertificateChain, authType);
+            }
+        } catch (CertificateException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CertificateException(e);
+        }
+    }
+
+    @Override protected void finalize() throws Throwable {
+        try {
+            if (sslNativePointer != 0) {
+                NativeCrypto.SSL_free(sslNativePointer);
+                sslNativePointer = 0;
+            }
+        } finally {
+            super.finalize();
+        }
+    }
+}
@@ -16,10 +16,13 @@
 
 package org.apache.harmony.xnet.provider.jsse;
 
+import java.nio.ByteBuffer;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.Key;
 import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.security.Security;
 import java.security.spec.AlgorithmParameterSpec;
 
 import javax.crypto.MacSpi;
@@ -108,6 +111,66 @@ public abstract class OpenSSLMac extends MacSpi {
         NativeCrypto.EVP_DigestUpdate(ctx.getContext(), input, offset, len);
     }
 
+    @Override
+    protected void engineUpdate(ByteBuffer input) {
+        if (!input.isDirect()) {
+            super.engineUpdate(input);
+            return;
+        }
+        // MAC a direct buffer's memory in place.
+        int position = input.position();
+        int limit = input.limit();
+        if (position < limit) {
+            NativeCrypto.EVP_DigestUpdate(ctx.getContext(), input, position, limit - position);
+            input.position(limit);
+        }
+    }
+
+    /**
+     * Computes the MAC of each of {@code messages} with {@code key}, using the
+     * AndroidOpenSSL implementation of {@code algorithm}, such as "HmacSHA1".
+     * The MACs are computed in a single native call and returned one after
+     * another: the MAC of {@code messages[i]} starts at index {@code i *
+     * macLength}. This is equivalent to calling {@link javax.crypto.Mac#doFinal(byte[])}
+     * on each message, which {@code Mac} offers no way to batch.
+     */
+    public static byte[] doFinalAll(String algorithm, Key key, byte[][] messages)
+            throws NoSuchAlgorithmException, InvalidKeyException {
+        Provider provider = Security.getProvider(OpenSSLProvider.PROVIDER_NAME);
+        Provider.Service service = (provider != null)
+                ? provider.getService("Mac", algorithm)
+                : null;
+        if (service == null) {
+            throw new NoSuchAlgorithmException(algorithm);
+        }
+        OpenSSLMac mac = (OpenSSLMac) service.newInstance(null);
+        try {
+            mac.engineInit(key, null);
+        } catch (InvalidAlgorithmParameterException e) {
+            throw new AssertionError(e);
+        }
+        return mac.doFinalAll(messages);
+    }
+
+    /**
+     * Computes the MAC of each message independently in a single native call,
+     * returning the MACs one after another. Like {@code doFinal}, this
+     * discards any data already passed to {@code update}.
+     */
+    byte[] doFinalAll(byte[][] messages) {
+        if (macKey == null) {
+            throw new IllegalStateException("MAC not initialized");
+        }
+        byte[] result = new byte[messages.length * size];
+        try {
+            NativeCrypto.EVP_DigestBatch(ctx.getContext(), evp_md, macKey.getPkeyContext(),
+                                         messages, result);
+        } finally {
+            reset();
+        }
+        return result;
+    }
+
     @Override
     protected byte[] engineDoFinal() {
         final byte[] output = NativeCrypto.EVP_DigestSignFinal(ctx.getContext());
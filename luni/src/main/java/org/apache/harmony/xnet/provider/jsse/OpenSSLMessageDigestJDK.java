@@ -16,6 +16,8 @@
 
 package org.apache.harmony.xnet.provider.jsse;
 
+import java.nio.ByteBuffer;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
@@ -25,10 +27,18 @@ import java.security.NoSuchAlgorithmException;
 public class OpenSSLMessageDigestJDK extends MessageDigest implements Cloneable {
 
     /**
-     * Holds a pointer to the native message digest context.
+     * Holds a pointer to the native message digest context. It is allocated
+     * on first use and then reused, reinitialized after each digest, until
+     * this instance is finalized.
      */
     private long ctx;
 
+    /**
+     * True if ctx has been initialized for a new digest since the last one
+     * completed.
+     */
+    private boolean ctxInitialized;
+
     /**
      * Holds the EVP_MD for the hashing algorithm, e.g. EVP_get_digestbyname("sha1");
      */
@@ -57,7 +67,7 @@ public class OpenSSLMessageDigestJDK extends MessageDigest implements Cloneable
 
     @Override
     protected void engineReset() {
-        free();
+        ctxInitialized = false;
     }
 
     @Override
@@ -76,23 +86,75 @@ public class OpenSSLMessageDigestJDK extends MessageDigest implements Cloneable
         NativeCrypto.EVP_DigestUpdate(getCtx(), input, offset, len);
     }
 
+    @Override
+    protected void engineUpdate(ByteBuffer input) {
+        if (!input.isDirect()) {
+            super.engineUpdate(input);
+            return;
+        }
+        // Digest a direct buffer's memory in place.
+        int position = input.position();
+        int limit = input.limit();
+        if (position < limit) {
+            NativeCrypto.EVP_DigestUpdate(getCtx(), input, position, limit - position);
+            input.position(limit);
+        }
+    }
+
     @Override
     protected byte[] engineDigest() {
         byte[] result = new byte[size];
-        NativeCrypto.EVP_DigestFinal(getCtx(), result, 0);
-        ctx = 0; // EVP_DigestFinal frees the context as a side effect
+        NativeCrypto.EVP_DigestFinal_ex(getCtx(), result, 0);
+        ctxInitialized = false;
+        return result;
+    }
+
+    @Override
+    protected int engineDigest(byte[] buf, int offset, int len) throws DigestException {
+        if (len < size) {
+            engineReset();
+            throw new DigestException("len < digest length");
+        }
+        if (offset < 0 || offset + len > buf.length) {
+            engineReset();
+            throw new DigestException("offset out of range");
+        }
+        // Write straight into the caller's array.
+        NativeCrypto.EVP_DigestFinal_ex(getCtx(), buf, offset);
+        ctxInitialized = false;
+        return size;
+    }
+
+    /**
+     * Computes the digest of each message independently in a single native
+     * call, returning the digests one after another: the digest of
+     * {@code messages[i]} starts at index {@code i * getDigestLength()}.
+     * This is equivalent to calling {@link #digest(byte[])} on each message,
+     * and likewise discards any data already passed to {@code update}.
+     */
+    public byte[] digestAll(byte[][] messages) {
+        byte[] result = new byte[messages.length * size];
+        if (ctx == 0) {
+            ctx = NativeCrypto.EVP_MD_CTX_create();
+        }
+        ctxInitialized = false;
+        NativeCrypto.EVP_DigestBatch(ctx, evp_md, 0, messages, result);
         return result;
     }
 
     public Object clone() throws CloneNotSupportedException {
         OpenSSLMessageDigestJDK d = (OpenSSLMessageDigestJDK) super.clone();
-        d.ctx = NativeCrypto.EVP_MD_CTX_copy(getCtx());
+        d.ctx = ctxInitialized ? NativeCrypto.EVP_MD_CTX_copy(ctx) : 0;
         return d;
     }
 
     private long getCtx() {
         if (ctx == 0) {
-            ctx = NativeCrypto.EVP_DigestInit(evp_md);
+            ctx = NativeCrypto.EVP_MD_CTX_create();
+        }
+        if (!ctxInitialized) {
+            NativeCrypto.EVP_DigestInit_ex(ctx, evp_md);
+            ctxInitialized = true;
         }
         return ctx;
     }
@@ -25,6 +25,7 @@ import java.io.OutputStream;
 import java.net.InetAddress;
 import java.net.Socket;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
 import java.security.PrivateKey;
 import java.security.SecureRandom;
 import java.security.cert.CertificateEncodingException;
@@ -70,6 +71,27 @@ public class OpenSSLSocketImpl
     private final Object handshakeLock = new Object();
     private final Object readLock = new Object();
     private final Object writeLock = new Object();
+
+    /**
+     * Output not yet written, coalesced into at most one record, or null if
+     * writes are not coalesced. Direct, so that native code writes it in
+     * place. Guarded by writeLock; close() reads it without the lock to see
+     * whether coalescing is enabled.
+     */
+    private volatile ByteBuffer writeBuffer;
+
+    /**
+     * True while a thread holding writeLock may write to the socket, and so
+     * may be blocked in SSL_write. Set and cleared only while holding
+     * writeLock.
+     */
+    private volatile boolean writing;
+
+    /**
+     * Set when close() starts. Writers that haven't started yet give way to
+     * close() rather than making it wait for writeLock.
+     */
+    private volatile boolean closing;
     private SSLParametersImpl sslParameters;
     private byte[] npnProtocols;
     private String[] enabledProtocols;
@@ -712,8 +734,103 @@ public class OpenSSLSocketImpl
                 if (byteCount == 0) {
                     return;
                 }
-                NativeCrypto.SSL_write(sslNativePointer, socket.getFileDescriptor$(),
-                        OpenSSLSocketImpl.this, buf, offset, byteCount, writeTimeoutMilliseconds);
+                beginWrite();
+                try {
+                    ByteBuffer writeBuffer = OpenSSLSocketImpl.this.writeBuffer;
+                    if (writeBuffer != null) {
+                        if (byteCount > writeBuffer.remaining()) {
+                            flushWriteBuffer();
+                        }
+                        if (byteCount < writeBuffer.capacity()) {
+                            writeBuffer.put(buf, offset, byteCount);
+                            if (!writeBuffer.hasRemaining()) {
+                                flushWriteBuffer();
+                            }
+                            return;
+                        }
+                    }
+                    NativeCrypto.SSL_write(sslNativePointer, socket.getFileDescriptor$(),
+                            OpenSSLSocketImpl.this, buf, offset, byteCount, writeTimeoutMilliseconds);
+                } finally {
+                    writing = false;
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            // Without coalescing nothing is ever buffered. Don't wait for a blocked
+            // writer or fail on a closed socket, since buffered streams flush on close.
+            if (writeBuffer == null) {
+                return;
+            }
+            synchronized (writeLock) {
+                ByteBuffer writeBuffer = OpenSSLSocketImpl.this.writeBuffer;
+                if (writeBuffer == null || writeBuffer.position() == 0) {
+                    return;
+                }
+                checkOpen();
+                beginWrite();
+                try {
+                    flushWriteBuffer();
+                } finally {
+                    writing = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks this thread as possibly blocked writing, unless close() has
+     * started. Callers must hold writeLock, and clear {@link #writing} when
+     * they're done.
+     */
+    private void beginWrite() throws SocketException {
+        writing = true;
+        if (closing) {
+            writing = false;
+            throw new SocketException("Socket is closed");
+        }
+    }
+
+    /**
+     * Writes any coalesced output as a single record. Callers must hold
+     * writeLock.
+     */
+    private void flushWriteBuffer() throws IOException {
+        ByteBuffer writeBuffer = this.writeBuffer;
+        if (writeBuffer == null || writeBuffer.position() == 0) {
+            return;
+        }
+        BlockGuard.getThreadPolicy().onNetwork();
+        try {
+            NativeCrypto.SSL_write(sslNativePointer, socket.getFileDescriptor$(), this,
+                    writeBuffer, 0, writeBuffer.position(), writeTimeoutMilliseconds);
+        } finally {
+            writeBuffer.clear();
+        }
+    }
+
+    /**
+     * Enables or disables coalescing of small writes. When enabled, data
+     * written to the output stream is buffered until a record's worth has
+     * accumulated, or until the stream is flushed or the socket is closed,
+     * and is then sent as one record. This avoids the per-record overhead of
+     * many small writes, but callers must flush the output stream before
+     * waiting for a reply. Disabling coalescing flushes buffered data.
+     */
+    public void setWriteCoalescing(boolean enabled) throws IOException {
+        synchronized (writeLock) {
+            if (enabled && writeBuffer == null) {
+                writeBuffer = ByteBuffer.allocateDirect(SSLRecordProtocol.MAX_DATA_LENGTH);
+            } else if (!enabled && writeBuffer != null) {
+                beginWrite();
+                try {
+                    flushWriteBuffer();
+                } finally {
+                    writing = false;
+                    writeBuffer = null;
+                }
             }
         }
     }
@@ -970,6 +1087,25 @@ public class OpenSSLSocketImpl
             }
         }
 
+        /*
+         * Send any coalesced output before the close_notify. If another thread
+         * may be blocked writing, don't wait for it: the interrupt below must
+         * come first, and that writer's output is lost either way. Writers
+         * that start after closing is set give way, so the writeLock is free
+         * soon if writing is clear.
+         */
+        closing = true;
+        if (writeBuffer != null && !writing) {
+            synchronized (writeLock) {
+                if (writeBuffer != null && sslNativePointer != 0) {
+                    try {
+                        flushWriteBuffer();
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+        }
+
         synchronized (this) {
 
             // Interrupt any outstanding reads or writes before taking the writeLock and readLock
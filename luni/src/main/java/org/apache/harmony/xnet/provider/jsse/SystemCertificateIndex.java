@@ -0,0 +1,336 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.harmony.xnet.provider.jsse;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charsets;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import libcore.io.BufferIterator;
+import libcore.io.ErrnoException;
+import libcore.io.MemoryMappedFile;
+import static org.apache.harmony.xnet.provider.jsse.SystemCertificateIndexWriter.ENTRY_SIZE;
+import static org.apache.harmony.xnet.provider.jsse.SystemCertificateIndexWriter.MAGIC;
+
+/**
+ * A prebuilt index of an immutable CA certificate directory such as the
+ * system cacerts directory. The index is a single file holding a table sorted
+ * by subject hash and collision index, followed by the DER encoding of each
+ * certificate. It is mapped read-only and each certificate is parsed the first
+ * time it is requested, so that looking up an issuer costs a binary search
+ * instead of opening and parsing one file per candidate.
+ *
+ * <p>The index of the system cacerts directory is generated when the system
+ * image is built, by running {@link SystemCertificateIndexWriter} on the
+ * installed directory.
+ *
+ * <p>The file format is big-endian:
+ * <pre>
+ *   int magic
+ *   int name count
+ *   name count * { short name length, UTF-8 name, int file length or -1 }
+ *   int entry count
+ *   entry count * { int subject hash, int collision index, int offset, int length }
+ *   DER encoded certificates
+ * </pre>
+ * The names are the sorted contents of the indexed directory. An index is
+ * only used if the directory holds exactly those names with those lengths,
+ * so that an index left behind by an update of the directory is ignored
+ * rather than answering with certificates that have been replaced. Since the
+ * system directory is on a read-only partition, this is checked once per
+ * process, when the index is first opened.
+ *
+ * <p>An entry with length 0 stands for a tombstone or a malformed certificate,
+ * both of which {@code TrustedCertificateStore} skips.
+ *
+ * <p>Indexes are shared by every store in the process that uses the same
+ * directory, and are never unmapped. Instances are safe for use by multiple
+ * threads.
+ */
+public final class SystemCertificateIndex {
+
+    /** Opened indexes by index file path. Guarded by SystemCertificateIndex.class. */
+    private static final Map<String, SystemCertificateIndex> INDEXES
+            = new HashMap<String, SystemCertificateIndex>();
+
+    private static final CertificateFactory CERT_FACTORY;
+    static {
+        try {
+            CERT_FACTORY = CertificateFactory.getInstance("X509");
+        } catch (CertificateException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private final MemoryMappedFile mappedFile;
+    private final long lastModified;
+
+    /** The sorted names of the indexed directory, and the length of each. */
+    private final String[] names;
+    private final int[] nameLengths;
+
+    /** The subject hash of each entry, sorted together with indexes. */
+    private final int[] hashes;
+    private final int[] indexes;
+    private final int[] offsets;
+    private final int[] lengths;
+
+    /** Certificates parsed so far, by entry. Guarded by this. */
+    private final X509Certificate[] certificates;
+
+    /**
+     * True if the directory matched this index when it was opened. Guarded by
+     * SystemCertificateIndex.class.
+     */
+    private boolean matchesDirectory;
+
+    private SystemCertificateIndex(MemoryMappedFile mappedFile, long lastModified,
+            String[] names, int[] nameLengths, int count) {
+        this.mappedFile = mappedFile;
+        this.lastModified = lastModified;
+        this.names = names;
+        this.nameLengths = nameLengths;
+        this.hashes = new int[count];
+        this.indexes = new int[count];
+        this.offsets = new int[count];
+        this.lengths = new int[count];
+        this.certificates = new X509Certificate[count];
+    }
+
+    /**
+     * Returns the index file for the certificate directory {@code dir}, which
+     * is a sibling of the directory. For example the index of
+     * "/system/etc/security/cacerts" is "/system/etc/security/cacerts.index".
+     */
+    public static File indexFileFor(File dir) {
+        return new File(dir.getPath() + ".index");
+    }
+
+    /**
+     * Returns the index for {@code dir}, or null if the directory has not been
+     * indexed or its index does not match the directory's contents.
+     */
+    public static synchronized SystemCertificateIndex open(File dir) {
+        File indexFile = indexFileFor(dir);
+        long lastModified = indexFile.lastModified();
+        if (lastModified == 0) {
+            return null;
+        }
+        String path = indexFile.getPath();
+        SystemCertificateIndex result = INDEXES.get(path);
+        if (result != null && result.lastModified == lastModified
+                && result.mappedFile.size() == indexFile.length()) {
+            return result.matchesDirectory ? result : null;
+        }
+
+        // A replaced index, if any, stays mapped since other stores may still use it.
+        try {
+            result = map(path, lastModified);
+        } catch (IOException e) {
+            System.logW("Ignoring certificate index " + path, e);
+            INDEXES.remove(path);
+            return null;
+        }
+        result.matchesDirectory = result.describes(dir);
+        INDEXES.put(path, result);
+        return result.matchesDirectory ? result : null;
+    }
+
+    /**
+     * Returns true if {@code dir} holds exactly the files that were indexed.
+     */
+    private boolean describes(File dir) {
+        String[] currentNames = dir.list();
+        if (currentNames == null) {
+            return false;
+        }
+        Arrays.sort(currentNames);
+        if (!Arrays.equals(names, currentNames)) {
+            return false;
+        }
+        for (int i = 0; i < names.length; i++) {
+            if (SystemCertificateIndexWriter.recordedLength(new File(dir, names[i]))
+                    != nameLengths[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static SystemCertificateIndex map(String path, long lastModified)
+            throws IOException {
+        MemoryMappedFile mappedFile;
+        try {
+            mappedFile = MemoryMappedFile.mmapRO(path);
+        } catch (ErrnoException errnoException) {
+            throw errnoException.rethrowAsIOException();
+        }
+
+        boolean success = false;
+        try {
+            SystemCertificateIndex result = readTable(mappedFile, lastModified);
+            success = true;
+            return result;
+        } finally {
+            if (!success) {
+                try {
+                    mappedFile.close();
+                } catch (ErrnoException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads and validates the listing and the table of entries. Since {@link
+     * libcore.io.NioBufferIterator} doesn't check bounds, every read must be
+     * checked to lie within the mapping before it is made.
+     */
+    private static SystemCertificateIndex readTable(MemoryMappedFile mappedFile,
+            long lastModified) throws IOException {
+        long fileSize = mappedFile.size();
+        if (fileSize < 12 || fileSize > Integer.MAX_VALUE) {
+            throw new IOException("Bad certificate index size: " + fileSize);
+        }
+        BufferIterator it = mappedFile.bigEndianIterator();
+        if (it.readInt() != MAGIC) {
+            throw new IOException("Bad certificate index magic");
+        }
+        int nameCount = it.readInt();
+        if (nameCount < 0 || 8 + (long) nameCount * 6 + 4 > fileSize) {
+            throw new IOException("Bad certificate index name count: " + nameCount);
+        }
+        long position = 8;
+        String[] names = new String[nameCount];
+        int[] nameLengths = new int[nameCount];
+        for (int i = 0; i < nameCount; i++) {
+            if (position + 2 > fileSize) {
+                throw new IOException("Certificate index name " + i + " out of bounds");
+            }
+            int length = it.readShort() & 0xffff;
+            position += 2 + length + 4;
+            if (position > fileSize) {
+                throw new IOException("Certificate index name " + i + " out of bounds");
+            }
+            byte[] name = new byte[length];
+            it.readByteArray(name, 0, length);
+            names[i] = new String(name, Charsets.UTF_8);
+            nameLengths[i] = it.readInt();
+        }
+        if (position + 4 > fileSize) {
+            throw new IOException("Certificate index entry count out of bounds");
+        }
+        int count = it.readInt();
+        position += 4;
+        if (count < 0 || position + (long) count * ENTRY_SIZE > fileSize) {
+            throw new IOException("Bad certificate index entry count: " + count);
+        }
+
+        SystemCertificateIndex result = new SystemCertificateIndex(
+                mappedFile, lastModified, names, nameLengths, count);
+        for (int i = 0; i < count; i++) {
+            result.hashes[i] = it.readInt();
+            result.indexes[i] = it.readInt();
+            result.offsets[i] = it.readInt();
+            result.lengths[i] = it.readInt();
+            if (result.offsets[i] < 0 || result.lengths[i] < 0
+                    || (long) result.offsets[i] + result.lengths[i] > fileSize) {
+                throw new IOException("Certificate index entry " + i + " out of bounds");
+            }
+            if (i > 0 && compare(result.hashes[i - 1], result.indexes[i - 1],
+                                 result.hashes[i], result.indexes[i]) >= 0) {
+                throw new IOException("Certificate index entries out of order");
+            }
+        }
+        return result;
+    }
+
+    private static int compare(int hash1, int index1, int hash2, int index2) {
+        return SystemCertificateIndexWriter.compare(hash1, index1, hash2, index2);
+    }
+
+    /**
+     * Returns the entry for the file named {@code hash.index} in the indexed
+     * directory, or -1 if there is no such file.
+     */
+    public int find(int hash, int index) {
+        int low = 0;
+        int high = hashes.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int c = compare(hashes[mid], indexes[mid], hash, index);
+            if (c < 0) {
+                low = mid + 1;
+            } else if (c > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the certificate of {@code entry}, or null if the entry is a
+     * tombstone or its certificate could not be parsed.
+     */
+    public X509Certificate certificateAt(int entry) {
+        synchronized (this) {
+            if (certificates[entry] != null) {
+                return certificates[entry];
+            }
+        }
+        if (lengths[entry] == 0) {
+            return null;
+        }
+
+        // Parse without holding the lock. If two threads race, the last one wins.
+        byte[] encoded = new byte[lengths[entry]];
+        BufferIterator it = mappedFile.bigEndianIterator();
+        it.seek(offsets[entry]);
+        it.readByteArray(encoded, 0, encoded.length);
+        X509Certificate certificate;
+        try {
+            certificate = (X509Certificate) CERT_FACTORY.generateCertificate(
+                    new ByteArrayInputStream(encoded));
+        } catch (CertificateException e) {
+            return null;
+        }
+        synchronized (this) {
+            certificates[entry] = certificate;
+        }
+        return certificate;
+    }
+
+    /**
+     * Writes an index of the certificate files in {@code dir} to its {@link
+     * #indexFileFor index file}. The system image's index is written by the
+     * build; this is for other directories that must not change once indexed.
+     */
+    public static synchronized void write(File dir) throws IOException {
+        File indexFile = indexFileFor(dir);
+        SystemCertificateIndexWriter.write(dir, indexFile);
+        // the new index may have the same size and time as the one it replaced
+        INDEXES.remove(indexFile.getPath());
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.harmony.xnet.provider.jsse;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Writes the {@link SystemCertificateIndex} of a certificate directory. This
+ * runs as a host tool when building a system image (see CaCerts.mk), so it
+ * must only depend on APIs that are available on the host JVM:
+ * <pre>
+ *   java -cp cacerts-indexer.jar \
+ *       org.apache.harmony.xnet.provider.jsse.SystemCertificateIndexWriter \
+ *       out/target/product/.../system/etc/security/cacerts \
+ *       out/target/product/.../system/etc/security/cacerts.index
+ * </pre>
+ */
+public final class SystemCertificateIndexWriter {
+
+    static final int MAGIC = 0x43414932; // "CAI2"
+    static final int ENTRY_SIZE = 16;
+
+    /** The length recorded for names in the directory that aren't regular files. */
+    static final int NOT_A_FILE = -1;
+
+    private SystemCertificateIndexWriter() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: SystemCertificateIndexWriter <cacerts directory> <index file>");
+            System.exit(1);
+        }
+        write(new File(args[0]), new File(args[1]));
+    }
+
+    /**
+     * Returns the length to record for {@code file}, which the index must
+     * match for the directory to be considered unchanged.
+     */
+    static int recordedLength(File file) {
+        if (!file.isFile()) {
+            return NOT_A_FILE;
+        }
+        long length = file.length();
+        return length <= Integer.MAX_VALUE ? (int) length : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Writes an index of the certificate files in {@code dir} to {@code
+     * indexFile}. Files whose names are not of the form {@code hash.index}
+     * are listed but not indexed.
+     */
+    public static void write(File dir, File indexFile) throws IOException {
+        String[] names = dir.list();
+        if (names == null) {
+            throw new IOException("Could not list " + dir);
+        }
+        Arrays.sort(names);
+
+        CertificateFactory certFactory;
+        try {
+            certFactory = CertificateFactory.getInstance("X509");
+        } catch (CertificateException e) {
+            throw new AssertionError(e);
+        }
+
+        List<int[]> entries = new ArrayList<int[]>(); // { hash, index, position in blobs }
+        List<byte[]> blobs = new ArrayList<byte[]>();
+        int[] lengths = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            String name = names[i];
+            File file = new File(dir, name);
+            lengths[i] = recordedLength(file);
+            if (lengths[i] == NOT_A_FILE) {
+                continue;
+            }
+            int dot = name.indexOf('.');
+            if (dot != 8 || name.length() == 9) {
+                continue;
+            }
+            int hash;
+            int index;
+            try {
+                hash = (int) Long.parseLong(name.substring(0, dot), 16);
+                index = Integer.parseInt(name.substring(dot + 1));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            if (!name.equals(toHex8(hash) + '.' + index)) {
+                continue; // not a name that TrustedCertificateStore would look up
+            }
+            byte[] encoded = readFully(file);
+            lengths[i] = encoded.length;
+            try {
+                // store malformed certificates as tombstones, since they would be skipped anyway
+                certFactory.generateCertificate(new ByteArrayInputStream(encoded));
+            } catch (CertificateException e) {
+                encoded = new byte[0];
+            }
+            entries.add(new int[] { hash, index, blobs.size() });
+            blobs.add(encoded);
+        }
+        int[][] sorted = entries.toArray(new int[entries.size()][]);
+        Arrays.sort(sorted, new Comparator<int[]>() {
+            @Override public int compare(int[] lhs, int[] rhs) {
+                return SystemCertificateIndexWriter.compare(lhs[0], lhs[1], rhs[0], rhs[1]);
+            }
+        });
+
+        ByteArrayOutputStream listing = new ByteArrayOutputStream();
+        DataOutputStream listingOut = new DataOutputStream(listing);
+        for (int i = 0; i < names.length; i++) {
+            byte[] name = names[i].getBytes("UTF-8");
+            listingOut.writeShort(name.length);
+            listingOut.write(name);
+            listingOut.writeInt(lengths[i]);
+        }
+        listingOut.close();
+
+        // write to a new file and rename it, since truncating a mapped index would crash its users
+        File tmpFile = new File(indexFile.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            out.writeInt(MAGIC);
+            out.writeInt(names.length);
+            listing.writeTo(out);
+            out.writeInt(sorted.length);
+            int offset = 12 + listing.size() + sorted.length * ENTRY_SIZE;
+            for (int[] entry : sorted) {
+                int length = blobs.get(entry[2]).length;
+                out.writeInt(entry[0]);
+                out.writeInt(entry[1]);
+                out.writeInt(offset);
+                out.writeInt(length);
+                offset += length;
+            }
+            for (int[] entry : sorted) {
+                out.write(blobs.get(entry[2]));
+            }
+            out.close();
+            out = null;
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+        tmpFile.setReadable(true, false);
+        if (!tmpFile.renameTo(indexFile)) {
+            tmpFile.delete();
+            throw new IOException("Could not rename " + tmpFile + " to " + indexFile);
+        }
+    }
+
+    static int compare(int hash1, int index1, int hash2, int index2) {
+        if (hash1 != hash2) {
+            return hash1 < hash2 ? -1 : 1;
+        }
+        return index1 < index2 ? -1 : (index1 == index2 ? 0 : 1);
+    }
+
+    /** Returns {@code hash} as 8 lowercase hex digits, like TrustedCertificateStore's names. */
+    private static String toHex8(int hash) {
+        String hex = Integer.toHexString(hash);
+        return "00000000".substring(hex.length()) + hex;
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, count);
+            }
+            return bytes.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
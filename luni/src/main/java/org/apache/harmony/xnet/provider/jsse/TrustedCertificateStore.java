@@ -79,6 +79,12 @@ import libcore.util.Objects;
  * deleted system certificate simply removes the copy from the deleted
  * directory, reenabling the original in the system directory.
  *
+ * <p>If the system directory has an up to date {@link
+ * SystemCertificateIndex}, which the build generates for the system
+ * image, system CAs are looked up in the memory-mapped index instead
+ * of being read from individual files, and each is parsed at most once
+ * per process.
+ *
  * <p>Note that the default mutable directory is created by init via
  * configuration in the system/core/rootdir/init.rc file. The
  * directive "mkdir /data/misc/keychain 0775 system system"
@@ -120,6 +126,10 @@ public final class TrustedCertificateStore {
     private final File addedDir;
     private final File deletedDir;
 
+    /** Guarded by this. */
+    private SystemCertificateIndex systemIndex;
+    private boolean systemIndexOpened;
+
     public TrustedCertificateStore() {
         this(CA_CERTS_DIR_SYSTEM, CA_CERTS_DIR_ADDED, CA_CERTS_DIR_DELETED);
     }
@@ -135,12 +145,19 @@ public final class TrustedCertificateStore {
     }
 
     public Certificate getCertificate(String alias, boolean includeDeletedSystem) {
-
-        File file = fileForAlias(alias);
-        if (file == null || (isUser(alias) && isTombstone(file))) {
+        X509Certificate cert;
+        int entry = systemIndexEntryForAlias(alias);
+        if (entry >= 0) {
+            cert = systemIndex().certificateAt(entry);
+        } else if (entry == -1) {
             return null;
+        } else {
+            File file = fileForAlias(alias);
+            if (file == null || (isUser(alias) && isTombstone(file))) {
+                return null;
+            }
+            cert = readCertificate(file);
         }
-        X509Certificate cert = readCertificate(file);
         if (cert == null || (isSystem(alias)
                              && !includeDeletedSystem
                              && isDeletedSystemCertificate(cert))) {
@@ -169,6 +186,46 @@ public final class TrustedCertificateStore {
         return file;
     }
 
+    private synchronized SystemCertificateIndex systemIndex() {
+        if (!systemIndexOpened) {
+            systemIndex = SystemCertificateIndex.open(systemDir);
+            systemIndexOpened = true;
+        }
+        return systemIndex;
+    }
+
+    /**
+     * Returns the system index entry for {@code alias}, -1 if the
+     * system index shows there is no such certificate, or -2 if the
+     * alias must be looked up on disk.
+     */
+    private int systemIndexEntryForAlias(String alias) {
+        if (alias == null) {
+            throw new NullPointerException("alias == null");
+        }
+        if (!isSystem(alias)) {
+            return -2;
+        }
+        SystemCertificateIndex index = systemIndex();
+        if (index == null) {
+            return -2;
+        }
+        String name = alias.substring(PREFIX_SYSTEM.length());
+        int dot = name.indexOf('.');
+        if (dot != 8) {
+            return -2;
+        }
+        try {
+            int hash = (int) Long.parseLong(name.substring(0, dot), 16);
+            int i = Integer.parseInt(name.substring(dot + 1));
+            if (name.equals(fileName(hash, i))) {
+                return index.find(hash, i);
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        return -2;
+    }
+
     private boolean isTombstone(File file) {
         return file.length() == 0;
     }
@@ -491,10 +548,12 @@ public final class TrustedCertificateStore {
     private <T> T findCert(
             File dir, X500Principal subject, CertSelector selector, Class<T> desiredReturnType) {
 
-        String hash = hash(subject);
+        int hash = NativeCrypto.X509_NAME_hash_old(subject);
+        SystemCertificateIndex systemIndex = (dir == systemDir) ? systemIndex() : null;
         for (int index = 0; true; index++) {
-            File file = file(dir, hash, index);
-            if (!file.isFile()) {
+            File file = new File(dir, fileName(hash, index));
+            int entry = (systemIndex != null) ? systemIndex.find(hash, index) : -1;
+            if (systemIndex != null ? entry == -1 : !file.isFile()) {
                 // could not find a match, no file exists, bail
                 if (desiredReturnType == Boolean.class) {
                     return (T) Boolean.FALSE;
@@ -507,10 +566,15 @@ public final class TrustedCertificateStore {
                 }
                 return null;
             }
-            if (isTombstone(file)) {
+            X509Certificate cert;
+            if (systemIndex != null) {
+                // the index holds tombstones and problem certificates as null
+                cert = systemIndex.certificateAt(entry);
+            } else if (isTombstone(file)) {
                 continue;
+            } else {
+                cert = readCertificate(file);
             }
-            X509Certificate cert = readCertificate(file);
             if (cert == null) {
                 // skip problem certificates
                 continue;
@@ -530,9 +594,8 @@ public final class TrustedCertificateStore {
         }
     }
 
-    private String hash(X500Principal name) {
-        int hash = NativeCrypto.X509_NAME_hash_old(name);
-        return IntegralToString.intToHexString(hash, false, 8);
+    private static String fileName(int hash, int index) {
+        return IntegralToString.intToHexString(hash, false, 8) + '.' + index;
     }
 
     private File file(File dir, String hash, int index) {
@@ -589,7 +652,7 @@ public final class TrustedCertificateStore {
             return;
         }
         if (isSystem(alias)) {
-            X509Certificate cert = readCertificate(file);
+            X509Certificate cert = (X509Certificate) getCertificate(alias, true);
             if (cert == null) {
                 // skip problem certificates
                 return;
@@ -24,15 +24,31 @@
 #include <string.h>
 
 /**
- * We use an intrusive doubly-linked list to keep track of blocked threads.
+ * We use intrusive doubly-linked lists to keep track of blocked threads.
  * This gives us O(1) insertion and removal, and means we don't need to do any allocation.
  * (The objects themselves are stack-allocated.)
- * Waking potentially-blocked threads when a socket is closed is O(n) in the total number of
- * blocked threads (not the number of threads actually blocked on the socket in question).
- * For now at least, this seems like a good compromise for Android.
+ *
+ * Threads are spread over a fixed number of buckets by the file descriptor they're blocked on,
+ * and each bucket has its own lock. Threads blocking on different sockets rarely contend for a
+ * lock, and waking the threads blocked on a socket when it's closed is O(n) in the number of
+ * threads in its bucket rather than in the total number of blocked threads.
  */
-static pthread_mutex_t blockedThreadListMutex = PTHREAD_MUTEX_INITIALIZER;
-static AsynchronousSocketCloseMonitor* blockedThreadList = NULL;
+static const size_t BUCKET_COUNT = 64; // must be a power of two
+
+struct Bucket {
+    pthread_mutex_t mutex;
+    AsynchronousSocketCloseMonitor* list;
+    // Keep each bucket on its own cache line, so threads using different buckets don't
+    // contend for the same line.
+    char padding[64 - (sizeof(pthread_mutex_t) + sizeof(AsynchronousSocketCloseMonitor*)) % 64];
+};
+
+static Bucket buckets[BUCKET_COUNT];
+
+static Bucket& bucketFor(int fd) {
+    // Sockets tend to have consecutive fds, so the low bits are enough to spread them out.
+    return buckets[static_cast<unsigned int>(fd) & (BUCKET_COUNT - 1)];
+}
 
 /**
  * The specific signal chosen here is arbitrary.
@@ -48,6 +64,11 @@ static void blockedThreadSignalHandler(int /*signal*/) {
 }
 
 void AsynchronousSocketCloseMonitor::init() {
+    for (size_t i = 0; i < BUCKET_COUNT; ++i) {
+        pthread_mutex_init(&buckets[i].mutex, NULL);
+        buckets[i].list = NULL;
+    }
+
     // Ensure that the signal we send interrupts system calls but doesn't kill threads.
     // Using sigaction(2) lets us ensure that the SA_RESTART flag is not set.
     // (The whole reason we're sending this signal is to unblock system calls!)
@@ -62,8 +83,9 @@ void AsynchronousSocketCloseMonitor::init() {
 }
 
 void AsynchronousSocketCloseMonitor::signalBlockedThreads(int fd) {
-    ScopedPthreadMutexLock lock(&blockedThreadListMutex);
-    for (AsynchronousSocketCloseMonitor* it = blockedThreadList; it != NULL; it = it->mNext) {
+    Bucket& bucket = bucketFor(fd);
+    ScopedPthreadMutexLock lock(&bucket.mutex);
+    for (AsynchronousSocketCloseMonitor* it = bucket.list; it != NULL; it = it->mNext) {
         if (it->mFd == fd) {
             pthread_kill(it->mThread, BLOCKED_THREAD_SIGNAL);
             // Keep going, because there may be more than one thread...
@@ -72,27 +94,30 @@ void AsynchronousSocketCloseMonitor::signalBlockedThreads(int fd) {
 }
 
 AsynchronousSocketCloseMonitor::AsynchronousSocketCloseMonitor(int fd) {
-    ScopedPthreadMutexLock lock(&blockedThreadListMutex);
     // Who are we, and what are we waiting for?
     mThread = pthread_self();
     mFd = fd;
-    // Insert ourselves at the head of the intrusive doubly-linked list...
+
+    Bucket& bucket = bucketFor(fd);
+    ScopedPthreadMutexLock lock(&bucket.mutex);
+    // Insert ourselves at the head of our bucket's intrusive doubly-linked list...
     mPrev = NULL;
-    mNext = blockedThreadList;
+    mNext = bucket.list;
     if (mNext != NULL) {
         mNext->mPrev = this;
     }
-    blockedThreadList = this;
+    bucket.list = this;
 }
 
 AsynchronousSocketCloseMonitor::~AsynchronousSocketCloseMonitor() {
-    ScopedPthreadMutexLock lock(&blockedThreadListMutex);
+    Bucket& bucket = bucketFor(mFd);
+    ScopedPthreadMutexLock lock(&bucket.mutex);
     // Unlink ourselves from the intrusive doubly-linked list...
     if (mNext != NULL) {
         mNext->mPrev = mPrev;
     }
     if (mPrev == NULL) {
-        blockedThreadList = mNext;
+        bucket.list = mNext;
     } else {
         mPrev->mNext = mNext;
     }
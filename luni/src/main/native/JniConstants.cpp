@@ -56,6 +56,7 @@ jclass JniConstants::socketClass;
 jclass JniConstants::socketImplClass;
 jclass JniConstants::stringClass;
 jclass JniConstants::structAddrinfoClass;
+jclass JniConstants::structEpollEventClass;
 jclass JniConstants::structFlockClass;
 jclass JniConstants::structGroupReqClass;
 jclass JniConstants::structLingerClass;
@@ -115,6 +116,7 @@ void JniConstants::init(JNIEnv* env) {
     socketImplClass = findClass(env, "java/net/SocketImpl");
     stringClass = findClass(env, "java/lang/String");
     structAddrinfoClass = findClass(env, "libcore/io/StructAddrinfo");
+    structEpollEventClass = findClass(env, "libcore/io/StructEpollEvent");
     structFlockClass = findClass(env, "libcore/io/StructFlock");
     structGroupReqClass = findClass(env, "libcore/io/StructGroupReq");
     structLingerClass = findClass(env, "libcore/io/StructLinger");
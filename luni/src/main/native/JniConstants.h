@@ -77,6 +77,7 @@ struct JniConstants {
     static jclass socketImplClass;
     static jclass stringClass;
     static jclass structAddrinfoClass;
+    static jclass structEpollEventClass;
     static jclass structFlockClass;
     static jclass structGroupReqClass;
     static jclass structLingerClass;
@@ -66,11 +66,25 @@ static inline int mincore(void* addr, size_t length, unsigned char* vec) {
 #include <sys/mount.h>
 #define f_frsize f_bsize // TODO: close enough?
 
+// Mac OS doesn't have epoll(7). Callers are expected to fall back to poll(2) on ENOSYS.
+#include <errno.h>
+#include <stdint.h>
+struct epoll_event {
+  uint32_t events;
+  union {
+    uint64_t u64;
+  } data;
+};
+static inline int epoll_create(int) { errno = ENOSYS; return -1; }
+static inline int epoll_ctl(int, int, int, epoll_event*) { errno = ENOSYS; return -1; }
+static inline int epoll_wait(int, epoll_event*, int, int) { errno = ENOSYS; return -1; }
+
 #else
 
 // Bionic or glibc.
 
 #include <byteswap.h>
+#include <sys/epoll.h>
 #include <sys/sendfile.h>
 
 // For statfs(3).
@@ -499,6 +499,31 @@ static jboolean NativeBN_BN_mod_inverse(JNIEnv* env, jclass, BIGNUM* ret, BIGNUM
     return (BN_mod_inverse(ret, a, n, ctx.get()) != NULL);
 }
 
+static BN_CTX* NativeBN_BN_CTX_new(JNIEnv*, jclass) {
+    return BN_CTX_new();
+}
+
+static void NativeBN_BN_CTX_free(JNIEnv* env, jclass, BN_CTX* ctx) {
+    if (!isValidHandle(env, ctx, "Mandatory context passed as null")) return;
+    BN_CTX_free(ctx);
+}
+
+static jboolean NativeBN_BN_mul_ctx(JNIEnv* env, jclass, BIGNUM* r, BIGNUM* a, BIGNUM* b, BN_CTX* ctx) {
+    if (!fourValidHandles(env, r, a, b, ctx)) return JNI_FALSE;
+    return BN_mul(r, a, b, ctx);
+}
+
+static jboolean NativeBN_BN_nnmod_ctx(JNIEnv* env, jclass, BIGNUM* r, BIGNUM* a, BIGNUM* m, BN_CTX* ctx) {
+    if (!fourValidHandles(env, r, a, m, ctx)) return JNI_FALSE;
+    return BN_nnmod(r, a, m, ctx);
+}
+
+static jboolean NativeBN_BN_mod_mul(JNIEnv* env, jclass, BIGNUM* r, BIGNUM* a, BIGNUM* b, BIGNUM* m, BN_CTX* ctx) {
+    if (!fourValidHandles(env, r, a, b, m)) return JNI_FALSE;
+    if (!isValidHandle(env, ctx, "Mandatory handle (fifth) passed as null")) return JNI_FALSE;
+    return BN_mod_mul(r, a, b, m, ctx);
+}
+
 static jboolean NativeBN_BN_generate_prime_ex(JNIEnv* env, jclass, BIGNUM* ret, int bits, jboolean safe,
         BIGNUM* add, BIGNUM* rem, jint cb) {
     if (!oneValidHandle(env, ret)) return JNI_FALSE;
@@ -512,6 +537,8 @@ static jboolean NativeBN_BN_is_prime_ex(JNIEnv* env, jclass, BIGNUM* p, int nche
 }
 
 static JNINativeMethod gMethods[] = {
+   NATIVE_METHOD(NativeBN, BN_CTX_free, "(I)V"),
+   NATIVE_METHOD(NativeBN, BN_CTX_new, "()I"),
    NATIVE_METHOD(NativeBN, BN_add, "(III)Z"),
    NATIVE_METHOD(NativeBN, BN_add_word, "(II)Z"),
    NATIVE_METHOD(NativeBN, BN_bin2bn, "([BIZI)Z"),
@@ -532,11 +559,14 @@ static JNINativeMethod gMethods[] = {
    NATIVE_METHOD(NativeBN, BN_is_prime_ex, "(III)Z"),
    NATIVE_METHOD(NativeBN, BN_mod_exp, "(IIII)Z"),
    NATIVE_METHOD(NativeBN, BN_mod_inverse, "(III)Z"),
+   NATIVE_METHOD(NativeBN, BN_mod_mul, "(IIIII)Z"),
    NATIVE_METHOD(NativeBN, BN_mod_word, "(II)I"),
    NATIVE_METHOD(NativeBN, BN_mul, "(III)Z"),
+   NATIVE_METHOD(NativeBN, BN_mul_ctx, "(IIII)Z"),
    NATIVE_METHOD(NativeBN, BN_mul_word, "(II)Z"),
    NATIVE_METHOD(NativeBN, BN_new, "()I"),
    NATIVE_METHOD(NativeBN, BN_nnmod, "(III)Z"),
+   NATIVE_METHOD(NativeBN, BN_nnmod_ctx, "(IIII)Z"),
    NATIVE_METHOD(NativeBN, BN_set_negative, "(II)V"),
    NATIVE_METHOD(NativeBN, BN_shift, "(III)Z"),
    NATIVE_METHOD(NativeBN, BN_sub, "(III)Z"),
@@ -188,6 +188,12 @@ static void Matcher_setInputImpl(JNIEnv* env, jclass, jlong addr, jstring javaTe
     matcher->region(start, end, matcher.status());
 }
 
+static void Matcher_setRegionImpl(JNIEnv* env, jclass, jlong addr, jstring javaText, jint start, jint end) {
+    // The matcher already has this input, so we only need to refresh its pointer to the chars.
+    MatcherAccessor matcher(env, addr, javaText, false);
+    matcher->region(start, end, matcher.status());
+}
+
 static void Matcher_useAnchoringBoundsImpl(JNIEnv* env, jclass, jlong addr, jboolean value) {
     MatcherAccessor matcher(env, addr);
     matcher->useAnchoringBounds(value);
@@ -209,6 +215,7 @@ static JNINativeMethod gMethods[] = {
     NATIVE_METHOD(Matcher, openImpl, "(J)J"),
     NATIVE_METHOD(Matcher, requireEndImpl, "(J)Z"),
     NATIVE_METHOD(Matcher, setInputImpl, "(JLjava/lang/String;II)V"),
+    NATIVE_METHOD(Matcher, setRegionImpl, "(JLjava/lang/String;II)V"),
     NATIVE_METHOD(Matcher, useAnchoringBoundsImpl, "(JZ)V"),
     NATIVE_METHOD(Matcher, useTransparentBoundsImpl, "(JZ)V"),
 };
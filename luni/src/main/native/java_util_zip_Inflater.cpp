@@ -67,18 +67,16 @@ static jint Inflater_setFileInputImpl(JNIEnv* env, jobject, jobject javaFileDesc
     // As an Android-specific optimization, we read directly onto the native heap.
     // The original code used Java to read onto the Java heap and then called setInput(byte[]).
     // TODO: benchmark.
+    // We use pread(2) so that the file descriptor's offset is untouched, which lets many
+    // threads read from the same ZipFile without locking.
     int fd = jniGetFDFromFileDescriptor(env, javaFileDescriptor);
-    int rc = TEMP_FAILURE_RETRY(lseek(fd, off, SEEK_SET));
-    if (rc == -1) {
-        jniThrowIOException(env, errno);
-        return 0;
-    }
     jint totalByteCount = 0;
     Bytef* dst = reinterpret_cast<Bytef*>(&stream->input[0]);
     ssize_t byteCount;
-    while ((byteCount = TEMP_FAILURE_RETRY(read(fd, dst, len))) > 0) {
+    while ((byteCount = TEMP_FAILURE_RETRY(pread64(fd, dst, len, off))) > 0) {
         dst += byteCount;
         len -= byteCount;
+        off += byteCount;
         totalByteCount += byteCount;
     }
     if (byteCount == -1) {
@@ -487,6 +487,54 @@ static jobjectArray Posix_environ(JNIEnv* env, jobject) {
     return toStringArray(env, environ);
 }
 
+static jobject Posix_epoll_create(JNIEnv* env, jobject, jint size) {
+    int fd = throwIfMinusOne(env, "epoll_create", TEMP_FAILURE_RETRY(epoll_create(size)));
+    return fd != -1 ? jniCreateFileDescriptor(env, fd) : NULL;
+}
+
+static void Posix_epoll_ctl(JNIEnv* env, jobject, jobject javaEpfd, jint op, jobject javaFd, jobject javaEvent) {
+    static jfieldID eventsFid = env->GetFieldID(JniConstants::structEpollEventClass, "events", "I");
+    static jfieldID dataFid = env->GetFieldID(JniConstants::structEpollEventClass, "data", "J");
+    int epfd = jniGetFDFromFileDescriptor(env, javaEpfd);
+    int fd = jniGetFDFromFileDescriptor(env, javaFd);
+    // EPOLL_CTL_DEL ignores the event, but kernels before 2.6.9 require it to be non-NULL anyway.
+    struct epoll_event event;
+    memset(&event, 0, sizeof(event));
+    if (javaEvent != NULL) {
+        event.events = env->GetIntField(javaEvent, eventsFid);
+        event.data.u64 = env->GetLongField(javaEvent, dataFid);
+    }
+    throwIfMinusOne(env, "epoll_ctl", TEMP_FAILURE_RETRY(epoll_ctl(epfd, op, fd, &event)));
+}
+
+static jint Posix_epoll_wait(JNIEnv* env, jobject, jobject javaEpfd, jobjectArray javaStructs, jint timeoutMs) {
+    static jfieldID eventsFid = env->GetFieldID(JniConstants::structEpollEventClass, "events", "I");
+    static jfieldID dataFid = env->GetFieldID(JniConstants::structEpollEventClass, "data", "J");
+
+    int epfd = jniGetFDFromFileDescriptor(env, javaEpfd);
+    size_t maxEvents = env->GetArrayLength(javaStructs);
+    UniquePtr<struct epoll_event[]> events(new struct epoll_event[maxEvents]);
+    // Unlike poll(2), the cost here is proportional to the number of ready fds, not the
+    // number of registered fds. We don't retry on EINTR so that Selector.wakeup can work.
+    int rc = epoll_wait(epfd, events.get(), maxEvents, timeoutMs);
+    if (rc == -1) {
+        throwErrnoException(env, "epoll_wait");
+        return -1;
+    }
+
+    // Copy the ready events into the caller's libcore.io.StructEpollEvent[].
+    for (int i = 0; i < rc; ++i) {
+        ScopedLocalRef<jobject> javaStruct(env, env->GetObjectArrayElement(javaStructs, i));
+        if (javaStruct.get() == NULL) {
+            jniThrowNullPointerException(env, "events[i] == null");
+            return -1;
+        }
+        env->SetIntField(javaStruct.get(), eventsFid, events[i].events);
+        env->SetLongField(javaStruct.get(), dataFid, events[i].data.u64);
+    }
+    return rc;
+}
+
 static void Posix_execve(JNIEnv* env, jobject, jstring javaFilename, jobjectArray javaArgv, jobjectArray javaEnvp) {
     ScopedUtfChars path(env, javaFilename);
     if (path.c_str() == NULL) {
@@ -1375,6 +1423,9 @@ static JNINativeMethod gMethods[] = {
     NATIVE_METHOD(Posix, dup, "(Ljava/io/FileDescriptor;)Ljava/io/FileDescriptor;"),
     NATIVE_METHOD(Posix, dup2, "(Ljava/io/FileDescriptor;I)Ljava/io/FileDescriptor;"),
     NATIVE_METHOD(Posix, environ, "()[Ljava/lang/String;"),
+    NATIVE_METHOD(Posix, epoll_create, "(I)Ljava/io/FileDescriptor;"),
+    NATIVE_METHOD(Posix, epoll_ctl, "(Ljava/io/FileDescriptor;ILjava/io/FileDescriptor;Llibcore/io/StructEpollEvent;)V"),
+    NATIVE_METHOD(Posix, epoll_wait, "(Ljava/io/FileDescriptor;[Llibcore/io/StructEpollEvent;I)I"),
     NATIVE_METHOD(Posix, execv, "(Ljava/lang/String;[Ljava/lang/String;)V"),
     NATIVE_METHOD(Posix, execve, "(Ljava/lang/String;[Ljava/lang/String;[Ljava/lang/String;)V"),
     NATIVE_METHOD(Posix, fchmod, "(Ljava/io/FileDescriptor;I)V"),
@@ -45,6 +45,7 @@
 #include "JniException.h"
 #include "NetFd.h"
 #include "NetworkUtilities.h"
+#include "ScopedBytes.h"
 #include "ScopedLocalRef.h"
 #include "ScopedPrimitiveArray.h"
 #include "ScopedUtfChars.h"
@@ -3006,10 +3007,12 @@ static jint NativeCrypto_EVP_MD_block_size(JNIEnv* env, jclass, jlong evpMdRef)
 }
 
 /*
- * public static native void EVP_DigestUpdate(int, byte[], int, int)
+ * public static native void EVP_DigestUpdate(long, Object, int, int)
+ *
+ * The buffer is a byte[] or a direct ByteBuffer.
  */
 static void NativeCrypto_EVP_DigestUpdate(JNIEnv* env, jclass, jlong ctxRef,
-                                          jbyteArray buffer, jint offset, jint length) {
+                                          jobject buffer, jint offset, jint length) {
     EVP_MD_CTX* ctx = reinterpret_cast<EVP_MD_CTX*>(ctxRef);
     JNI_TRACE("NativeCrypto_EVP_DigestUpdate(%p, %p, %d, %d)", ctx, buffer, offset, length);
 
@@ -3023,7 +3026,7 @@ static void NativeCrypto_EVP_DigestUpdate(JNIEnv* env, jclass, jlong ctxRef,
         return;
     }
 
-    ScopedByteArrayRO bufferBytes(env, buffer);
+    ScopedBytesRO bufferBytes(env, buffer);
     if (bufferBytes.get() == NULL) {
         return;
     }
@@ -3035,6 +3038,125 @@ static void NativeCrypto_EVP_DigestUpdate(JNIEnv* env, jclass, jlong ctxRef,
     }
 }
 
+/*
+ * public static native void EVP_DigestInit_ex(long, long)
+ */
+static void NativeCrypto_EVP_DigestInit_ex(JNIEnv* env, jclass, jlong ctxRef, jlong evpMdRef) {
+    EVP_MD_CTX* ctx = reinterpret_cast<EVP_MD_CTX*>(ctxRef);
+    const EVP_MD* evp_md = reinterpret_cast<const EVP_MD*>(evpMdRef);
+    JNI_TRACE("NativeCrypto_EVP_DigestInit_ex(%p, %p)", ctx, evp_md);
+
+    if (ctx == NULL || evp_md == NULL) {
+        jniThrowNullPointerException(env, "ctx == null || evp_md == null");
+        return;
+    }
+
+    if (!EVP_DigestInit_ex(ctx, evp_md, NULL)) {
+        throwExceptionIfNecessary(env, "NativeCrypto_EVP_DigestInit_ex");
+    }
+}
+
+/*
+ * public static native int EVP_DigestFinal_ex(long, byte[], int)
+ *
+ * Unlike EVP_DigestFinal, this leaves the context allocated so that it can
+ * be reinitialized with EVP_DigestInit_ex.
+ */
+static jint NativeCrypto_EVP_DigestFinal_ex(JNIEnv* env, jclass, jlong ctxRef,
+                                            jbyteArray hash, jint offset) {
+    EVP_MD_CTX* ctx = reinterpret_cast<EVP_MD_CTX*>(ctxRef);
+    JNI_TRACE("NativeCrypto_EVP_DigestFinal_ex(%p, %p, %d)", ctx, hash, offset);
+
+    if (ctx == NULL || hash == NULL) {
+        jniThrowNullPointerException(env, "ctx == null || hash == null");
+        return -1;
+    }
+
+    ScopedByteArrayRW hashBytes(env, hash);
+    if (hashBytes.get() == NULL) {
+        return -1;
+    }
+    unsigned int bytesWritten = -1;
+    int ok = EVP_DigestFinal_ex(ctx,
+                                reinterpret_cast<unsigned char*>(hashBytes.get() + offset),
+                                &bytesWritten);
+    if (ok == 0) {
+        throwExceptionIfNecessary(env, "NativeCrypto_EVP_DigestFinal_ex");
+    }
+
+    JNI_TRACE("NativeCrypto_EVP_DigestFinal_ex(%p, %p, %d) => %d", ctx, hash, offset,
+              bytesWritten);
+    return bytesWritten;
+}
+
+/*
+ * public static native void EVP_DigestBatch(long, long, long, byte[][], byte[])
+ *
+ * Digests each message independently, or signs it with the given key if
+ * pkeyRef is non-zero, writing the results consecutively to output. The
+ * context is reinitialized for each message rather than reallocated.
+ */
+static void NativeCrypto_EVP_DigestBatch(JNIEnv* env, jclass, jlong ctxRef, jlong evpMdRef,
+                                         jlong pkeyRef, jobjectArray messages, jbyteArray output) {
+    EVP_MD_CTX* ctx = reinterpret_cast<EVP_MD_CTX*>(ctxRef);
+    const EVP_MD* evp_md = reinterpret_cast<const EVP_MD*>(evpMdRef);
+    EVP_PKEY* pkey = reinterpret_cast<EVP_PKEY*>(pkeyRef);
+    JNI_TRACE("NativeCrypto_EVP_DigestBatch(%p, %p, %p, %p, %p)", ctx, evp_md, pkey, messages,
+              output);
+
+    if (ctx == NULL || evp_md == NULL || messages == NULL || output == NULL) {
+        jniThrowNullPointerException(env, NULL);
+        return;
+    }
+
+    const jsize count = env->GetArrayLength(messages);
+    const size_t size = EVP_MD_size(evp_md);
+    if (static_cast<size_t>(env->GetArrayLength(output)) < count * size) {
+        jniThrowException(env, "java/lang/ArrayIndexOutOfBoundsException", "output too short");
+        return;
+    }
+
+    ScopedByteArrayRW outputBytes(env, output);
+    if (outputBytes.get() == NULL) {
+        return;
+    }
+    unsigned char* out = reinterpret_cast<unsigned char*>(outputBytes.get());
+
+    for (jsize i = 0; i < count; i++, out += size) {
+        ScopedLocalRef<jbyteArray> message(env,
+                reinterpret_cast<jbyteArray>(env->GetObjectArrayElement(messages, i)));
+        if (message.get() == NULL) {
+            jniThrowNullPointerException(env, "messages[i] == null");
+            return;
+        }
+        ScopedByteArrayRO messageBytes(env, message.get());
+        if (messageBytes.get() == NULL) {
+            return;
+        }
+        const unsigned char* in = reinterpret_cast<const unsigned char*>(messageBytes.get());
+
+        if (pkey == NULL) {
+            unsigned int bytesWritten;
+            if (!EVP_DigestInit_ex(ctx, evp_md, NULL)
+                    || !EVP_DigestUpdate(ctx, in, messageBytes.size())
+                    || !EVP_DigestFinal_ex(ctx, out, &bytesWritten)) {
+                throwExceptionIfNecessary(env, "NativeCrypto_EVP_DigestBatch");
+                return;
+            }
+        } else {
+            size_t bytesWritten = size;
+            if (EVP_DigestSignInit(ctx, NULL, evp_md, NULL, pkey) <= 0
+                    || !EVP_DigestSignUpdate(ctx, in, messageBytes.size())
+                    || !EVP_DigestSignFinal(ctx, out, &bytesWritten)) {
+                throwExceptionIfNecessary(env, "NativeCrypto_EVP_DigestBatch");
+                return;
+            }
+        }
+    }
+    JNI_TRACE("NativeCrypto_EVP_DigestBatch(%p, %p, %p, %p, %p) => %d messages", ctx, evp_md,
+              pkey, messages, output, count);
+}
+
 static void NativeCrypto_EVP_DigestSignInit(JNIEnv* env, jclass, jlong evpMdCtxRef,
         const jlong evpMdRef, jlong pkeyRef) {
     EVP_MD_CTX* mdCtx = reinterpret_cast<EVP_MD_CTX*>(evpMdCtxRef);
@@ -5555,15 +5677,17 @@ class AppData {
      *
      * @param env The JNIEnv
      * @param shc The SSLHandshakeCallbacks
-     * @param fd The FileDescriptor
+     * @param fd The FileDescriptor, or NULL if the SSL uses memory BIOs
      * @param npnProtocols NPN protocols so that they may be advertised (by the
      *                     server) or selected (by the client). Has no effect
      *                     unless NPN is enabled.
      */
     bool setCallbackState(JNIEnv* e, jobject shc, jobject fd, jbyteArray npnProtocols) {
-        NetFd netFd(e, fd);
-        if (netFd.isClosed()) {
-            return false;
+        if (fd != NULL) {
+            NetFd netFd(e, fd);
+            if (netFd.isClosed()) {
+                return false;
+            }
         }
         env = e;
         sslHandshakeCallbacks = shc;
@@ -7281,11 +7405,12 @@ static int sslRead(JNIEnv* env, SSL* ssl, jobject fdObject, jobject shc, char* b
 }
 
 /**
- * OpenSSL read function (2): read into buffer at offset n chunks.
+ * OpenSSL read function (2): read into buffer at offset n chunks. The buffer
+ * is a byte[] or a direct ByteBuffer.
  * Returns 1 (success) or value <= 0 (failure).
  */
 static jint NativeCrypto_SSL_read(JNIEnv* env, jclass, jlong ssl_address, jobject fdObject,
-                                  jobject shc, jbyteArray b, jint offset, jint len,
+                                  jobject shc, jobject b, jint offset, jint len,
                                   jint read_timeout_millis)
 {
     SSL* ssl = to_SSL(env, ssl_address, true);
@@ -7305,7 +7430,7 @@ static jint NativeCrypto_SSL_read(JNIEnv* env, jclass, jlong ssl_address, jobjec
         return 0;
     }
 
-    ScopedByteArrayRW bytes(env, b);
+    ScopedBytesRW bytes(env, b);
     if (bytes.get() == NULL) {
         JNI_TRACE("ssl=%p NativeCrypto_SSL_read => threw exception", ssl);
         return 0;
@@ -7490,10 +7615,11 @@ static int sslWrite(JNIEnv* env, SSL* ssl, jobject fdObject, jobject shc, const
 }
 
 /**
- * OpenSSL write function (2): write into buffer at offset n chunks.
+ * OpenSSL write function (2): write into buffer at offset n chunks. The buffer
+ * is a byte[] or a direct ByteBuffer.
  */
 static void NativeCrypto_SSL_write(JNIEnv* env, jclass, jlong ssl_address, jobject fdObject,
-                                   jobject shc, jbyteArray b, jint offset, jint len, jint write_timeout_millis)
+                                   jobject shc, jobject b, jint offset, jint len, jint write_timeout_millis)
 {
     SSL* ssl = to_SSL(env, ssl_address, true);
     JNI_TRACE("ssl=%p NativeCrypto_SSL_write fd=%p shc=%p b=%p offset=%d len=%d write_timeout_millis=%d",
@@ -7512,7 +7638,7 @@ static void NativeCrypto_SSL_write(JNIEnv* env, jclass, jlong ssl_address, jobje
         return;
     }
 
-    ScopedByteArrayRO bytes(env, b);
+    ScopedBytesRO bytes(env, b);
     if (bytes.get() == NULL) {
         JNI_TRACE("ssl=%p NativeCrypto_SSL_write => threw exception", ssl);
         return;
@@ -7643,6 +7769,423 @@ static void NativeCrypto_SSL_shutdown(JNIEnv* env, jclass, jlong ssl_address,
     freeOpenSslErrorState();
 }
 
+/**
+ * Replaces the file descriptor BIOs of an SSL with a pair of memory BIOs, so
+ * that an SSLEngine can supply the network input and collect the network
+ * output from its own buffers. Also creates the application data used by the
+ * handshake callbacks, which SSL_do_handshake would otherwise create.
+ */
+static void NativeCrypto_SSL_set_memory_bios(JNIEnv* env, jclass, jlong ssl_address,
+                                             jboolean client_mode)
+{
+    SSL* ssl = to_SSL(env, ssl_address, true);
+    JNI_TRACE("ssl=%p NativeCrypto_SSL_set_memory_bios client_mode=%d", ssl, client_mode);
+    if (ssl == NULL) {
+        return;
+    }
+
+    Unique_BIO networkInput(BIO_new(BIO_s_mem()));
+    Unique_BIO networkOutput(BIO_new(BIO_s_mem()));
+    if (networkInput.get() == NULL || networkOutput.get() == NULL) {
+        throwSSLExceptionStr(env, "Unable to create memory BIOs");
+        JNI_TRACE("ssl=%p NativeCrypto_SSL_set_memory_bios BIO_new => threw exception", ssl);
+        return;
+    }
+
+    AppData* appData = AppData::create();
+    if (appData == NULL) {
+        throwSSLExceptionStr(env, "Unable to create application data");
+        JNI_TRACE("ssl=%p NativeCrypto_SSL_set_memory_bios appData => threw exception", ssl);
+        return;
+    }
+    SSL_set_app_data(ssl, reinterpret_cast<char*>(appData));
+    JNI_TRACE("ssl=%p AppData::create => %p", ssl, appData);
+
+    // The SSL takes ownership of both BIOs.
+    SSL_set_bio(ssl, networkInput.release(), networkOutput.release());
+
+    if (client_mode) {
+        SSL_set_connect_state(ssl);
+    } else {
+        SSL_set_accept_state(ssl);
+    }
+}
+
+/**
+ * Appends bytes received from the network to the SSL's memory input BIO.
+ * The buffer is either a byte[] or a direct ByteBuffer.
+ */
+static jint NativeCrypto_SSL_write_network_input(JNIEnv* env, jclass, jlong ssl_address,
+                                                 jobject buffer, jint offset, jint byteCount)
+{
+    SSL* ssl = to_SSL(env, ssl_address, true);
+    JNI_TRACE("ssl=%p NativeCrypto_SSL_write_network_input buffer=%p offset=%d byteCount=%d",
+              ssl, buffer, offset, byteCount);
+    if (ssl == NULL) {
+        return 0;
+    }
+    ScopedBytesRO bytes(env, buffer);
+    if (bytes.get() == NULL) {
+        JNI_TRACE("ssl=%p NativeCrypto_SSL_write_network_input => threw exception", ssl);
+        return 0;
+    }
+    int result = BIO_write(SSL_get_rbio(ssl), bytes.get() + offset, byteCount);
+    if (result < 0) {
+        throwSSLExceptionStr(env, "Unable to buffer network input");
+        JNI_TRACE("ssl=%p NativeCrypto_SSL_write_network_input => threw exception", ssl);
+        return 0;
+    }
+    JNI_TRACE("ssl=%p NativeCrypto_SSL_write_network_input => %d", ssl, result);
+    return result;
+}
+
+/**
+ * Removes up to byteCount bytes destined for the network from the SSL's
+ * memory output BIO, returning the number of bytes removed. The buffer is
+ * either a byte[] or a direct ByteBuffer.
+ */
+static jint NativeCrypto_SSL_read_network_output(JNIEnv* env, jclass, jlong ssl_address,
+                                                 jobject buffer, jint offset, jint byteCount)
+{
+    SSL* ssl = to_SSL(env, ssl_address, true);
+    JNI_TRACE("ssl=%p NativeCrypto_SSL_read_network_output buffer=%p offset=%d byteCount=%d",
+              ssl, buffer, offset, byteCount);
+    if (ssl == NULL) {
+        return 0;
+    }
+    if (byteCount == 0) {
+        return 0;
+    }
+    ScopedBytesRW bytes(env, buffer);
+    if (bytes.get() == NULL) {
+        JNI_TRACE("ssl=%p NativeCrypto_SSL_read_network_output => threw exception", ssl);
+        return 0;
+    }
+    // An empty memory BIO reports -1 with the retry flag set.
+    int result = std::max(BIO_read(SSL_get_wbio(ssl), bytes.get() + offset, byteCount), 0);
+    JNI_TRACE("ssl=%p NativeCrypto_SSL_read_network_output => %d", ssl, result);
+    return result;
+}
+
+/**
+ * Returns the number of bytes waiting in the SSL's memory output BIO.
+ */
+static jint NativeCrypto_SSL_pending_network_output(JNIEnv* env, jclass, jlong ssl_address)
+{
+    SSL* ssl = to_SSL(env, ssl_address, true);
+    JNI_TRACE("ssl=%p NativeCrypto_SSL_pending_network_output", ssl);
+    if (ssl == NULL) {
+        return 0;
+    }
+    int result = BIO_ctrl_pending(SSL_get_wbio(ssl));
+    JNI_TRACE("ssl=%p NativeCrypto_SSL_pending_network_output => %d", ssl, result);
+    return result;
+}
+
+/**
+ * Returns the number of decrypted application bytes buffered by the SSL.
+ */
+static jint NativeCrypto_SSL_pending_readable_bytes(JNIEnv* env, jclass, jlong ssl_address)
+{
+    SSL* ssl = to_SSL(env, ssl_address, true);
+    JNI_TRACE("ssl=%p NativeCrypto_SSL_pending_readable_bytes", ssl);
+    if (ssl == NULL) {
+        return 0;
+    }
+    int result = SSL_pending(ssl);
+    JNI_TRACE("ssl=%p NativeCrypto_SSL_pending_readable_bytes => %d", ssl, result);
+    return result;
+}
+
+/**
+ * Advances the handshake of an SSL with memory BIOs as far as the buffered
+ * network input allows. Returns the negotiated session once the handshake is
+ * complete, or 0 if more network input is required. Any handshake messages
+ * for the peer are left in the memory output BIO.
+ */
+static jlong NativeCrypto_SSL_do_handshake_bio(JNIEnv* env, jclass, jlong ssl_address,
+                                               jobject shc, jbyteArray npnProtocols)
+{
+    SSL* ssl = to_SSL(env, ssl_address, true);
+    JNI_TRACE("ssl=%p NativeCrypto_SSL_do_handshake_bio shc=%p npn=%p", ssl, shc, npnProtocols);
+    if (ssl == NULL) {
+        return 0;
+    }
+    if (shc == NULL) {
+        jniThrowNullPointerException(env, "sslHandshakeCallbacks == null");
+        JNI_TRACE("ssl=%p NativeCrypto_SSL_do_handshake_bio sslHandshakeCallbacks == null => 0",
+                  ssl);
+        return 0;
+    }
+
+    AppData* appData = toAppData(ssl);
+    if (appData == NULL) {
+        throwSSLExceptionStr(env, "Memory BIOs have not been set");
+        JNI_TRACE("ssl=%p NativeCrypto_SSL_do_handshake_bio appData == null => 0", ssl);
+        return 0;
+    }
+
+    if (!appData->setCallbackState(env, shc, NULL, npnProtocols)) {
+        JNI_TRACE("ssl=%p NativeCrypto_SSL_do_handshake_bio setCallbackState => 0", ssl);
+        return 0;
+    }
+    int ret = SSL_do_handshake(ssl);
+    appData->clearCallbackState();
+    // cert_verify_callback threw exception
+    if (env->ExceptionCheck()) {
+        freeOpenSslErrorState();
+        JNI_TRACE("ssl=%p NativeCrypto_SSL_do_handshake_bio exception => 0", ssl);
+        return 0;
+    }
+
+    if (ret == 1) {
+        SSL_SESSION* ssl_session = SSL_get1_session(ssl);
+        JNI_TRACE("ssl=%p NativeCrypto_SSL_do_handshake_bio => ssl_session=%p", ssl, ssl_session);
+        return reinterpret_cast<uintptr_t>(ssl_session);
+    }
+
+    int sslError = SSL_get_error(ssl, ret);
+    JNI_TRACE("ssl=%p NativeCrypto_SSL_do_handshake_bio ret=%d sslError=%d", ssl, ret, sslError);
+    if (sslError == SSL_ERROR_WANT_READ || sslError == SSL_ERROR_WANT_WRITE) {
+        // The input BIO has been drained; wait for the peer's next flight.
+        freeOpenSslErrorState();
+        return 0;
+    }
+    if (ret == 0 && (sslError == SSL_ERROR_NONE || sslError == SSL_ERROR_SYSCALL)) {
+        throwSSLExceptionStr(env, "Connection closed by peer");
+    } else {
+        throwSSLExceptionWithSslErrors(env, ssl, sslError, "SSL handshake aborted");
+    }
+    JNI_TRACE("ssl=%p NativeCrypto_SSL_do_handshake_bio => threw exception", ssl);
+    return 0;
+}
+
+/**
+ * Decrypts application data from the records in the SSL's memory input BIO.
+ * Returns the number of bytes read, 0 if more network input is required, or
+ * -1 if the peer has sent close_notify. The buffer is either a byte[] or a
+ * direct ByteBuffer.
+ */
+static jint NativeCrypto_SSL_read_bio(JNIEnv* env, jclass, jlong ssl_address, jobject shc,
+                                      jobject buffer, jint offset, jint byteCount)
+{
+    SSL* ssl = to_SSL(env, ssl_address, true);
+    JNI_TRACE("ssl=%p NativeCrypto_SSL_read_bio shc=%p buffer=%p offset=%d byteCount=%d",
+              ssl, shc, buffer, offset, byteCount);
+    if (ssl == NULL) {
+        return 0;
+    }
+    if (shc == NULL) {
+        jniThrowNullPointerException(env, "sslHandshakeCallbacks == null");
+        JNI_TRACE("ssl=%p NativeCrypto_SSL_read_bio => sslHandshakeCallbacks == null", ssl);
+        return 0;
+    }
+    if (byteCount == 0) {
+        return 0;
+    }
+    AppData* appData = toAppData(ssl);
+    if (appData == NULL) {
+        throwSSLExceptionStr(env, "Memory BIOs have not been set");
+        JNI_TRACE("ssl=%p NativeCrypto_SSL_read_bio appData == null => 0", ssl);
+        return 0;
+    }
+    ScopedBytesRW bytes(env, buffer);
+    if (bytes.get() == NULL) {
+        JNI_TRACE("ssl=%p NativeCrypto_SSL_read_bio => threw exception", ssl);
+        return 0;
+    }
+
+    if (!appData->setCallbackState(env, shc, NULL, NULL)) {
+        return 0;
+    }
+    int result = SSL_read(ssl, bytes.get() + offset, byteCount);
+    appData->clearCallbackState();
+    // callbacks can happen if the peer requests renegotiation
+    if (env->ExceptionCheck()) {
+        freeOpenSslErrorState();
+        JNI_TRACE("ssl=%p NativeCrypto_SSL_read_bio => threw exception", ssl);
+        return 0;
+    }
+    if (result > 0) {
+        JNI_TRACE("ssl=%p NativeCrypto_SSL_read_bio => %d", ssl, result);
+        return result;
+    }
+
+    int sslError = SSL_get_error(ssl, result);
+    JNI_TRACE("ssl=%p NativeCrypto_SSL_read_bio SSL_read result=%d sslError=%d",
+              ssl, result, sslError);
+    switch (sslError) {
+        case SSL_ERROR_WANT_READ:
+        case SSL_ERROR_WANT_WRITE:
+            freeOpenSslErrorState();
+            return 0;
+        case SSL_ERROR_ZERO_RETURN:
+            freeOpenSslErrorState();
+            return -1;
+        default:
+            throwSSLExceptionWithSslErrors(env, ssl, sslError, "Read error");
+            return 0;
+    }
+}
+
+/**
+ * Encrypts application data into records in the SSL's memory output BIO.
+ * Returns the number of bytes consumed, which is 0 if the SSL is waiting for
+ * network input during a renegotiation. The buffer is either a byte[] or a
+ * direct ByteBuffer.
+ */
+static jint NativeCrypto_SSL_write_bio(JNIEnv* env, jclass, jlong ssl_address, jobject shc,
+                                       jobject buffer, jint offset, jint byteCount)
+{
+    SSL* ssl = to_SSL(env, ssl_address, true);
+    JNI_TRACE("ssl=%p NativeCrypto_SSL_write_bio shc=%p buffer=%p offset=%d byteCount=%d",
+              ssl, shc, buffer, offset, byteCount);
+    if (ssl == NULL) {
+        return 0;
+    }
+    if (shc == NULL) {
+        jniThrowNullPointerException(env, "sslHandshakeCallbacks == null");
+        JNI_TRACE("ssl=%p NativeCrypto_SSL_write_bio => sslHandshakeCallbacks == null", ssl);
+        return 0;
+    }
+    if (byteCount == 0) {
+        return 0;
+    }
+    AppData* appData = toAppData(ssl);
+    if (appData == NULL) {
+        throwSSLExceptionStr(env, "Memory BIOs have not been set");
+        JNI_TRACE("ssl=%p NativeCrypto_SSL_write_bio appData == null => 0", ssl);
+        return 0;
+    }
+    ScopedBytesRO bytes(env, buffer);
+    if (bytes.get() == NULL) {
+        JNI_TRACE("ssl=%p NativeCrypto_SSL_write_bio => threw exception", ssl);
+        return 0;
+    }
+
+    if (!appData->setCallbackState(env, shc, NULL, NULL)) {
+        return 0;
+    }
+    int result = SSL_write(ssl, bytes.get() + offset, byteCount);
+    appData->clearCallbackState();
+    // callbacks can happen if the peer requests renegotiation
+    if (env->ExceptionCheck()) {
+        freeOpenSslErrorState();
+        JNI_TRACE("ssl=%p NativeCrypto_SSL_write_bio => threw exception", ssl);
+        return 0;
+    }
+    if (result > 0) {
+        JNI_TRACE("ssl=%p NativeCrypto_SSL_write_bio => %d", ssl, result);
+        return result;
+    }
+
+    int sslError = SSL_get_error(ssl, result);
+    JNI_TRACE("ssl=%p NativeCrypto_SSL_write_bio SSL_write result=%d sslError=%d",
+              ssl, result, sslError);
+    switch (sslError) {
+        case SSL_ERROR_WANT_READ:
+        case SSL_ERROR_WANT_WRITE:
+            freeOpenSslErrorState();
+            return 0;
+        default:
+            throwSSLExceptionWithSslErrors(env, ssl, sslError, "Write error");
+            return 0;
+    }
+}
+
+/**
+ * Queues a close_notify alert in the SSL's memory output BIO.
+ */
+static void NativeCrypto_SSL_shutdown_bio(JNIEnv* env, jclass, jlong ssl_address, jobject shc)
+{
+    SSL* ssl = to_SSL(env, ssl_address, true);
+    JNI_TRACE("ssl=%p NativeCrypto_SSL_shutdown_bio shc=%p", ssl, shc);
+    if (ssl == NULL) {
+        return;
+    }
+    if (shc == NULL) {
+        jniThrowNullPointerException(env, "sslHandshakeCallbacks == null");
+        JNI_TRACE("ssl=%p NativeCrypto_SSL_shutdown_bio => sslHandshakeCallbacks == null", ssl);
+        return;
+    }
+    AppData* appData = toAppData(ssl);
+    if (appData == NULL) {
+        throwSSLExceptionStr(env, "Memory BIOs have not been set");
+        JNI_TRACE("ssl=%p NativeCrypto_SSL_shutdown_bio appData == null", ssl);
+        return;
+    }
+
+    if (!appData->setCallbackState(env, shc, NULL, NULL)) {
+        return;
+    }
+    int ret = SSL_shutdown(ssl);
+    appData->clearCallbackState();
+    if (env->ExceptionCheck()) {
+        freeOpenSslErrorState();
+        JNI_TRACE("ssl=%p NativeCrypto_SSL_shutdown_bio => threw exception", ssl);
+        return;
+    }
+    // 0 means our close_notify was queued but the peer's has not arrived yet.
+    if (ret < 0) {
+        int sslError = SSL_get_error(ssl, ret);
+        if (sslError != SSL_ERROR_WANT_READ && sslError != SSL_ERROR_WANT_WRITE) {
+            throwSSLExceptionWithSslErrors(env, ssl, sslError, "SSL shutdown failed");
+            return;
+        }
+    }
+    freeOpenSslErrorState();
+}
+
+/**
+ * Starts a renegotiation, queueing a HelloRequest from a server or a
+ * ClientHello from a client in the SSL's memory output BIO. The rest of the
+ * handshake happens as records are read and written.
+ */
+static void NativeCrypto_SSL_renegotiate_bio(JNIEnv* env, jclass, jlong ssl_address, jobject shc)
+{
+    SSL* ssl = to_SSL(env, ssl_address, true);
+    JNI_TRACE("ssl=%p NativeCrypto_SSL_renegotiate_bio shc=%p", ssl, shc);
+    if (ssl == NULL) {
+        return;
+    }
+    if (shc == NULL) {
+        jniThrowNullPointerException(env, "sslHandshakeCallbacks == null");
+        JNI_TRACE("ssl=%p NativeCrypto_SSL_renegotiate_bio => sslHandshakeCallbacks == null", ssl);
+        return;
+    }
+    AppData* appData = toAppData(ssl);
+    if (appData == NULL) {
+        throwSSLExceptionStr(env, "Memory BIOs have not been set");
+        JNI_TRACE("ssl=%p NativeCrypto_SSL_renegotiate_bio appData == null", ssl);
+        return;
+    }
+    if (SSL_renegotiate(ssl) != 1) {
+        throwSSLExceptionStr(env, "Problem with SSL_renegotiate");
+        return;
+    }
+
+    if (!appData->setCallbackState(env, shc, NULL, NULL)) {
+        return;
+    }
+    int ret = SSL_do_handshake(ssl);
+    appData->clearCallbackState();
+    if (env->ExceptionCheck()) {
+        freeOpenSslErrorState();
+        JNI_TRACE("ssl=%p NativeCrypto_SSL_renegotiate_bio => threw exception", ssl);
+        return;
+    }
+    // A client waits for the ServerHello; a server is done once its HelloRequest is queued.
+    if (ret <= 0) {
+        int sslError = SSL_get_error(ssl, ret);
+        if (sslError != SSL_ERROR_WANT_READ && sslError != SSL_ERROR_WANT_WRITE) {
+            throwSSLExceptionWithSslErrors(env, ssl, sslError, "SSL renegotiation failed");
+            return;
+        }
+    }
+    freeOpenSslErrorState();
+    JNI_TRACE("ssl=%p NativeCrypto_SSL_renegotiate_bio =>", ssl);
+}
+
 /**
  * public static native void SSL_free(int ssl);
  */
@@ -7863,7 +8406,10 @@ static JNINativeMethod sNativeCryptoMethods[] = {
     NATIVE_METHOD(NativeCrypto, EVP_get_digestbyname, "(Ljava/lang/String;)J"),
     NATIVE_METHOD(NativeCrypto, EVP_MD_block_size, "(J)I"),
     NATIVE_METHOD(NativeCrypto, EVP_MD_size, "(J)I"),
-    NATIVE_METHOD(NativeCrypto, EVP_DigestUpdate, "(J[BII)V"),
+    NATIVE_METHOD(NativeCrypto, EVP_DigestUpdate, "(JLjava/lang/Object;II)V"),
+    NATIVE_METHOD(NativeCrypto, EVP_DigestInit_ex, "(JJ)V"),
+    NATIVE_METHOD(NativeCrypto, EVP_DigestFinal_ex, "(J[BI)I"),
+    NATIVE_METHOD(NativeCrypto, EVP_DigestBatch, "(JJJ[[B[B)V"),
     NATIVE_METHOD(NativeCrypto, EVP_SignInit, "(Ljava/lang/String;)J"),
     NATIVE_METHOD(NativeCrypto, EVP_SignUpdate, "(J[BII)V"),
     NATIVE_METHOD(NativeCrypto, EVP_SignFinal, "(J[BIJ)I"),
@@ -7991,10 +8537,20 @@ static JNINativeMethod sNativeCryptoMethods[] = {
     NATIVE_METHOD(NativeCrypto, SSL_renegotiate, "(J)V"),
     NATIVE_METHOD(NativeCrypto, SSL_get_certificate, "(J)[[B"),
     NATIVE_METHOD(NativeCrypto, SSL_get_peer_cert_chain, "(J)[[B"),
-    NATIVE_METHOD(NativeCrypto, SSL_read, "(J" FILE_DESCRIPTOR SSL_CALLBACKS "[BIII)I"),
-    NATIVE_METHOD(NativeCrypto, SSL_write, "(J" FILE_DESCRIPTOR SSL_CALLBACKS "[BIII)V"),
+    NATIVE_METHOD(NativeCrypto, SSL_read, "(J" FILE_DESCRIPTOR SSL_CALLBACKS "Ljava/lang/Object;III)I"),
+    NATIVE_METHOD(NativeCrypto, SSL_write, "(J" FILE_DESCRIPTOR SSL_CALLBACKS "Ljava/lang/Object;III)V"),
     NATIVE_METHOD(NativeCrypto, SSL_interrupt, "(J)V"),
     NATIVE_METHOD(NativeCrypto, SSL_shutdown, "(J" FILE_DESCRIPTOR SSL_CALLBACKS ")V"),
+    NATIVE_METHOD(NativeCrypto, SSL_set_memory_bios, "(JZ)V"),
+    NATIVE_METHOD(NativeCrypto, SSL_write_network_input, "(JLjava/lang/Object;II)I"),
+    NATIVE_METHOD(NativeCrypto, SSL_read_network_output, "(JLjava/lang/Object;II)I"),
+    NATIVE_METHOD(NativeCrypto, SSL_pending_network_output, "(J)I"),
+    NATIVE_METHOD(NativeCrypto, SSL_pending_readable_bytes, "(J)I"),
+    NATIVE_METHOD(NativeCrypto, SSL_do_handshake_bio, "(J" SSL_CALLBACKS "[B)J"),
+    NATIVE_METHOD(NativeCrypto, SSL_read_bio, "(J" SSL_CALLBACKS "Ljava/lang/Object;II)I"),
+    NATIVE_METHOD(NativeCrypto, SSL_write_bio, "(J" SSL_CALLBACKS "Ljava/lang/Object;II)I"),
+    NATIVE_METHOD(NativeCrypto, SSL_shutdown_bio, "(J" SSL_CALLBACKS ")V"),
+    NATIVE_METHOD(NativeCrypto, SSL_renegotiate_bio, "(J" SSL_CALLBACKS ")V"),
     NATIVE_METHOD(NativeCrypto, SSL_free, "(J)V"),
     NATIVE_METHOD(NativeCrypto, SSL_SESSION_session_id, "(J)[B"),
     NATIVE_METHOD(NativeCrypto, SSL_SESSION_get_time, "(J)J"),
@@ -41,4 +41,53 @@ public final class StringPoolTest extends TestCase {
       assertSame(bString, stringPool.get(b, 0, 2));
       assertNotSame(aString, stringPool.get(a, 0, 2));
     }
+
+    public void testAssociativePoolKeepsCollidingStrings() {
+      StringPool stringPool = new StringPool(512, 2, false);
+      char[] a = { (char) 1, (char) 0 };
+      char[] b = { (char) 0, (char) 31 };
+
+      String aString = stringPool.get(a, 0, 2);
+      String bString = stringPool.get(b, 0, 2);
+      assertSame(aString, stringPool.get(a, 0, 2));
+      assertSame(bString, stringPool.get(b, 0, 2));
+      assertEquals(2, stringPool.getHitCount());
+      assertEquals(2, stringPool.getMissCount());
+    }
+
+    public void testGetFromString() {
+      StringPool stringPool = new StringPool(64, 4, false);
+      String bcd = stringPool.get("abcde", 1, 3);
+      assertEquals("bcd", bcd);
+      assertSame(bcd, stringPool.get("xbcdx", 1, 3));
+      assertSame(bcd, stringPool.get(new char[] { 'b', 'c', 'd' }, 0, 3));
+      assertEquals(2, stringPool.getHitCount());
+      assertEquals(1, stringPool.getMissCount());
+    }
+
+    public void testThreadSafePoolDoesNotCount() {
+      StringPool stringPool = new StringPool(64, 4, true);
+      String bcd = stringPool.get("abcde", 1, 3);
+      assertSame(bcd, stringPool.get("xbcdx", 1, 3));
+      assertEquals(-1, stringPool.getHitCount());
+      assertEquals(-1, stringPool.getMissCount());
+    }
+
+    public void testInvalidSizes() {
+      try {
+        new StringPool(100, 1, false);
+        fail();
+      } catch (IllegalArgumentException expected) {
+      }
+      try {
+        new StringPool(64, 3, false);
+        fail();
+      } catch (IllegalArgumentException expected) {
+      }
+      try {
+        new StringPool(4, 8, false);
+        fail();
+      } catch (IllegalArgumentException expected) {
+      }
+    }
 }
@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package libcore.io;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import junit.framework.TestCase;
+import static libcore.io.DiskLruCache.JOURNAL_FILE;
+
+public final class SegmentedDiskLruCacheTest extends TestCase {
+    private final int appVersion = 100;
+    private File cacheDir;
+    private SegmentedDiskLruCache cache;
+
+    @Override public void setUp() throws Exception {
+        super.setUp();
+        cacheDir = new File(System.getProperty("java.io.tmpdir"), "SegmentedDiskLruCacheTest");
+        cacheDir.mkdir();
+        IoUtils.deleteContents(cacheDir);
+    }
+
+    @Override protected void tearDown() throws Exception {
+        if (cache != null) {
+            cache.close();
+        }
+        super.tearDown();
+    }
+
+    public void testSingleSegmentUsesDiskLruCacheLayout() throws Exception {
+        cache = SegmentedDiskLruCache.open(cacheDir, appVersion, 1, Integer.MAX_VALUE, 1);
+        set("a", "A");
+        cache.close();
+
+        DiskLruCache plain = DiskLruCache.open(cacheDir, appVersion, 1, Integer.MAX_VALUE);
+        assertEquals("A", plain.get("a").getString(0));
+        plain.close();
+        assertTrue(new File(cacheDir, JOURNAL_FILE).exists());
+    }
+
+    public void testReadAndWriteAcrossSegments() throws Exception {
+        cache = SegmentedDiskLruCache.open(cacheDir, appVersion, 1, Integer.MAX_VALUE, 4);
+        for (int i = 0; i < 32; i++) {
+            set("k" + i, "v" + i);
+        }
+        assertEquals(86, cache.size()); // "v0" to "v9" are 2 bytes, "v10" to "v31" are 3
+        cache.close();
+
+        cache = SegmentedDiskLruCache.open(cacheDir, appVersion, 1, Integer.MAX_VALUE, 4);
+        for (int i = 0; i < 32; i++) {
+            assertEquals("v" + i, cache.get("k" + i).getString(0));
+        }
+        assertTrue(cache.remove("k0"));
+        assertNull(cache.get("k0"));
+        for (int i = 0; i < 4; i++) {
+            assertTrue(new File(new File(cacheDir, "4-" + i), JOURNAL_FILE).exists());
+        }
+    }
+
+    public void testChangingSegmentCountDiscardsStaleSegments() throws Exception {
+        cache = SegmentedDiskLruCache.open(cacheDir, appVersion, 1, Integer.MAX_VALUE, 4);
+        set("a", "A");
+        cache.close();
+
+        cache = SegmentedDiskLruCache.open(cacheDir, appVersion, 1, Integer.MAX_VALUE, 2);
+        assertNull(cache.get("a"));
+        assertFalse(new File(cacheDir, "4-0").exists());
+        cache.close();
+
+        cache = SegmentedDiskLruCache.open(cacheDir, appVersion, 1, Integer.MAX_VALUE, 1);
+        assertFalse(new File(cacheDir, "2-0").exists());
+    }
+
+    public void testOpeningKeepsFilesThatAreNotStaleSegments() throws Exception {
+        File[] keep = {
+                new File(cacheDir, "images"),
+                new File(cacheDir, "4-"),
+                new File(cacheDir, "4-4"),
+                new File(cacheDir, "04-0"),
+                new File(cacheDir, "1-0"),
+        };
+        for (File file : keep) {
+            assertTrue(file.mkdir());
+        }
+        File notADirectory = new File(cacheDir, "2-0");
+        assertTrue(notADirectory.createNewFile());
+        File stale = new File(cacheDir, "8-3");
+        assertTrue(stale.mkdir());
+
+        cache = SegmentedDiskLruCache.open(cacheDir, appVersion, 1, Integer.MAX_VALUE, 1);
+        set("a", "A");
+        cache.close();
+        cache = SegmentedDiskLruCache.open(cacheDir, appVersion, 1, Integer.MAX_VALUE, 4);
+        cache.close();
+        cache = null;
+
+        for (File file : keep) {
+            assertTrue(file.toString(), file.isDirectory());
+        }
+        assertTrue(notADirectory.isFile());
+        assertFalse(stale.exists());
+    }
+
+    public void testSegmentingDeletesUnsegmentedCache() throws Exception {
+        File other = new File(cacheDir, "a.1");
+        assertTrue(other.createNewFile());
+        cache = SegmentedDiskLruCache.open(cacheDir, appVersion, 1, Integer.MAX_VALUE, 1);
+        set("a", "A");
+        set("b", "B");
+        assertTrue(new File(cacheDir, "a.0").exists());
+        cache.close();
+
+        cache = SegmentedDiskLruCache.open(cacheDir, appVersion, 1, Integer.MAX_VALUE, 4);
+        assertNull(cache.get("a"));
+        assertFalse(new File(cacheDir, JOURNAL_FILE).exists());
+        assertFalse(new File(cacheDir, "a.0").exists());
+        assertFalse(new File(cacheDir, "b.0").exists());
+        // a file that isn't one of the cache's values is kept
+        assertTrue(other.exists());
+        cache.close();
+
+        cache = SegmentedDiskLruCache.open(cacheDir, appVersion, 1, Integer.MAX_VALUE, 1);
+        assertNull(cache.get("a"));
+    }
+
+    public void testMaxSizeIsSharedBetweenSegments() throws Exception {
+        cache = SegmentedDiskLruCache.open(cacheDir, appVersion, 1, 40, 4);
+        for (int i = 0; i < 100; i++) {
+            set("k" + i, "0123456789");
+        }
+        cache.flush();
+        Thread.sleep(500); // eviction happens on a background thread
+        assertTrue(cache.size() <= 40);
+    }
+
+    public void testConcurrentEdits() throws Exception {
+        cache = SegmentedDiskLruCache.open(cacheDir, appVersion, 1, Integer.MAX_VALUE, 4);
+        final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 8; t++) {
+            final int thread = t;
+            threads.add(new Thread() {
+                @Override public void run() {
+                    try {
+                        for (int i = 0; i < 50; i++) {
+                            set("t" + thread + "k" + i, "v" + i);
+                        }
+                    } catch (Exception e) {
+                        failure.set(e);
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+        cache.close();
+
+        cache = SegmentedDiskLruCache.open(cacheDir, appVersion, 1, Integer.MAX_VALUE, 4);
+        for (int t = 0; t < 8; t++) {
+            for (int i = 0; i < 50; i++) {
+                assertEquals("v" + i, cache.get("t" + t + "k" + i).getString(0));
+            }
+        }
+    }
+
+    private void set(String key, String value) throws Exception {
+        DiskLruCache.Editor editor = cache.edit(key);
+        editor.set(0, value);
+        editor.commit();
+    }
+}
@@ -16,11 +16,18 @@
 
 package libcore.java.io;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.ObjectStreamClass;
 import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import junit.framework.TestCase;
 import libcore.util.SerializationTester;
 
@@ -80,4 +87,208 @@ public final class SerializationTest extends TestCase {
     static class FieldsChanged implements Serializable {
         private int b; // was 'a'
     }
+
+    public void testRoundTripEveryKindOfField() throws Exception {
+        EveryKindOfField original = new EveryKindOfField();
+        original.z = true;
+        original.b = (byte) 0x12;
+        original.c = 'c';
+        original.d = 1.5d;
+        original.f = 2.5f;
+        original.i = 0x12345678;
+        original.j = 0x123456789abcdefL;
+        original.s = (short) 0x1234;
+        original.volatileInt = 42;
+        original.string = "hello";
+        original.self = original;
+        original.transientInt = 7;
+
+        EveryKindOfField deserialized = roundTrip(original);
+        assertTrue(deserialized.z);
+        assertEquals((byte) 0x12, deserialized.b);
+        assertEquals('c', deserialized.c);
+        assertEquals(1.5d, deserialized.d);
+        assertEquals(2.5f, deserialized.f);
+        assertEquals(0x12345678, deserialized.i);
+        assertEquals(0x123456789abcdefL, deserialized.j);
+        assertEquals((short) 0x1234, deserialized.s);
+        assertEquals(42, deserialized.volatileInt);
+        assertEquals(99, deserialized.finalInt);
+        assertEquals("hello", deserialized.string);
+        assertSame(deserialized, deserialized.self);
+        assertEquals(0, deserialized.transientInt);
+    }
+
+    static class EveryKindOfField implements Serializable {
+        private static final long serialVersionUID = 0L;
+        boolean z;
+        byte b;
+        char c;
+        double d;
+        float f;
+        int i;
+        long j;
+        short s;
+        volatile int volatileInt;
+        final int finalInt = 99;
+        String string;
+        Object self;
+        transient int transientInt;
+    }
+
+    public void testSharedObjectsSurviveWriteUnshared() throws Exception {
+        List<Object> shared = new ArrayList<Object>();
+        for (int i = 0; i < 1000; i++) {
+            shared.add(new EveryKindOfField());
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        for (Object o : shared) {
+            out.writeObject(o);
+            out.writeUnshared(new EveryKindOfField());
+        }
+        for (Object o : shared) {
+            out.writeObject(o);
+        }
+        out.close();
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        List<Object> read = new ArrayList<Object>();
+        for (int i = 0; i < shared.size(); i++) {
+            read.add(in.readObject());
+            in.readObject();
+        }
+        for (int i = 0; i < shared.size(); i++) {
+            assertSame(read.get(i), in.readObject());
+        }
+    }
+
+    public void testRoundTripPrimitiveArrays() throws Exception {
+        // Larger than the chunk ObjectInputStream converts at once.
+        int size = 5000;
+        boolean[] z = new boolean[size];
+        char[] c = new char[size];
+        double[] d = new double[size];
+        float[] f = new float[size];
+        int[] i = new int[size];
+        long[] j = new long[size];
+        short[] s = new short[size];
+        for (int k = 0; k < size; k++) {
+            z[k] = (k % 3) == 0;
+            c[k] = (char) (k * 31);
+            d[k] = k * -1.5;
+            f[k] = k * 0.25f;
+            i[k] = k * 0x10001;
+            j[k] = k * 0x100000001L;
+            s[k] = (short) (k * 7);
+        }
+        Object[] deserialized = roundTrip(new Object[] { z, c, d, f, i, j, s, new int[0] });
+        assertTrue(Arrays.equals(z, (boolean[]) deserialized[0]));
+        assertTrue(Arrays.equals(c, (char[]) deserialized[1]));
+        assertTrue(Arrays.equals(d, (double[]) deserialized[2]));
+        assertTrue(Arrays.equals(f, (float[]) deserialized[3]));
+        assertTrue(Arrays.equals(i, (int[]) deserialized[4]));
+        assertTrue(Arrays.equals(j, (long[]) deserialized[5]));
+        assertTrue(Arrays.equals(s, (short[]) deserialized[6]));
+        assertEquals(0, ((int[]) deserialized[7]).length);
+    }
+
+    public void testRoundTripBlockData() throws Exception {
+        BlockData original = new BlockData();
+        original.count = 2000;
+        BlockData deserialized = roundTrip(original);
+        assertEquals(original.count, deserialized.count);
+    }
+
+    /**
+     * Writes enough primitive data to span several block data records, so
+     * some values straddle the boundary between two records.
+     */
+    static class BlockData implements Serializable {
+        private static final long serialVersionUID = 0L;
+        transient int count;
+
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                out.writeByte(i);
+                out.writeLong(i * 0x100000001L);
+                out.writeDouble(i / 3.0);
+                out.writeUTF("\u00e9t\u00e9 " + i);
+                out.writeChar('\u20ac' + i);
+                out.writeBoolean((i & 1) == 0);
+            }
+            out.writeObject("after");
+        }
+
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                assertEquals((byte) i, in.readByte());
+                assertEquals(i * 0x100000001L, in.readLong());
+                assertEquals(i / 3.0, in.readDouble());
+                assertEquals("\u00e9t\u00e9 " + i, in.readUTF());
+                assertEquals((char) ('\u20ac' + i), in.readChar());
+                assertEquals((i & 1) == 0, in.readBoolean());
+            }
+            assertEquals("after", in.readObject());
+        }
+    }
+
+    public void testRoundTripStrings() throws Exception {
+        String[] strings = { "", "ascii", "\u0000", "caf\u00e9", "\u20ac\ud83d\ude00", "x\u0000y" };
+        assertTrue(Arrays.equals(strings, roundTrip(strings)));
+    }
+
+    public void testFieldsOfClassOutsideTheObjectsHierarchyAreNotSet() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        ExtendsA a = new ExtendsA();
+        a.i = 0x7f7f7f7f;
+        a.j = 0x7f7f7f7fL;
+        out.writeObject(a);
+        out.close();
+
+        // Rename ExtendsA to ExtendsB so the stream describes an ExtendsB whose
+        // superclass is A. A's field values may be rejected or discarded, but
+        // must never overwrite B's.
+        String stream = new String(bytes.toByteArray(), "ISO-8859-1")
+                .replace(ExtendsA.class.getName(), ExtendsB.class.getName());
+        ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(stream.getBytes("ISO-8859-1")));
+        try {
+            ExtendsB b = (ExtendsB) in.readObject();
+            assertNull(b.o);
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    static class A implements Serializable {
+        private static final long serialVersionUID = 0L;
+        int i;
+        long j;
+    }
+
+    static class ExtendsA extends A {
+        private static final long serialVersionUID = 0L;
+    }
+
+    static class B implements Serializable {
+        private static final long serialVersionUID = 0L;
+        Object o;
+    }
+
+    static class ExtendsB extends B {
+        private static final long serialVersionUID = 0L;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T roundTrip(T object) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(object);
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        return (T) in.readObject();
+    }
 }
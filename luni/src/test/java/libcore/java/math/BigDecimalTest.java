@@ -88,4 +88,62 @@ public final class BigDecimalTest extends TestCase {
       assertEquals(0, a.subtract(b).signum());
       assertEquals(0, a.compareTo(b));
     }
+
+    public void testDivideSmallValuesWithMathContext() {
+        assertEquals("0.3333333333333333",
+                BigDecimal.ONE.divide(BigDecimal.valueOf(3), MathContext.DECIMAL64).toString());
+        // exact quotients are stripped back to the preferred scale
+        assertEquals("25", BigDecimal.valueOf(100).divide(BigDecimal.valueOf(4),
+                MathContext.DECIMAL64).toString());
+        assertEquals("2.50", BigDecimal.valueOf(1000, 2).divide(BigDecimal.valueOf(4),
+                MathContext.DECIMAL64).toString());
+        MathContext halfEven = new MathContext(1, RoundingMode.HALF_EVEN);
+        assertEquals("-4", BigDecimal.valueOf(-7).divide(BigDecimal.valueOf(2), halfEven).toString());
+        assertEquals("-2", BigDecimal.valueOf(-5).divide(BigDecimal.valueOf(2), halfEven).toString());
+        assertEquals("14285714285714.2857", BigDecimal.valueOf(999999999999999999L, 6)
+                .divide(BigDecimal.valueOf(7, 2), MathContext.DECIMAL128).toString());
+    }
+
+    public void testSetScaleDiscardingAllDigitsOfALong() {
+        assertEquals("1E+19", BigDecimal.valueOf(Long.MAX_VALUE).setScale(-19, RoundingMode.UP).toString());
+        assertEquals("1E+19", BigDecimal.valueOf(5000000000000000000L)
+                .setScale(-19, RoundingMode.HALF_UP).toString());
+        assertEquals("0E+19", BigDecimal.valueOf(5000000000000000000L)
+                .setScale(-19, RoundingMode.HALF_DOWN).toString());
+        assertEquals("-1E+19", BigDecimal.valueOf(Long.MIN_VALUE)
+                .setScale(-19, RoundingMode.HALF_EVEN).toString());
+        assertEquals("0E+20", BigDecimal.valueOf(Long.MAX_VALUE)
+                .setScale(-20, RoundingMode.HALF_UP).toString());
+        assertEquals("-1E+20", BigDecimal.valueOf(-1).setScale(-20, RoundingMode.FLOOR).toString());
+        try {
+            BigDecimal.ONE.setScale(-20, RoundingMode.UNNECESSARY);
+            fail();
+        } catch (ArithmeticException expected) {
+        }
+    }
+
+    public void testRoundEighteenDigits() {
+        BigDecimal nines = new BigDecimal("999999999999999999");
+        assertEquals("9.9999999999999999E+17",
+                nines.round(new MathContext(17, RoundingMode.DOWN)).toString());
+        assertEquals("1.0000000000000000E+18",
+                nines.round(new MathContext(17, RoundingMode.UP)).toString());
+    }
+
+    public void testCompareToAcrossScales() {
+        assertEquals(0, new BigDecimal("1.10").compareTo(new BigDecimal("1.1")));
+        assertEquals(1, BigDecimal.valueOf(Long.MAX_VALUE, 0).compareTo(BigDecimal.valueOf(Long.MAX_VALUE, 1)));
+        assertEquals(-1, BigDecimal.valueOf(Long.MIN_VALUE, 0).compareTo(BigDecimal.valueOf(Long.MIN_VALUE, 1)));
+        assertEquals(-1, BigDecimal.valueOf(922337203685477580L, 0)
+                .compareTo(BigDecimal.valueOf(Long.MAX_VALUE, 1)));
+        assertEquals(1, BigDecimal.valueOf(1, 0).compareTo(BigDecimal.valueOf(Long.MAX_VALUE, 30)));
+        assertEquals(-1, BigDecimal.valueOf(-1, 0).compareTo(BigDecimal.valueOf(-Long.MAX_VALUE, 30)));
+    }
+
+    public void testToStringLongUnscaledValues() {
+        assertEquals("92233720368547.75807", BigDecimal.valueOf(Long.MAX_VALUE, 5).toString());
+        assertEquals("0.09223372036854775807", BigDecimal.valueOf(Long.MAX_VALUE, 20).toString());
+        assertEquals("-9.99999999999999999E-7", BigDecimal.valueOf(-999999999999999999L, 24).toString());
+        assertEquals("-9223372036854775.808", BigDecimal.valueOf(Long.MIN_VALUE, 3).toString());
+    }
 }
@@ -83,4 +83,65 @@ public class BigIntegerTest extends junit.framework.TestCase {
         } catch (NumberFormatException expected) {
         }
     }
+
+    private static final long[] SMALL_VALUES = {
+        0, 1, -1, 7, -7, 1000000007, Integer.MAX_VALUE, Integer.MIN_VALUE,
+        0xffffffffL, -0xffffffffL, 0x100000000L, 1L << 62, -(1L << 62),
+        Long.MAX_VALUE, -Long.MAX_VALUE, Long.MIN_VALUE,
+    };
+
+    /**
+     * Returns a BigInteger equal to {@code value} that only has an OpenSSL
+     * representation, so arithmetic on it can't take the small value paths.
+     */
+    private static BigInteger nativeValueOf(long value) {
+        return new BigInteger(BigInteger.valueOf(value).toByteArray());
+    }
+
+    public void test_smallValueArithmeticMatchesOpenSSL() {
+        for (long a : SMALL_VALUES) {
+            BigInteger javaA = BigInteger.valueOf(a);
+            BigInteger nativeA = nativeValueOf(a);
+            assertEquals(nativeA.toString(), javaA.toString());
+            assertEquals(nativeA.negate(), javaA.negate());
+            assertEquals(nativeA.abs(), javaA.abs());
+            assertEquals(nativeA.pow(3), javaA.pow(3));
+            assertEquals(nativeA, new BigInteger(Long.toString(a)));
+            for (long b : SMALL_VALUES) {
+                BigInteger javaB = BigInteger.valueOf(b);
+                BigInteger nativeB = nativeValueOf(b);
+                String message = a + ", " + b;
+                assertEquals(message, nativeA.compareTo(nativeB), javaA.compareTo(javaB));
+                assertEquals(message, nativeA.add(nativeB), javaA.add(javaB));
+                assertEquals(message, nativeA.subtract(nativeB), javaA.subtract(javaB));
+                assertEquals(message, nativeA.multiply(nativeB), javaA.multiply(javaB));
+                assertEquals(message, nativeA.gcd(nativeB), javaA.gcd(javaB));
+                if (b == 0) {
+                    try {
+                        javaA.divide(javaB);
+                        fail(message);
+                    } catch (ArithmeticException expected) {
+                    }
+                    continue;
+                }
+                assertEquals(message, nativeA.divide(nativeB), javaA.divide(javaB));
+                assertEquals(message, nativeA.remainder(nativeB), javaA.remainder(javaB));
+                BigInteger product = javaA.multiply(javaA);
+                assertEquals(message, nativeA.multiply(nativeA).divide(nativeB),
+                        product.divide(javaB));
+                assertEquals(message, nativeA.multiply(nativeA).remainder(nativeB),
+                        product.remainder(javaB));
+                if (b > 0) {
+                    assertEquals(message, nativeA.mod(nativeB), javaA.mod(javaB));
+                }
+            }
+        }
+    }
+
+    public void test_smallValuePowMatchesOpenSSL() {
+        for (int exp = 0; exp <= 300; ++exp) {
+            assertEquals(nativeValueOf(3).pow(exp), BigInteger.valueOf(3).pow(exp));
+            assertEquals(nativeValueOf(-2).pow(exp), BigInteger.valueOf(-2).pow(exp));
+        }
+    }
 }
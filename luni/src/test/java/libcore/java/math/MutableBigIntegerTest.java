@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package libcore.java.math;
+
+import java.math.BigInteger;
+import java.math.MutableBigInteger;
+import junit.framework.TestCase;
+
+public class MutableBigIntegerTest extends TestCase {
+    private static final long[] LONGS = {
+        0, 1, -1, 12345, -12345, Integer.MAX_VALUE, Integer.MIN_VALUE, 0xffffffffL,
+        -0xffffffffL, Long.MAX_VALUE, Long.MIN_VALUE,
+    };
+
+    public void testLongOperandsMatchBigInteger() {
+        for (long a : LONGS) {
+            for (long b : LONGS) {
+                BigInteger bigA = BigInteger.valueOf(a);
+                BigInteger bigB = BigInteger.valueOf(b);
+                String message = a + ", " + b;
+                assertEquals(message, bigA.add(bigB), new MutableBigInteger(a).add(b).toBigInteger());
+                assertEquals(message, bigA.subtract(bigB),
+                        new MutableBigInteger(a).subtract(b).toBigInteger());
+                assertEquals(message, bigA.multiply(bigB),
+                        new MutableBigInteger(a).multiply(b).toBigInteger());
+                assertEquals(message, bigA.add(bigB),
+                        new MutableBigInteger(bigA).add(bigB).toBigInteger());
+                assertEquals(message, bigA.subtract(bigB),
+                        new MutableBigInteger(bigA).subtract(bigB).toBigInteger());
+                assertEquals(message, bigA.multiply(bigB),
+                        new MutableBigInteger(bigA).multiply(bigB).toBigInteger());
+                if (b > 0) {
+                    assertEquals(message, bigA.mod(bigB), new MutableBigInteger(a).mod(bigB).toBigInteger());
+                    assertEquals(message, bigA.multiply(bigA).mod(bigB),
+                            new MutableBigInteger(a).multiplyMod(bigA, bigB).toBigInteger());
+                }
+            }
+        }
+    }
+
+    public void testFactorial() {
+        MutableBigInteger accumulator = new MutableBigInteger(1);
+        BigInteger expected = BigInteger.ONE;
+        for (int i = 2; i <= 100; i++) {
+            accumulator.multiply(i);
+            expected = expected.multiply(BigInteger.valueOf(i));
+        }
+        assertEquals(expected, accumulator.toBigInteger());
+        assertEquals(expected.toString(), accumulator.toString());
+        assertEquals(1, accumulator.signum());
+    }
+
+    public void testToBigIntegerIsSnapshot() {
+        MutableBigInteger accumulator = new MutableBigInteger(5);
+        BigInteger five = accumulator.toBigInteger();
+        accumulator.add(1);
+        assertEquals(BigInteger.valueOf(5), five);
+        assertEquals(BigInteger.valueOf(6), accumulator.toBigInteger());
+        accumulator.set(five).subtract(5);
+        assertEquals(0, accumulator.signum());
+    }
+
+    public void testNonPositiveModulus() {
+        try {
+            new MutableBigInteger(5).mod(BigInteger.ZERO);
+            fail();
+        } catch (ArithmeticException expected) {
+        }
+        try {
+            new MutableBigInteger(5).multiplyMod(BigInteger.ONE, BigInteger.valueOf(-3));
+            fail();
+        } catch (ArithmeticException expected) {
+        }
+    }
+}
@@ -81,6 +81,7 @@ import junit.framework.TestCase;
 import libcore.java.lang.ref.FinalizationTester;
 import libcore.java.security.TestKeyStore;
 import libcore.javax.net.ssl.TestSSLContext;
+import libcore.net.http.HttpPipeline;
 import libcore.net.http.HttpResponseCache;
 import tests.net.StuckServer;
 
@@ -114,7 +115,7 @@ public final class URLConnectionTest extends TestCase {
         System.clearProperty("https.proxyPort");
         server.shutdown();
         if (cache != null) {
-            cache.getCache().delete();
+            cache.getSegmentedCache().delete();
         }
         super.tearDown();
     }
@@ -309,6 +310,107 @@ public final class URLConnectionTest extends TestCase {
         assertEquals(1, server.takeRequest().getSequenceNumber());
     }
 
+    public void testPipelinedRequestsShareOneConnection() throws Exception {
+        server.enqueue(new MockResponse().setBody("ABC"));
+        server.enqueue(new MockResponse().setChunkedBody("DEF", 1));
+        server.enqueue(new MockResponse().setBody("GHI"));
+        server.play();
+
+        URLConnection connection1 = server.getUrl("/a").openConnection();
+        URLConnection connection2 = server.getUrl("/b").openConnection();
+        URLConnection connection3 = server.getUrl("/c").openConnection();
+        HttpPipeline.execute(Arrays.asList(connection1, connection2, connection3));
+
+        // reading a later response first must not scramble the earlier ones
+        assertContent("GHI", connection3);
+        assertContent("ABC", connection1);
+        assertContent("DEF", connection2);
+
+        RecordedRequest request1 = server.takeRequest();
+        assertEquals("GET /a HTTP/1.1", request1.getRequestLine());
+        assertEquals(0, request1.getSequenceNumber());
+        assertEquals(1, server.takeRequest().getSequenceNumber());
+        assertEquals(2, server.takeRequest().getSequenceNumber());
+    }
+
+    public void testPipelinedRequestsRetriedAfterServerClosesSocket() throws Exception {
+        server.enqueue(new MockResponse().setBody("ABC").setSocketPolicy(DISCONNECT_AT_END));
+        server.enqueue(new MockResponse().setBody("DEF"));
+        server.play();
+
+        URLConnection connection1 = server.getUrl("/a").openConnection();
+        URLConnection connection2 = server.getUrl("/b").openConnection();
+        HttpPipeline.execute(Arrays.asList(connection1, connection2));
+
+        assertContent("ABC", connection1);
+        assertContent("DEF", connection2);
+        assertEquals(0, server.takeRequest().getSequenceNumber());
+        // the second request was sent again on a new connection
+        assertEquals(0, server.takeRequest().getSequenceNumber());
+    }
+
+    public void testPipelinedRequestThatCannotBeSentDoesNotFailOthers() throws Exception {
+        ResponseCache.setDefault(new ResponseCache() {
+            @Override public CacheResponse get(URI uri, String requestMethod,
+                    Map<String, List<String>> requestHeaders) throws IOException {
+                if (uri.getPath().equals("/b")) {
+                    throw new IOException("Cache failure for " + uri);
+                }
+                return null;
+            }
+            @Override public CacheRequest put(URI uri, URLConnection connection) {
+                return null;
+            }
+        });
+        for (int i = 0; i < 4; i++) {
+            server.enqueue(new MockResponse().setBody("ABC"));
+        }
+        server.play();
+
+        URLConnection connection1 = server.getUrl("/a").openConnection();
+        URLConnection connection2 = server.getUrl("/b").openConnection();
+        URLConnection connection3 = server.getUrl("/c").openConnection();
+        HttpPipeline.execute(Arrays.asList(connection1, connection2, connection3));
+
+        // the shared connection is closed; the other requests are retried on new connections
+        assertContent("ABC", connection1);
+        try {
+            connection2.getInputStream();
+            fail();
+        } catch (IOException expected) {
+        }
+        assertContent("ABC", connection3);
+    }
+
+    public void testPipelinedBodyTooLargeToBufferIsStreamed() throws Exception {
+        byte[] largeBody = new byte[2 * 1024 * 1024]; // larger than a pipeline buffers
+        Arrays.fill(largeBody, (byte) 'x');
+        server.enqueue(new MockResponse().setBody(largeBody));
+        server.enqueue(new MockResponse().setBody("DEF"));
+        server.enqueue(new MockResponse().setBody("DEF"));
+        server.play();
+
+        URLConnection connection1 = server.getUrl("/a").openConnection();
+        URLConnection connection2 = server.getUrl("/b").openConnection();
+        HttpPipeline.execute(Arrays.asList(connection1, connection2));
+
+        // the second request gives up on the pipeline rather than buffer the first body
+        assertContent("DEF", connection2);
+
+        InputStream in = connection1.getInputStream();
+        byte[] buffer = new byte[8192];
+        int total = 0;
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            for (int i = 0; i < count; i++) {
+                assertEquals('x', buffer[i]);
+            }
+            total += count;
+        }
+        assertEquals(largeBody.length, total);
+        in.close();
+    }
+
     public void testServerClosesSocket() throws Exception {
         testServerClosesSocket(DISCONNECT_AT_END);
     }
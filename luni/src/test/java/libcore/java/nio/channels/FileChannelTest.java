@@ -19,8 +19,14 @@ package libcore.java.nio.channels;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
 import libcore.io.IoUtils;
 
 public class FileChannelTest extends junit.framework.TestCase {
@@ -110,4 +116,85 @@ public class FileChannelTest extends junit.framework.TestCase {
 
         assertEquals("hello world", new String(IoUtils.readFileAsString(tmp.getPath())));
     }
+
+    public void test_transferTo_file() throws Exception {
+        File src = createFile(256 * 1024);
+        File dst = File.createTempFile("FileChannelTest", "tmp");
+        FileChannel in = new FileInputStream(src).getChannel();
+        FileChannel out = new FileOutputStream(dst).getChannel();
+        out.write(ByteBuffer.wrap("x".getBytes("US-ASCII")));
+        // The transfer starts at the target's position, and advances it.
+        assertEquals(src.length() - 1, in.transferTo(1, Long.MAX_VALUE, out));
+        assertEquals(src.length(), out.position());
+        // The source's position is unaffected.
+        assertEquals(0, in.position());
+        in.close();
+        out.close();
+
+        byte[] expected = IoUtils.readFileAsByteArray(src.getPath());
+        expected[0] = 'x';
+        assertTrue(Arrays.equals(expected, IoUtils.readFileAsByteArray(dst.getPath())));
+    }
+
+    public void test_transferTo_socket() throws Exception {
+        File src = createFile(1024 * 1024);
+        ServerSocket ss = new ServerSocket(0);
+        SocketChannel sc = SocketChannel.open(new InetSocketAddress("localhost", ss.getLocalPort()));
+        Socket peer = ss.accept();
+        FileChannel in = new FileInputStream(src).getChannel();
+        // A blocking target receives the whole file even if sendfile(2) is partial, so
+        // drain the socket on another thread while we're sending.
+        final InputStream peerIn = peer.getInputStream();
+        final int[] received = new int[1];
+        Thread reader = new Thread() {
+            @Override public void run() {
+                try {
+                    byte[] buffer = new byte[8192];
+                    int count;
+                    while ((count = peerIn.read(buffer)) != -1) {
+                        received[0] += count;
+                    }
+                } catch (Exception ignored) {
+                }
+            }
+        };
+        reader.start();
+        assertEquals(src.length(), in.transferTo(0, src.length(), sc));
+        sc.close();
+        reader.join();
+        assertEquals(src.length(), received[0]);
+        in.close();
+        peer.close();
+        ss.close();
+    }
+
+    public void test_transferTo_nonBlockingSocket() throws Exception {
+        File src = createFile(16 * 1024 * 1024);
+        ServerSocket ss = new ServerSocket(0);
+        SocketChannel sc = SocketChannel.open(new InetSocketAddress("localhost", ss.getLocalPort()));
+        Socket peer = ss.accept();
+        sc.configureBlocking(false);
+        FileChannel in = new FileInputStream(src).getChannel();
+        // Nobody is reading, so only as much as fits in the socket buffers can be sent.
+        long transferred = in.transferTo(0, src.length(), sc);
+        assertTrue(transferred > 0);
+        assertTrue(transferred < src.length());
+        assertEquals(0, in.transferTo(transferred, src.length() - transferred, sc));
+        in.close();
+        sc.close();
+        peer.close();
+        ss.close();
+    }
+
+    private static File createFile(int length) throws Exception {
+        File result = File.createTempFile("FileChannelTest", "tmp");
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; ++i) {
+            bytes[i] = (byte) i;
+        }
+        FileOutputStream out = new FileOutputStream(result);
+        out.write(bytes);
+        out.close();
+        return result;
+    }
 }
@@ -18,11 +18,15 @@ package libcore.java.nio.channels;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.SelectorProviderImpl;
 import java.nio.channels.NoConnectionPendingException;
+import java.nio.channels.Pipe;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.nio.channels.spi.SelectorProvider;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import libcore.io.Libcore;
@@ -32,14 +36,22 @@ import tests.net.StuckServer;
 
 public class SelectorTest extends TestCase {
     public void testNonBlockingConnect_immediate() throws Exception {
+        checkNonBlockingConnect_immediate(SelectorProvider.provider());
+    }
+
+    public void testNonBlockingConnect_immediate_epoll() throws Exception {
+        checkNonBlockingConnect_immediate(new SelectorProviderImpl(true));
+    }
+
+    private void checkNonBlockingConnect_immediate(SelectorProvider provider) throws Exception {
         // Test the case where we [probably] connect immediately.
-        Selector selector = Selector.open();
-        ServerSocketChannel ssc = ServerSocketChannel.open();
+        Selector selector = provider.openSelector();
+        ServerSocketChannel ssc = provider.openServerSocketChannel();
         try {
             ssc.configureBlocking(false);
             ssc.socket().bind(null);
 
-            SocketChannel sc = SocketChannel.open();
+            SocketChannel sc = provider.openSocketChannel();
             sc.configureBlocking(false);
             sc.connect(ssc.socket().getLocalSocketAddress());
             SelectionKey key = sc.register(selector, SelectionKey.OP_CONNECT);
@@ -129,6 +141,51 @@ public class SelectorTest extends TestCase {
         }
     }
 
+    public void testInterestOpsChanges_epoll() throws Exception {
+        SelectorProvider provider = new SelectorProviderImpl(true);
+        Selector selector = provider.openSelector();
+        Pipe pipe = provider.openPipe();
+        try {
+            pipe.source().configureBlocking(false);
+            SelectionKey key = pipe.source().register(selector, 0);
+            pipe.sink().write(ByteBuffer.wrap(new byte[] { 1 }));
+
+            // Not interested yet, so nothing should be selected.
+            assertEquals(0, selector.selectNow());
+
+            key.interestOps(SelectionKey.OP_READ);
+            assertEquals(1, selector.selectNow());
+            assertEquals(SelectionKey.OP_READ, key.readyOps());
+            assertTrue(selector.selectedKeys().contains(key));
+            selector.selectedKeys().clear();
+
+            // Losing interest again should remove the fd from the kernel's interest set.
+            key.interestOps(0);
+            assertEquals(0, selector.selectNow());
+
+            // Cancelling and re-registering the same channel must work too.
+            key.cancel();
+            assertEquals(0, selector.selectNow());
+            SelectionKey newKey = pipe.source().register(selector, SelectionKey.OP_READ);
+            assertEquals(1, selector.selectNow());
+            assertTrue(selector.selectedKeys().contains(newKey));
+        } finally {
+            pipe.source().close();
+            pipe.sink().close();
+            selector.close();
+        }
+    }
+
+    public void testWakeup_epoll() throws Exception {
+        final Selector selector = new SelectorProviderImpl(true).openSelector();
+        try {
+            selector.wakeup();
+            assertEquals(0, selector.select());
+        } finally {
+            selector.close();
+        }
+    }
+
     /**
      * We previously leaked a file descriptor for each selector instance created.
      *
@@ -141,4 +198,11 @@ public class SelectorTest extends TestCase {
             selector.close();
         }
     }
+
+    public void testLeakingPipes_epoll() throws IOException {
+        for (int i = 0; i < 2000; i++) {
+            Selector selector = new SelectorProviderImpl(true).openSelector();
+            selector.close();
+        }
+    }
 }
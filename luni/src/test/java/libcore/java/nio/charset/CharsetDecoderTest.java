@@ -105,4 +105,48 @@ public class CharsetDecoderTest extends junit.framework.TestCase {
         assertEquals(1, cb.position());
         assertEquals('\u2603', cb.get(0));
     }
+
+    public void testUtf8MalformedSequencesReplacedLikeIcu() throws Exception {
+        // Each maximal ill-formed subsequence is replaced by one U+FFFD: an overlong lead,
+        // a surrogate, a truncated sequence followed by ASCII, and a truncated sequence at the end.
+        byte[] bytes = new byte[] {
+            (byte) 0xc0, (byte) 0xaf,
+            (byte) 0xed, (byte) 0xa0, (byte) 0x80,
+            (byte) 0xe2, (byte) 0x98, 'a',
+            (byte) 0xf0, (byte) 0x9f, (byte) 0x98,
+        };
+        CharsetDecoder decoder = Charset.forName("UTF-8").newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE);
+        assertEquals("\ufffd\ufffd\ufffd\ufffd\ufffd\ufffda\ufffd",
+                decoder.decode(ByteBuffer.wrap(bytes)).toString());
+    }
+
+    public void testUtf8DirectBuffers() throws Exception {
+        String s = "ascii \u00e9\u2603\ud83d\ude00";
+        byte[] bytes = s.getBytes("UTF-8");
+        ByteBuffer in = ByteBuffer.allocateDirect(bytes.length);
+        in.put(bytes);
+        in.flip();
+        CharsetDecoder decoder = Charset.forName("UTF-8").newDecoder();
+        assertEquals(s, decoder.decode(in).toString());
+    }
+
+    public void testUtf8SplitSequenceReportedOnFlush() throws Exception {
+        CharsetDecoder decoder = Charset.forName("UTF-8").newDecoder();
+        CharBuffer cb = CharBuffer.allocate(128);
+        assertEquals(CoderResult.UNDERFLOW,
+                decoder.decode(ByteBuffer.wrap(new byte[] { 'a', (byte) 0xe2 }), cb, true));
+        CoderResult cr = decoder.flush(cb);
+        assertTrue(cr.isMalformed());
+        assertEquals(1, cr.length());
+        assertEquals(1, cb.position());
+    }
+
+    public void testAsciiRejectsHighBytes() throws Exception {
+        CharsetDecoder decoder = Charset.forName("US-ASCII").newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE);
+        assertEquals("a\ufffdb", decoder.decode(ByteBuffer.wrap(new byte[] { 'a', (byte) 0x80, 'b' })).toString());
+        assertEquals("a\u0080b", Charset.forName("ISO-8859-1").newDecoder()
+                .decode(ByteBuffer.wrap(new byte[] { 'a', (byte) 0x80, 'b' })).toString());
+    }
 }
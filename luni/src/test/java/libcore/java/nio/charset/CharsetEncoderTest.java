@@ -204,4 +204,47 @@ public class CharsetEncoderTest extends junit.framework.TestCase {
         assertEquals(CoderResult.UNDERFLOW, cr);
         assertEquals(8, bb.position());
     }
+
+    public void testUtf8SurrogatePairSplitAcrossWrites() throws Exception {
+        CharsetEncoder e = Charset.forName("UTF-8").newEncoder();
+        ByteBuffer bb = ByteBuffer.allocate(128);
+        assertEquals(CoderResult.UNDERFLOW, e.encode(CharBuffer.wrap(new char[] { '\ud83d' }), bb, false));
+        assertEquals(0, bb.position());
+        assertEquals(CoderResult.UNDERFLOW, e.encode(CharBuffer.wrap(new char[] { '\ude00' }), bb, false));
+        assertEquals(4, bb.position());
+        assertEquals((byte) 0xf0, bb.get(0));
+        assertEquals((byte) 0x9f, bb.get(1));
+        assertEquals((byte) 0x98, bb.get(2));
+        assertEquals((byte) 0x80, bb.get(3));
+    }
+
+    public void testUnpairedSurrogatesReplaced() throws Exception {
+        for (String charsetName : new String[] { "UTF-8", "ISO-8859-1", "US-ASCII" }) {
+            CharsetEncoder e = Charset.forName(charsetName).newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            ByteBuffer bb = e.encode(CharBuffer.wrap("a\udc00b\ud800"));
+            assertEquals(charsetName, "a?b?", new String(bb.array(), 0, bb.limit(), "US-ASCII"));
+            assertFalse(charsetName, e.canEncode('\ud800'));
+        }
+    }
+
+    public void testSingleByteUnmappable() throws Exception {
+        CharsetEncoder e = Charset.forName("US-ASCII").newEncoder();
+        assertTrue(e.canEncode('\u007f'));
+        assertFalse(e.canEncode('\u0080'));
+        e = Charset.forName("ISO-8859-1").newEncoder();
+        assertTrue(e.canEncode('\u00ff'));
+        assertFalse(e.canEncode('\u0100'));
+        assertFalse(e.canEncode("\ud83d\ude00"));
+    }
+
+    public void testDirectBuffers() throws Exception {
+        String s = "ascii \u00e9\u2603\ud83d\ude00";
+        CharBuffer in = ByteBuffer.allocateDirect(s.length() * 2).asCharBuffer();
+        in.put(s);
+        in.flip();
+        ByteBuffer bb = Charset.forName("UTF-8").newEncoder().encode(in);
+        assertTrue(Arrays.equals(s.getBytes("UTF-8"), Arrays.copyOf(bb.array(), bb.limit())));
+    }
 }
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package libcore.java.util.regex;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import junit.framework.TestCase;
+
+public final class MatcherTest extends TestCase {
+    public void testRegionsOfSameInput() {
+        String input = "abc 123 def 456";
+        Matcher m = Pattern.compile("\\d+").matcher(input);
+        m.region(0, 7);
+        assertTrue(m.find());
+        assertEquals("123", m.group());
+        assertFalse(m.find());
+
+        m.region(8, input.length());
+        assertTrue(m.find());
+        assertEquals("456", m.group());
+
+        m.region(5, 6);
+        assertTrue(m.find());
+        assertEquals("2", m.group());
+
+        m.reset();
+        assertTrue(m.find());
+        assertEquals("123", m.group());
+    }
+
+    public void testRegionKeepsBounds() {
+        Matcher m = Pattern.compile("^b").matcher("abc");
+        m.useAnchoringBounds(false);
+        m.region(1, 3);
+        assertFalse(m.lookingAt());
+        m.useAnchoringBounds(true);
+        m.region(1, 3);
+        assertTrue(m.lookingAt());
+    }
+
+    public void testResetWithChangedStringBuilder() {
+        StringBuilder sb = new StringBuilder("abc");
+        Matcher m = Pattern.compile("b+").matcher(sb);
+        assertTrue(m.find());
+        assertEquals("b", m.group());
+        sb.append("bbb");
+        m.reset(sb);
+        assertTrue(m.find());
+        assertTrue(m.find());
+        assertEquals("bbb", m.group());
+    }
+
+    public void testConvenienceMethodsReuseMatchersSafely() throws Exception {
+        // A CharSequence whose toString uses the same pattern re-enters while the
+        // pattern's spare matcher is in use.
+        CharSequence reentrant = new CharSequence() {
+            public int length() { return toString().length(); }
+            public char charAt(int index) { return toString().charAt(index); }
+            public CharSequence subSequence(int start, int end) {
+                return toString().subSequence(start, end);
+            }
+            @Override public String toString() {
+                return Pattern.matches("a+", "aaa") ? "aaa" : "bbb";
+            }
+        };
+        for (int i = 0; i < 10; i++) {
+            assertTrue(Pattern.matches("a+", reentrant));
+            assertFalse(Pattern.matches("a+", "ab"));
+            assertEquals("x-x", "1-22".replaceAll("\\d+", "x"));
+            assertEquals("x-22", "1-22".replaceFirst("\\d+", "x"));
+        }
+
+        Thread[] threads = new Thread[4];
+        final Throwable[] failure = new Throwable[1];
+        for (int t = 0; t < threads.length; t++) {
+            final String input = "thread" + t + ":a,b,c";
+            threads[t] = new Thread() {
+                @Override public void run() {
+                    try {
+                        for (int i = 0; i < 1000; i++) {
+                            String[] parts = input.split("[:,]");
+                            assertEquals(4, parts.length);
+                            assertEquals(input.substring(0, 7), parts[0]);
+                            assertTrue(input.matches("thread\\d:.*"));
+                        }
+                    } catch (Throwable e) {
+                        synchronized (failure) {
+                            failure[0] = e;
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure[0] != null) {
+            throw new AssertionError(failure[0]);
+        }
+    }
+
+    public void testBadReplacementDoesNotBreakReuse() {
+        try {
+            "abc".replaceAll("b", "$9");
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+        }
+        assertEquals("axc", "abc".replaceAll("b", "x"));
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package libcore.java.util.regex;
+
+import java.util.regex.Pattern;
+import java.util.regex.PatternCache;
+import java.util.regex.PatternSyntaxException;
+import junit.framework.TestCase;
+
+public final class PatternCacheTest extends TestCase {
+
+    public void testRepeatedLookupsHit() {
+        PatternCache.evictAll();
+        long hits = PatternCache.getHitCount();
+        Pattern pattern = PatternCache.get("a+b");
+        assertSame(pattern, PatternCache.get("a+b"));
+        assertEquals(hits + 1, PatternCache.getHitCount());
+    }
+
+    public void testFlagsAreMatched() {
+        Pattern plain = PatternCache.get("abc");
+        Pattern caseInsensitive = PatternCache.get("abc", Pattern.CASE_INSENSITIVE);
+        assertEquals(Pattern.CASE_INSENSITIVE, caseInsensitive.flags());
+        assertTrue(caseInsensitive.matcher("ABC").matches());
+        assertEquals(0, PatternCache.get("abc").flags());
+        assertFalse(PatternCache.get("abc").matcher("ABC").matches());
+        assertNotSame(plain, caseInsensitive);
+    }
+
+    public void testSameExpressionWithDifferentFlagsIsCachedTwice() {
+        PatternCache.evictAll();
+        Pattern plain = PatternCache.get("abc");
+        Pattern caseInsensitive = PatternCache.get("abc", Pattern.CASE_INSENSITIVE);
+        long hits = PatternCache.getHitCount();
+        for (int i = 0; i < 10; i++) {
+            assertSame(plain, PatternCache.get("abc"));
+            assertSame(caseInsensitive, PatternCache.get("abc", Pattern.CASE_INSENSITIVE));
+        }
+        assertEquals(hits + 20, PatternCache.getHitCount());
+    }
+
+    public void testLeastRecentlyUsedPatternsAreEvicted() {
+        PatternCache.evictAll();
+        Pattern first = PatternCache.get("x0");
+        for (int i = 1; i < 1000; i++) {
+            PatternCache.get("x" + i);
+        }
+        assertNotSame(first, PatternCache.get("x0"));
+    }
+
+    public void testSyntaxErrorsAreNotCached() {
+        for (int i = 0; i < 2; i++) {
+            try {
+                PatternCache.get("(");
+                fail();
+            } catch (PatternSyntaxException expected) {
+            }
+        }
+    }
+
+    public void testStringMethodsUseCache() {
+        PatternCache.evictAll();
+        long misses = PatternCache.getMissCount();
+        for (int i = 0; i < 10; i++) {
+            assertTrue("aaab".matches("a+b"));
+            assertEquals("-b", "aaab".replaceAll("a+", "-"));
+            assertEquals("-b-", "aab-aa".replaceFirst("a+", "-").replaceFirst("a+", ""));
+            assertEquals(3, "a1b22c".split("[0-9]+").length);
+        }
+        assertEquals(misses + 3, PatternCache.getMissCount());
+    }
+}
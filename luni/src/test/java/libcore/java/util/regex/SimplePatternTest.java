@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package libcore.java.util.regex;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import junit.framework.TestCase;
+
+/**
+ * Checks that patterns simple enough to be matched without ICU behave exactly
+ * as they do with ICU. Wrapping a pattern in a non-capturing group doesn't
+ * change what it matches, but does make it too complex for the Java engine.
+ */
+public final class SimplePatternTest extends TestCase {
+    private static final String[] REGEXES = {
+        "a", "abc", "\\.", "a\\.b", "\\|\\\\", "\t", "\\t", "caf\u00e9",
+        "cat|dog", "a|ab", "ab|a", "\\||x", "\u00e9t\u00e9|\u00e9",
+        "[abc]", "[a-z]+", "[a-z0-9_]+", "[,;]", "[\\]\\-]+", "[\u00e0-\u00ff]+", "[ \t]+",
+    };
+
+    private static final String[] INPUTS = {
+        "", "a", "abc", "xxabcabcxx", "a.b|\\c", "cat dog catdog", "aab ab a",
+        "\tx\t\t", "caf\u00e9 \u00e9t\u00e9", "one, two;three", "-]-] x", "\ud800\udc00a\ud800\udc00",
+        "HELLO world_42",
+    };
+
+    public void testFind() {
+        for (String regex : REGEXES) {
+            for (String input : INPUTS) {
+                Matcher simple = Pattern.compile(regex).matcher(input);
+                Matcher icu = Pattern.compile("(?:" + regex + ")").matcher(input);
+                String message = regex + " in " + input;
+                while (true) {
+                    boolean found = icu.find();
+                    assertEquals(message, found, simple.find());
+                    if (!found) {
+                        break;
+                    }
+                    assertEquals(message, icu.start(), simple.start());
+                    assertEquals(message, icu.end(), simple.end());
+                }
+                assertEquals(message, icu.hitEnd(), simple.hitEnd());
+                assertEquals(message, icu.requireEnd(), simple.requireEnd());
+            }
+        }
+    }
+
+    public void testLookingAtAndMatchesInRegions() {
+        for (String regex : REGEXES) {
+            for (String input : INPUTS) {
+                for (int start = 0; start <= input.length(); start++) {
+                    for (int end = start; end <= input.length(); end++) {
+                        Matcher simple = Pattern.compile(regex).matcher(input).region(start, end);
+                        Matcher icu = Pattern.compile("(?:" + regex + ")").matcher(input)
+                                .region(start, end);
+                        String message = regex + " in " + input + " [" + start + ", " + end + ")";
+                        boolean lookingAt = icu.lookingAt();
+                        assertEquals(message, lookingAt, simple.lookingAt());
+                        if (lookingAt) {
+                            assertEquals(message, icu.end(), simple.end());
+                        }
+                        assertEquals(message, icu.hitEnd(), simple.hitEnd());
+                        assertEquals(message, icu.find(), simple.find());
+                        assertEquals(message, icu.matches(), simple.matches());
+                        assertEquals(message, icu.hitEnd(), simple.hitEnd());
+                    }
+                }
+            }
+        }
+    }
+
+    public void testFindFromIndexIgnoresRegion() {
+        Matcher m = Pattern.compile("ab").matcher("ab ab ab").region(0, 2);
+        assertTrue(m.find(1));
+        assertEquals(3, m.start());
+        assertTrue(m.find());
+        assertEquals(6, m.start());
+        assertFalse(m.find());
+        assertFalse(m.find());
+    }
+
+    public void testReplaceAndSplit() {
+        assertEquals("x-x-x", "cat-dog-cat".replaceAll("cat|dog", "x"));
+        assertEquals("a b c", "a,b;;c".replaceAll("[,;]+", " "));
+        String[] parts = "a::b::c".split("::");
+        assertEquals(3, parts.length);
+        assertEquals("c", parts[2]);
+    }
+
+    public void testLiteralFlag() {
+        Pattern p = Pattern.compile("a.b|c", Pattern.LITERAL);
+        assertTrue(p.matcher("a.b|c").matches());
+        assertFalse(p.matcher("axb|c").matches());
+        assertTrue(p.matcher("xxa.b|cxx").find());
+    }
+
+    public void testCaseInsensitiveIsNotSimple() {
+        Pattern p = Pattern.compile("abc", Pattern.CASE_INSENSITIVE);
+        assertTrue(p.matcher("ABC").matches());
+        p = Pattern.compile("[a-c]+", Pattern.CASE_INSENSITIVE);
+        assertTrue(p.matcher("AbC").matches());
+    }
+}
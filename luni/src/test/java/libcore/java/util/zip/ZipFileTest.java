@@ -24,8 +24,10 @@ import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
@@ -34,6 +36,7 @@ import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 import junit.framework.TestCase;
 import libcore.io.IoUtils;
+import libcore.io.Streams;
 
 public final class ZipFileTest extends TestCase {
     /**
@@ -117,6 +120,33 @@ public final class ZipFileTest extends TestCase {
             fail();
         } catch (ZipException expected) {
         }
+        try {
+            ZipFile bad = openMapped(badZip);
+            fail();
+        } catch (ZipException expected) {
+        }
+    }
+
+    public void testMappedCentralDirectoryWithNameThatIsNotUtf8() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ZipOutputStream out = new ZipOutputStream(baos);
+        out.putNextEntry(new ZipEntry("name-a"));
+        out.write(1);
+        out.closeEntry();
+        out.close();
+
+        // 0xff never appears in UTF-8, so the name decodes to "name-\ufffd".
+        byte[] buffer = baos.toByteArray();
+        replaceBytes(buffer, "name-a".getBytes(), new byte[] { 'n', 'a', 'm', 'e', '-', (byte) 0xff });
+        File f = createTemporaryZipFile();
+        writeBytes(f, buffer);
+
+        ZipFile zipFile = openMapped(f);
+        ZipEntry entry = zipFile.entries().nextElement();
+        assertEquals("name-\ufffd", entry.getName());
+        assertNotNull(zipFile.getEntry(entry.getName()));
+        assertEquals(1, zipFile.getInputStream(entry).read());
+        zipFile.close();
     }
 
     public void testInflatingStreamsRequiringZipRefill() throws IOException {
@@ -142,6 +172,153 @@ public final class ZipFileTest extends TestCase {
         zipFile.close();
     }
 
+    public void testMappedCentralDirectory() throws Exception {
+        File f = createZipFile(1000, 100);
+        ZipFile heapZipFile = new ZipFile(f);
+        ZipFile mappedZipFile = openMapped(f);
+        assertEquals(heapZipFile.size(), mappedZipFile.size());
+
+        Enumeration<? extends ZipEntry> heapEntries = heapZipFile.entries();
+        Enumeration<? extends ZipEntry> mappedEntries = mappedZipFile.entries();
+        while (heapEntries.hasMoreElements()) {
+            ZipEntry expected = heapEntries.nextElement();
+            ZipEntry actual = mappedEntries.nextElement();
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getCrc(), actual.getCrc());
+            assertEquals(expected.getSize(), actual.getSize());
+            assertEquals(expected.getCompressedSize(), actual.getCompressedSize());
+
+            ZipEntry lookedUp = mappedZipFile.getEntry(expected.getName());
+            assertEquals(expected.getName(), lookedUp.getName());
+            assertTrue(Arrays.equals(Streams.readFully(heapZipFile.getInputStream(expected)),
+                    Streams.readFully(mappedZipFile.getInputStream(lookedUp))));
+        }
+        assertFalse(mappedEntries.hasMoreElements());
+        assertNull(mappedZipFile.getEntry("not-an-entry"));
+
+        heapZipFile.close();
+        mappedZipFile.close();
+    }
+
+    public void testMappedCentralDirectoryConcurrentReads() throws Exception {
+        final File f = createZipFile(16, 256 * 1024);
+        final ZipFile zipFile = openMapped(f);
+        final ZipFile expectedZipFile = new ZipFile(f);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; ++t) {
+            threads[t] = new Thread() {
+                @Override public void run() {
+                    try {
+                        for (int i = 0; i < 16; ++i) {
+                            String name = Integer.toHexString(i);
+                            byte[] expected = Streams.readFully(
+                                    expectedZipFile.getInputStream(expectedZipFile.getEntry(name)));
+                            byte[] actual = Streams.readFully(
+                                    zipFile.getInputStream(zipFile.getEntry(name)));
+                            assertTrue(Arrays.equals(expected, actual));
+                        }
+                    } catch (Throwable e) {
+                        failure.set(e);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+        zipFile.close();
+        expectedZipFile.close();
+    }
+
+    public void testMappedCentralDirectoryLookupsRacingClose() throws Exception {
+        File f = createZipFile(1000, 1);
+        for (int attempt = 0; attempt < 20; ++attempt) {
+            final ZipFile zipFile = openMapped(f);
+            final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+            Thread reader = new Thread() {
+                @Override public void run() {
+                    try {
+                        for (int i = 0; ; i = (i + 1) % 1000) {
+                            assertNotNull(zipFile.getEntry(Integer.toHexString(i)));
+                        }
+                    } catch (IllegalStateException expected) {
+                        // The zip file was closed, which is the only acceptable failure.
+                    } catch (Throwable e) {
+                        failure.set(e);
+                    }
+                }
+            };
+            reader.start();
+            zipFile.close();
+            reader.join();
+            assertNull(failure.get());
+        }
+    }
+
+    public void testStreamingRacingClose() throws Exception {
+        File f = createZipFile(8, 64 * 1024);
+        final File other = createZipFile(8, 64 * 1024);
+        ZipFile expectedZipFile = new ZipFile(f);
+        final byte[][] contents = new byte[8][];
+        for (int i = 0; i < contents.length; ++i) {
+            contents[i] = Streams.readFully(expectedZipFile.getInputStream(
+                    expectedZipFile.getEntry(Integer.toHexString(i))));
+        }
+        expectedZipFile.close();
+
+        for (int attempt = 0; attempt < 20; ++attempt) {
+            final ZipFile zipFile = new ZipFile(f);
+            final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+            Thread[] readers = new Thread[4];
+            for (int t = 0; t < readers.length; ++t) {
+                readers[t] = new Thread() {
+                    @Override public void run() {
+                        try {
+                            for (int i = 0; ; i = (i + 1) % contents.length) {
+                                InputStream in = zipFile.getInputStream(
+                                        zipFile.getEntry(Integer.toHexString(i)));
+                                assertTrue(Arrays.equals(contents[i], Streams.readFully(in)));
+                            }
+                        } catch (IllegalStateException expected) {
+                            // The zip file was closed before the stream was opened.
+                        } catch (IOException e) {
+                            // The zip file was closed while streaming. Anything else,
+                            // such as a ZipException from reading a reused descriptor,
+                            // is a failure.
+                            if (!"Zip file closed".equals(e.getMessage())) {
+                                failure.set(e);
+                            }
+                        } catch (Throwable e) {
+                            failure.set(e);
+                        }
+                    }
+                };
+                readers[t].start();
+            }
+            Thread.sleep(5);
+            zipFile.close();
+            // Reuse the closed descriptor's number while the readers are still running.
+            ZipFile reuse = new ZipFile(other);
+            for (Thread reader : readers) {
+                reader.join();
+            }
+            reuse.close();
+            assertNull(failure.get());
+        }
+    }
+
+    private static ZipFile openMapped(File f) throws IOException {
+        System.setProperty("libcore.zip.mmap", "true");
+        try {
+            return new ZipFile(f);
+        } finally {
+            System.clearProperty("libcore.zip.mmap");
+        }
+    }
+
     // http://code.google.com/p/android/issues/detail?id=36187
     public void testZipFileLargerThan2GiB() throws IOException {
         if (false) { // TODO: this test requires too much time and too much disk space!
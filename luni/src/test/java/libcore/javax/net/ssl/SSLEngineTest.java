@@ -16,9 +16,12 @@
 
 package libcore.javax.net.ssl;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
 import javax.net.ssl.SSLEngineResult.HandshakeStatus;
 import javax.net.ssl.SSLException;
 import javax.net.ssl.SSLHandshakeException;
@@ -264,7 +267,11 @@ public class SSLEngineTest extends TestCase {
         assertConnected(test_SSLEngine_setUseClientMode(false, true));
 
         // both are client
-        assertNotConnected(test_SSLEngine_setUseClientMode(true, true));
+        try {
+            test_SSLEngine_setUseClientMode(true, true);
+            fail();
+        } catch (SSLHandshakeException expected) {
+        }
 
         // both are server
         assertNotConnected(test_SSLEngine_setUseClientMode(false, false));
@@ -400,13 +407,16 @@ public class SSLEngineTest extends TestCase {
     }
 
     public void test_SSLEngine_setEnableSessionCreation_server() throws Exception {
-        TestSSLEnginePair p = TestSSLEnginePair.create(new TestSSLEnginePair.Hooks() {
-            @Override
-            void beforeBeginHandshake(SSLEngine client, SSLEngine server) {
-                server.setEnableSessionCreation(false);
-            }
-        });
-        assertNotConnected(p);
+        try {
+            TestSSLEnginePair.create(new TestSSLEnginePair.Hooks() {
+                @Override
+                void beforeBeginHandshake(SSLEngine client, SSLEngine server) {
+                    server.setEnableSessionCreation(false);
+                }
+            });
+            fail();
+        } catch (SSLHandshakeException expected) {
+        }
     }
 
     public void test_SSLEngine_setEnableSessionCreation_client() throws Exception {
@@ -498,6 +508,118 @@ public class SSLEngineTest extends TestCase {
         c.close();
     }
 
+    public void test_SSLEngine_wrapUnwrap_heapBuffers() throws Exception {
+        assertExchangesData(false);
+    }
+
+    public void test_SSLEngine_wrapUnwrap_directBuffers() throws Exception {
+        assertExchangesData(true);
+    }
+
+    private void assertExchangesData(boolean direct) throws Exception {
+        TestSSLEnginePair pair = TestSSLEnginePair.create(null);
+        SSLSession session = pair.client.getSession();
+        ByteBuffer network = allocate(session.getPacketBufferSize(), direct);
+        ByteBuffer received = allocate(session.getApplicationBufferSize(), direct);
+
+        byte[] data = new byte[40000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        ByteBuffer sent = allocate(data.length, direct);
+        sent.put(data).flip();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        while (sent.hasRemaining()) {
+            SSLEngineResult wrapResult = pair.client.wrap(sent, network);
+            assertEquals(SSLEngineResult.Status.OK, wrapResult.getStatus());
+            assertTrue(wrapResult.bytesConsumed() > 0);
+            network.flip();
+            while (network.hasRemaining()) {
+                SSLEngineResult unwrapResult = pair.server.unwrap(network, received);
+                assertEquals(SSLEngineResult.Status.OK, unwrapResult.getStatus());
+                received.flip();
+                while (received.hasRemaining()) {
+                    out.write(received.get());
+                }
+                received.clear();
+            }
+            network.clear();
+        }
+        assertTrue(Arrays.equals(data, out.toByteArray()));
+
+        // close_notify from the client is answered by the server
+        pair.client.closeOutbound();
+        SSLEngineResult closeResult = pair.client.wrap(ByteBuffer.allocate(0), network);
+        assertEquals(SSLEngineResult.Status.CLOSED, closeResult.getStatus());
+        assertTrue(pair.client.isOutboundDone());
+        network.flip();
+        assertEquals(SSLEngineResult.Status.CLOSED,
+                     pair.server.unwrap(network, received).getStatus());
+        assertTrue(pair.server.isInboundDone());
+        assertEquals(HandshakeStatus.NEED_WRAP, pair.server.getHandshakeStatus());
+        pair.c.close();
+    }
+
+    public void test_SSLEngine_renegotiation() throws Exception {
+        TestSSLEnginePair pair = TestSSLEnginePair.create(null);
+        SSLSession session = pair.client.getSession();
+        ByteBuffer network = ByteBuffer.allocate(session.getPacketBufferSize());
+        ByteBuffer clientReceived = ByteBuffer.allocate(session.getApplicationBufferSize());
+        ByteBuffer serverReceived = ByteBuffer.allocate(session.getApplicationBufferSize());
+
+        // the server asks for a new handshake; the client's data waits for it to finish
+        pair.server.beginHandshake();
+        assertEquals(HandshakeStatus.NEED_WRAP, pair.server.getHandshakeStatus());
+        ByteBuffer ping = ByteBuffer.wrap(new byte[] { 'p', 'i', 'n', 'g' });
+        boolean sawNeedUnwrap = false;
+        for (int i = 0; i < 20 && ping.hasRemaining(); i++) {
+            transfer(pair.server, ByteBuffer.allocate(0), network, pair.client, clientReceived);
+            // the first wrap may only send handshake messages; the second must not overflow
+            for (int j = 0; j < 2; j++) {
+                SSLEngineResult result = transfer(pair.client, ping, network,
+                                                  pair.server, serverReceived);
+                sawNeedUnwrap |= result.getHandshakeStatus() == HandshakeStatus.NEED_UNWRAP;
+            }
+        }
+        assertTrue(sawNeedUnwrap);
+        assertFalse(ping.hasRemaining());
+        assertEquals(HandshakeStatus.NOT_HANDSHAKING, pair.client.getHandshakeStatus());
+        assertEquals(HandshakeStatus.NOT_HANDSHAKING, pair.server.getHandshakeStatus());
+
+        ByteBuffer pong = ByteBuffer.wrap(new byte[] { 'p', 'o', 'n', 'g' });
+        transfer(pair.server, pong, network, pair.client, clientReceived);
+        assertEquals("ping", new String(serverReceived.array(), 0, serverReceived.position(),
+                                        "US-ASCII"));
+        assertEquals("pong", new String(clientReceived.array(), 0, clientReceived.position(),
+                                        "US-ASCII"));
+        pair.c.close();
+    }
+
+    /**
+     * Wraps {@code src} from {@code engine} and unwraps everything produced
+     * into {@code dst} with {@code peer}. Returns the result of the wrap.
+     */
+    private static SSLEngineResult transfer(SSLEngine engine, ByteBuffer src, ByteBuffer network,
+            SSLEngine peer, ByteBuffer dst) throws SSLException {
+        SSLEngineResult result = engine.wrap(src, network);
+        assertEquals(SSLEngineResult.Status.OK, result.getStatus());
+        network.flip();
+        while (network.hasRemaining()) {
+            SSLEngineResult unwrapResult = peer.unwrap(network, dst);
+            assertEquals(SSLEngineResult.Status.OK, unwrapResult.getStatus());
+            if (unwrapResult.bytesConsumed() == 0) {
+                break;
+            }
+        }
+        network.compact();
+        return result;
+    }
+
+    private static ByteBuffer allocate(int capacity, boolean direct) {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
     public void test_TestSSLEnginePair_create() throws Exception {
         TestSSLEnginePair test = TestSSLEnginePair.create(null);
         assertNotNull(test.c);
@@ -1035,6 +1035,7 @@ public class SSLSocketTest extends TestCase {
         client.setNeedClientAuth(false);
         client.setSSLParameters(client.getSSLParameters());
         client.setWantClientAuth(false);
+        output.flush(); // BufferedOutputStream.close() flushes the stream it wraps
 
         // ...but some operations are expected to give SocketException...
         try {
@@ -1238,6 +1239,46 @@ public class SSLSocketTest extends TestCase {
         c.close();
     }
 
+    public void test_SSLSocket_setWriteCoalescing() throws Exception {
+        TestSSLSocketPair pair = TestSSLSocketPair.create();
+
+        // Reflection is used so this can compile on the RI
+        String expectedClassName = "org.apache.harmony.xnet.provider.jsse.OpenSSLSocketImpl";
+        Class actualClass = pair.client.getClass();
+        assertEquals(expectedClassName, actualClass.getName());
+        Method setWriteCoalescing = actualClass.getMethod("setWriteCoalescing",
+                                                          new Class[] { Boolean.TYPE });
+        setWriteCoalescing.invoke(pair.client, true);
+
+        // Small writes accumulate until flushed; large ones pass through.
+        byte[] expected = new byte[100 + 20000];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = (byte) i;
+        }
+        OutputStream out = pair.client.getOutputStream();
+        for (int i = 0; i < 100; i++) {
+            out.write(expected[i]);
+        }
+        out.write(expected, 100, 20000);
+        out.flush();
+
+        byte[] actual = new byte[expected.length];
+        InputStream in = pair.server.getInputStream();
+        int count = 0;
+        while (count < actual.length) {
+            int read = in.read(actual, count, actual.length - count);
+            assertTrue(read != -1);
+            count += read;
+        }
+        assertTrue(Arrays.equals(expected, actual));
+
+        // Closing the socket sends anything still buffered.
+        out.write(42);
+        pair.client.close();
+        assertEquals(42, in.read());
+        pair.close();
+    }
+
     public void test_SSLSocket_interrupt() throws Exception {
         ServerSocket listening = new ServerSocket(0);
 
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package libcore.net.http;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import junit.framework.TestCase;
+
+public final class HttpConnectionPoolTest extends TestCase {
+    private ServerSocket serverSocket;
+    private HttpConnection.Address address;
+
+    @Override protected void setUp() throws Exception {
+        super.setUp();
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLocalHost());
+        URI uri = new URI("http://" + InetAddress.getLocalHost().getHostName()
+                + ":" + serverSocket.getLocalPort() + "/");
+        address = new HttpConnection.Address(uri, null);
+    }
+
+    @Override protected void tearDown() throws Exception {
+        serverSocket.close();
+        super.tearDown();
+    }
+
+    public void testRecycledConnectionIsReused() throws Exception {
+        HttpConnectionPool pool = new HttpConnectionPool(5, Integer.MAX_VALUE, 60 * 1000);
+        HttpConnection connection = pool.get(address, 0);
+        assertEquals(1, pool.getMissCount());
+        pool.recycle(connection);
+        assertEquals(1, pool.getIdleConnectionCount());
+
+        assertSame(connection, pool.get(address, 0));
+        assertTrue(connection.isRecycled());
+        assertEquals(1, pool.getHitCount());
+        assertEquals(0, pool.getIdleConnectionCount());
+        connection.closeSocketAndStreams();
+    }
+
+    public void testPerRouteLimit() throws Exception {
+        HttpConnectionPool pool = new HttpConnectionPool(1, Integer.MAX_VALUE, 60 * 1000);
+        HttpConnection a = pool.get(address, 0);
+        HttpConnection b = pool.get(address, 0);
+        pool.recycle(a);
+        pool.recycle(b);
+        assertEquals(1, pool.getIdleConnectionCount());
+        assertTrue(b.getSocket().isClosed());
+        pool.evictAll();
+    }
+
+    public void testGlobalLimit() throws Exception {
+        HttpConnectionPool pool = new HttpConnectionPool(5, 2, 60 * 1000);
+        HttpConnection a = pool.get(address, 0);
+        HttpConnection b = pool.get(address, 0);
+        HttpConnection c = pool.get(address, 0);
+        pool.recycle(a);
+        pool.recycle(b);
+        pool.recycle(c);
+        assertEquals(2, pool.getIdleConnectionCount());
+        assertTrue(c.getSocket().isClosed());
+        pool.evictAll();
+    }
+
+    public void testExpiredConnectionIsNotReused() throws Exception {
+        HttpConnectionPool pool = new HttpConnectionPool(5, Integer.MAX_VALUE, 0);
+        HttpConnection connection = pool.get(address, 0);
+        pool.recycle(connection);
+
+        HttpConnection second = pool.get(address, 0);
+        assertNotSame(connection, second);
+        assertTrue(connection.getSocket().isClosed());
+        assertEquals(1, pool.getEvictionCount());
+        second.closeSocketAndStreams();
+    }
+
+    public void testIdleConnectionsAreEvicted() throws Exception {
+        HttpConnectionPool pool = new HttpConnectionPool(5, Integer.MAX_VALUE, 100);
+        HttpConnection connection = pool.get(address, 0);
+        pool.recycle(connection);
+        assertTrue(pool.evictIdleConnections() > 0);
+        assertEquals(1, pool.getIdleConnectionCount());
+
+        Thread.sleep(200);
+        assertEquals(-1, pool.evictIdleConnections());
+        assertEquals(0, pool.getIdleConnectionCount());
+        assertTrue(connection.getSocket().isClosed());
+    }
+}
@@ -86,7 +86,7 @@ public final class HttpResponseCacheTest extends TestCase {
         mockOs.uninstall();
         server.shutdown();
         ResponseCache.setDefault(null);
-        cache.getCache().delete();
+        cache.getSegmentedCache().delete();
         CookieHandler.setDefault(null);
         super.tearDown();
     }
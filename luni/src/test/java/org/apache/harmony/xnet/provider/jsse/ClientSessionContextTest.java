@@ -81,6 +81,36 @@ public final class ClientSessionContextTest extends TestCase {
         assertSessionContextContents(context, new SSLSession[] { c, d }, new SSLSession[] { a, b });
     }
 
+    public void testEvictionOrderSpansSegments() {
+        ClientSessionContext context = new ClientSessionContext();
+        context.setSessionCacheSize(3);
+        ValidSSLSession[] sessions = new ValidSSLSession[20];
+        for (int i = 0; i < sessions.length; i++) {
+            sessions[i] = new ValidSSLSession("host" + i);
+            context.putSession(sessions[i]);
+        }
+        assertSessionContextContents(context,
+                new SSLSession[] { sessions[17], sessions[18], sessions[19] },
+                new SSLSession[] { sessions[0], sessions[10], sessions[16] });
+    }
+
+    public void testHitAndMissCounts() {
+        ClientSessionContext context = new ClientSessionContext();
+        ValidSSLSession a = new ValidSSLSession("a");
+        context.putSession(a);
+
+        assertSame(a, context.getSession(a.getId()));
+        assertNull(context.getSession(new ValidSSLSession("b").getId()));
+        assertEquals(1, context.getHitCount());
+        assertEquals(1, context.getMissCount());
+
+        assertSame(a, context.getSession("a", 443));
+        assertNull(context.getSession("b", 443));
+        assertEquals(1, context.getHostAndPortHitCount());
+        assertEquals(1, context.getHostAndPortMissCount());
+        assertEquals(0, context.getPersistentHitCount());
+    }
+
     private static void assertSessionContextContents(ClientSessionContext context,
                                                      SSLSession[] contains,
                                                      SSLSession[] exludes) {
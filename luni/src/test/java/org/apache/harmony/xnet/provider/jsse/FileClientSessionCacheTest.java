@@ -18,6 +18,8 @@ package org.apache.harmony.xnet.provider.jsse;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
 import junit.framework.TestCase;
 import libcore.javax.net.ssl.FakeSSLSession;
 
@@ -53,4 +55,101 @@ public class FileClientSessionCacheTest extends TestCase {
         }
         assertEquals(FileClientSessionCache.MAX_SIZE, cacheDir.list().length);
     }
+
+    public void testUsingFileSurvivesReopen() throws IOException {
+        File file = File.createTempFile("FileClientSessionCacheTest", "log");
+        file.delete();
+        try {
+            SSLClientSessionCache cache = FileClientSessionCache.usingFile(file);
+            int count = FileClientSessionCache.MAX_SIZE * 10;
+            for (int i = 0; i < count; i++) {
+                cache.putSessionData(new FakeSSLSession("host" + i), new byte[] { (byte) i });
+            }
+            cache.putSessionData(new FakeSSLSession("host" + (count - 1)), new byte[] { 1, 2 });
+            assertNull(cache.getSessionData("host0", 443));
+
+            FileClientSessionCache.reset();
+            cache = FileClientSessionCache.usingFile(file);
+            for (int i = 0; i < count; i++) {
+                byte[] data = cache.getSessionData("host" + i, 443);
+                if (i < count - FileClientSessionCache.MAX_SIZE) {
+                    assertNull(data);
+                } else if (i < count - 1) {
+                    assertEquals(1, data.length);
+                    assertEquals((byte) i, data[0]);
+                } else {
+                    assertEquals(2, data.length);
+                }
+            }
+        } finally {
+            FileClientSessionCache.reset();
+            file.delete();
+        }
+    }
+
+    public void testUsingFileCompactsDeadRecords() throws IOException {
+        File file = File.createTempFile("FileClientSessionCacheTest", "log");
+        file.delete();
+        try {
+            SSLClientSessionCache cache = FileClientSessionCache.usingFile(file);
+            // Write far more than the compaction threshold, most of it dead.
+            int count = 1000;
+            for (int i = 0; i < count; i++) {
+                cache.putSessionData(new FakeSSLSession("host" + i), sessionData(i, 1024));
+            }
+            long maxLength = FileClientSessionCache.LogImpl.MIN_COMPACTION_LENGTH + 2048;
+            assertTrue(file.length() + " > " + maxLength, file.length() <= maxLength);
+            assertFalse(new File(file.getPath() + ".tmp").exists());
+
+            FileClientSessionCache.reset();
+            cache = FileClientSessionCache.usingFile(file);
+            for (int i = count - FileClientSessionCache.MAX_SIZE; i < count; i++) {
+                assertTrue(Arrays.equals(sessionData(i, 1024), cache.getSessionData("host" + i, 443)));
+            }
+            assertNull(cache.getSessionData("host" + (count - FileClientSessionCache.MAX_SIZE - 1), 443));
+        } finally {
+            FileClientSessionCache.reset();
+            file.delete();
+        }
+    }
+
+    public void testUsingFileDropsTruncatedRecord() throws IOException {
+        File file = File.createTempFile("FileClientSessionCacheTest", "log");
+        file.delete();
+        try {
+            SSLClientSessionCache cache = FileClientSessionCache.usingFile(file);
+            for (int i = 0; i < 3; i++) {
+                cache.putSessionData(new FakeSSLSession("host" + i), sessionData(i, 100));
+            }
+            FileClientSessionCache.reset();
+
+            // Simulate a crash in the middle of writing the last record.
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            raf.setLength(raf.length() - 10);
+            raf.close();
+
+            cache = FileClientSessionCache.usingFile(file);
+            assertTrue(Arrays.equals(sessionData(0, 100), cache.getSessionData("host0", 443)));
+            assertTrue(Arrays.equals(sessionData(1, 100), cache.getSessionData("host1", 443)));
+            assertNull(cache.getSessionData("host2", 443));
+
+            // Records appended after recovery must follow the last complete record.
+            cache.putSessionData(new FakeSSLSession("host3"), sessionData(3, 100));
+            FileClientSessionCache.reset();
+            cache = FileClientSessionCache.usingFile(file);
+            assertTrue(Arrays.equals(sessionData(1, 100), cache.getSessionData("host1", 443)));
+            assertTrue(Arrays.equals(sessionData(3, 100), cache.getSessionData("host3", 443)));
+        } finally {
+            FileClientSessionCache.reset();
+            file.delete();
+        }
+    }
+
+    private static byte[] sessionData(int seed, int length) {
+        byte[] result = new byte[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = (byte) (seed + i);
+        }
+        return result;
+    }
 }
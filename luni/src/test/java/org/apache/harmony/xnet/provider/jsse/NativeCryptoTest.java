@@ -25,6 +25,7 @@ import java.math.BigInteger;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.KeyStore;
@@ -1626,6 +1627,41 @@ public class NativeCryptoTest extends TestCase {
             server.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
         }
 
+        // direct buffer case
+        {
+            Hooks cHooks = new Hooks() {
+                @Override
+                public void afterHandshake(long session, long s, long c,
+                                           Socket sock, FileDescriptor fd,
+                                           SSLHandshakeCallbacks callback)
+                        throws Exception {
+                    ByteBuffer in = ByteBuffer.allocateDirect(256);
+                    assertEquals(BYTES.length,
+                                 NativeCrypto.SSL_read(s, fd, callback, in, 1, BYTES.length, 0));
+                    for (int i = 0; i < BYTES.length; i++) {
+                        assertEquals(BYTES[i], in.get(i + 1));
+                    }
+                    super.afterHandshake(session, s, c, sock, fd, callback);
+                }
+            };
+            Hooks sHooks = new ServerHooks(getServerPrivateKey(), getServerCertificates()) {
+                @Override
+                public void afterHandshake(long session, long s, long c,
+                                           Socket sock, FileDescriptor fd,
+                                           SSLHandshakeCallbacks callback)
+                        throws Exception {
+                    ByteBuffer out = ByteBuffer.allocateDirect(BYTES.length);
+                    out.put(BYTES);
+                    NativeCrypto.SSL_write(s, fd, callback, out, 0, BYTES.length, 0);
+                    super.afterHandshake(session, s, c, sock, fd, callback);
+                }
+            };
+            Future<TestSSLHandshakeCallbacks> client = handshake(listener, 0, true, cHooks, null);
+            Future<TestSSLHandshakeCallbacks> server = handshake(listener, 0, false, sHooks, null);
+            client.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            server.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+
         // timeout case
         try {
             Hooks cHooks = new Hooks() {
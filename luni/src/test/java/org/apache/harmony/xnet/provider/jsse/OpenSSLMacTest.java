@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.harmony.xnet.provider.jsse;
+
+import java.nio.ByteBuffer;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import junit.framework.TestCase;
+
+public class OpenSSLMacTest extends TestCase {
+
+    private static final SecretKeySpec KEY = new SecretKeySpec("key".getBytes(), "HmacSHA1");
+
+    public void testDoFinalAllMatchesDoFinal() throws Exception {
+        byte[][] messages = {
+            new byte[0],
+            "abc".getBytes(),
+            new byte[1000],
+        };
+
+        OpenSSLMac mac = new OpenSSLMac.HmacSHA1();
+        mac.engineInit(KEY, null);
+        mac.engineUpdate((byte) 1);
+        byte[] all = mac.doFinalAll(messages);
+        assertEquals(messages.length * 20, all.length);
+
+        Mac expected = Mac.getInstance("HmacSHA1", "AndroidOpenSSL");
+        expected.init(KEY);
+        for (int i = 0; i < messages.length; i++) {
+            assertTrue(Arrays.equals(expected.doFinal(messages[i]),
+                                     Arrays.copyOfRange(all, i * 20, (i + 1) * 20)));
+        }
+
+        // The instance remains usable afterwards.
+        mac.engineUpdate(messages[1], 0, messages[1].length);
+        assertTrue(Arrays.equals(expected.doFinal(messages[1]), mac.engineDoFinal()));
+    }
+
+    public void testStaticDoFinalAll() throws Exception {
+        byte[][] messages = { "abc".getBytes(), "defg".getBytes() };
+        byte[] all = OpenSSLMac.doFinalAll("HmacSHA256", KEY, messages);
+
+        Mac expected = Mac.getInstance("HmacSHA256", "AndroidOpenSSL");
+        expected.init(KEY);
+        assertEquals(messages.length * expected.getMacLength(), all.length);
+        for (int i = 0; i < messages.length; i++) {
+            assertTrue(Arrays.equals(expected.doFinal(messages[i]),
+                                     Arrays.copyOfRange(all, i * 32, (i + 1) * 32)));
+        }
+    }
+
+    public void testStaticDoFinalAllUnknownAlgorithm() throws Exception {
+        try {
+            OpenSSLMac.doFinalAll("HmacBogus", KEY, new byte[1][]);
+            fail();
+        } catch (NoSuchAlgorithmException expected) {
+        }
+    }
+
+    public void testDoFinalAllRequiresInit() throws Exception {
+        try {
+            new OpenSSLMac.HmacSHA1().doFinalAll(new byte[1][]);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    public void testDirectByteBufferUpdate() throws Exception {
+        byte[] message = "The quick brown fox jumps over the lazy dog".getBytes();
+        ByteBuffer direct = ByteBuffer.allocateDirect(message.length);
+        direct.put(message);
+        direct.flip();
+
+        Mac mac = Mac.getInstance("HmacSHA1", "AndroidOpenSSL");
+        mac.init(KEY);
+        mac.update(direct);
+        assertFalse(direct.hasRemaining());
+        byte[] actual = mac.doFinal();
+        assertTrue(Arrays.equals(mac.doFinal(message), actual));
+    }
+}
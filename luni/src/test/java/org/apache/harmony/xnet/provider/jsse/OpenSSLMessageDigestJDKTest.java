@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.harmony.xnet.provider.jsse;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import junit.framework.TestCase;
+
+public class OpenSSLMessageDigestJDKTest extends TestCase {
+
+    private static final byte[][] MESSAGES = {
+        new byte[0],
+        "abc".getBytes(),
+        new byte[1000],
+        "The quick brown fox jumps over the lazy dog".getBytes(),
+    };
+
+    public void testDigestAllMatchesDigest() throws Exception {
+        OpenSSLMessageDigestJDK digest = new OpenSSLMessageDigestJDK.SHA256();
+        // Data already passed to update is discarded.
+        digest.update((byte) 1);
+        byte[] all = digest.digestAll(MESSAGES);
+        assertEquals(MESSAGES.length * 32, all.length);
+
+        MessageDigest expected = MessageDigest.getInstance("SHA-256", "AndroidOpenSSL");
+        for (int i = 0; i < MESSAGES.length; i++) {
+            assertTrue(Arrays.equals(expected.digest(MESSAGES[i]),
+                                     Arrays.copyOfRange(all, i * 32, (i + 1) * 32)));
+        }
+
+        // The instance remains usable afterwards.
+        assertTrue(Arrays.equals(expected.digest(MESSAGES[1]), digest.digest(MESSAGES[1])));
+    }
+
+    public void testDigestAllEmpty() throws Exception {
+        assertEquals(0, new OpenSSLMessageDigestJDK.SHA1().digestAll(new byte[0][]).length);
+    }
+
+    public void testDirectByteBufferUpdate() throws Exception {
+        byte[] message = MESSAGES[3];
+        ByteBuffer direct = ByteBuffer.allocateDirect(message.length + 10);
+        direct.position(5);
+        direct.put(message);
+        direct.flip();
+        direct.position(5);
+
+        MessageDigest digest = new OpenSSLMessageDigestJDK.SHA1();
+        digest.update(direct);
+        assertEquals(direct.limit(), direct.position());
+        assertTrue(Arrays.equals(MessageDigest.getInstance("SHA-1", "AndroidOpenSSL")
+                                 .digest(message), digest.digest()));
+    }
+
+    public void testResetAndReuse() throws Exception {
+        MessageDigest digest = new OpenSSLMessageDigestJDK.MD5();
+        byte[] expected = digest.digest(MESSAGES[1]);
+        digest.update(MESSAGES[2]);
+        digest.reset();
+        assertTrue(Arrays.equals(expected, digest.digest(MESSAGES[1])));
+        assertTrue(Arrays.equals(expected, digest.digest(MESSAGES[1])));
+    }
+
+    public void testDigestIntoArray() throws Exception {
+        MessageDigest digest = new OpenSSLMessageDigestJDK.SHA1();
+        byte[] expected = digest.digest(MESSAGES[1]);
+        byte[] out = new byte[25];
+        digest.update(MESSAGES[1]);
+        assertEquals(20, digest.digest(out, 3, 22));
+        assertTrue(Arrays.equals(expected, Arrays.copyOfRange(out, 3, 23)));
+    }
+
+    public void testCloneMidDigest() throws Exception {
+        MessageDigest digest = new OpenSSLMessageDigestJDK.SHA1();
+        digest.update(MESSAGES[1]);
+        MessageDigest copy = (MessageDigest) digest.clone();
+        assertTrue(Arrays.equals(digest.digest(), copy.digest()));
+
+        // A clone of an idle digest is independent too.
+        MessageDigest idleCopy = (MessageDigest) digest.clone();
+        assertTrue(Arrays.equals(digest.digest(MESSAGES[2]), idleCopy.digest(MESSAGES[2])));
+    }
+}
@@ -550,6 +550,80 @@ public class TrustedCertificateStoreTest extends TestCase {
         assertFalse(store.isUserAddedCertificate(getCa2()));
     }
 
+    public void testSystemIndex() throws Exception {
+        install(getCa1(), getAliasSystemCa1());
+        install(getCa3WithCa1Subject(), getAliasSystemCa3Collision());
+        install(getChain()[1], getAliasSystemChain1());
+        install(getChain()[2], getAliasSystemChain2());
+        SystemCertificateIndex.write(DIR_SYSTEM);
+
+        // lookups should be answered by the index rather than the file, whose length is unchanged
+        OutputStream os = new FileOutputStream(file(getAliasSystemCa1()));
+        os.write(new byte[getCa1().getEncoded().length]);
+        os.close();
+        createStore();
+
+        assertRootCa(getCa1(), getAliasSystemCa1());
+        assertEquals(getAliasSystemCa3Collision(), store.getCertificateAlias(getCa3WithCa1Subject()));
+        assertEquals(getChain()[2], store.findIssuer(getChain()[1]));
+        assertEquals(Arrays.asList(getChain()[0], getChain()[1], getChain()[2]),
+                     store.getCertificateChain(getChain()[0]));
+        assertAliases(getAliasSystemCa1(), getAliasSystemCa3Collision(),
+                      getAliasSystemChain1(), getAliasSystemChain2());
+
+        store.deleteCertificateEntry(getAliasSystemCa1());
+        assertDeleted(getCa1(), getAliasSystemCa1());
+        store.installCertificate(getCa1());
+        assertRootCa(getCa1(), getAliasSystemCa1());
+    }
+
+    public void testSystemIndexIsCheckedWhenFirstOpened() throws Exception {
+        install(getCa1(), getAliasSystemCa1());
+        SystemCertificateIndex.write(DIR_SYSTEM);
+        createStore();
+        assertRootCa(getCa1(), getAliasSystemCa1());
+
+        // the system directory is read-only, so later stores don't check it again
+        install(getCa2(), getAliasSystemCa2());
+        createStore();
+        assertRootCa(getCa1(), getAliasSystemCa1());
+        assertNull(store.getCertificate(getAliasSystemCa2()));
+    }
+
+    public void testStaleSystemIndexIsIgnored() throws Exception {
+        install(getCa1(), getAliasSystemCa1());
+        SystemCertificateIndex.write(DIR_SYSTEM);
+        install(getCa2(), getAliasSystemCa2());
+        createStore();
+
+        assertRootCa(getCa1(), getAliasSystemCa1());
+        assertRootCa(getCa2(), getAliasSystemCa2());
+        assertAliases(getAliasSystemCa1(), getAliasSystemCa2());
+    }
+
+    public void testSystemIndexWithReplacedFileIsIgnored() throws Exception {
+        install(getCa1(), getAliasSystemCa1());
+        SystemCertificateIndex.write(DIR_SYSTEM);
+        file(getAliasSystemCa1()).delete();
+        install(getCa2(), getAliasSystemCa2());
+        createStore();
+
+        assertRootCa(getCa2(), getAliasSystemCa2());
+        assertAliases(getAliasSystemCa2());
+        assertNull(store.getCertificate(getAliasSystemCa1()));
+    }
+
+    public void testSystemIndexWithChangedFileIsIgnored() throws Exception {
+        install(getCa1(), getAliasSystemCa1());
+        SystemCertificateIndex.write(DIR_SYSTEM);
+        OutputStream os = new FileOutputStream(file(getAliasSystemCa1()));
+        os.write(0);
+        os.close();
+        createStore();
+
+        assertNull(store.getCertificate(getAliasSystemCa1()));
+    }
+
     private void assertRootCa(X509Certificate x, String alias) {
         assertIntermediateCa(x, alias);
         assertEquals(x, store.findIssuer(x));
@@ -176,7 +176,7 @@ public class KXmlParser implements XmlPullParser, Closeable {
 
     private boolean unresolved;
 
-    public final StringPool stringPool = new StringPool();
+    private StringPool stringPool = new StringPool();
 
     /**
      * Retains namespace attributes like {@code xmlns="http://foo"} or {@code xmlns:foo="http:foo"}
@@ -188,6 +188,18 @@ public class KXmlParser implements XmlPullParser, Closeable {
         this.keepNamespaceAttributes = true;
     }
 
+    /**
+     * Uses {@code stringPool} to share the strings for names and attribute
+     * values. Parsers that read similar documents may share a single
+     * thread safe pool so that each document allocates fewer strings.
+     */
+    public void setStringPool(StringPool stringPool) {
+        if (stringPool == null) {
+            throw new NullPointerException("stringPool == null");
+        }
+        this.stringPool = stringPool;
+    }
+
     private boolean adjustNsp() throws XmlPullParserException {
         boolean any = false;
 